@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the request specific state of an analysis. Currently this is the
+ * (optional) deadline, the {@link AnalysisLayer}s an {@link Analyzer} 
+ * omitted to meet it and the positions where overly long sentences where
+ * cut.<p>
+ * Instances are intended to be created as early as possible (e.g. when a 
+ * request is received) so that the time waiting for an {@link Analyzer} is
+ * also accounted for.<p>
+ * An instance MUST only be used for a single analysis.
+ */
+public class AnalysisContext {
+
+    /**
+     * Used as deadline if no time budget is set
+     */
+    public static final long NO_DEADLINE = -1;
+    
+    private final long deadline;
+    
+    private final Set<AnalysisLayer> omittedLayers = 
+            Collections.synchronizedSet(EnumSet.noneOf(AnalysisLayer.class));
+    
+    private final List<Integer> sentenceCuts = 
+            Collections.synchronizedList(new ArrayList<Integer>());
+    
+    private final AtomicInteger longSentences = new AtomicInteger();
+    
+    /**
+     * Creates an analysis context without a deadline
+     */
+    public AnalysisContext(){
+        this(NO_DEADLINE);
+    }
+    /**
+     * Creates an analysis context with a deadline of <code>now + timeBudget</code>
+     * @param timeBudget the time budget in milliseconds. Values <code>&lt;= 0
+     * </code> are interpreted as no deadline.
+     */
+    public AnalysisContext(long timeBudget){
+        this.deadline = timeBudget > 0 ? System.currentTimeMillis() + timeBudget :
+            NO_DEADLINE;
+    }
+    /**
+     * Getter for the deadline
+     * @return the deadline (as returned by {@link System#currentTimeMillis()})
+     * or {@link #NO_DEADLINE} if none
+     */
+    public final long getDeadline() {
+        return deadline;
+    }
+    /**
+     * If this analysis has a deadline
+     * @return <code>true</code> if a deadline is present
+     */
+    public final boolean hasDeadline(){
+        return deadline != NO_DEADLINE;
+    }
+    /**
+     * The time remaining until the deadline
+     * @return the remaining time in milliseconds (can be negative if the
+     * deadline has already passed) or {@link Long#MAX_VALUE} if this context 
+     * has no deadline.
+     */
+    public final long getRemainingTime(){
+        return deadline == NO_DEADLINE ? Long.MAX_VALUE : 
+            deadline - System.currentTimeMillis();
+    }
+    /**
+     * Marks the parsed layer as omitted
+     * @param layer the omitted layer
+     */
+    public void addOmittedLayer(AnalysisLayer layer){
+        if(layer == null){
+            throw new IllegalArgumentException("The parsed AnalysisLayer MUST NOT be NULL!");
+        }
+        omittedLayers.add(layer);
+    }
+    /**
+     * Getter for the layers omitted by the analysis
+     * @return a copy of the omitted layers
+     */
+    public Set<AnalysisLayer> getOmittedLayers(){
+        synchronized (omittedLayers) {
+            return omittedLayers.isEmpty() ? Collections.<AnalysisLayer>emptySet() :
+                Collections.unmodifiableSet(EnumSet.copyOf(omittedLayers));
+        }
+    }
+    
+    /**
+     * Records that a sentence was cut because it exceeded the maximum 
+     * sentence length.
+     * @param offset the character offset of the start of the sentence 
+     * created by the cut
+     */
+    public void addSentenceCut(int offset){
+        sentenceCuts.add(offset);
+    }
+    /**
+     * Getter for the character offsets where sentences where cut because
+     * they exceeded the maximum sentence length
+     * @return a copy of the offsets in the order they where added
+     */
+    public List<Integer> getSentenceCuts(){
+        synchronized (sentenceCuts) {
+            return sentenceCuts.isEmpty() ? Collections.<Integer>emptyList() :
+                Collections.unmodifiableList(new ArrayList<Integer>(sentenceCuts));
+        }
+    }
+    
+    /**
+     * Records a sentence that was cut because it exceeded the maximum
+     * sentence length. A single sentence may be cut several times.
+     * @param count the number of cut sentences
+     */
+    public void addLongSentences(int count){
+        longSentences.addAndGet(count);
+    }
+    /**
+     * The number of sentences that where cut because they exceeded the
+     * maximum sentence length
+     * @return the number of cut sentences
+     */
+    public int getLongSentenceCount(){
+        return longSentences.get();
+    }
+    
+    /**
+     * If the analysis is incomplete because layers where omitted or
+     * sentences where cut
+     * @return <code>true</code> if the analysis was degraded
+     */
+    public boolean isDegraded(){
+        return !getOmittedLayers().isEmpty() || !getSentenceCuts().isEmpty();
+    }
+    
+    @Override
+    public String toString() {
+        return new StringBuilder("AnalysisContext[deadline: ").append(deadline)
+                .append("| omitted: ").append(getOmittedLayers())
+                .append("| sentence cuts: ").append(getSentenceCuts())
+                .append(']').toString();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+/**
+ * The processing layers of a Freeling analysis. Layers marked as
+ * {@link #isOptional() optional} may be omitted by an {@link Analyzer} if
+ * the {@link AnalysisContext#getDeadline() deadline} of the analysis would
+ * otherwise be missed.
+ */
+public enum AnalysisLayer {
+    
+    /** Morphological analysis (Maco) */
+    MORPHOLOGY("morphology", false),
+    /** Part-of-Speech tagging (HmmTagger) */
+    POS("pos", false),
+    /** Named Entity classification (Nec) */
+    NER("ner", false),
+    /** Word Sense Disambiguation (Ukb) */
+    DISAMBIGUATION("disambiguation", true),
+    /** Sense labelling (Senses) */
+    SENSES("senses", true),
+    /** Chart parsing (ChartParser) */
+    CHUNKS("chunks", true),
+    /** Dependency parsing (DepTxala). Requires {@link #CHUNKS} */
+    DEPENDENCIES("dependencies", true);
+    
+    private final String name;
+    private final boolean optional;
+
+    private AnalysisLayer(String name, boolean optional){
+        this.name = name;
+        this.optional = optional;
+    }
+    /**
+     * The name of the layer as used in HTTP headers and log messages
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+    /**
+     * If this layer can be omitted to meet the deadline of an analysis
+     * @return the state
+     */
+    public boolean isOptional() {
+        return optional;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -21,6 +21,8 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 
 import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.nlp.model.Token;
 import org.apache.stanbol.enhancer.servicesapi.Blob;
 
 /**
@@ -39,6 +41,19 @@ public interface Analyzer {
      * @throws IOException on any error while reading from the stream.
      */
     AnalysedText analyse(InputStream in,  Charset charset) throws IOException;
+    /**
+     * Analysis the text read from the parsed InputStream within the parsed
+     * {@link AnalysisContext}.
+     * @param in the {@link InputStream} to read the data from. The stream MUST
+     * NOT be closed by implementations.
+     * @param charset the charset used by the parsed input stream. UTF-8 if
+     * <code>null</code> is parsed.
+     * @param context the analysis context or <code>null</code> if none
+     * @return the AnalyzedText
+     * @throws IOException on any error while reading from the stream.
+     * @see #analyse(Blob, AnalysisContext)
+     */
+    AnalysedText analyse(InputStream in,  Charset charset, AnalysisContext context) throws IOException;
     /**
      * Analysis the content provided by the parsed {@link Blob} 
      * and returns the analysis results as {@link AnalysedText}.
@@ -50,5 +65,36 @@ public interface Analyzer {
      * @throws NullPointerException if the parsed {@link Blob} is <code>null</code>
      */
     AnalysedText analyse(Blob blob) throws IOException;
-    
+    /**
+     * Analysis the content provided by the parsed {@link Blob} within the
+     * parsed {@link AnalysisContext}. If the context defines a deadline
+     * {@link AnalysisLayer#isOptional() optional} layers are omitted if
+     * their processing would exceed the remaining time. Omitted layers are
+     * {@link AnalysisContext#addOmittedLayer(AnalysisLayer) added} to the
+     * context.
+     * @param blob the {@link Blob}
+     * @param context the analysis context or <code>null</code> if none
+     * @return the AnalyzedText
+     * @throws IOException on any error while reading from the stream.
+     * @throws IllegalArgumentException if the {@link Blob#getMimeType()} is
+     * not of "<code>text/**</code>" type
+     * @throws NullPointerException if the parsed {@link Blob} is <code>null</code>
+     */
+    AnalysedText analyse(Blob blob, AnalysisContext context) throws IOException;
+    /**
+     * Analysis an already tokenized and sentence split text. The 
+     * {@link Sentence}s and {@link Token}s present in the parsed 
+     * {@link AnalysedText} are used as input for the morphological analysis.
+     * Tokenizing and sentence detection are skipped. Consecutive Tokens 
+     * outside of Sentences are analysed as an implicit Sentence. The analysis
+     * results (including implicit Sentences) are added to the parsed
+     * {@link AnalysedText}.
+     * @param at the tokenized and sentence split text
+     * @param context the analysis context or <code>null</code> if none
+     * @return the parsed {@link AnalysedText}
+     * @throws IllegalArgumentException if the parsed {@link AnalysedText} is 
+     * <code>null</code>
+     */
+    AnalysedText analyse(AnalysedText at, AnalysisContext context);
+
 }
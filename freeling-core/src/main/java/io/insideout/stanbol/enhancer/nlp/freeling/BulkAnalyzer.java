@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+import java.util.concurrent.Future;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+
+/**
+ * An {@link Analyzer} that can be used concurrently by multiple threads and
+ * supports asynchronous analysis of texts. Intended for the bulk processing
+ * of texts where throughput is more important as latency.
+ */
+public interface BulkAnalyzer extends Analyzer {
+
+    /**
+     * Submits the content of the parsed {@link Blob} for analysis. This
+     * method blocks if the maximum number of pending analyses is reached.
+     * @param blob the {@link Blob}
+     * @param context the analysis context or <code>null</code> if none
+     * @return the future for the {@link AnalysedText}. {@link java.io.IOException}s
+     * are wrapped by an {@link java.util.concurrent.ExecutionException}
+     * @throws IllegalArgumentException if the {@link Blob#getMimeType()} is
+     * not of "<code>text/**</code>" type
+     * @throws NullPointerException if the parsed {@link Blob} is <code>null</code>
+     * @throws IllegalStateException if this BulkAnalyzer is already closed
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    Future<AnalysedText> submit(Blob blob, AnalysisContext context) throws InterruptedException;
+    /**
+     * Submits an already tokenized and sentence split text for analysis.
+     * See {@link Analyzer#analyse(AnalysedText, AnalysisContext)} for details.
+     * This method blocks if the maximum number of pending analyses is reached.
+     * @param at the tokenized and sentence split text
+     * @param context the analysis context or <code>null</code> if none
+     * @return the future for the parsed {@link AnalysedText}
+     * @throws NullPointerException if the parsed {@link AnalysedText} is 
+     * <code>null</code>
+     * @throws IllegalStateException if this BulkAnalyzer is already closed
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    Future<AnalysedText> submit(AnalysedText at, AnalysisContext context) throws InterruptedException;
+    
+    /**
+     * The language of this analyzer
+     * @return the language
+     */
+    String getLanguage();
+}
@@ -18,29 +18,52 @@ package io.insideout.stanbol.enhancer.nlp.freeling;
 
 
 import io.insideout.stanbol.enhancer.nlp.freeling.impl.AnalyzerFactory;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.AnalyzerImpl;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.DataFilePrefetcher;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.FreelingProperties;
 import io.insideout.stanbol.enhancer.nlp.freeling.impl.LangIdFactory;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.LanguageIdentifierImpl;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.NGramLanguageIdentifier;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.PipelinedAnalyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.PooledBulkAnalyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.CreationScheduler;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.PoolTimeoutException;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool.ResourceFactory;
+import io.insideout.stanbol.enhancer.nlp.freeling.worker.AnalyzerWorker;
+import io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerManager;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -72,9 +95,207 @@ public class Freeling {
      */
     public final static int DEFAULT_CONCURRENT_THREADS = 1;
     public final static String DEFAULT_FREELING_LOCALE = "default";
+    /**
+     * By default sentences are not cut regardless of their length
+     */
+    public final static int DEFAULT_MAX_SENTENCE_LENGTH = -1;
+    /**
+     * By default the native Freeling language identification is used
+     */
+    public final static LangIdMode DEFAULT_LANGID_MODE = LangIdMode.POOLED;
+    /**
+     * The recommended number of threads used to prefetch the data files of
+     * the Freeling configurations. Files are only prefetched if set by
+     * {@link Settings#setPrefetchThreads(int)}.
+     */
+    public final static int DEFAULT_PREFETCH_THREADS = 2;
+    
+    /**
+     * The implementations used for language identification
+     */
+    public static enum LangIdMode {
+        /**
+         * A {@link ResourcePool} of native Freeling LangIdent instances with
+         * the same size as the Analyzer pools
+         */
+        POOLED,
+        /**
+         * A single native Freeling LangIdent instance used concurrently by 
+         * all threads. Each call uses its own native result vector. The
+         * language models are only read while ranking languages.
+         */
+        SHARED,
+        /**
+         * A {@link ResourcePool} with one native Freeling LangIdent instance
+         * per available processor. Use this if {@link #SHARED} is not safe
+         * for the used Freeling version.
+         */
+        PER_CORE,
+        /**
+         * A single thread safe pure Java n-gram identifier using the
+         * language models of Freeling
+         */
+        JAVA,
+        /**
+         * No language identification (e.g. for {@link AnalyzerWorker}s as
+         * languages are identified by the parent process)
+         */
+        NONE
+    }
+    
+    /**
+     * The settings used to create a {@link Freeling} instance. Only the
+     * configuration and shared resource paths are required. All other 
+     * settings use the defaults defined by {@link Freeling} if not set.
+     */
+    public static final class Settings {
+        
+        private final String configurationPath;
+        private final String freelingSharePath;
+        private String configurationFilenameSuffix = DEFAULT_CONFIGURATION_FILENAME_SUFFIX;
+        private String freelingLibPath = DEFAULT_FREELING_LIB_PATH;
+        private String locale = DEFAULT_FREELING_LOCALE;
+        private int maxInitThreads = DEFAULT_CONCURRENT_THREADS;
+        private int poolSize = DEFAULT_ANALYZER_POOL_SIZE;
+        private int minQueueSize = DEFAULT_MIN_ANALYZER_QUEUE_SIZE;
+        private int maxSentenceLength = DEFAULT_MAX_SENTENCE_LENGTH;
+        private LangIdMode langIdMode = DEFAULT_LANGID_MODE;
+        private int workers = 0;
+        private Set<String> languages;
+        private int prefetchThreads = 0;
+        
+        /**
+         * @param configurationPath the directory with the Freeling configurations
+         * @param freelingSharePath the shared resource path
+         */
+        public Settings(String configurationPath, String freelingSharePath){
+            if(configurationPath == null){
+                throw new IllegalArgumentException("The parsed configuration path MUST NOT be NULL!");
+            }
+            if(freelingSharePath == null){
+                throw new IllegalArgumentException("The parsed Freeling share path MUST NOT be NULL!");
+            }
+            this.configurationPath = configurationPath;
+            this.freelingSharePath = freelingSharePath;
+        }
+        /**
+         * @param suffix the suffix of configuration files
+         */
+        public Settings setConfigurationFilenameSuffix(String suffix){
+            this.configurationFilenameSuffix = suffix == null ? 
+                    DEFAULT_CONFIGURATION_FILENAME_SUFFIX : suffix;
+            return this;
+        }
+        /**
+         * @param freelingLibPath the path to the native Freeling library
+         */
+        public Settings setFreelingLibPath(String freelingLibPath){
+            this.freelingLibPath = freelingLibPath == null ? 
+                    DEFAULT_FREELING_LIB_PATH : freelingLibPath;
+            return this;
+        }
+        /**
+         * @param locale the locale set to Freeling
+         */
+        public Settings setLocale(String locale){
+            this.locale = locale == null ? DEFAULT_FREELING_LOCALE : locale;
+            return this;
+        }
+        /**
+         * @param maxInitThreads the number of threads used to create Freeling
+         * components
+         */
+        public Settings setMaxInitThreads(int maxInitThreads){
+            this.maxInitThreads = maxInitThreads <= 0 ? DEFAULT_CONCURRENT_THREADS : maxInitThreads;
+            return this;
+        }
+        /**
+         * @param poolSize the maximum number of Analyzers instantiated for a
+         * language
+         */
+        public Settings setPoolSize(int poolSize){
+            this.poolSize = poolSize <= 0 ? DEFAULT_ANALYZER_POOL_SIZE : poolSize;
+            return this;
+        }
+        /**
+         * @param minQueueSize the minimum number of Analyzers in the queue.
+         * <code>0</code> deactivates the creation of Analyzers in advance.
+         */
+        public Settings setMinQueueSize(int minQueueSize){
+            this.minQueueSize = minQueueSize < 0 ? DEFAULT_MIN_ANALYZER_QUEUE_SIZE : minQueueSize;
+            return this;
+        }
+        /**
+         * @param maxSentenceLength the maximum number of words of a sentence
+         * processed by the Chart- and Dependency parser. Longer sentences are
+         * cut at punctuations, conjunctions or - if none is present - at this
+         * limit. Values <code>&lt;= 0</code> deactivate this feature.
+         */
+        public Settings setMaxSentenceLength(int maxSentenceLength){
+            this.maxSentenceLength = maxSentenceLength;
+            return this;
+        }
+        /**
+         * @param langIdMode the implementation used for language identification.
+         * If <code>null</code> the {@link #DEFAULT_LANGID_MODE} is used.
+         */
+        public Settings setLangIdMode(LangIdMode langIdMode){
+            this.langIdMode = langIdMode == null ? DEFAULT_LANGID_MODE : langIdMode;
+            return this;
+        }
+        /**
+         * @param workers the number of {@link AnalyzerWorker} processes used
+         * to analyse texts. If <code>&lt;= 0</code> texts are analysed in this
+         * JVM. Language identification is not affected by this parameter.
+         */
+        public Settings setWorkers(int workers){
+            this.workers = workers;
+            return this;
+        }
+        /**
+         * @param languages if not <code>null</code> only configurations for
+         * those languages are loaded
+         */
+        public Settings setLanguages(Set<String> languages){
+            this.languages = languages;
+            return this;
+        }
+        /**
+         * @param prefetchThreads the number of threads used to read the data
+         * files of the supported languages into the page cache while Freeling
+         * components are created. Values <code>&lt;= 0</code> deactivate
+         * prefetching (default).
+         */
+        public Settings setPrefetchThreads(int prefetchThreads){
+            this.prefetchThreads = prefetchThreads;
+            return this;
+        }
+    }
 
     private static final int DEFAULT_ANALYZER_POOL_SIZE = 10;
     private static final int DEFAULT_MIN_ANALYZER_QUEUE_SIZE = 1;
+    /**
+     * The maximum time to wait for the creation of an Analyzer while warming
+     * up the {@link ResourcePool} of a reloaded language
+     */
+    private static final long RELOAD_WARMUP_TIME = 10*60*1000;
+    /**
+     * The maximum time to wait for in-flight analyses of a replaced 
+     * {@link PipelinedAnalyzer} before it gets closed
+     */
+    private static final long RELOAD_DRAIN_TIME = 10*60*1000;
+    /**
+     * Replaced {@link PipelinedAnalyzer}s are kept open for at least this time
+     * so that callers that have obtained them just before the swap can still
+     * submit texts. Replaced {@link ResourcePool}s forward requests to the new
+     * pool instead.
+     */
+    private static final long RELOAD_GRACE_PERIOD = 1000;
+    /**
+     * The maximum time the {@link BulkAnalyzer}s used with worker processes
+     * wait for an Analyzer
+     */
+    private static final long WORKER_MAX_WAIT_TIME = 30*60*1000;
 
     /**
      * Map holding the ResourcePools for the supported languages. does have the
@@ -82,10 +303,114 @@ public class Freeling {
      */
     private final Map<String,ResourcePool<Analyzer>> analyzerPools = 
             Collections.synchronizedMap(new HashMap<String,ResourcePool<Analyzer>>());
+    /**
+     * The context used to create Analyzers for the supported languages. Only
+     * modified while holding the lock on {@link #bulkAnalyzers}.
+     */
+    private final Map<String,Map<String,Object>> analyzerContexts = 
+            new ConcurrentHashMap<String,Map<String,Object>>();
+    /**
+     * The modification time of the configuration (and its data files) of a
+     * language when it was loaded. Used to detect changed configurations.
+     */
+    private final Map<String,Long> configModified = new ConcurrentHashMap<String,Long>();
+    /**
+     * Changed modification times seen by the last check of the configuration
+     * watcher. A language is only reloaded if its files did not change
+     * between two checks (to not read files while they are written).
+     */
+    private final Map<String,Long> configChanged = new ConcurrentHashMap<String,Long>();
+    /**
+     * Ensures that only a single language is reloaded at a time
+     */
+    private final Object reloadLock = new Object();
+    /**
+     * Used to watch the configuration directory and to reload languages in
+     * the background
+     */
+    private final ScheduledExecutorService reloadExecutor;
+    /**
+     * Used to close replaced {@link ResourcePool}s and {@link PipelinedAnalyzer}s
+     * after in-flight analyses have completed. Separated from the 
+     * {@link #reloadExecutor} as draining may take up to {@link #RELOAD_DRAIN_TIME}.
+     */
+    private final ExecutorService retireExecutor;
+    private ScheduledFuture<?> configWatcher;
+    /**
+     * Replaced {@link ResourcePool}s and {@link PipelinedAnalyzer}s that are 
+     * not yet closed
+     */
+    private final Set<Object> retired = Collections.synchronizedSet(new HashSet<Object>());
+    
+    private final String freelingSharePath;
+    private final int poolSize;
+    private final int minQueueSize;
+    /**
+     * The {@link BulkAnalyzer}s for the supported languages (lazily created)
+     */
+    private final Map<String,PipelinedAnalyzer> bulkAnalyzers = 
+            new HashMap<String,PipelinedAnalyzer>();
+    /**
+     * Locks used while creating the {@link #bulkAnalyzers} of a language.
+     * Guarded by the lock on {@link #bulkAnalyzers}
+     */
+    private final Map<String,Object> bulkAnalyzerLocks = new HashMap<String,Object>();
 
     protected final ExecutorService freelingInitThreadPool;
+    /**
+     * Used to close Freeling components so that closing does not delay the
+     * creation of components
+     */
+    private final ExecutorService freelingCloseThreadPool;
+    /**
+     * Queues the creation of Freeling components per language and executes
+     * them using the {@link #freelingInitThreadPool}
+     */
+    private final CreationScheduler creationScheduler;
+    
+    /**
+     * The {@link MultiLanguageAnalyzer} (lazily created)
+     */
+    private MultiLanguageAnalyzer multiLanguageAnalyzer;
+    /**
+     * The thread pool used to analyse the segments of multi language texts.
+     * Uses {@link #poolSize} threads as more can not obtain an Analyzer of a
+     * language anyway.
+     */
+    private ExecutorService segmentThreadPool;
+    
+    private AnalyzerFactory analyzerFactory;
+    /**
+     * Manages the worker processes if analyses are not executed in this JVM
+     */
+    private WorkerManager workerManager;
+    /**
+     * The {@link BulkAnalyzer}s used with worker processes. Guarded by the
+     * lock on {@link #bulkAnalyzers}
+     */
+    private final Map<String,PooledBulkAnalyzer> pooledBulkAnalyzers = 
+            new HashMap<String,PooledBulkAnalyzer>();
+    /**
+     * The thread pool used by the {@link #pooledBulkAnalyzers} (lazily created)
+     */
+    private ExecutorService bulkThreadPool;
+    /**
+     * Reads the data files of the supported languages at startup (if enabled)
+     */
+    private DataFilePrefetcher prefetcher;
 
     private ResourcePool<LanguageIdentifier> langIdPool;
+    /**
+     * The {@link LanguageIdentifier} used concurrently instead of the
+     * {@link #langIdPool} (if any). Volatile as it is read without lock.
+     * Native instances guard calls against a concurrent close.
+     */
+    private volatile LanguageIdentifier sharedLangId;
+    /**
+     * The languages known by language identification or <code>null</code>
+     * if not known
+     */
+    private Set<String> langIdLanguages;
 
     private boolean closed;
     
@@ -117,12 +442,62 @@ public class Freeling {
             minQueueSize < 0 ? DEFAULT_MIN_ANALYZER_QUEUE_SIZE : minQueueSize);
     }
     
-    @SuppressWarnings("unchecked")
     public Freeling(final String configurationPath,
             final String configurationFilenameSuffix,
             final String freelingSharePath, final String freelingLibPath, 
             final String locale, final int maxInitThreads, 
             final int poolSize, final int minQueueSize) {
+        this(new Settings(configurationPath, freelingSharePath)
+            .setConfigurationFilenameSuffix(configurationFilenameSuffix)
+            .setFreelingLibPath(freelingLibPath).setLocale(locale)
+            .setMaxInitThreads(maxInitThreads).setPoolSize(poolSize)
+            .setMinQueueSize(minQueueSize));
+    }
+    /**
+     * Creates a Freeling instance
+     * @param settings the settings
+     * @see Settings
+     */
+    @SuppressWarnings("unchecked")
+    public Freeling(final Settings settings) {
+       if(settings == null){
+           throw new IllegalArgumentException("The parsed Settings MUST NOT be NULL!");
+       }
+       final String configurationPath = settings.configurationPath;
+       final String configurationFilenameSuffix = settings.configurationFilenameSuffix;
+       final String freelingSharePath = settings.freelingSharePath;
+       final String freelingLibPath = settings.freelingLibPath;
+       final String locale = settings.locale;
+       final int maxInitThreads = settings.maxInitThreads;
+       final int poolSize = settings.poolSize;
+       final int minQueueSize = settings.minQueueSize;
+       final int maxSentenceLength = settings.maxSentenceLength;
+       final LangIdMode langIdMode = settings.langIdMode;
+       final int workers = settings.workers;
+       final Set<String> languages = settings.languages;
+       final int prefetchThreads = settings.prefetchThreads;
+       final long started = System.currentTimeMillis();
+       this.freelingSharePath = freelingSharePath;
+       this.poolSize = poolSize;
+       this.minQueueSize = minQueueSize;
+       reloadExecutor = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+           private final AtomicInteger count = new AtomicInteger();
+           @Override
+           public Thread newThread(Runnable r) {
+               Thread t = new Thread(r, "freeling-reload-" + count.incrementAndGet());
+               t.setDaemon(true);
+               return t;
+           }
+       });
+       retireExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+           private final AtomicInteger count = new AtomicInteger();
+           @Override
+           public Thread newThread(Runnable r) {
+               Thread t = new Thread(r, "freeling-retire-" + count.incrementAndGet());
+               t.setDaemon(true);
+               return t;
+           }
+       });
         //determine the supported languages
        File configDir = new File(configurationPath);
        if(!configDir.isDirectory()){
@@ -130,97 +505,246 @@ public class Freeling {
                +configDir+"' is not a directory!");
        }
        log.info("Reading Freeling Configuration from Directory: {}",configDir);
-       Map<String,File> supportedLanguages = new HashMap<String,File>();
+       Map<String,FreelingProperties> supportedLanguages = new HashMap<String,FreelingProperties>();
        String langIdConfigFile = null;
        if(configDir.isDirectory()){
            for(File confFile : (Collection<File>)FileUtils.listFiles(configDir, 
                new SuffixFileFilter(configurationFilenameSuffix), null)){
-               Properties prop = new Properties();
-               InputStream in = null;
+               FreelingProperties config;
                try {
-                   in = new FileInputStream(confFile);
-                   prop.load(in);
-                   String lang = prop.getProperty("Lang");
-                   String langIdentFileName = prop.getProperty("LangIdentFile");
-                   if(lang != null){ //not a Analyzer config
-                       File existing = supportedLanguages.get(lang);
-                       if(existing == null){
-                           log.info(" ... adding language '{}' with config {}",
+                   config = new FreelingProperties(confFile, freelingSharePath);
+               } catch (IOException e) {
+                   log.error("Unable to read configuration file "+confFile,e);
+                   continue;
+               }
+               String lang = config.getLanguage();
+               String langIdentFileName = config.getLangIdentFile();
+               if(lang != null && languages != null && !languages.contains(lang)){
+                   log.debug(" ... ignore language '{}' with config {}", lang, confFile);
+               } else if(lang != null){ //not a Analyzer config
+                   FreelingProperties existing = supportedLanguages.get(lang);
+                   if(existing == null){
+                       log.info(" ... adding language '{}' with config {}",
+                           lang, confFile);
+                       supportedLanguages.put(lang, config);
+                   } else { //two configs for the same language
+                       //take the one that is more similar to the language name
+                       int eld = StringUtils.getLevenshteinDistance(
+                           lang, FilenameUtils.getBaseName(existing.getConfigFile().getName()));
+                       int cld = StringUtils.getLevenshteinDistance(
+                           lang, FilenameUtils.getBaseName(confFile.getName()));
+                       if(cld < eld){
+                           log.info(" ... setting language '{}' to config {}",
                                lang, confFile);
-                           supportedLanguages.put(lang, confFile);
-                       } else { //two configs for the same language
-                           //take the one that is more similar to the language name
-                           int eld = StringUtils.getLevenshteinDistance(
-                               lang, FilenameUtils.getBaseName(existing.getName()));
-                           int cld = StringUtils.getLevenshteinDistance(
-                               lang, FilenameUtils.getBaseName(confFile.getName()));
-                           if(cld < eld){
-                               log.info(" ... setting language '{}' to config {}",
-                                   lang, confFile);
-                               supportedLanguages.put(lang, confFile);
-                           }
-                       }
-                   } else if(langIdentFileName != null){
-                       if(langIdentFileName.startsWith("$FREELING")){
-                           langIdentFileName = FilenameUtils.concat(freelingSharePath,
-                               langIdentFileName.substring(
-                                   langIdentFileName.indexOf(File.separatorChar)+1));
-                       }
-                       if(langIdConfigFile != null){
-                           log.warn("Multiple LanguageIdentification configuration files. "
-                           		+ "Keep using '{}' and ignore '{}'!",langIdConfigFile,langIdentFileName);
-                       } else {
-                           log.info(" ... setting language identification config to '{}'",
-                               langIdentFileName);
-                           langIdConfigFile = langIdentFileName;
+                           supportedLanguages.put(lang, config);
                        }
                    }
-               } catch (IOException e) {
-                   log.error("Unable to read configuration file "+confFile,e);
-               } finally {
-                   IOUtils.closeQuietly(in);
+               } else if(langIdentFileName != null){
+                   if(langIdConfigFile != null){
+                       log.warn("Multiple LanguageIdentification configuration files. "
+                       		+ "Keep using '{}' and ignore '{}'!",langIdConfigFile,langIdentFileName);
+                   } else {
+                       log.info(" ... setting language identification config to '{}'",
+                           langIdentFileName);
+                       langIdConfigFile = langIdentFileName;
+                   }
                }
            }
        }
+       //validate the configurations of all supported languages and report
+       //all problems at once
+       StringBuilder problems = new StringBuilder();
+       for(FreelingProperties config : supportedLanguages.values()){
+           for(String warning : config.getWarnings()){
+               log.warn("Config {} for language '{}': {} (component will be omitted)",
+                   new Object[]{config.getConfigFile(), config.getLanguage(), warning});
+           }
+           for(String problem : config.getProblems()){
+               problems.append("\n  - ").append(config.getConfigFile()).append(" (")
+                   .append(config.getLanguage()).append("): ").append(problem);
+           }
+       }
+       if(problems.length() > 0){
+           throw new IllegalStateException("Invalid Freeling configuration(s) in "
+               + "directory '" + configDir + "':" + problems);
+       }
+       //start reading the data files before the components are created.
+       //Workers benefit as well as the page cache is shared
+       if(prefetchThreads > 0){
+           List<File> dataFiles = new ArrayList<File>();
+           for(String language : new TreeSet<String>(supportedLanguages.keySet())){
+               dataFiles.addAll(supportedLanguages.get(language).getDataFiles());
+           }
+           if(langIdConfigFile != null && langIdMode != LangIdMode.NONE){
+               dataFiles.add(new File(langIdConfigFile));
+           }
+           prefetcher = new DataFilePrefetcher(dataFiles, prefetchThreads);
+           prefetcher.start();
+       }
        //init the ThreadPool used to create Freeling components
        //this is mainly needed for beeing able to ensure that only one Freeling
        //component is created at a time. This may be necessary in some
        //environment to avoid random crashes.
        freelingInitThreadPool = Executors.newFixedThreadPool(
            maxInitThreads <= 0 ? DEFAULT_CONCURRENT_THREADS : maxInitThreads);
+       freelingCloseThreadPool = Executors.newSingleThreadExecutor(new ThreadFactory() {
+           @Override
+           public Thread newThread(Runnable r) {
+               Thread t = new Thread(r, "freeling-close");
+               t.setDaemon(true);
+               return t;
+           }
+       });
+       //creations are queued per language so that languages with waiting
+       //requests are not blocked by the creation of other components
+       creationScheduler = new CreationScheduler(freelingInitThreadPool, freelingCloseThreadPool);
        //Init the Analyzers
        if(supportedLanguages.isEmpty()){
            log.warn("The parsed configDirectory '{}' does not contain any valid "
                + "language configuration (*.{}) files!",configDir,
                configurationFilenameSuffix);
        } else {
-           AnalyzerFactory analyzerFactory = new AnalyzerFactory(
-               freelingLibPath, freelingSharePath, locale, 
-               freelingInitThreadPool);
+           ResourceFactory<? extends Analyzer> poolFactory;
+           if(workers > 0){
+               log.info("start {} worker processes for languages {}",
+                   workers, new TreeSet<String>(supportedLanguages.keySet()));
+               workerManager = new WorkerManager(workers, supportedLanguages.keySet(),
+                   AnalyzerWorker.getArguments(configurationPath, configurationFilenameSuffix,
+                       freelingSharePath, freelingLibPath, locale, maxInitThreads,
+                       poolSize, minQueueSize, maxSentenceLength), 0);
+               poolFactory = workerManager;
+           } else {
+               analyzerFactory = new AnalyzerFactory(
+                   freelingLibPath, freelingSharePath, locale, 
+                   creationScheduler, maxSentenceLength);
+               poolFactory = analyzerFactory;
+           }
            //now init the ResourcePool(s)
            log.info("init ResourcePools (size: "+poolSize+")");
-           for(Entry<String,File> supported : supportedLanguages.entrySet()){
-               Map<String,Object> context = new HashMap<String,Object>();
-               context.put(AnalyzerFactory.PROPERTY_LANGUAGE, supported.getKey());
-               context.put(AnalyzerFactory.PROPERTY_CONFIG_FILE, supported.getValue());
+           for(Entry<String,FreelingProperties> supported : supportedLanguages.entrySet()){
+               Map<String,Object> context = createAnalyzerContext(supported.getValue());
+               analyzerContexts.put(supported.getKey(), context);
+               configModified.put(supported.getKey(), supported.getValue().getLastModified());
                log.debug(" ... create ResourcePool for {}",context);
                analyzerPools.put(supported.getKey(), new ResourcePool<Analyzer>(
-                       poolSize,minQueueSize, analyzerFactory, context));
+                       poolSize,minQueueSize, poolFactory, context));
+               //create the tag lookup (and load the tag mappings) now so that
+               //the first Analyzer of the language does not need to
+               TagSetRegistry.getInstance().getTagLookup(supported.getKey());
            }
        }
-       if(langIdConfigFile == null){
+       if(langIdMode == LangIdMode.NONE){
+           log.info("Language Identification is deactivated");
+           langIdPool = null;
+       } else if(langIdConfigFile == null){
            log.warn("The parsed configDirectory '{}' does not contain the "
                    + "Language Identification Component configuration (a *.{}) file! "
                    + "Language Identification Service will not ba available.",
                    configDir, configurationFilenameSuffix);
            langIdPool = null;
+       } else if(langIdMode == LangIdMode.JAVA && initSharedLangId(langIdConfigFile)){
+           langIdPool = null;
        } else {
            LangIdFactory langIdFactory = new LangIdFactory(
-               freelingLibPath, langIdConfigFile, locale, freelingInitThreadPool);
-           //Finally init the language identifier resource pool
-           langIdPool = new ResourcePool<LanguageIdentifier>(
-                   poolSize, minQueueSize,langIdFactory, null);
+               freelingLibPath, langIdConfigFile, locale, creationScheduler);
+           if(langIdMode == LangIdMode.SHARED){
+               langIdPool = null;
+               try {
+                   sharedLangId = langIdFactory.createResource(null).get();
+               } catch (InterruptedException e) {
+                   Thread.currentThread().interrupt();
+                   throw new IllegalStateException("Interrupted while creating the "
+                       + "shared LanguageIdentifier", e);
+               } catch (ExecutionException e) {
+                   throw new IllegalStateException("Unable to create the shared "
+                       + "LanguageIdentifier", e.getCause());
+               }
+           } else {
+               //Finally init the language identifier resource pool
+               int langIdPoolSize = langIdMode == LangIdMode.PER_CORE ? 
+                       Runtime.getRuntime().availableProcessors() : poolSize;
+               langIdPool = new ResourcePool<LanguageIdentifier>(
+                       langIdPoolSize, minQueueSize, langIdFactory, null);
+           }
+       }
+       if(sharedLangId instanceof NGramLanguageIdentifier){
+           langIdLanguages = ((NGramLanguageIdentifier)sharedLangId).getLanguages();
+       } else if(sharedLangId != null || langIdPool != null){
+           try {
+               langIdLanguages = NGramLanguageIdentifier.readLanguageCodes(langIdConfigFile);
+           } catch (IOException e) {
+               log.warn("Unable to read the languages of the language identification "
+                   + "configuration '" + langIdConfigFile + "'! Candidate languages "
+                   + "will not be validated.", e);
+           }
        }
+       //Analyzers are created in the background. See the logs of the
+       //AnalyzerFactory for the time needed to create them
+       log.info("Freeling initialised in {}ms (Analyzers are created in the background)",
+           System.currentTimeMillis() - started);
+       logWhenReady(started, prefetcher == null ? "off" : (prefetchThreads + " threads"));
+    }
+    /**
+     * Logs the startup time as soon as the initial Analyzers (and 
+     * LanguageIdentifiers) of all languages are created.
+     */
+    private void logWhenReady(final long started, final String prefetch){
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for(String language : new TreeSet<String>(analyzerPools.keySet())){
+                        ResourcePool<Analyzer> pool = analyzerPools.get(language);
+                        if(pool != null && !pool.awaitCreation(RELOAD_WARMUP_TIME)){
+                            log.warn("Analyzers for language '{}' not ready after {}ms",
+                                language, System.currentTimeMillis() - started);
+                        }
+                    }
+                    ResourcePool<LanguageIdentifier> langIdPool = Freeling.this.langIdPool;
+                    if(langIdPool != null){
+                        langIdPool.awaitCreation(RELOAD_WARMUP_TIME);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if(!closed){
+                    log.info("Freeling started in {}ms (initial Analyzers of {} languages "
+                        + "ready, data file prefetch: {})", new Object[]{
+                            System.currentTimeMillis() - started, analyzerPools.size(), prefetch});
+                }
+            }
+        }, "freeling-startup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    /**
+     * Creates the context used by the {@link AnalyzerFactory} to create 
+     * Analyzers for the parsed configuration
+     */
+    private Map<String,Object> createAnalyzerContext(FreelingProperties config) {
+        Map<String,Object> context = new HashMap<String,Object>();
+        context.put(AnalyzerFactory.PROPERTY_LANGUAGE, config.getLanguage());
+        context.put(AnalyzerFactory.PROPERTY_CONFIG_FILE, config.getConfigFile());
+        context.put(AnalyzerFactory.PROPERTY_CONFIGURATION, config);
+        return context;
+    }
+    /**
+     * Loads the {@link NGramLanguageIdentifier}
+     * @return <code>true</code> if successful. <code>false</code> if the
+     * native pooled language identification needs to be used instead
+     */
+    private boolean initSharedLangId(String langIdConfigFile){
+        try {
+            sharedLangId = new NGramLanguageIdentifier(langIdConfigFile);
+            return true;
+        } catch (IOException e) {
+            log.error("Unable to load language models from '" + langIdConfigFile
+                + "'! Fallback to pooled native language identification", e);
+        } catch (IllegalArgumentException e) {
+            log.error("Unable to load language models from '" + langIdConfigFile
+                + "'! Fallback to pooled native language identification", e);
+        }
+        return false;
     }
     /**
      * Getter for the read-only set with the supported languages
@@ -229,6 +753,38 @@ public class Freeling {
     public Set<String> getSupportedLanguages(){
         return Collections.unmodifiableSet(analyzerPools.keySet());
     }
+    /**
+     * The supported languages as comma separated list as used for the
+     * <code>languages</code> parameter of 
+     * {@link LanguageIdentifier#identifyLanguage(String, String)}. Restricting
+     * language identification to the supported languages avoids the ranking
+     * of languages that can not be analysed anyway.
+     * @return the sorted, comma separated list of the supported languages 
+     */
+    public String getLanguageCandidates(){
+        Set<String> languages;
+        synchronized (analyzerPools) {
+            languages = new TreeSet<String>(analyzerPools.keySet());
+        }
+        return StringUtils.join(languages.iterator(), ',');
+    }
+    /**
+     * Normalises the candidate languages parsed by a client: Languages not
+     * known by language identification are dropped and the remaining are
+     * sorted.
+     * @param languages the comma separated candidate languages or 
+     * <code>null</code> to use the {@link #getLanguageCandidates() supported
+     * languages}
+     * @return the sorted, comma separated list of the known candidates
+     * @throws IllegalArgumentException if none of the parsed languages is
+     * known by language identification
+     */
+    public String getLanguageCandidates(String languages){
+        SortedSet<String> candidates = LanguageIdentifierImpl.parseLanguages(
+            languages, langIdLanguages);
+        return candidates == null ? getLanguageCandidates() : 
+            StringUtils.join(candidates.iterator(), ',');
+    }
     
     /**
      * Checks if the parsed language is supported by the Freeling instance
@@ -238,6 +794,36 @@ public class Freeling {
     public boolean isLanguageSupported(String language){
         return analyzerPools.containsKey(language);
     }
+    /**
+     * The number of texts of a language analysed concurrently by the 
+     * {@link Analyzer}s of the {@link #getAnalyzerPool(String) pool}. In
+     * worker mode the texts are analysed by the pools of the workers
+     * serving the language.
+     * @param language the language
+     * @return the number of concurrently analysed texts or <code>0</code>
+     * if the parsed language is not supported
+     */
+    public int getConcurrency(String language){
+        if(workerManager != null){
+            return workerManager.getWorkerCount(language) * poolSize;
+        }
+        ResourcePool<Analyzer> pool = analyzerPools.get(language);
+        return pool == null ? 0 : pool.getSize();
+    }
+    /**
+     * The number of texts the {@link BulkAnalyzer} of a language analyses
+     * concurrently. Can be used to estimate the waiting time of bulk
+     * analyses without creating the {@link BulkAnalyzer}.
+     * @param language the language
+     * @return the number of concurrently analysed texts
+     */
+    public int getBulkConcurrency(String language){
+        if(workerManager != null){ //PooledBulkAnalyzer
+            return Math.max(1, poolSize);
+        } else {
+            return PipelinedAnalyzer.STAGE_COUNT;
+        }
+    }
     /**
      * Getter for the {@link ResourcePool} for the parsed language.
      * ResourcePools can be used to obtain {@link Analyzer}s. <p>
@@ -262,6 +848,439 @@ public class Freeling {
         return analyzerPools.get(language);
     }
     
+    /**
+     * Getter for the {@link BulkAnalyzer} for the parsed language. The
+     * {@link BulkAnalyzer} is thread-safe and uses a single Freeling Analyzer
+     * instance that processes multiple texts in a pipeline. It is intended
+     * for the bulk processing of texts where throughput is more important 
+     * than latency.<p>
+     * The {@link BulkAnalyzer} is created on the first call for a language.
+     * This may take some time as Freeling components need to be initialised.
+     * @param language the language
+     * @return the {@link BulkAnalyzer} or <code>null</code> if the parsed 
+     * language is not supported
+     * @throws InterruptedException if interrupted while waiting for the
+     * creation of the {@link BulkAnalyzer}
+     * @throws IllegalStateException if this Freeling instance is closed or
+     * the creation of the Freeling Analyzer failed.
+     */
+    public BulkAnalyzer getBulkAnalyzer(String language) throws InterruptedException {
+        if(!analyzerContexts.containsKey(language)){
+            return null;
+        }
+        Object languageLock;
+        synchronized (bulkAnalyzers) {
+            if(closed){
+                throw new IllegalStateException("This Freeling instance is already closed!");
+            }
+            if(workerManager != null){ //Analyzers can not be pipelined
+                return getPooledBulkAnalyzer(language);
+            }
+            PipelinedAnalyzer bulkAnalyzer = bulkAnalyzers.get(language);
+            if(bulkAnalyzer != null){
+                return bulkAnalyzer;
+            }
+            languageLock = bulkAnalyzerLocks.get(language);
+            if(languageLock == null){
+                languageLock = new Object();
+                bulkAnalyzerLocks.put(language, languageLock);
+            }
+        }
+        //create the Analyzer while only holding the lock of the language so
+        //that other languages, reloads and close() are not blocked
+        synchronized (languageLock) {
+            while(true){
+                Map<String,Object> context;
+                synchronized (bulkAnalyzers) {
+                    if(closed){
+                        throw new IllegalStateException("This Freeling instance is already closed!");
+                    }
+                    PipelinedAnalyzer bulkAnalyzer = bulkAnalyzers.get(language);
+                    if(bulkAnalyzer != null){ //created by an other thread
+                        return bulkAnalyzer;
+                    }
+                    //read the context while holding the lock as reloads replace it
+                    context = analyzerContexts.get(language);
+                }
+                log.info("create BulkAnalyzer for language {}",language);
+                AnalyzerImpl analyzer;
+                try {
+                    analyzer = analyzerFactory.createResource(context).get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Unable to create Analyzer for "
+                        + "language '" + language + "'!", e.getCause());
+                }
+                synchronized (bulkAnalyzers) {
+                    if(!closed && context == analyzerContexts.get(language)){
+                        PipelinedAnalyzer bulkAnalyzer = new PipelinedAnalyzer(
+                            analyzer, PipelinedAnalyzer.DEFAULT_QUEUE_SIZE);
+                        bulkAnalyzers.put(language, bulkAnalyzer);
+                        return bulkAnalyzer;
+                    }
+                }
+                //closed or reloaded while creating the Analyzer
+                analyzer.close();
+            }
+        }
+    }
+    /**
+     * Getter for the {@link PooledBulkAnalyzer} used for the parsed language
+     * if texts are analysed by worker processes. MUST BE called while holding
+     * the lock on {@link #bulkAnalyzers}.
+     */
+    private BulkAnalyzer getPooledBulkAnalyzer(String language){
+        PooledBulkAnalyzer bulkAnalyzer = pooledBulkAnalyzers.get(language);
+        if(bulkAnalyzer == null){
+            if(bulkThreadPool == null){
+                bulkThreadPool = Executors.newCachedThreadPool(new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "freeling-bulk-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+            bulkAnalyzer = new PooledBulkAnalyzer(language, analyzerPools.get(language),
+                bulkThreadPool, WORKER_MAX_WAIT_TIME, poolSize);
+            pooledBulkAnalyzers.put(language, bulkAnalyzer);
+        }
+        return bulkAnalyzer;
+    }
+    
+    /**
+     * Getter for the {@link MultiLanguageAnalyzer} used to analyse texts 
+     * containing multiple languages. The instance is created on the first
+     * call.
+     * @return the multi language analyzer
+     * @throws IllegalStateException if this Freeling instance is already closed
+     */
+    public MultiLanguageAnalyzer getMultiLanguageAnalyzer(){
+        synchronized (bulkAnalyzers) {
+            if(closed){
+                throw new IllegalStateException("This Freeling instance is already closed!");
+            }
+            if(multiLanguageAnalyzer == null){
+                segmentThreadPool = Executors.newFixedThreadPool(Math.max(1, poolSize), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "freeling-segment-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+                multiLanguageAnalyzer = new MultiLanguageAnalyzer(this, segmentThreadPool);
+            }
+            return multiLanguageAnalyzer;
+        }
+    }
+    
+    /**
+     * Getter for the configuration currently used for the parsed language
+     * @param language the language
+     * @return the configuration or <code>null</code> if the language is not
+     * supported
+     */
+    public FreelingProperties getConfiguration(String language){
+        Map<String,Object> context = analyzerContexts.get(language);
+        return context == null ? null : 
+            (FreelingProperties)context.get(AnalyzerFactory.PROPERTY_CONFIGURATION);
+    }
+    
+    /**
+     * Reloads the configuration of the parsed language. A new 
+     * {@link ResourcePool} is created and warmed up (up to the peak number of
+     * Analyzers borrowed from the current pool) in the calling thread
+     * while the current pool continues to serve requests. After that the new
+     * pool atomically replaces the current one. The replaced pool (and
+     * {@link BulkAnalyzer}) is closed in the background as soon as all 
+     * in-flight analyses have completed. Other languages are not affected.<p>
+     * If the reloaded configuration is invalid or the creation of an Analyzer
+     * fails the current pool is kept.
+     * @param language the language to reload
+     * @return the reloaded configuration
+     * @throws IOException if the configuration file can not be read
+     * @throws IllegalArgumentException if the parsed language is not supported
+     * @throws IllegalStateException if the reloaded configuration is invalid,
+     * Analyzers could not be created or this instance is already closed
+     */
+    public FreelingProperties reloadLanguage(String language) throws IOException {
+        synchronized (reloadLock) {
+            if(closed){
+                throw new IllegalStateException("This Freeling instance is already closed!");
+            }
+            FreelingProperties current = getConfiguration(language);
+            if(current == null){
+                throw new IllegalArgumentException("The language '" + language 
+                    + "' is not supported (supported: " + getSupportedLanguages() + ")!");
+            }
+            //read the modification time before the files
+            long lastModified = current.getLastModified();
+            FreelingProperties config = new FreelingProperties(
+                current.getConfigFile(), freelingSharePath);
+            if(!language.equals(config.getLanguage())){
+                throw new IllegalStateException("The reloaded configuration " 
+                    + config.getConfigFile() + " is for language '" + config.getLanguage()
+                    + "' (expected: '" + language + "')!");
+            }
+            if(!config.isValid()){
+                throw new IllegalStateException("Invalid reloaded configuration "
+                    + config.getConfigFile() + " (" + language + "): " + config.getProblems());
+            }
+            for(String warning : config.getWarnings()){
+                log.warn("Config {} for language '{}': {} (component will be omitted)",
+                    new Object[]{config.getConfigFile(), language, warning});
+            }
+            log.info("reload language '{}' from config {}", language, config.getConfigFile());
+            Map<String,Object> context = createAnalyzerContext(config);
+            if(workerManager != null){ //the worker swaps its own pool
+                workerManager.reloadLanguage(language);
+                synchronized (bulkAnalyzers) {
+                    analyzerContexts.put(language, context);
+                }
+                configModified.put(language, lastModified);
+                configChanged.remove(language);
+                log.info(" ... language '{}' reloaded by worker", language);
+                return config;
+            }
+            ResourcePool<Analyzer> pool = new ResourcePool<Analyzer>(
+                    poolSize, minQueueSize, analyzerFactory, context);
+            //warm up as many Analyzers as the current pool had to provide
+            ResourcePool<Analyzer> currentPool = analyzerPools.get(language);
+            int warmUp = Math.max(1, minQueueSize);
+            if(currentPool != null){
+                warmUp = Math.max(warmUp, Math.max(currentPool.getPeakBorrowedCount(),
+                    currentPool.getBorrowedCount()));
+            }
+            try { //warm up the new pool before it gets used
+                pool.warmUp(warmUp, RELOAD_WARMUP_TIME);
+            } catch (PoolTimeoutException e) {
+                pool.close();
+                analyzerFactory.releaseConfiguration(config);
+                throw new IllegalStateException("Unable to create Analyzers for the "
+                    + "reloaded configuration of language '" + language + "'!", e);
+            } catch (RuntimeException e) {
+                pool.close();
+                analyzerFactory.releaseConfiguration(config);
+                throw e;
+            }
+            //swap the pools
+            ResourcePool<Analyzer> replaced = analyzerPools.put(language, pool);
+            PipelinedAnalyzer replacedBulkAnalyzer;
+            synchronized (bulkAnalyzers) {
+                analyzerContexts.put(language, context);
+                replacedBulkAnalyzer = bulkAnalyzers.remove(language);
+            }
+            configModified.put(language, lastModified);
+            configChanged.remove(language);
+            if(closed){ //closed while reloading
+                pool.close();
+            }
+            log.info(" ... language '{}' reloaded", language);
+            retire(language, current, replaced, pool, replacedBulkAnalyzer);
+            return config;
+        }
+    }
+    
+    /**
+     * Retires the parsed {@link ResourcePool} and closes the 
+     * {@link PipelinedAnalyzer} replaced by a reload in the background. The
+     * retired pool forwards requests to its successor and closes borrowed
+     * Analyzers as soon as they are returned. The bulk analyzer is closed
+     * after its in-flight analyses have completed.
+     */
+    private void retire(final String language, final FreelingProperties config, 
+            final ResourcePool<Analyzer> pool, final ResourcePool<Analyzer> successor,
+            final PipelinedAnalyzer bulkAnalyzer){
+        if(pool != null){
+            retired.add(pool);
+        }
+        if(bulkAnalyzer != null){
+            retired.add(bulkAnalyzer);
+        }
+        Runnable closeTask = new Runnable() {
+            @Override
+            public void run() {
+                if(pool != null){
+                    retired.remove(pool);
+                    pool.retire(successor);
+                }
+                if(bulkAnalyzer != null){
+                    boolean drained = true;
+                    try {
+                        Thread.sleep(RELOAD_GRACE_PERIOD);
+                        long deadline = System.currentTimeMillis() + RELOAD_DRAIN_TIME;
+                        while(drained && bulkAnalyzer.getPendingCount() > 0){
+                            if(System.currentTimeMillis() > deadline){
+                                drained = false;
+                            } else {
+                                Thread.sleep(50);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        drained = false;
+                    }
+                    if(!drained){
+                        log.warn("Close replaced bulk Analyzer of language '{}' with "
+                            + "pending analyses!", language);
+                    }
+                    retired.remove(bulkAnalyzer);
+                    bulkAnalyzer.close();
+                }
+                //native options are deleted after the last Analyzer is closed
+                analyzerFactory.releaseConfiguration(config);
+                log.info("retired replaced Analyzers of language '{}'", language);
+            }
+        };
+        try {
+            retireExecutor.execute(closeTask);
+        } catch (RejectedExecutionException e) { //closed concurrently
+            if(pool != null){
+                retired.remove(pool);
+                pool.retire(successor);
+            }
+            if(bulkAnalyzer != null){
+                retired.remove(bulkAnalyzer);
+                bulkAnalyzer.close();
+            }
+        }
+    }
+    
+    /**
+     * Reloads the parsed language - or all languages with changed 
+     * configurations if <code>null</code> is parsed - in the background.
+     * Failed reloads are logged and the current Analyzers are kept.
+     * @param language the language to reload or <code>null</code> to reload
+     * all changed languages
+     * @return the future for the reloaded languages
+     * @throws IllegalArgumentException if the parsed language is not supported
+     * @throws IllegalStateException if this instance is already closed
+     */
+    public Future<Set<String>> scheduleReload(final String language){
+        if(language != null && !isLanguageSupported(language)){
+            throw new IllegalArgumentException("The language '" + language 
+                + "' is not supported (supported: " + getSupportedLanguages() + ")!");
+        }
+        try {
+            return reloadExecutor.submit(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() {
+                    if(language == null){
+                        return reloadChangedLanguages(false);
+                    }
+                    try {
+                        reloadLanguage(language);
+                        return Collections.singleton(language);
+                    } catch (IOException e) {
+                        log.error("Unable to reload language '" + language 
+                            + "' (keep current Analyzers)!", e);
+                    } catch (RuntimeException e) {
+                        log.error("Unable to reload language '" + language 
+                            + "' (keep current Analyzers)!", e);
+                    }
+                    return Collections.emptySet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("This Freeling instance is already closed!");
+        }
+    }
+    
+    /**
+     * Reloads all languages where the configuration file or one of the
+     * referenced data files has changed since they were loaded. Languages
+     * where the reload fails keep their current Analyzers.
+     * @return the reloaded languages
+     */
+    public Set<String> reloadChangedLanguages(){
+        return reloadChangedLanguages(false);
+    }
+    
+    /**
+     * Reloads changed languages
+     * @param settled if <code>true</code> languages are only reloaded if the
+     * modification time has not changed since the last call.
+     * @return the reloaded languages
+     */
+    private Set<String> reloadChangedLanguages(boolean settled){
+        Set<String> reloaded = new TreeSet<String>();
+        for(String language : new TreeSet<String>(analyzerContexts.keySet())){
+            FreelingProperties config = getConfiguration(language);
+            Long loaded = configModified.get(language);
+            if(config == null || loaded == null){
+                continue;
+            }
+            long lastModified = config.getLastModified();
+            if(lastModified == loaded.longValue()){
+                continue; //not changed
+            }
+            Long seen = configChanged.put(language, lastModified);
+            if(settled && (seen == null || seen.longValue() != lastModified)){
+                continue; //files are still changing
+            }
+            try {
+                reloadLanguage(language);
+                reloaded.add(language);
+            } catch (IOException e) {
+                log.error("Unable to reload language '" + language 
+                    + "' (keep current Analyzers)!", e);
+                configModified.put(language, lastModified); //do not retry
+            } catch (RuntimeException e) {
+                log.error("Unable to reload language '" + language 
+                    + "' (keep current Analyzers)!", e);
+                configModified.put(language, lastModified); //do not retry
+            }
+        }
+        return reloaded;
+    }
+    
+    /**
+     * Starts watching the configurations of the supported languages. Changed
+     * languages are {@link #reloadLanguage(String) reloaded} in the 
+     * background as soon as their files did not change for the parsed 
+     * interval.
+     * @param intervalMillis the check interval in milliseconds. Values 
+     * <code>&lt;= 0</code> stop watching.
+     */
+    public void watchConfigurations(long intervalMillis){
+        synchronized (reloadExecutor) {
+            if(configWatcher != null){
+                configWatcher.cancel(false);
+                configWatcher = null;
+            }
+            if(intervalMillis > 0 && !closed){
+                log.info("watch Freeling configurations (interval: {}ms)",intervalMillis);
+                configWatcher = reloadExecutor.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        reloadChangedLanguages(true);
+                    }
+                }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    /**
+     * The number of sentences of the parsed language that where cut because
+     * they exceeded the maximum sentence length. Includes the sentences cut
+     * by worker processes.
+     * @param language the language
+     * @return the number of cut sentences. <code>0</code> if the language
+     * is not supported.
+     */
+    public long getLongSentenceCount(String language){
+        if(!isLanguageSupported(language)){
+            return 0;
+        } else if(workerManager != null){
+            return workerManager.getLongSentenceCount(language);
+        } else {
+            return analyzerFactory.getStageStatistics(language).getLongSentenceCount();
+        }
+    }
+    
     /*
      * This is more a demo of how to use te API
      * This class should return ResourcePools instead
@@ -292,7 +1311,7 @@ public class Freeling {
      * available
      */
     public boolean isLanguageIdentificationSupported(){
-        return langIdPool != null;
+        return langIdPool != null || sharedLangId != null;
     }
     /**
      * Getter for the {@link ResourcePool} for the {@link LanguageIdentifier}
@@ -312,11 +1331,58 @@ public class Freeling {
      *    }
      * </pre></code>
      * @return the {@link ResourcePool} or <code>null</code> if 
-     * {@link #isLanguageIdentificationSupported()} is <code>false</code>
+     * {@link #isLanguageIdentificationSupported()} is <code>false</code> or
+     * if a {@link LangIdMode} other than {@link LangIdMode#POOLED} is used.
+     * @see #getLanguageIdentifier(long)
      */
     public ResourcePool<LanguageIdentifier> getLangIdPool(){
         return langIdPool;
     }
+    /**
+     * Getter for a {@link LanguageIdentifier} regardless of the configured
+     * {@link LangIdMode}. The returned instance MUST BE released by calling
+     * {@link #releaseLanguageIdentifier(LanguageIdentifier)}.<p>
+     * <b>Usage Example:</b>
+     * <code><pre>
+     *    LanguageIdentifier langId = freeling.getLanguageIdentifier(30*1000);
+     *    try {
+     *        return langId.identifyLanguage(text);
+     *    } finally {
+     *        freeling.releaseLanguageIdentifier(langId);
+     *    }
+     * </pre></code>
+     * @param maxWaitTime the maximum time to wait for a pooled instance
+     * @return the {@link LanguageIdentifier}
+     * @throws PoolTimeoutException if no pooled instance became available
+     * within the parsed time
+     * @throws IllegalStateException if 
+     * {@link #isLanguageIdentificationSupported()} is <code>false</code>
+     */
+    public LanguageIdentifier getLanguageIdentifier(long maxWaitTime) throws PoolTimeoutException {
+        LanguageIdentifier langId = sharedLangId;
+        if(langId != null){
+            return langId;
+        }
+        ResourcePool<LanguageIdentifier> langIdPool = this.langIdPool;
+        if(langIdPool == null){
+            throw new IllegalStateException("Language Identification is not supported!");
+        }
+        return langIdPool.getResource(maxWaitTime);
+    }
+    /**
+     * Releases a {@link LanguageIdentifier} obtained by calling
+     * {@link #getLanguageIdentifier(long)}
+     * @param langId the instance to release
+     */
+    public void releaseLanguageIdentifier(LanguageIdentifier langId){
+        if(langId == null || langId == sharedLangId){
+            return;
+        }
+        ResourcePool<LanguageIdentifier> langIdPool = this.langIdPool;
+        if(langIdPool != null){
+            langIdPool.returnResource(langId);
+        }
+    }
     /**
      * If this Freeling instance was already {@link #closed()}
      * @return <code>true</code> if {@link #close()} was already called on this
@@ -331,15 +1397,62 @@ public class Freeling {
      */
     public final void close(){
         closed = true;
+        if(prefetcher != null){
+            prefetcher.cancel();
+        }
+        //stop watching and close replaced pools
+        reloadExecutor.shutdownNow();
+        retireExecutor.shutdownNow();
+        synchronized (retired) {
+            for(Object replaced : retired){
+                if(replaced instanceof ResourcePool<?>){
+                    ((ResourcePool<?>)replaced).close();
+                } else if(replaced instanceof PipelinedAnalyzer){
+                    ((PipelinedAnalyzer)replaced).close();
+                }
+            }
+            retired.clear();
+        }
         ResourcePool<LanguageIdentifier> langIdPool = this.langIdPool;
+        LanguageIdentifier sharedLangId = this.sharedLangId;
         this.langIdPool = null; //set first to null
-        langIdPool.close(); //than close
+        this.sharedLangId = null;
+        if(langIdPool != null){
+            langIdPool.close(); //than close
+        }
+        if(sharedLangId instanceof LanguageIdentifierImpl){ //shared native instance
+            ((LanguageIdentifierImpl)sharedLangId).close();
+        }
         //create a copy of the analyzerPools
         Collection<ResourcePool<Analyzer>> analyzerPools = new HashSet<ResourcePool<Analyzer>>(this.analyzerPools.values());
         this.analyzerPools.clear(); //clean the member variable
         for(ResourcePool<Analyzer> pool : analyzerPools){
             pool.close();
         }
+        synchronized (bulkAnalyzers) {
+            for(PipelinedAnalyzer bulkAnalyzer : bulkAnalyzers.values()){
+                bulkAnalyzer.close();
+            }
+            bulkAnalyzers.clear();
+            pooledBulkAnalyzers.clear();
+            if(bulkThreadPool != null){
+                bulkThreadPool.shutdownNow();
+                bulkThreadPool = null;
+            }
+            if(segmentThreadPool != null){
+                segmentThreadPool.shutdownNow();
+                segmentThreadPool = null;
+                multiLanguageAnalyzer = null;
+            }
+        }
+        if(workerManager != null){
+            workerManager.close();
+        }
+        //stop creating components and close the remaining ones in this thread
+        freelingInitThreadPool.shutdownNow();
+        for(Runnable closeTask : freelingCloseThreadPool.shutdownNow()){
+            closeTask.run();
+        }
     }
 
 }
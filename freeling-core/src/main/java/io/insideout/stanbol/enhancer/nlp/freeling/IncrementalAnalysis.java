@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-analyses an edited text based on the {@link AnalysedText} of a 
+ * previous version. Only the changed sentences - plus one sentence of
+ * context on both sides - are analysed. The results for the unchanged
+ * parts are copied from the previous analysis. For typical edits this
+ * makes the cost of an analysis proportional to the size of the edit
+ * instead of the size of the document.
+ */
+public final class IncrementalAnalysis {
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalAnalysis.class);
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private IncrementalAnalysis(){/* no instances */}
+    
+    /**
+     * Analyses the parsed {@link Blob} by re-using the results of the 
+     * previous analysis for all sentences not affected by the changes.
+     * @param analyzer the analyzer used for the changed sentences
+     * @param previous the analysis of the previous version of the text. 
+     * MUST BE for the same language as the parsed analyzer and is not
+     * modified by this method.
+     * @param blob the new version of the text
+     * @param context the analysis context or <code>null</code> if none
+     * @return the analysis results for the new version of the text
+     * @throws IOException on any error while reading from the blob
+     */
+    public static AnalysedText analyse(Analyzer analyzer, AnalysedText previous, 
+            Blob blob, AnalysisContext context) throws IOException {
+        if(analyzer == null){
+            throw new IllegalArgumentException("The parsed Analyzer MUST NOT be NULL!");
+        }
+        if(previous == null){
+            throw new IllegalArgumentException("The parsed previous AnalysedText MUST NOT be NULL!");
+        }
+        AnalysedText at = AnalysedTextFactory.getDefaultInstance().createAnalysedText(blob);
+        String text = at.getSpan();
+        String oldText = previous.getSpan();
+        List<int[]> sentences = new ArrayList<int[]>();
+        Iterator<Sentence> it = previous.getSentences();
+        while(it.hasNext()){
+            Sentence sentence = it.next();
+            sentences.add(new int[]{sentence.getStart(),sentence.getEnd()});
+        }
+        if(sentences.isEmpty()){
+            return analyzer.analyse(blob, context);
+        }
+        //(1) determine the changed region by using the common prefix/suffix
+        int maxLength = Math.min(text.length(), oldText.length());
+        int prefix = 0;
+        while(prefix < maxLength && text.charAt(prefix) == oldText.charAt(prefix)){
+            prefix++;
+        }
+        int suffix = 0;
+        while(suffix < maxLength - prefix && text.charAt(text.length()-1-suffix) 
+                == oldText.charAt(oldText.length()-1-suffix)){
+            suffix++;
+        }
+        int delta = text.length() - oldText.length();
+        if(prefix == oldText.length() && delta == 0){ //unchanged
+            AnalysedTextUtils.copySpans(previous, 0, oldText.length(), at, 0);
+            AnalysedTextUtils.copyTextAnnotations(previous, at);
+            return at;
+        }
+        //(2) extend the region to sentence boundaries plus one sentence of context
+        int first = 0; //first sentence touching the change
+        while(first < sentences.size()-1 && sentences.get(first)[1] < prefix){
+            first++;
+        }
+        int changeEnd = oldText.length() - suffix;
+        int last = sentences.size()-1; //last sentence touching the change
+        while(last > 0 && sentences.get(last)[0] > changeEnd){
+            last--;
+        }
+        int start = first > 0 ? sentences.get(first-1)[0] : 0;
+        int oldEnd = last < sentences.size()-1 ? sentences.get(last+1)[1] : oldText.length();
+        start = Math.min(start, prefix);
+        oldEnd = Math.max(oldEnd, changeEnd);
+        int end = oldEnd + delta;
+        log.debug("re-analyse [{},{}] of {} chars (previous: [{},{}] of {} chars)",
+            new Object[]{start, end, text.length(), start, oldEnd, oldText.length()});
+        //(3) analyse the changed region
+        AnalysisContext regionContext = context == null ? null :
+            new AnalysisContext(context.hasDeadline() ? 
+                    Math.max(1, context.getRemainingTime()) : -1);
+        AnalysedText region = analyzer.analyse(new ByteArrayInputStream(
+            text.substring(start, end).getBytes(UTF8)), UTF8, regionContext);
+        if(regionContext != null){
+            for(AnalysisLayer layer : regionContext.getOmittedLayers()){
+                context.addOmittedLayer(layer);
+            }
+            for(Integer cut : regionContext.getSentenceCuts()){
+                context.addSentenceCut(cut + start);
+            }
+        }
+        //(4) splice the results
+        AnalysedTextUtils.copySpans(previous, 0, start, at, 0);
+        AnalysedTextUtils.copySpans(region, 0, end - start, at, start);
+        AnalysedTextUtils.copySpans(previous, oldEnd, oldText.length(), at, delta);
+        //annotations of the whole text (e.g. the language)
+        AnalysedTextUtils.copyTextAnnotations(previous, at);
+        AnalysedTextUtils.copyTextAnnotations(region, at);
+        return at;
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Identifies the language of a text based on a bounded sample instead of 
+ * the whole text. The sample consists of a prefix of the text and - if the
+ * language of the prefix is not decisive - of some windows spread over the 
+ * rest of the text. Identification stops as soon as the margin between
+ * the best and the second best language is decisive.
+ */
+public class LanguageSampler {
+    
+    private final Logger log = LoggerFactory.getLogger(LanguageSampler.class);
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The default size of the prefix in chars
+     */
+    public static final int DEFAULT_PREFIX_SIZE = 4096;
+    /**
+     * The default number of windows added to the sample if the prefix is
+     * not decisive
+     */
+    public static final int DEFAULT_WINDOWS = 3;
+    /**
+     * The default size of a window in chars
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1024;
+    /**
+     * The default margin between the probabilities of the best and the 
+     * second best language
+     */
+    public static final double DEFAULT_DECISIVE_MARGIN = 0.3;
+    
+    private final int prefixSize;
+    private final int windows;
+    private final int windowSize;
+    private final double decisiveMargin;
+    
+    /**
+     * Creates a sampler with the default configuration
+     */
+    public LanguageSampler(){
+        this(DEFAULT_PREFIX_SIZE);
+    }
+    /**
+     * Creates a sampler with the parsed prefix size
+     * @param prefixSize the size of the prefix in chars. Values 
+     * <code>&lt;= 0</code> deactivate sampling (the whole text is used).
+     */
+    public LanguageSampler(int prefixSize){
+        this(prefixSize, DEFAULT_WINDOWS, DEFAULT_WINDOW_SIZE, DEFAULT_DECISIVE_MARGIN);
+    }
+    /**
+     * Creates a sampler with the parsed configuration
+     * @param prefixSize the size of the prefix in chars. Values 
+     * <code>&lt;= 0</code> deactivate sampling (the whole text is used).
+     * @param windows the number of windows added if the prefix is not decisive
+     * @param windowSize the size of a window in chars
+     * @param decisiveMargin the margin between the probabilities of the best
+     * and the second best language
+     */
+    public LanguageSampler(int prefixSize, int windows, int windowSize, double decisiveMargin){
+        this.prefixSize = prefixSize;
+        this.windows = windows < 0 ? 0 : windows;
+        this.windowSize = windowSize <= 0 ? DEFAULT_WINDOW_SIZE : windowSize;
+        this.decisiveMargin = decisiveMargin;
+    }
+    
+    public final int getPrefixSize() {
+        return prefixSize;
+    }
+    
+    /**
+     * Identifies the language of the text provided by the parsed Blob
+     * @param langId the language identifier
+     * @param blob the blob. The charset is read from the "charset" parameter
+     * (UTF-8 if not present).
+     * @return the identified languages
+     * @throws IOException on any error while reading from the blob
+     */
+    public List<Language> identifyLanguage(LanguageIdentifier langId, Blob blob) throws IOException {
+        return identifyLanguage(langId, blob, null);
+    }
+    /**
+     * Identifies the language of the text provided by the parsed Blob
+     * @param langId the language identifier
+     * @param blob the blob. The charset is read from the "charset" parameter
+     * (UTF-8 if not present).
+     * @param languages comma separated list of the candidate languages or
+     * <code>null</code> to consider all languages
+     * @return the identified languages
+     * @throws IOException on any error while reading from the blob
+     */
+    public List<Language> identifyLanguage(LanguageIdentifier langId, Blob blob, String languages) throws IOException {
+        Charset cs = blob.getParameter().get("charset") != null ?
+                Charset.forName(blob.getParameter().get("charset")) : UTF8;
+        if(prefixSize <= 0){
+            return identify(langId, IOUtils.toString(blob.getStream(), cs.name()), languages);
+        }
+        InputStream in = blob.getStream();
+        String prefix;
+        boolean complete;
+        try {
+            Reader reader = new InputStreamReader(in, cs);
+            char[] buffer = new char[prefixSize];
+            int read = IOUtils.read(reader, buffer);
+            complete = read < prefixSize || reader.read() < 0;
+            prefix = new String(buffer, 0, read);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        List<Language> detected = identify(langId, prefix, languages);
+        if(complete || isDecisive(detected) || windows <= 0){
+            return detected;
+        }
+        long length = blob.getContentLength();
+        if(length <= 0){ //unknown length
+            return detected;
+        }
+        //estimate the number of chars based on the bytes used by the prefix
+        long chars = length * prefix.length() / Math.max(1, prefix.getBytes(cs).length);
+        StringBuilder sample = new StringBuilder(prefix);
+        in = blob.getStream();
+        try {
+            //windows are read by a Reader so that they do not start in the
+            //middle of multi byte chars
+            Reader reader = new InputStreamReader(in, cs);
+            long pos = 0;
+            char[] window = new char[windowSize];
+            for(int i = 1; i <= windows && !isDecisive(detected); i++){
+                long offset = chars*i/(windows+1);
+                if(offset < prefixSize){ //already part of the prefix
+                    continue;
+                }
+                if(offset > pos){
+                    long skipped = IOUtils.skip(reader, offset - pos);
+                    pos = pos + skipped;
+                    if(pos < offset){ //end of text
+                        break;
+                    }
+                }
+                int read = IOUtils.read(reader, window);
+                pos = pos + read;
+                if(read <= 0){
+                    break;
+                }
+                String windowText = trim(new String(window, 0, read));
+                if(!windowText.isEmpty()){
+                    sample.append('\n').append(windowText);
+                    detected = identify(langId, sample.toString(), languages);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        log.debug("detected {} based on sample with {} chars", detected, sample.length());
+        return detected;
+    }
+    /**
+     * Identifies the language of the parsed text
+     * @param langId the language identifier
+     * @param text the text
+     * @return the identified languages
+     */
+    public List<Language> identifyLanguage(LanguageIdentifier langId, String text){
+        return identifyLanguage(langId, text, null);
+    }
+    /**
+     * Identifies the language of the parsed text
+     * @param langId the language identifier
+     * @param text the text
+     * @param languages comma separated list of the candidate languages or
+     * <code>null</code> to consider all languages
+     * @return the identified languages
+     */
+    public List<Language> identifyLanguage(LanguageIdentifier langId, String text, String languages){
+        if(prefixSize <= 0 || text.length() <= prefixSize){
+            return identify(langId, text, languages);
+        }
+        List<Language> detected = identify(langId, text.substring(0, prefixSize), languages);
+        if(isDecisive(detected)){
+            return detected;
+        }
+        StringBuilder sample = new StringBuilder(text.substring(0, prefixSize));
+        for(int i = 1; i <= windows && !isDecisive(detected); i++){
+            int offset = (int)((long)text.length()*i/(windows+1));
+            if(offset < prefixSize){
+                continue;
+            }
+            String windowText = trim(text.substring(offset, 
+                Math.min(text.length(), offset + windowSize)));
+            if(!windowText.isEmpty()){
+                sample.append('\n').append(windowText);
+                detected = identify(langId, sample.toString(), languages);
+            }
+        }
+        return detected;
+    }
+    
+    private List<Language> identify(LanguageIdentifier langId, String text, String languages){
+        return languages == null ? langId.identifyLanguage(text) : 
+            langId.identifyLanguage(text, languages);
+    }
+    
+    private boolean isDecisive(List<Language> detected){
+        if(detected.isEmpty()){
+            return false;
+        }
+        double second = detected.size() > 1 ? detected.get(1).getProb() : 0;
+        return detected.get(0).getProb() - second >= decisiveMargin;
+    }
+    
+    /**
+     * Removes the (possible cut) first and last word of a window
+     */
+    private String trim(String window){
+        int start = 0;
+        while(start < window.length() && !Character.isWhitespace(window.charAt(start))){
+            start++;
+        }
+        int end = window.length();
+        while(end > start && !Character.isWhitespace(window.charAt(end-1))){
+            end--;
+        }
+        return window.substring(start, end).trim();
+    }
+
+}
@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.PoolTimeoutException;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Annotation;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Analyses texts that contain multiple languages. The text is split into
+ * paragraphs (and paragraphs exceeding the maximum segment length into
+ * windows of sentences). The language of each part is identified and 
+ * adjacent parts with the same language are merged to {@link Segment}s. 
+ * Each segment is analysed by an {@link Analyzer} of its language. Segments
+ * are processed concurrently. The results are merged into a single
+ * {@link AnalysedText} where all {@link Sentence}s are annotated with the
+ * language of their segment ({@link #LANGUAGE_ANNOTATION}). The number of
+ * segments of a text analysed concurrently is bounded so that a single text
+ * with many segments can not occupy all {@link Analyzer}s.
+ */
+public class MultiLanguageAnalyzer {
+
+    private static final Logger log = LoggerFactory.getLogger(MultiLanguageAnalyzer.class);
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The language of a {@link Sentence} analysed by the 
+     * {@link MultiLanguageAnalyzer}
+     */
+    public static final Annotation<String> LANGUAGE_ANNOTATION = new Annotation<String>(
+            "io.insideout.stanbol.enhancer.nlp.freeling.language", String.class);
+    
+    /**
+     * Parts with less letters inherit the language of the previous (or 
+     * next) part as language identification is not reliable for short texts
+     */
+    public static final int DEFAULT_MIN_IDENTIFICATION_LENGTH = 50;
+    /**
+     * Paragraphs longer as this are split in windows of sentences
+     */
+    public static final int DEFAULT_MAX_PART_LENGTH = 2000;
+    /**
+     * The default number of segments of a text analysed concurrently
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_SEGMENTS = 4;
+    
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?]+\\s+");
+    
+    private final Freeling freeling;
+    private final ExecutorService executorService;
+    private final int minIdentificationLength;
+    private final int maxPartLength;
+    private final int maxConcurrentSegments;
+    
+    public MultiLanguageAnalyzer(Freeling freeling, ExecutorService executorService){
+        this(freeling, executorService, DEFAULT_MIN_IDENTIFICATION_LENGTH, DEFAULT_MAX_PART_LENGTH,
+            DEFAULT_MAX_CONCURRENT_SEGMENTS);
+    }
+    
+    public MultiLanguageAnalyzer(Freeling freeling, ExecutorService executorService,
+            int minIdentificationLength, int maxPartLength, int maxConcurrentSegments){
+        if(freeling == null){
+            throw new IllegalArgumentException("The parsed Freeling instance MUST NOT be NULL!");
+        }
+        if(executorService == null){
+            throw new IllegalArgumentException("The parsed ExecutorService MUST NOT be NULL!");
+        }
+        this.freeling = freeling;
+        this.executorService = executorService;
+        this.minIdentificationLength = minIdentificationLength;
+        this.maxPartLength = maxPartLength <= 0 ? DEFAULT_MAX_PART_LENGTH : maxPartLength;
+        this.maxConcurrentSegments = maxConcurrentSegments <= 0 ? 
+                DEFAULT_MAX_CONCURRENT_SEGMENTS : maxConcurrentSegments;
+    }
+    
+    /**
+     * Splits the parsed text in segments of the same language
+     * @param text the text
+     * @param defaultLanguage the language used for parts where no supported
+     * language can be identified
+     * @param languages comma separated list of the candidate languages or
+     * <code>null</code> to use the {@link Freeling#getLanguageCandidates()}
+     * @param maxWaitTime the maximum time to wait for a {@link LanguageIdentifier}
+     * @return the segments. Segments are adjacent and cover the whole text
+     * @throws PoolTimeoutException if no {@link LanguageIdentifier} became
+     * available within the parsed wait time
+     */
+    public List<Segment> segment(String text, String defaultLanguage, String languages, 
+            long maxWaitTime) throws PoolTimeoutException {
+        if(defaultLanguage == null){
+            throw new IllegalArgumentException("The parsed default language MUST NOT be NULL!");
+        }
+        List<int[]> parts = split(text);
+        String[] partLanguages = new String[parts.size()];
+        if(freeling.isLanguageIdentificationSupported()){
+            if(languages == null){
+                languages = freeling.getLanguageCandidates();
+            }
+            LanguageIdentifier langId = freeling.getLanguageIdentifier(maxWaitTime);
+            try {
+                for(int i = 0; i < parts.size(); i++){
+                    int[] part = parts.get(i);
+                    if(countLetters(text, part[0], part[1]) >= minIdentificationLength){
+                        List<Language> detected = langId.identifyLanguage(
+                            text.substring(part[0], part[1]), languages);
+                        if(!detected.isEmpty() && 
+                                freeling.isLanguageSupported(detected.get(0).getLang())){
+                            partLanguages[i] = detected.get(0).getLang();
+                        }
+                    }
+                }
+            } finally {
+                freeling.releaseLanguageIdentifier(langId);
+            }
+        }
+        //parts without language inherit the previous (or next) language
+        String language = null;
+        for(int i = 0; i < partLanguages.length; i++){
+            if(partLanguages[i] == null){
+                partLanguages[i] = language;
+            } else {
+                language = partLanguages[i];
+            }
+        }
+        language = defaultLanguage;
+        for(int i = partLanguages.length-1; i >= 0; i--){
+            if(partLanguages[i] == null){
+                partLanguages[i] = language;
+            } else {
+                language = partLanguages[i];
+            }
+        }
+        //merge adjacent parts with the same language
+        List<Segment> segments = new ArrayList<Segment>();
+        Segment current = null;
+        for(int i = 0; i < parts.size(); i++){
+            if(current != null && current.language.equals(partLanguages[i])){
+                current = new Segment(current.language, current.start, parts.get(i)[1]);
+                segments.set(segments.size()-1, current);
+            } else {
+                current = new Segment(partLanguages[i], parts.get(i)[0], parts.get(i)[1]);
+                segments.add(current);
+            }
+        }
+        if(segments.isEmpty()){
+            segments.add(new Segment(defaultLanguage, 0, text.length()));
+        }
+        log.debug("segmented text with {} chars in {}", text.length(), segments);
+        return segments;
+    }
+    
+    /**
+     * Analyses the segments of the parsed text concurrently by using 
+     * {@link Analyzer}s of the languages of the segments.
+     * @param blob the text
+     * @param segments the segments as returned by 
+     * {@link #segment(String, String, String, long)}
+     * @param context the analysis context or <code>null</code> if none
+     * @param maxWaitTime the maximum time to wait for an {@link Analyzer}
+     * @return the merged analysis results
+     * @throws IOException on any error while reading from the blob
+     * @throws PoolTimeoutException if no {@link Analyzer} became available
+     * for a segment within the parsed wait time
+     * @throws InterruptedException if interrupted while waiting for the
+     * analysis of the segments
+     */
+    public AnalysedText analyse(Blob blob, List<Segment> segments, AnalysisContext context,
+            final long maxWaitTime) throws IOException, PoolTimeoutException, InterruptedException {
+        AnalysedText at = AnalysedTextFactory.getDefaultInstance().createAnalysedText(blob);
+        String text = at.getSpan();
+        List<Callable<AnalysedText>> tasks = new ArrayList<Callable<AnalysedText>>(segments.size());
+        List<AnalysisContext> segmentContexts = new ArrayList<AnalysisContext>(segments.size());
+        for(final Segment segment : segments){
+            final ResourcePool<Analyzer> pool = freeling.getAnalyzerPool(segment.language);
+            if(pool == null){
+                throw new IllegalArgumentException("The language '"+segment.language
+                    + "' of the segment "+segment+" is not supported!");
+            }
+            final byte[] segmentText = text.substring(segment.start, segment.end).getBytes(UTF8);
+            final AnalysisContext segmentContext = context == null ? null :
+                new AnalysisContext(context.hasDeadline() ? 
+                        Math.max(1, context.getRemainingTime()) : -1);
+            segmentContexts.add(segmentContext);
+            tasks.add(new Callable<AnalysedText>() {
+                @Override
+                public AnalysedText call() throws Exception {
+                    Analyzer analyzer = pool.getResource(maxWaitTime);
+                    if(analyzer == null){ //interrupted
+                        throw new InterruptedException("Interrupted while waiting for an Analyzer");
+                    }
+                    try {
+                        return analyzer.analyse(new ByteArrayInputStream(segmentText), 
+                            UTF8, segmentContext);
+                    } finally {
+                        pool.returnResource(analyzer);
+                    }
+                }
+            });
+        }
+        //at most maxConcurrentSegments are submitted at any time. The next
+        //segment is submitted as soon as the result of a segment is consumed
+        List<Future<AnalysedText>> results = new ArrayList<Future<AnalysedText>>(segments.size());
+        try {
+            for(int i = 0; i < segments.size(); i++){
+                while(results.size() < tasks.size() && results.size() < i + maxConcurrentSegments){
+                    results.add(executorService.submit(tasks.get(results.size())));
+                }
+                Segment segment = segments.get(i);
+                AnalysedText segmentAt;
+                try {
+                    segmentAt = results.get(i).get();
+                } catch (ExecutionException e) {
+                    if(e.getCause() instanceof IOException){
+                        throw (IOException)e.getCause();
+                    } else if(e.getCause() instanceof PoolTimeoutException){
+                        throw (PoolTimeoutException)e.getCause();
+                    } else if(e.getCause() instanceof InterruptedException){
+                        throw (InterruptedException)e.getCause();
+                    } else if(e.getCause() instanceof RuntimeException){
+                        throw (RuntimeException)e.getCause();
+                    } else {
+                        throw new IllegalStateException("Unable to analyse segment "
+                            + segment, e.getCause());
+                    }
+                }
+                AnalysedTextUtils.copySpans(segmentAt, 0, segment.end - segment.start, 
+                    at, segment.start);
+                AnalysisContext segmentContext = segmentContexts.get(i);
+                if(segmentContext != null){
+                    for(AnalysisLayer layer : segmentContext.getOmittedLayers()){
+                        context.addOmittedLayer(layer);
+                    }
+                    for(Integer cut : segmentContext.getSentenceCuts()){
+                        context.addSentenceCut(cut + segment.start);
+                    }
+                }
+            }
+        } finally {
+            for(Future<AnalysedText> result : results){
+                result.cancel(true); //no-op for completed tasks
+            }
+        }
+        //annotate the sentences with the language of their segment
+        Iterator<Segment> segmentIt = segments.iterator();
+        Segment segment = segmentIt.next();
+        for(Iterator<Sentence> it = at.getSentences(); it.hasNext();){
+            Sentence sentence = it.next();
+            while(sentence.getStart() >= segment.end && segmentIt.hasNext()){
+                segment = segmentIt.next();
+            }
+            sentence.addAnnotation(LANGUAGE_ANNOTATION, Value.value(segment.language));
+        }
+        return at;
+    }
+    
+    /**
+     * The maximum number of {@link Analyzer}s of each language borrowed
+     * concurrently by the {@link #analyse(Blob, List, AnalysisContext, long) 
+     * analysis} of the parsed segments. At most {@link #maxConcurrentSegments}
+     * adjacent segments are analysed concurrently.
+     * @param segments the segments as returned by 
+     * {@link #segment(String, String, String, long)}
+     * @return the number of Analyzers by language
+     */
+    public Map<String,Integer> getFanOut(List<Segment> segments){
+        Map<String,Integer> fanOut = new HashMap<String,Integer>();
+        Map<String,Integer> window = new HashMap<String,Integer>();
+        for(int i = 0; i < segments.size(); i++){
+            if(i >= maxConcurrentSegments){ //the first segment of the window was consumed
+                String consumed = segments.get(i - maxConcurrentSegments).language;
+                window.put(consumed, window.get(consumed) - 1);
+            }
+            String language = segments.get(i).language;
+            Integer count = window.get(language);
+            count = count == null ? 1 : count + 1;
+            window.put(language, count);
+            Integer max = fanOut.get(language);
+            if(max == null || max < count){
+                fanOut.put(language, count);
+            }
+        }
+        return fanOut;
+    }
+    
+    /**
+     * Splits the text in paragraphs and paragraphs longer than the 
+     * {@link #maxPartLength} in windows of sentences.
+     * @return the <code>[start,end]</code> of the parts. Parts are adjacent
+     * and cover the whole text
+     */
+    private List<int[]> split(String text){
+        List<int[]> parts = new ArrayList<int[]>();
+        Matcher m = PARAGRAPH_BREAK.matcher(text);
+        int start = 0;
+        while(start < text.length()){
+            int end = m.find() ? m.end() : text.length();
+            //split long paragraphs at sentence ends
+            while(end - start > maxPartLength){
+                Matcher sm = SENTENCE_END.matcher(text).region(start, start + maxPartLength);
+                int split = -1;
+                while(sm.find()){
+                    split = sm.end();
+                }
+                if(split <= start){
+                    break; //no sentence end within the window
+                }
+                parts.add(new int[]{start, split});
+                start = split;
+            }
+            parts.add(new int[]{start, end});
+            start = end;
+        }
+        return parts;
+    }
+    
+    private static int countLetters(String text, int start, int end){
+        int count = 0;
+        for(int i = start; i < end; i++){
+            if(Character.isLetter(text.charAt(i))){
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * A segment of a text with a single language
+     */
+    public static final class Segment {
+        
+        private final String language;
+        private final int start;
+        private final int end;
+        
+        public Segment(String language, int start, int end){
+            this.language = language;
+            this.start = start;
+            this.end = end;
+        }
+        
+        public String getLanguage() {
+            return language;
+        }
+        
+        public int getStart() {
+            return start;
+        }
+        
+        public int getEnd() {
+            return end;
+        }
+        
+        @Override
+        public String toString() {
+            return new StringBuilder(language).append('[').append(start)
+                    .append(',').append(end).append(']').toString();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.impl;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+
+import edu.upc.freeling.ListSentence;
+
+/**
+ * The state of an analysis passed between the processing steps of an
+ * {@link AnalyzerImpl}.
+ */
+class AnalysisState {
+
+    final AnalysedText at;
+    final AnalysisContext context;
+    final long start;
+    /**
+     * The number of words. Set by {@link AnalyzerImpl#tokenize(AnalysisState)}
+     */
+    long words;
+    /**
+     * The Freeling analysis results
+     */
+    ListSentence sentences;
+    
+    AnalysisState(AnalysedText at, AnalysisContext context){
+        this.at = at;
+        this.context = context;
+        this.start = System.currentTimeMillis();
+    }
+}
@@ -17,13 +17,18 @@
 package io.insideout.stanbol.enhancer.nlp.freeling.impl;
 
 import io.insideout.stanbol.enhancer.nlp.freeling.Analyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.CreationScheduler;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool.ResourceFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
@@ -48,7 +53,8 @@ import edu.upc.freeling.Util;
 
 
 /**
- * Creates Freeling {@link AnalyzerImpl} by using a configureable thread pool.
+ * Creates Freeling {@link AnalyzerImpl} by using a {@link CreationScheduler}
+ * with a creation queue per language.
  * @author Rupert Westenthaler
  * @author David Riccitelli
  */
@@ -58,13 +64,39 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
     
     public static final String PROPERTY_LANGUAGE = "language";
     /**
-     * Expects the {@link File} with the Freeling configuration as value
+     * Expects the {@link File} with the Freeling configuration as value. Only
+     * used if no {@link #PROPERTY_CONFIGURATION} is present.
      */
     public static final String PROPERTY_CONFIG_FILE = "config";
+    /**
+     * Expects the {@link FreelingProperties} parsed from the Freeling
+     * configuration as value. Preferred over {@link #PROPERTY_CONFIG_FILE}
+     * as it avoids re-parsing the configuration for every Analyzer.
+     */
+    public static final String PROPERTY_CONFIGURATION = "configuration";
 
     private final String freelingSharePath;
-    private final ExecutorService executorService;
+    private final CreationScheduler scheduler;
     private final String locale;
+    private final int maxSentenceLength;
+    /**
+     * The {@link StageStatistics} shared by all Analyzers of a language
+     */
+    private final ConcurrentMap<String,StageStatistics> stageStatistics = 
+            new ConcurrentHashMap<String,StageStatistics>();
+    /**
+     * The {@link MacoOptions} created for a configuration. Shared by all
+     * {@link Maco} instances created for the configuration. Guarded by
+     * itself.
+     */
+    private final Map<FreelingProperties,SharedOptions> macoOptions =
+            new HashMap<FreelingProperties,SharedOptions>();
+    /**
+     * The options used by the created Analyzers. Used to delete the native
+     * options after the last Analyzer of a released configuration is closed.
+     */
+    private final ConcurrentMap<AnalyzerImpl,SharedOptions> analyzerOptions =
+            new ConcurrentHashMap<AnalyzerImpl,SharedOptions>();
 
     @Reference
     private AnalysedTextFactory _analysedTextFactory;
@@ -81,6 +113,35 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
     public AnalyzerFactory(final String freelingLibPath, 
             final String freelingSharePath, String locale, 
             ExecutorService factoryThreadPool) {
+        this(freelingLibPath, freelingSharePath, locale, factoryThreadPool, -1);
+    }
+    /**
+     * Creates a Freeling Analyzer Factory for the parsed parameter
+     * @param freelingSharePath the Freeling shared resources path
+     * @param factoryThreadPool The parsed {@link ExecutorService} is used
+     * to create {@link Analyzer} instances.
+     * @param maxSentenceLength the maximum number of words of sentences
+     * processed by the Chart- and Dependency parser. Longer sentences are
+     * cut. Values <code>&lt;= 0</code> deactivate this feature.
+     */
+    public AnalyzerFactory(final String freelingLibPath, 
+            final String freelingSharePath, String locale, 
+            ExecutorService factoryThreadPool, int maxSentenceLength) {
+        this(freelingLibPath, freelingSharePath, locale, factoryThreadPool == null ? 
+                null : new CreationScheduler(factoryThreadPool), maxSentenceLength);
+    }
+    /**
+     * Creates a Freeling Analyzer Factory for the parsed parameter
+     * @param freelingSharePath the Freeling shared resources path
+     * @param scheduler used to create and close {@link Analyzer} instances.
+     * Creations are queued per language.
+     * @param maxSentenceLength the maximum number of words of sentences
+     * processed by the Chart- and Dependency parser. Longer sentences are
+     * cut. Values <code>&lt;= 0</code> deactivate this feature.
+     */
+    public AnalyzerFactory(final String freelingLibPath, 
+            final String freelingSharePath, String locale, 
+            CreationScheduler scheduler, int maxSentenceLength) {
         //set the freeling locale
         if(freelingLibPath == null){
             throw new IllegalArgumentException("The path to the Freeling native "
@@ -94,13 +155,14 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
             throw new IllegalArgumentException("The parsed Freeling Locale"
                 + "MUST NOT be NULL!");
         }
-        if(factoryThreadPool == null){
-            throw new IllegalArgumentException("The parsed ExecutorService"
+        if(scheduler == null){
+            throw new IllegalArgumentException("The parsed CreationScheduler "
                 + "MUST NOT be NULL!");
         }
         this.locale = locale;
         this.freelingSharePath = freelingSharePath;
-        this.executorService = factoryThreadPool;
+        this.scheduler = scheduler;
+        this.maxSentenceLength = maxSentenceLength;
         //check for the native freeling lib
         NativeLibsUtil.ensureNativeLib(freelingLibPath);
         log.debug("Setting locale [{}].", locale);
@@ -132,6 +194,24 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
         return _contentItemFactory;
     }
     
+    /**
+     * Getter for the {@link StageStatistics} used by all {@link AnalyzerImpl}s
+     * created by this factory for the parsed language.
+     * @param language the language
+     * @return the statistics
+     */
+    public StageStatistics getStageStatistics(String language){
+        StageStatistics stats = stageStatistics.get(language);
+        if(stats == null){
+            stats = new StageStatistics(language);
+            StageStatistics existing = stageStatistics.putIfAbsent(language, stats);
+            if(existing != null){
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+    
     @Override
     public Future<AnalyzerImpl> createResource(Map<String,Object> context) {
         final String language = (String)context.get(PROPERTY_LANGUAGE);
@@ -139,15 +219,20 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
             throw new IllegalArgumentException("The property '"+PROPERTY_LANGUAGE 
                 + "is missing in the parsed Context "+context);
         }
-        final File configFile = (File)context.get(PROPERTY_CONFIG_FILE);
-        if(configFile == null || !configFile.isFile()){
-            throw new IllegalArgumentException("The property '"+PROPERTY_CONFIG_FILE 
-                +"' MUST BE present AND must be set to a File that exists (value: "
-                +configFile+")!");
+        final FreelingProperties properties = getConfiguration(context);
+        if(!language.equals(properties.getLanguage())){
+            throw new IllegalArgumentException("The language of the config '"
+                + properties.getLanguage() + "' does not match the configured one '"
+                + language + " (config: " + properties.getConfigFile() + ")!");
+        }
+        if(!properties.isValid()){
+            throw new IllegalArgumentException("Unable to create Analyzer for language '"
+                + language + "' because of problems with its configuration "
+                + properties.getConfigFile() + ": " + properties.getProblems());
         }
         log.info("Request to create Analyzer for language {}",language);
         final long request = System.currentTimeMillis();
-        return executorService.submit(new Callable<AnalyzerImpl>() {
+        return scheduler.submit(language, new Callable<AnalyzerImpl>() {
 
             @Override
             public AnalyzerImpl call() throws Exception {
@@ -155,7 +240,7 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
                 log.info("createing Analyzer for language {} ({}ms after request)",
                     language, start-request);
                 try {
-                    return createAnalyzer(configFile, language);
+                    return createAnalyzer(properties, language);
                 } finally {
                     long created = System.currentTimeMillis();
                     log.info("  ... create in {}ms ({}ms after request)",created-start,created-request);
@@ -165,31 +250,51 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
         });
     }
     
+    /**
+     * Getter for the {@link FreelingProperties} of the parsed context. Parses
+     * the {@link #PROPERTY_CONFIG_FILE} if no {@link #PROPERTY_CONFIGURATION}
+     * is present.
+     */
+    private FreelingProperties getConfiguration(Map<String,Object> context){
+        Object configuration = context.get(PROPERTY_CONFIGURATION);
+        if(configuration instanceof FreelingProperties){
+            return (FreelingProperties)configuration;
+        }
+        final File configFile = (File)context.get(PROPERTY_CONFIG_FILE);
+        if(configFile == null || !configFile.isFile()){
+            throw new IllegalArgumentException("The property '"+PROPERTY_CONFIGURATION
+                +"' or '"+PROPERTY_CONFIG_FILE+"' MUST BE present AND must be set "
+                +"to FreelingProperties or a File that exists (value: "+configFile+")!");
+        }
+        try {
+            return new FreelingProperties(configFile, freelingSharePath);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read Freeling configuration "
+                + configFile, e);
+        }
+    }
+    
     @Override
     public void closeResource(final Object resource, final Map<String,Object> context) {
         final AnalyzerImpl analyzer = AnalyzerImpl.class.cast(resource);
         log.info("request to close Analyzer for language {}",analyzer.getLanguage());
-        executorService.execute(new Runnable() {
+        scheduler.close(new Runnable() {
             @Override
             public void run() {
                 log.info("close Analyzer for language {}",analyzer.getLanguage());
                 analyzer.close();
+                SharedOptions options = analyzerOptions.remove(analyzer);
+                if(options != null){
+                    release(options);
+                }
            }
         });
      }
     
-    private AnalyzerImpl createAnalyzer(final File configFile, final String language) {
+    private AnalyzerImpl createAnalyzer(final FreelingProperties properties, final String language) {
         log.info("... creating Freeling Analyzer for language '{}' based on config [{}]",
-            language, configFile);
+            language, properties.getConfigFile());
 
-        final FreelingProperties properties = new FreelingProperties(
-            configFile.getPath(), freelingSharePath);
-        String configLang = properties.getLanguage();
-        if(!language.equals(configLang)){
-            throw new IllegalStateException("The language of the config '"+configLang
-                + "' does not match the configured one '"+language+" (config: "
-                + configFile+")!");
-        }
         String configLocale = properties.getLocale();
         if(!locale.equals(configLocale)){ //maybe this should be an exception
             log.warn("The locale '{}' of the config for language '{}' does not match "
@@ -197,47 +302,20 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
                 + "the used Charsets do not match (default := en_US.UTF8)", 
                 new Object[]{ configLocale, language, locale});
         }
-        final MacoOptions macoOptions = new MacoOptions(
-                properties.getLanguage());
-
-        log.debug("Setting MACO options [{}][{}][{}][{}][{}][{}][{}][{}][{}][{}][{}].",
-                new Object[] { false, properties.isAffixAnalysis(),
-                        properties.isMultiwordsDetection(),
-                        properties.isNumbersDetection(),
-                        properties.isPunctuationDetection(),
-                        properties.isDatesDetection(),
-                        properties.isQuantitiesDetection(),
-                        properties.isDictionarySearch(),
-                        properties.isProbabilityAssignment(),
-                        properties.isNeRecognition(),
-                        properties.isOrtographicCorrection() });
-
-        macoOptions.setActiveModules(false, properties.isAffixAnalysis(),
-                properties.isMultiwordsDetection(),
-                properties.isNumbersDetection(),
-                properties.isPunctuationDetection(),
-                properties.isDatesDetection(),
-                properties.isQuantitiesDetection(),
-                properties.isDictionarySearch(),
-                properties.isProbabilityAssignment(),
-                properties.isNeRecognition(),
-                properties.isOrtographicCorrection());
-
-        log.debug("Setting MACO data files [{}][{}][{}][{}][{}][{}][{}][{}][{}].",
-                new Object[] { "", properties.getLocutionsFile(),
-                        properties.getQuantitiesFile(),
-                        properties.getAffixFile(),
-                        properties.getProbabilityFile(),
-                        properties.getDictionaryFile(),
-                        properties.getNpDataFile(),
-                        properties.getPunctuationFile(),
-                        properties.getCorrectorFile() });
-
-        macoOptions.setDataFiles("", properties.getLocutionsFile(),
-                properties.getQuantitiesFile(), properties.getAffixFile(),
-                properties.getProbabilityFile(),
-                properties.getDictionaryFile(), properties.getNpDataFile(),
-                properties.getPunctuationFile(), properties.getCorrectorFile());
+        final SharedOptions options = acquireOptions(properties);
+        final AnalyzerImpl analyzer;
+        try {
+            analyzer = createAnalyzer(properties, language, options.macoOptions);
+        } catch (RuntimeException e) {
+            release(options);
+            throw e;
+        }
+        analyzerOptions.put(analyzer, options);
+        return analyzer;
+    }
+    
+    private AnalyzerImpl createAnalyzer(final FreelingProperties properties, 
+            final String language, final MacoOptions macoOptions) {
 
         log.debug("Creating the tokenizer [{}].",
                 properties.getTokenizerFile());
@@ -254,6 +332,8 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
             //always flush at the end of a document! Stanbol does not send
             //parts of documents!
             true); 
+        analyzer.setStageStatistics(getStageStatistics(language));
+        analyzer.setMaxSentenceLength(maxSentenceLength);
         
         log.debug("Creating the MACO analyzer.");
         analyzer.setMaco(new Maco(macoOptions));
@@ -303,4 +383,131 @@ public class AnalyzerFactory implements ResourceFactory<AnalyzerImpl> {
         
         return analyzer;
     }
+    
+    /**
+     * Releases the state cached for the parsed configuration. Called after
+     * the Analyzers created for the configuration are replaced (e.g. after a
+     * configuration was reloaded). The native options are deleted as soon
+     * as the last Analyzer using them is closed.
+     * @param properties the configuration
+     */
+    public void releaseConfiguration(FreelingProperties properties){
+        if(properties == null){
+            return;
+        }
+        SharedOptions options;
+        synchronized (macoOptions) {
+            options = macoOptions.remove(properties);
+            if(options == null){
+                return;
+            }
+            options.released = true;
+            if(options.analyzers > 0){
+                return; //deleted by the last Analyzer
+            }
+        }
+        options.delete();
+    }
+    
+    /**
+     * Getter for the {@link SharedOptions} of the parsed configuration. The
+     * options are only created once per configuration. Increments the number
+     * of Analyzers using the options. Callers MUST call 
+     * {@link #release(SharedOptions)} when the Analyzer is closed.
+     * @param properties the configuration
+     * @return the options
+     */
+    private SharedOptions acquireOptions(final FreelingProperties properties){
+        synchronized (macoOptions) {
+            SharedOptions options = macoOptions.get(properties);
+            if(options == null){
+                options = new SharedOptions(getMacoOptions(properties));
+                macoOptions.put(properties, options);
+            }
+            options.analyzers++;
+            return options;
+        }
+    }
+    /**
+     * Decrements the number of Analyzers using the parsed options and deletes
+     * the native options if the configuration was released and no Analyzer
+     * uses them any more.
+     */
+    private void release(SharedOptions options){
+        synchronized (macoOptions) {
+            options.analyzers--;
+            if(!options.released || options.analyzers > 0){
+                return;
+            }
+        }
+        options.delete();
+    }
+    
+    /**
+     * Creates the {@link MacoOptions} for the parsed configuration
+     * @param properties the configuration
+     * @return the {@link MacoOptions}
+     */
+    private MacoOptions getMacoOptions(final FreelingProperties properties){
+        MacoOptions options = new MacoOptions(properties.getLanguage());
+
+        log.debug("Setting MACO options [{}][{}][{}][{}][{}][{}][{}][{}][{}][{}][{}].",
+                new Object[] { false, properties.isAffixAnalysis(),
+                        properties.isMultiwordsDetection(),
+                        properties.isNumbersDetection(),
+                        properties.isPunctuationDetection(),
+                        properties.isDatesDetection(),
+                        properties.isQuantitiesDetection(),
+                        properties.isDictionarySearch(),
+                        properties.isProbabilityAssignment(),
+                        properties.isNeRecognition(),
+                        properties.isOrtographicCorrection() });
+
+        options.setActiveModules(false, properties.isAffixAnalysis(),
+                properties.isMultiwordsDetection(),
+                properties.isNumbersDetection(),
+                properties.isPunctuationDetection(),
+                properties.isDatesDetection(),
+                properties.isQuantitiesDetection(),
+                properties.isDictionarySearch(),
+                properties.isProbabilityAssignment(),
+                properties.isNeRecognition(),
+                properties.isOrtographicCorrection());
+
+        log.debug("Setting MACO data files [{}][{}][{}][{}][{}][{}][{}][{}][{}].",
+                new Object[] { "", properties.getLocutionsFile(),
+                        properties.getQuantitiesFile(),
+                        properties.getAffixFile(),
+                        properties.getProbabilityFile(),
+                        properties.getDictionaryFile(),
+                        properties.getNpDataFile(),
+                        properties.getPunctuationFile(),
+                        properties.getCorrectorFile() });
+
+        options.setDataFiles("", properties.getLocutionsFile(),
+                properties.getQuantitiesFile(), properties.getAffixFile(),
+                properties.getProbabilityFile(),
+                properties.getDictionaryFile(), properties.getNpDataFile(),
+                properties.getPunctuationFile(), properties.getCorrectorFile());
+        return options;
+    }
+    
+    /**
+     * The native options of a configuration together with the number of
+     * Analyzers using them. Guarded by {@link AnalyzerFactory#macoOptions}.
+     */
+    private static final class SharedOptions {
+        
+        final MacoOptions macoOptions;
+        int analyzers;
+        boolean released;
+        
+        SharedOptions(MacoOptions macoOptions){
+            this.macoOptions = macoOptions;
+        }
+        
+        void delete(){
+            macoOptions.delete();
+        }
+    }
 }
@@ -20,14 +20,17 @@ import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.MORPHO_ANNOTATION;
 import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.NER_ANNOTATION;
 import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.PHRASE_ANNOTATION;
 import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.POS_ANNOTATION;
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisLayer;
 import io.insideout.stanbol.enhancer.nlp.freeling.Analyzer;
-import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagMapper;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagLookup;
 import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,13 +40,14 @@ import org.apache.stanbol.enhancer.nlp.NlpAnnotations;
 import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
 import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
 import org.apache.stanbol.enhancer.nlp.model.Chunk;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
 import org.apache.stanbol.enhancer.nlp.model.Span;
 import org.apache.stanbol.enhancer.nlp.model.Token;
 import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
-import org.apache.stanbol.enhancer.nlp.model.tag.TagSet;
 import org.apache.stanbol.enhancer.nlp.morpho.MorphoFeatures;
 import org.apache.stanbol.enhancer.nlp.ner.NerTag;
 import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
 import org.apache.stanbol.enhancer.nlp.pos.PosTag;
 import org.apache.stanbol.enhancer.servicesapi.Blob;
 import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
@@ -75,18 +79,21 @@ public class AnalyzerImpl implements Analyzer{
     private final Logger log = LoggerFactory.getLogger(AnalyzerImpl.class);
     
     private static final double DEFAULT_MIN_PROBABILITY = 0.25;
+    /**
+     * Long sentences are cut at the split point nearest to the maximum
+     * sentence length within the last <code>1/CUT_WINDOW_DIVISOR</code> of
+     * the maximum length. Fragments are at least that long.
+     */
+    private static final int CUT_WINDOW_DIVISOR = 4;
 
     private final ContentItemFactory cif;
     private final AnalysedTextFactory atf;
     private final TagSetRegistry tsr = TagSetRegistry.getInstance();
     
-    private final TagSet<PosTag> posTagSet;
-    private final Map<String,PosTag> adhocPosTags;
-    private final TagMapper posTagMapper;
-    private final TagSet<PhraseTag> phraseTagSet;
-    private final Map<String,PhraseTag> adhocPhraseTags;
-    private final TagSet<NerTag> nerTagSet;
-    private final Map<String,NerTag> adhocNerTags;
+    /**
+     * The compiled lookup for Pos, Phrase and NER tags of the {@link #language}
+     */
+    private final TagLookup tagLookup;
     private final String language;
 	private final Tokenizer tokenizer;
 	private final Splitter splitter;
@@ -100,6 +107,14 @@ public class AnalyzerImpl implements Analyzer{
 	private Ukb ukbWrap;
 
 	private double minProb = DEFAULT_MIN_PROBABILITY;
+	
+	private StageStatistics stageStatistics;
+	/**
+	 * The maximum number of words of a sentence processed by the
+	 * {@link ChartParser} and {@link DepTxala}. Values <code>&lt;= 0</code>
+	 * deactivate cutting of long sentences.
+	 */
+	private int maxSentenceLength = -1;
 
     private boolean closed = false;
 
@@ -129,13 +144,7 @@ public class AnalyzerImpl implements Analyzer{
         this.alwaysFlush = alwaysFlush;
         //the rest of the stuff is optional. See setter methods
         //init the TagSets
-        posTagSet = tsr.getPosTagSet(language);
-        adhocPosTags = tsr.getAdhocPosTagMap(language);
-        phraseTagSet = tsr.getPhraseTagSet(language);
-        adhocPhraseTags = tsr.getAdhocPhraseTagMap(language);
-        nerTagSet = tsr.getNerTagSet(language);
-        adhocNerTags = tsr.getAdhocNerTagMap(language);
-        posTagMapper = tsr.getPosTagMapper(language);
+        tagLookup = tsr.getTagLookup(language);
         
 	}
     /**
@@ -271,6 +280,23 @@ public class AnalyzerImpl implements Analyzer{
         this.ukbWrap = ukbWrap;
     }
 
+    /**
+     * @param stageStatistics the statistics used to estimate the processing
+     * time of {@link AnalysisLayer}s
+     */
+    final void setStageStatistics(StageStatistics stageStatistics) {
+        this.stageStatistics = stageStatistics;
+    }
+
+    /**
+     * @param maxSentenceLength the maximum number of words of sentences
+     * processed by the parsers. Longer sentences are cut. Values 
+     * <code>&lt;= 0</code> deactivate this feature.
+     */
+    final void setMaxSentenceLength(int maxSentenceLength) {
+        this.maxSentenceLength = maxSentenceLength;
+    }
+
     final public void close(){
         closed = true;
         tokenizer.delete();
@@ -302,10 +328,110 @@ public class AnalyzerImpl implements Analyzer{
 
     public AnalysedText analyse(InputStream in,  Charset charset) throws IOException {
         //init the AnalysedText
-        return analyse(cif.createBlob(new StreamSource(in, "text/plain; charset="
-            + (charset == null ? UTF8 : charset).name())));
+        return analyse(createBlob(in, charset));
+    }
+    public AnalysedText analyse(InputStream in, Charset charset, AnalysisContext context) throws IOException {
+        return analyse(createBlob(in, charset), context);
+    }
+    /**
+     * Creates a Blob for the parsed stream
+     * @param in the stream
+     * @param charset the charset or <code>null</code> for UTF-8
+     * @return the blob
+     * @throws IOException on any error while reading from the stream
+     */
+    Blob createBlob(InputStream in, Charset charset) throws IOException {
+        return cif.createBlob(new StreamSource(in, "text/plain; charset="
+                + (charset == null ? UTF8 : charset).name()));
     }
     public AnalysedText analyse(Blob blob) throws IOException {
+        return analyse(blob, null);
+    }
+    public AnalysedText analyse(Blob blob, AnalysisContext context) throws IOException {
+        AnalysisState state = init(blob, context);
+        tokenize(state);
+        tag(state);
+        classify(state);
+        parse(state);
+        return convert(state);
+    }
+    public AnalysedText analyse(AnalysedText at, AnalysisContext context) {
+        AnalysisState state = init(at, context);
+        tag(state);
+        classify(state);
+        parse(state);
+        return convert(state);
+    }
+    /**
+     * Initialises the {@link AnalysisState} for an already tokenized and
+     * sentence split text. The Freeling {@link ListSentence} is created
+     * based on the {@link Sentence}s and {@link Token}s of the parsed
+     * {@link AnalysedText}. Consecutive tokens that are not enclosed by a
+     * {@link Sentence} form an implicit sentence (added to the 
+     * {@link AnalysedText} by {@link #convert(AnalysisState)}).
+     * Processing continues with {@link #tag(AnalysisState)}.
+     * @param at the tokenized and sentence split text
+     * @param context the analysis context or <code>null</code> if none
+     * @return the state of the analysis
+     */
+    AnalysisState init(AnalysedText at, AnalysisContext context){
+        if(at == null){
+            throw new IllegalArgumentException("The parsed AnalysedText MUST NOT be NULL!");
+        }
+        AnalysisState state = new AnalysisState(at, context);
+        long start = System.currentTimeMillis();
+        state.sentences = new ListSentence();
+        Iterator<Sentence> sentences = at.getSentences();
+        Sentence sentence = sentences.hasNext() ? sentences.next() : null;
+        //the sentence of the current words or null for an implicit sentence
+        Sentence current = null;
+        edu.upc.freeling.Sentence sent = new edu.upc.freeling.Sentence();
+        int implicit = 0;
+        Iterator<Token> tokens = at.getTokens();
+        while(tokens.hasNext()){
+            Token token = tokens.next();
+            while(sentence != null && sentence.getEnd() <= token.getStart()){
+                sentence = sentences.hasNext() ? sentences.next() : null;
+            }
+            Sentence enclosing = sentence != null && sentence.getStart() <= token.getStart() &&
+                    token.getEnd() <= sentence.getEnd() ? sentence : null;
+            if(enclosing != current || sent.size() == 0){
+                addSentence(state, sent);
+                sent = new edu.upc.freeling.Sentence();
+                current = enclosing;
+                if(enclosing == null){
+                    implicit++;
+                }
+            }
+            Word word = new Word(token.getSpan());
+            word.setSpan(token.getStart(), token.getEnd());
+            sent.pushBack(word);
+        }
+        addSentence(state, sent);
+        if(implicit > 0){
+            log.debug("Created {} implicit sentences for tokens outside of sentences", implicit);
+        }
+        log.debug("Created {} sentences with {} words from the parsed AnalysedText ({}ms)",
+            new Object[]{state.sentences.size(), state.words, 
+                    System.currentTimeMillis()-start});
+        return state;
+    }
+    
+    private void addSentence(AnalysisState state, edu.upc.freeling.Sentence sent){
+        if(sent.size() > 0){
+            state.words = state.words + sent.size();
+            state.sentences.pushBack(sent);
+        }
+    }
+    /**
+     * Initialises the {@link AnalysisState} for the parsed {@link Blob}. This
+     * is the first step of an analysis.
+     * @param blob the blob
+     * @param context the analysis context or <code>null</code> if none
+     * @return the state of the analysis
+     * @throws IOException on any error while reading from the blob
+     */
+    AnalysisState init(Blob blob, AnalysisContext context) throws IOException {
         if(blob == null){
             throw new NullPointerException("The parsed Blob MUST NOT be NULL!");
         }
@@ -313,82 +439,136 @@ public class AnalyzerImpl implements Analyzer{
             throw new IllegalArgumentException("The MediaType of the parsed Blob "
                 + " MUST be a text type (start with 'text/')!");
         }
-        AnalysedText at = atf.createAnalysedText(blob);
-        //perform the freeling analysis
+        return new AnalysisState(atf.createAnalysedText(blob), context);
+    }
+    /**
+     * Tokenizes the text and detects sentences ({@link Tokenizer},
+     * {@link Splitter})
+     * @param state the state of the analysis
+     */
+    void tokenize(AnalysisState state){
         //1. tokenize
-        long analysisStart = System.currentTimeMillis();
-        long stepStart = analysisStart;
-        final ListWord listWord = tokenizer.tokenize(at.getSpan());
-
+        long stepStart = System.currentTimeMillis();
+        final ListWord listWord = getTokenizer().tokenize(state.at.getSpan());
+        state.words = listWord.size();
         long timeStamp = System.currentTimeMillis();
-        log.info("Tokenized {} words ({}ms)",listWord.size(),timeStamp-stepStart);
+        log.info("Tokenized {} words ({}ms)",state.words,timeStamp-stepStart);
         stepStart = timeStamp;
         //2. sentence detection
-        final ListSentence listSentence = splitter.split(
-            listWord, alwaysFlush);
+        state.sentences = getSplitter().split(listWord, alwaysFlush);
         timeStamp = System.currentTimeMillis();
-        log.info("Splitted {} sentences ({}ms)", listSentence.size(),timeStamp-stepStart);
-        stepStart = timeStamp;
+        log.info("Splitted {} sentences ({}ms)", state.sentences.size(),timeStamp-stepStart);
+    }
+    /**
+     * Morphological analysis and Part-of-Speech tagging ({@link Maco},
+     * {@link HmmTagger})
+     * @param state the state of the analysis
+     */
+    void tag(AnalysisState state){
         //3. morphological analysis
+        long stepStart = System.currentTimeMillis();
+        long timeStamp;
         Maco maco = getMaco();
         if(maco != null){
-            maco.analyze(listSentence);
+            maco.analyze(state.sentences);
             timeStamp = System.currentTimeMillis();
             log.info(" ... Maco ({}ms)",timeStamp-stepStart);
+            updateStatistics(AnalysisLayer.MORPHOLOGY, state.words, timeStamp-stepStart);
             stepStart = timeStamp;
         }
         //4. Part-of-Speech (POS) Tagging.
         HmmTagger hmmTagger = getHmmTagger();
         if(hmmTagger != null){
-            hmmTagger.analyze(listSentence);
+            hmmTagger.analyze(state.sentences);
             timeStamp = System.currentTimeMillis();
             log.info(" ... HmmTagger ({}ms)",timeStamp-stepStart);
-            stepStart = timeStamp;
+            updateStatistics(AnalysisLayer.POS, state.words, timeStamp-stepStart);
         }
+    }
+    /**
+     * Named Entity classification, Word Sense Disambiguation and Sense
+     * labelling ({@link Nec}, {@link Ukb}, {@link Senses})
+     * @param state the state of the analysis
+     */
+    void classify(AnalysisState state){
+        long stepStart = System.currentTimeMillis();
+        long timeStamp;
         //5. Named Entity (NE) Classificiation.
         Nec nec = getNec();
         if(nec != null){
-            nec.analyze(listSentence);
+            nec.analyze(state.sentences);
             timeStamp = System.currentTimeMillis();
             log.info(" ... NEC ({}ms)",timeStamp-stepStart);
+            updateStatistics(AnalysisLayer.NER, state.words, timeStamp-stepStart);
             stepStart = timeStamp;
         }
         //6. Word Sense Disambiguation
         Ukb ukbWrap = getUkbWrap();
-        if(ukbWrap != null){
-            ukbWrap.analyze(listSentence);
+        if(ukbWrap != null && 
+                isWithinBudget(AnalysisLayer.DISAMBIGUATION, state.words, state.context)){
+            ukbWrap.analyze(state.sentences);
             timeStamp = System.currentTimeMillis();
             log.info(" ... UkbWra ({}ms)",timeStamp-stepStart);
+            updateStatistics(AnalysisLayer.DISAMBIGUATION, state.words, timeStamp-stepStart);
             stepStart = timeStamp;
         }
         //7. Sense Labelling
         Senses senses = getSenses();
-        if(senses != null){
-            senses.analyze(listSentence);
+        if(senses != null && isWithinBudget(AnalysisLayer.SENSES, state.words, state.context)){
+            senses.analyze(state.sentences);
             timeStamp = System.currentTimeMillis();
             log.info(" ... Senses ({}ms)",timeStamp-stepStart);
-            stepStart = timeStamp;
+            updateStatistics(AnalysisLayer.SENSES, state.words, timeStamp-stepStart);
         }
+    }
+    /**
+     * Chart and Dependency parsing ({@link ChartParser}, {@link DepTxala})
+     * @param state the state of the analysis
+     */
+    void parse(AnalysisState state){
+        long stepStart = System.currentTimeMillis();
+        long timeStamp;
         //8. Chunk parser
         ChartParser chartParser = getChartParser();
-        if(chartParser != null) {
-            chartParser.analyze(listSentence);
+        boolean parsed = false;
+        if(chartParser != null && isWithinBudget(AnalysisLayer.CHUNKS, state.words, state.context)) {
+            //parsing costs grow superlinear with the length of sentences
+            state.sentences = cutLongSentences(state.sentences, state.context);
+            chartParser.analyze(state.sentences);
+            parsed = true;
             timeStamp = System.currentTimeMillis();
             log.info(" ... ChartParser ({}ms)",timeStamp-stepStart);
+            updateStatistics(AnalysisLayer.CHUNKS, state.words, timeStamp-stepStart);
             stepStart = timeStamp;
         }
         //9. Dependency parser
         DepTxala depTxala = getDepTxala();
-        if(depTxala != null) {
-            depTxala.analyze(listSentence);
-            timeStamp = System.currentTimeMillis();
-            log.info(" ... DepTxala ({}ms)",timeStamp-stepStart);
-            stepStart = timeStamp;
+        if(depTxala != null){
+            if(!parsed){ //dependency parsing requires the parse tree
+                if(state.context != null){
+                    state.context.addOmittedLayer(AnalysisLayer.DEPENDENCIES);
+                }
+            } else if(isWithinBudget(AnalysisLayer.DEPENDENCIES, state.words, state.context)) {
+                depTxala.analyze(state.sentences);
+                timeStamp = System.currentTimeMillis();
+                log.info(" ... DepTxala ({}ms)",timeStamp-stepStart);
+                updateStatistics(AnalysisLayer.DEPENDENCIES, state.words, timeStamp-stepStart);
+            }
         }
-        timeStamp = System.currentTimeMillis();
+    }
+    /**
+     * Converts the Freeling analysis results to the {@link AnalysedText}.
+     * This is the last step of an analysis and does not use any Freeling
+     * component.
+     * @param state the state of the analysis
+     * @return the {@link AnalysedText}
+     */
+    AnalysedText convert(AnalysisState state){
+        long timeStamp = System.currentTimeMillis();
         log.info(" ... processed {} '{}' Words in in {}ms",
-            new Object[]{listWord.size(),language,timeStamp-analysisStart});
-        stepStart = timeStamp;
+            new Object[]{state.words,language,timeStamp-state.start});
+        AnalysedText at = state.at;
+        ListSentence listSentence = state.sentences;
         //get the Data for the language
         ListSentenceIterator sentenceIterator = new ListSentenceIterator(listSentence);
         while(sentenceIterator.hasNext()){
@@ -454,6 +634,123 @@ public class AnalyzerImpl implements Analyzer{
     }
 
 
+    /**
+     * Cuts sentences with more than {@link #maxSentenceLength} words. Cuts
+     * are done at the split point (after a punctuation or before a
+     * conjunction) nearest to the maximum length within the cut window (see
+     * {@link #CUT_WINDOW_DIVISOR}). If no split point is present the sentence
+     * is cut at the maximum length. The last fragment of a sentence is not
+     * shorter than the cut window.
+     * @param listSentence the sentences
+     * @param context the context used to record the cuts or <code>null</code>
+     * @return the parsed list if no sentence needed to be cut. Otherwise a
+     * new list with the cut sentences.
+     */
+    private ListSentence cutLongSentences(ListSentence listSentence, AnalysisContext context){
+        if(maxSentenceLength <= 0){
+            return listSentence;
+        }
+        boolean longSentence = false;
+        ListSentenceIterator sentenceIterator = new ListSentenceIterator(listSentence);
+        while(!longSentence && sentenceIterator.hasNext()){
+            longSentence = sentenceIterator.next().size() > maxSentenceLength;
+        }
+        if(!longSentence){
+            return listSentence;
+        }
+        ListSentence cutSentences = new ListSentence();
+        sentenceIterator = new ListSentenceIterator(listSentence);
+        while(sentenceIterator.hasNext()){
+            edu.upc.freeling.Sentence sent = sentenceIterator.next();
+            if(sent.size() <= maxSentenceLength){
+                cutSentences.pushBack(sent);
+                continue;
+            }
+            if(stageStatistics != null){
+                stageStatistics.addLongSentence();
+            }
+            if(context != null){
+                context.addLongSentences(1);
+            }
+            List<Word> sentWords = new ArrayList<Word>((int)sent.size());
+            ListWordIterator wordIterator = new ListWordIterator(sent);
+            while(wordIterator.hasNext()){
+                sentWords.add(wordIterator.next());
+            }
+            log.debug("cut sentence with {} words [{},{}] (max length: {})", new Object[]{
+                    sentWords.size(), sentWords.get(0).getSpanStart(),
+                    sentWords.get(sentWords.size()-1).getSpanFinish(),maxSentenceLength});
+            int window = Math.max(1, maxSentenceLength / CUT_WINDOW_DIVISOR);
+            int start = 0;
+            while(sentWords.size() - start > maxSentenceLength){
+                //do not leave a short fragment at the end of the sentence
+                int limit = Math.min(start + maxSentenceLength, sentWords.size() - window);
+                int end = limit;
+                //search backwards for the nearest split point within the window
+                for(int i = limit; i > start && i >= limit - window; i--){
+                    if(hasCategory(sentWords.get(i-1), LexicalCategory.Punctuation) ||
+                            hasCategory(sentWords.get(i), LexicalCategory.Conjuction)){
+                        end = i; //cut after the punctuation or before the conjunction
+                        break;
+                    }
+                }
+                cutSentences.pushBack(createSentence(sentWords, start, end));
+                if(context != null){
+                    context.addSentenceCut((int)sentWords.get(end).getSpanStart());
+                }
+                start = end;
+            }
+            cutSentences.pushBack(createSentence(sentWords, start, sentWords.size()));
+        }
+        return cutSentences;
+    }
+    
+    private boolean hasCategory(Word word, LexicalCategory category){
+        PosTag posTag = word.getTag() == null ? null : getPostTag(word.getTag());
+        return posTag != null && posTag.hasCategory(category);
+    }
+    
+    private edu.upc.freeling.Sentence createSentence(List<Word> words, int start, int end){
+        edu.upc.freeling.Sentence sentence = new edu.upc.freeling.Sentence();
+        for(int i = start; i < end; i++){
+            sentence.pushBack(words.get(i));
+        }
+        return sentence;
+    }
+    
+    /**
+     * Checks if the parsed optional layer can be processed within the
+     * time budget of the parsed context. If not the layer is added to the
+     * {@link AnalysisContext#getOmittedLayers() omitted layers}.
+     * @param layer the layer
+     * @param words the number of words of the analysed text
+     * @param context the context or <code>null</code> if none
+     * @return <code>true</code> if the layer should be processed
+     */
+    private boolean isWithinBudget(AnalysisLayer layer, long words, AnalysisContext context){
+        if(context == null || !context.hasDeadline()){
+            return true;
+        }
+        long remaining = context.getRemainingTime();
+        //no estimation available: process the layer to collect statistics
+        long estimate = stageStatistics == null ? -1 : 
+            stageStatistics.estimate(layer, words);
+        if(remaining <= 0 || estimate > remaining){
+            log.info(" ... omit {} (estimated: {}ms, remaining: {}ms)",
+                new Object[]{layer, estimate, remaining});
+            context.addOmittedLayer(layer);
+            return false;
+        } else {
+            return true;
+        }
+    }
+    
+    private void updateStatistics(AnalysisLayer layer, long words, long time){
+        if(stageStatistics != null){
+            stageStatistics.update(layer, words, time);
+        }
+    }
+
     /**
      * For some languages (e.g. "ru") Freeling provides 100+ Analysis objects.
      * Most of them do map to the same PosType but only differ in some other
@@ -543,22 +840,13 @@ public class AnalyzerImpl implements Analyzer{
 
 
     /**
-     * @param parsedTag
-     * @return
+     * Getter for the {@link PosTag} of the parsed tag using the compiled
+     * {@link TagLookup} of the language.
+     * @param parsedTag the tag as returned by Freeling
+     * @return the {@link PosTag}
      */
     private PosTag getPostTag(String parsedTag) {
-        String tag = posTagMapper != null ? posTagMapper.map(parsedTag) : parsedTag;
-        PosTag posTag = posTagSet != null ? posTagSet.getTag(tag) : null;
-        if(posTag == null){
-            posTag = adhocPosTags.get(tag);
-            if(posTag == null) {
-                log.warn("Unmapped POS tag '{}' (unmapped: {}) for language '{}' and Tagset '{}'",
-                    new Object[]{tag, parsedTag, language, posTagSet != null ? posTagSet.getName() : "<<none>>"});
-                posTag = new PosTag(tag);
-                adhocPosTags.put(tag, posTag);
-            }
-        }
-        return posTag;
+        return tagLookup.getPosTag(parsedTag);
     }
     
     /**
@@ -571,22 +859,7 @@ public class AnalyzerImpl implements Analyzer{
      * @return the {@link Value#value()} of the added {@link NlpAnnotations#PHRASE_ANNOTATION}
      */
     private Value<PhraseTag> addPhraseTag(Span span, String tag, double prob){
-        PhraseTag phraseTag = phraseTagSet != null ? phraseTagSet.getTag(tag) : null;
-        if(phraseTag == null){
-            phraseTag = adhocPhraseTags.get(tag);
-            if(phraseTag == null) {
-                //try to create phrase tag based on the PosTag for the parsed tag
-                PosTag posTag = getPostTag(tag);
-                if(posTag != null && !posTag.getCategories().isEmpty()){
-                    phraseTag = new PhraseTag(posTag.getTag(),posTag.getCategories().iterator().next());
-                } else {
-                    log.warn("Unmapped Phrase tag '{}' for language '{}' and Tagset '{}'",
-                        new Object[]{tag, language, phraseTagSet != null ? phraseTagSet.getName() : "<<none>>"});
-                    phraseTag = new PhraseTag(tag);
-                }
-                adhocPhraseTags.put(tag, phraseTag);
-            }
-        }
+        PhraseTag phraseTag = tagLookup.getPhraseTag(tag);
         if(prob >= minProb || prob < 0){
             Value<PhraseTag> value = prob < 0 ? Value.value(phraseTag) : 
                     Value.value(phraseTag, prob);
@@ -605,16 +878,7 @@ public class AnalyzerImpl implements Analyzer{
      * @return the {@link Value#value()} of the added {@link NlpAnnotations#NER_ANNOTATION}
      */
     private Value<NerTag> addNerTag(Span span, String tag, double prob){
-        NerTag nerTag = nerTagSet != null ? nerTagSet.getTag(tag) : null;
-        if(nerTag == null){
-            nerTag = adhocNerTags.get(tag);
-            if(nerTag == null) {
-                log.warn("Unmapped NER tag '{}' for language '{}' and Tagset '{}'",
-                    new Object[]{tag, language, nerTagSet != null ? nerTagSet.getName() : "<<none>>"});
-                nerTag = new NerTag(tag);
-                adhocNerTags.put(tag, nerTag);
-            }
-        }
+        NerTag nerTag = tagLookup.getNerTag(tag);
         if(prob >= minProb || prob < 0){
             Value<NerTag> value = prob < 0 ? Value.value(nerTag) :
                 Value.value(nerTag, prob);
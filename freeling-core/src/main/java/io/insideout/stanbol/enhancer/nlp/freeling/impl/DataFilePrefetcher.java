@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the data files of Freeling configurations sequentially on background
+ * threads so that they are in the page cache of the operating system when
+ * the native Freeling components load them. The contents are discarded. This
+ * speeds up the creation of Analyzers after a restart of the host, as
+ * components are created by a limited number of threads while the files can
+ * be read in parallel.<p>
+ * Files are read in the parsed order.
+ */
+public class DataFilePrefetcher {
+
+    private final Logger log = LoggerFactory.getLogger(DataFilePrefetcher.class);
+
+    private static final int BUFFER_SIZE = 1024*1024;
+
+    private final Queue<File> files = new ConcurrentLinkedQueue<File>();
+    private final int numFiles;
+    private final int threads;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicInteger filesRead = new AtomicInteger();
+    private final AtomicInteger active;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean cancelled;
+    private long started;
+
+    /**
+     * Creates a prefetcher for the parsed files
+     * @param files the files. Duplicates, directories and files that do not
+     * exist are ignored
+     * @param threads the number of threads used to read files
+     */
+    public DataFilePrefetcher(Collection<File> files, int threads) {
+        if(files == null){
+            throw new IllegalArgumentException("The parsed files MUST NOT be NULL!");
+        }
+        for(File file : new LinkedHashSet<File>(files)){
+            if(file.isFile()){
+                this.files.add(file);
+            }
+        }
+        this.numFiles = this.files.size();
+        this.threads = Math.max(1, Math.min(threads, numFiles));
+        this.active = new AtomicInteger(this.threads);
+    }
+
+    /**
+     * Starts reading the files on daemon threads
+     */
+    public void start() {
+        started = System.currentTimeMillis();
+        log.info("prefetch {} Freeling data files using {} threads", numFiles, threads);
+        for(int i = 0; i < threads; i++){
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                        File file;
+                        while(!cancelled && (file = files.poll()) != null){
+                            prefetch(file, buffer);
+                        }
+                    } finally {
+                        if(active.decrementAndGet() == 0){
+                            log.info(" ... prefetched {} data files ({}MB) in {}ms", new Object[]{
+                                filesRead.get(), bytesRead.get()/(1024*1024),
+                                System.currentTimeMillis() - started});
+                            done.countDown();
+                        }
+                    }
+                }
+            }, "freeling-prefetch-" + (i + 1));
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.start();
+        }
+    }
+
+    private void prefetch(File file, ByteBuffer buffer) {
+        long start = System.currentTimeMillis();
+        long read = 0;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            int count;
+            while(!cancelled && (count = channel.read(buffer)) >= 0){
+                read += count;
+                buffer.clear();
+            }
+            filesRead.incrementAndGet();
+            log.debug(" ... prefetched {} ({} bytes in {}ms)", new Object[]{
+                file, read, System.currentTimeMillis() - start});
+        } catch (IOException e) {
+            log.warn("Unable to prefetch Freeling data file " + file, e);
+        } finally {
+            bytesRead.addAndGet(read);
+            if(in != null){
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until all files are read
+     * @param maxWait the maximum time to wait
+     * @return <code>true</code> if all files are read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await(long maxWait) throws InterruptedException {
+        return done.await(maxWait, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading files
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the number of bytes read so far
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @return the number of files to prefetch
+     */
+    public int getFileCount() {
+        return numFiles;
+    }
+}
@@ -16,100 +16,139 @@
  */
 package io.insideout.stanbol.enhancer.nlp.freeling.impl;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FreelingProperties {
-
-    private Logger logger = LoggerFactory.getLogger(getClass());
-
-    private String freelingSharePath;
-    private String propertiesFilePath;
-
-    private String language;
-    private String locale;
-
-    private int traceLevel;
-    private String traceModule;
-
-    private String inputFormat;
-    private String outputFormat;
-
-    private boolean alwaysFlush;
-
-    private String tokenizerFile;
-
-    private String splitterFile;
-
-    private boolean affixAnalysis;
-    private boolean multiwordsDetection;
-    private boolean numbersDetection;
-    private boolean punctuationDetection;
-    private boolean datesDetection;
-    private boolean quantitiesDetection;
-    private boolean dictionarySearch;
-    private boolean probabilityAssignment;
-    private boolean ortographicCorrection;
-    private String decimalPoint;
-    private String thousandPoint;
-    private String locutionsFile;
-    private String quantitiesFile;
-    private String affixFile;
-    private String probabilityFile;
-    private String npDataFile;
-    private String punctuationFile;
-    private Double probabilityThreshold;
-
-    private boolean neRecognition;
-    private String dictionaryFile;
-
-    private String correctorFile;
-
-    private boolean phonetics;
-    private String phoneticsFile;
-
-    private boolean neClassification;
-    private String necFile;
-
-    private String senseAnnotation;
-    private String senseConfigFile;
-    private String ukbConfigFile;
-
-    private String tagger;
-    private String taggerHMMFile;
-    private String taggerRelaxFile;
-    private int taggerRelaxMaxIter;
-    private Double taggerRelaxScaleFactor;
-    private Double taggerRelaxEpsilon;
-    private boolean taggerRetokenize;
-    private int taggerForceSelect;
-
-    private String grammarFile;
-
-    private String depTxalaFile;
-
-    private boolean coreferenceResolution;
-    private String corefFile;
-
-    public FreelingProperties(String propertiesFilePath, String freelingSharePath) {
-        this.propertiesFilePath = propertiesFilePath;
+/**
+ * Immutable and validated snapshot of a Freeling configuration file. The
+ * configuration is read once and the {@link #getProblems() problems} (such
+ * as missing data files) are detected when the instance is created.
+ */
+public final class FreelingProperties {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final String freelingSharePath;
+    private final String propertiesFilePath;
+    private final File configFile;
+
+    private final String language;
+    private final String langIdentFile;
+    private final String locale;
+
+    private final int traceLevel;
+    private final String traceModule;
+
+    private final String inputFormat;
+    private final String outputFormat;
+
+    private final boolean alwaysFlush;
+
+    private final String tokenizerFile;
+
+    private final String splitterFile;
+
+    private final boolean affixAnalysis;
+    private final boolean multiwordsDetection;
+    private final boolean numbersDetection;
+    private final boolean punctuationDetection;
+    private final boolean datesDetection;
+    private final boolean quantitiesDetection;
+    private final boolean dictionarySearch;
+    private final boolean probabilityAssignment;
+    private final boolean ortographicCorrection;
+    private final String decimalPoint;
+    private final String thousandPoint;
+    private final String locutionsFile;
+    private final String quantitiesFile;
+    private final String affixFile;
+    private final String probabilityFile;
+    private final String npDataFile;
+    private final String punctuationFile;
+    private final Double probabilityThreshold;
+
+    private final boolean neRecognition;
+    private final String dictionaryFile;
+
+    private final String correctorFile;
+
+    private final boolean phonetics;
+    private final String phoneticsFile;
+
+    private final boolean neClassification;
+    private final String necFile;
+
+    private final String senseAnnotation;
+    private final String senseConfigFile;
+    private final String ukbConfigFile;
+
+    private final String tagger;
+    private final String taggerHMMFile;
+    private final String taggerRelaxFile;
+    private final int taggerRelaxMaxIter;
+    private final Double taggerRelaxScaleFactor;
+    private final Double taggerRelaxEpsilon;
+    private final boolean taggerRetokenize;
+    private final int taggerForceSelect;
+
+    private final String grammarFile;
+
+    private final String depTxalaFile;
+
+    private final boolean coreferenceResolution;
+    private final String corefFile;
+
+    /**
+     * Problems that prevent the creation of Analyzers with this configuration
+     */
+    private final List<String> problems;
+    /**
+     * Problems with optional components. Those are omitted by Analyzers
+     */
+    private final List<String> warnings;
+    /**
+     * The data files referenced by this configuration
+     */
+    private final List<File> dataFiles;
+
+    /**
+     * Reads and validates the parsed Freeling configuration file. Instances
+     * are immutable and can be shared by all Analyzers created for the
+     * configuration.
+     * @param configFile the Freeling configuration file
+     * @param freelingSharePath the Freeling shared directory used to replace
+     * <code>$FREELINGSHARE</code> in configured paths
+     * @throws IOException if the configuration can not be read
+     */
+    public FreelingProperties(File configFile, String freelingSharePath) throws IOException {
+        if(configFile == null){
+            throw new IllegalArgumentException("The parsed configuration file MUST NOT be NULL!");
+        }
+        this.configFile = configFile;
+        this.propertiesFilePath = configFile.getPath();
         this.freelingSharePath = freelingSharePath;
 
-        readProperties();
-    }
-
-    public void readProperties() {
         // Read properties file.
         Properties properties = new Properties();
+        InputStream in = new FileInputStream(configFile);
         try {
-            properties.load(new FileInputStream(propertiesFilePath));
-        } catch (IOException e) {}
+            properties.load(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
 
-        language = getProperty(properties, "Lang", "none");
+        language = getProperty(properties, "Lang", null);
+        langIdentFile = getProperty(properties, "LangIdentFile", null);
         locale = getProperty(properties, "Locale", "default");
 
         traceLevel = getProperty(properties, "TraceLevel", 3);
@@ -183,6 +222,75 @@ public class FreelingProperties {
         coreferenceResolution = ("yes".equals(getProperty(properties, "CoreferenceResolution", "no")));
         corefFile = getProperty(properties, "CorefFile", "");
 
+        //validate the configuration
+        List<String> problems = new ArrayList<String>();
+        List<String> warnings = new ArrayList<String>();
+        if(language != null){ //only validate Analyzer configurations
+            checkFile(problems, "TokenizerFile", tokenizerFile);
+            checkFile(problems, "SplitterFile", splitterFile);
+            if(multiwordsDetection){
+                checkFile(problems, "LocutionsFile", locutionsFile);
+            }
+            if(quantitiesDetection){
+                checkFile(problems, "QuantitiesFile", quantitiesFile);
+            }
+            if(affixAnalysis){
+                checkFile(problems, "AffixFile", affixFile);
+            }
+            if(probabilityAssignment){
+                checkFile(problems, "ProbabilityFile", probabilityFile);
+            }
+            if(dictionarySearch){
+                checkFile(problems, "DictionaryFile", dictionaryFile);
+            }
+            if(neRecognition){
+                checkFile(problems, "NPDataFile", npDataFile);
+            }
+            if(punctuationDetection){
+                checkFile(problems, "PunctuationFile", punctuationFile);
+            }
+            if(ortographicCorrection){
+                checkFile(problems, "CorrectorFile", correctorFile);
+            }
+            checkFile(problems, "TaggerHMMFile", taggerHMMFile);
+            //optional components (omitted by the Analyzer if not present)
+            if(!grammarFile.isEmpty()){
+                checkFile(warnings, "GrammarFile", grammarFile);
+            }
+            if(!depTxalaFile.isEmpty()){
+                checkFile(warnings, "DepTxalaFile", depTxalaFile);
+            }
+            if(neClassification){
+                checkFile(warnings, "NECFile", necFile);
+            }
+            if(!senseConfigFile.isEmpty()){
+                checkFile(warnings, "SenseConfigFile", senseConfigFile);
+            }
+            if(!ukbConfigFile.isEmpty()){
+                checkFile(warnings, "UKBConfigFile", ukbConfigFile);
+            }
+        }
+        this.problems = Collections.unmodifiableList(problems);
+        this.warnings = Collections.unmodifiableList(warnings);
+        List<File> dataFiles = new ArrayList<File>();
+        for(String path : new String[]{tokenizerFile, splitterFile, locutionsFile,
+                quantitiesFile, affixFile, probabilityFile, dictionaryFile,
+                npDataFile, punctuationFile, correctorFile, phoneticsFile, necFile,
+                senseConfigFile, ukbConfigFile, taggerHMMFile, taggerRelaxFile,
+                grammarFile, depTxalaFile, corefFile, langIdentFile}){
+            if(path != null && !path.trim().isEmpty()){
+                dataFiles.add(new File(path.trim()));
+            }
+        }
+        this.dataFiles = Collections.unmodifiableList(dataFiles);
+    }
+
+    private static void checkFile(List<String> problems, String property, String path){
+        if(path == null || path.isEmpty()){
+            problems.add("missing required property '" + property + "'");
+        } else if(!new File(path.trim()).isFile()){
+            problems.add("file '" + path + "' configured by '" + property + "' does not exist");
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -197,6 +305,9 @@ public class FreelingProperties {
         // replace the freeling share placeholder.
         value = value.replace("$FREELINGSHARE", freelingSharePath);
 
+        // return a string if no default is parsed.
+        if (defaultValue == null) return (T) value;
+
         // return an integer.
         if (Integer.class.equals(defaultValue.getClass())) return (T) Integer.valueOf(value, 10);
 
@@ -218,10 +329,72 @@ public class FreelingProperties {
         return propertiesFilePath;
     }
 
+    public File getConfigFile() {
+        return configFile;
+    }
+
+    /**
+     * @return the language or <code>null</code> if this is not an Analyzer
+     * configuration (e.g. the language identification configuration)
+     */
     public String getLanguage() {
         return language;
     }
 
+    /**
+     * @return the language identification configuration file or
+     * <code>null</code> if not present
+     */
+    public String getLangIdentFile() {
+        return langIdentFile;
+    }
+
+    /**
+     * @return problems that prevent the creation of Analyzers based on this
+     * configuration (e.g. missing data files). Empty if valid.
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    /**
+     * @return problems with optional components. Analyzers are created
+     * without those components.
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * @return <code>true</code> if there are no {@link #getProblems() problems}
+     */
+    public boolean isValid() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * @return the data files referenced by this configuration. Files may not
+     * exist (see {@link #getProblems()} and {@link #getWarnings()})
+     */
+    public List<File> getDataFiles() {
+        return dataFiles;
+    }
+
+    /**
+     * The most recent modification time of the configuration file and all
+     * referenced {@link #getDataFiles() data files}. Used to detect changed
+     * configurations.
+     * @return the modification time or <code>0</code> if none of the files
+     * exists
+     */
+    public long getLastModified() {
+        long lastModified = configFile.lastModified();
+        for(File dataFile : dataFiles){
+            lastModified = Math.max(lastModified, dataFile.lastModified());
+        }
+        return lastModified;
+    }
+
     public String getLocale() {
         return locale;
     }
@@ -414,4 +587,9 @@ public class FreelingProperties {
         return corefFile;
     }
 
+    @Override
+    public String toString() {
+        return "FreelingProperties [language=" + language + ", configFile=" + configFile + "]";
+    }
+
 }
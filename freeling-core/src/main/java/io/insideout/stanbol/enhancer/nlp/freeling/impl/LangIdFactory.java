@@ -16,6 +16,7 @@
  */
 package io.insideout.stanbol.enhancer.nlp.freeling.impl;
 
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.CreationScheduler;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool.ResourceFactory;
 
 import java.util.Map;
@@ -31,11 +32,22 @@ import edu.upc.freeling.Util;
 public class LangIdFactory implements ResourceFactory<LanguageIdentifierImpl> {
 
     protected final Logger log = LoggerFactory.getLogger(LangIdFactory.class);
-    private final ExecutorService executorService;
+    /**
+     * The key used for the creation queue of language identification
+     * components in the {@link CreationScheduler}
+     */
+    public static final String SCHEDULER_KEY = "langid";
+    private final CreationScheduler scheduler;
     private final String configFile;
     
     public LangIdFactory(final String freelingLibPath, String configFile, 
             String locale, ExecutorService factoryThreadPool){
+        this(freelingLibPath, configFile, locale, factoryThreadPool == null ?
+                null : new CreationScheduler(factoryThreadPool));
+    }
+    
+    public LangIdFactory(final String freelingLibPath, String configFile, 
+            String locale, CreationScheduler scheduler){
         if(freelingLibPath == null){
             throw new IllegalArgumentException("The path to the Freeling native "
                 + "lib MUST NOT be NULL!");
@@ -48,11 +60,11 @@ public class LangIdFactory implements ResourceFactory<LanguageIdentifierImpl> {
             throw new IllegalArgumentException("The parsed Freeling Locale"
                 + "MUST NOT be NULL!");
         }
-        if(factoryThreadPool == null){
-            throw new IllegalArgumentException("The parsed ExecutorService"
+        if(scheduler == null){
+            throw new IllegalArgumentException("The parsed CreationScheduler "
                 + "MUST NOT be NULL!");
         }
-        this.executorService = factoryThreadPool;
+        this.scheduler = scheduler;
         this.configFile = configFile;
         //check for the native freeling lib
         NativeLibsUtil.ensureNativeLib(freelingLibPath);
@@ -64,7 +76,7 @@ public class LangIdFactory implements ResourceFactory<LanguageIdentifierImpl> {
     public Future<LanguageIdentifierImpl> createResource(Map<String,Object> context) {
         log.info("Request to create Language Identification Resource");
         final long request = System.currentTimeMillis();
-        return executorService.submit(new Callable<LanguageIdentifierImpl>() {
+        return scheduler.submit(SCHEDULER_KEY, new Callable<LanguageIdentifierImpl>() {
 
             @Override
             public LanguageIdentifierImpl call() throws Exception {
@@ -83,7 +95,7 @@ public class LangIdFactory implements ResourceFactory<LanguageIdentifierImpl> {
     
     @Override
     public void closeResource(final Object resource, Map<String,Object> context) {
-        executorService.execute(new Runnable() {
+        scheduler.close(new Runnable() {
             @Override
             public void run() {
                 LanguageIdentifierImpl langIdent = LanguageIdentifierImpl.class.cast(resource);
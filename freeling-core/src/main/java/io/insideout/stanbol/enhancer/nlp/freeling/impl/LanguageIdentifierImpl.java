@@ -18,11 +18,20 @@ package io.insideout.stanbol.enhancer.nlp.freeling.impl;
 
 import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +50,12 @@ public class LanguageIdentifierImpl implements LanguageIdentifier {
     
     private final double minProb = DEFAULT_MIN_PROBABILITY;
     private final int maxSuggestions = DEFAULT_MAX_SUGGESTED_LANGUAGES;
+    /**
+     * The maximum number of native sets of allowed languages. The native sets
+     * can not be deleted (the SWIG wrapper of <code>std::set&lt;wstring&gt;</code>
+     * has no destructor) so this also bounds the native memory used for them.
+     */
+    private static final int MAX_CACHED_LANGUAGE_SETS = 32;
     
     /**
      * Sorts {@link Language} instances in decreasing order based on their
@@ -55,9 +70,75 @@ public class LanguageIdentifierImpl implements LanguageIdentifier {
     };
 
     private LangIdent languageIdentifier = null;
+    /**
+     * Guards the native {@link #languageIdentifier}: Calls hold the read lock
+     * so that {@link #close()} (write lock) waits until running calls are
+     * completed before the native instance is deleted.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    /**
+     * Cache for the native sets of allowed languages. Keys are the sorted,
+     * comma separated languages. Shared by all instances as the sets do not
+     * depend on the native language identifier and can not be deleted on
+     * {@link #close()}. Holds at most {@link #MAX_CACHED_LANGUAGE_SETS} sets.
+     */
+    private static final Map<String,SWIGTYPE_p_std__setT_std__wstring_t> ALLOWED_LANGUAGES_CACHE = 
+            new ConcurrentHashMap<String,SWIGTYPE_p_std__setT_std__wstring_t>();
+    /**
+     * The languages known by the native language identifier or 
+     * <code>null</code> if they could not be read from the configuration
+     */
+    private final Set<String> languages;
 
     public LanguageIdentifierImpl(String configurationPath) {
         languageIdentifier = new LangIdent(configurationPath);
+        Set<String> languages;
+        try {
+            languages = Collections.unmodifiableSet(
+                NGramLanguageIdentifier.readLanguageCodes(configurationPath));
+        } catch (IOException e) {
+            logger.warn("Unable to read the languages of the language identification "
+                + "configuration '"+configurationPath+"'! Parsed candidate languages "
+                + "will not be validated.", e);
+            languages = null;
+        }
+        this.languages = languages;
+    }
+    /**
+     * Getter for the languages known by this identifier
+     * @return the languages or <code>null</code> if not known
+     */
+    public Set<String> getLanguages(){
+        return languages;
+    }
+    /**
+     * Parses a comma separated list of languages and drops languages not
+     * contained in the parsed set of known languages.
+     * @param languages the comma separated languages
+     * @param known the known languages or <code>null</code> to keep all
+     * parsed languages
+     * @return the sorted languages or <code>null</code> if the parsed 
+     * languages are <code>null</code> or blank
+     * @throws IllegalArgumentException if none of the parsed languages is
+     * known
+     */
+    public static SortedSet<String> parseLanguages(String languages, Set<String> known){
+        if(StringUtils.isBlank(languages)){
+            return null;
+        }
+        SortedSet<String> parsed = new TreeSet<String>();
+        for(String language : StringUtils.split(languages, ',')){
+            language = language.trim();
+            if(!language.isEmpty() && (known == null || known.contains(language))){
+                parsed.add(language);
+            }
+        }
+        if(parsed.isEmpty()){
+            throw new IllegalArgumentException("None of the parsed languages '"
+                + languages + "' is known (known: "+known+")!");
+        }
+        return parsed;
     }
     /*
      * (non-Javadoc)
@@ -79,24 +160,66 @@ public class LanguageIdentifierImpl implements LanguageIdentifier {
 
         logger.trace("Identifying language.");
 
-        //SWIGTYPE_p_std__setT_std__wstring_t allowedLanguages = Util.(languages, ",");
-        List<Language> languageSet = identifyMultipleLanguages(text/*, allowedLanguages*/);
-
         // return the found languages
-        return languageSet;
+        return identifyMultipleLanguages(text, languages);
+    }
+    /**
+     * Getter for the native set of the parsed languages. Sets are cached in
+     * a concurrent map as instances may be used by multiple threads (see
+     * {@link io.insideout.stanbol.enhancer.nlp.freeling.Freeling.LangIdMode#SHARED}).
+     * @param key the sorted, comma separated languages
+     * @return the native set or <code>null</code> if the maximum number of
+     * native sets was already created
+     */
+    private static SWIGTYPE_p_std__setT_std__wstring_t getAllowedLanguages(String key){
+        SWIGTYPE_p_std__setT_std__wstring_t allowedLanguages = ALLOWED_LANGUAGES_CACHE.get(key);
+        if(allowedLanguages == null){
+            synchronized (ALLOWED_LANGUAGES_CACHE) {
+                allowedLanguages = ALLOWED_LANGUAGES_CACHE.get(key);
+                if(allowedLanguages == null && 
+                        ALLOWED_LANGUAGES_CACHE.size() < MAX_CACHED_LANGUAGE_SETS){
+                    allowedLanguages = Util.wstring2set(key, ",");
+                    ALLOWED_LANGUAGES_CACHE.put(key, allowedLanguages);
+                }
+            }
+        }
+        return allowedLanguages;
     }
 
     @SuppressWarnings("unused")
     private String identifyOneLanguage(String text, SWIGTYPE_p_std__setT_std__wstring_t languages) {
-        return languageIdentifier.identifyLanguage(text, languages);
+        lock.readLock().lock();
+        try {
+            if(languageIdentifier == null){
+                throw new IllegalStateException("The language identifier was already closed!");
+            }
+            return languageIdentifier.identifyLanguage(text, languages);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    private List<Language> identifyMultipleLanguages(String text/*, SWIGTYPE_p_std__setT_std__wstring_t languages*/) {
-        if(languageIdentifier == null){
-            throw new IllegalStateException("The language identifier was already closed!");
-        }
+    private List<Language> identifyMultipleLanguages(String text, String languages) {
+        SortedSet<String> candidates = parseLanguages(languages, this.languages);
+        //filter ranked languages if no native set is available
+        Set<String> filter = null;
         VectorPairDoubleString languageRanks = new VectorPairDoubleString();
-        languageIdentifier.rankLanguages(languageRanks, text/*, languages*/);
+        lock.readLock().lock();
+        try {
+            if(languageIdentifier == null){
+                throw new IllegalStateException("The language identifier was already closed!");
+            }
+            SWIGTYPE_p_std__setT_std__wstring_t allowedLanguages = candidates == null ? null :
+                getAllowedLanguages(StringUtils.join(candidates.iterator(), ','));
+            if(allowedLanguages == null){
+                filter = candidates;
+                languageIdentifier.rankLanguages(languageRanks, text);
+            } else {
+                languageIdentifier.rankLanguages(languageRanks, text, allowedLanguages);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
 
         int size = (int) languageRanks.size();
 
@@ -106,7 +229,7 @@ public class LanguageIdentifierImpl implements LanguageIdentifier {
             PairDoubleString pair = languageRanks.get((int) i);
             Double rank = pair.getFirst();
             String language = pair.getSecond();
-            if(rank >= minProb) {
+            if(rank >= minProb && (filter == null || filter.contains(language))) {
                 logger.trace("The language [{}][rank :: {}] has been identified for "
                         + "the provided text.",language, rank);
                 detectedLangs.add(new Language(language, rank));
@@ -118,9 +241,22 @@ public class LanguageIdentifierImpl implements LanguageIdentifier {
                 detectedLangs.subList(0, maxSuggestions) : detectedLangs;
     }
     
+    /**
+     * Deletes the native language identifier. Waits until calls of other
+     * threads are completed. Subsequent calls fail with an
+     * {@link IllegalStateException}. The native sets of allowed languages
+     * are shared by all instances and are kept.
+     */
     public void close(){
-        LangIdent langIdent = languageIdentifier;
-        languageIdentifier = null;
-        langIdent.delete();
+        lock.writeLock().lock();
+        try {
+            LangIdent langIdent = languageIdentifier;
+            languageIdentifier = null;
+            if(langIdent != null){
+                langIdent.delete();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 }
@@ -0,0 +1,517 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.impl;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pure Java implementation of the {@link LanguageIdentifier} interface
+ * based on the character n-gram models used by the Freeling LangIdent
+ * component.<p>
+ * The models referenced by the Freeling language identification 
+ * configuration (<code>ident.dat</code>) are loaded on construction into
+ * compact primitive hash tables. Texts are scored by a Markov model of the
+ * order of the loaded models (max. 4) with add-one smoothing. The returned
+ * probabilities are the posterior probabilities of the languages assuming
+ * uniform priors.<p>
+ * Instances are immutable after construction and therefore thread safe. A 
+ * single instance can be used by any number of threads without the need 
+ * of a {@link io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool}.
+ */
+public class NGramLanguageIdentifier implements LanguageIdentifier {
+
+    private static final Logger log = LoggerFactory.getLogger(NGramLanguageIdentifier.class);
+    
+    /**
+     * The maximum supported n-gram order. Up to 4 chars (16bit each) are
+     * encoded in a single long.
+     */
+    public static final int MAX_ORDER = 4;
+
+    private static final String SECTION_LANGUAGES = "languages";
+    private static final String SECTION_CODE = "code";
+    private static final String SECTION_ORDER = "order";
+    
+    private final double minProb = LanguageIdentifierImpl.DEFAULT_MIN_PROBABILITY;
+    private final int maxSuggestions = LanguageIdentifierImpl.DEFAULT_MAX_SUGGESTED_LANGUAGES;
+    
+    /**
+     * Sorts {@link Language} instances in decreasing order based on their
+     * {@link Language#getProb()}
+     */
+    private static final Comparator<Language> LANGUAGE_RANK_COMPARATOR = new Comparator<Language>() {
+        @Override
+        public int compare(Language o1, Language o2) {
+            return o2.getProb() < o1.getProb() ? -1 : o1.getProb() < o2.getProb() ? 1 : 0;
+        }
+    };
+
+    private final LanguageModel[] models;
+    
+    /**
+     * Loads the language models referenced by the parsed Freeling language
+     * identification configuration file.
+     * @param configurationPath the path to the Freeling language 
+     * identification configuration (<code>ident.dat</code>)
+     * @throws IOException on any error while reading the configuration or
+     * the language models
+     * @throws IllegalArgumentException if the parsed configuration does not
+     * reference any language model
+     */
+    public NGramLanguageIdentifier(String configurationPath) throws IOException {
+        if(configurationPath == null){
+            throw new IllegalArgumentException("The parsed configuration path MUST NOT be NULL!");
+        }
+        File config = new File(configurationPath);
+        List<LanguageModel> models = new ArrayList<LanguageModel>();
+        for(String[] entry : readLanguages(config)){
+            File modelFile = getModelFile(config, entry[1]);
+            long start = System.currentTimeMillis();
+            LanguageModel model = readModel(modelFile, entry[0]);
+            log.debug(" ... loaded model for '{}' ({} n-grams) in {}ms", new Object[]{
+                    model.language, model.table.size, System.currentTimeMillis()-start});
+            models.add(model);
+        }
+        if(models.isEmpty()){
+            throw new IllegalArgumentException("The parsed language identification "
+                + "configuration '"+configurationPath+"' does not reference any "
+                + "language model!");
+        }
+        this.models = models.toArray(new LanguageModel[models.size()]);
+        log.info("loaded {} language models from {}", this.models.length, configurationPath);
+    }
+    /**
+     * Getter for the languages known by this identifier
+     * @return the languages
+     */
+    public Set<String> getLanguages(){
+        Set<String> languages = new HashSet<String>();
+        for(LanguageModel model : models){
+            languages.add(model.language);
+        }
+        return languages;
+    }
+    
+    @Override
+    public List<Language> identifyLanguage(String text) {
+        return identifyLanguage(text, null);
+    }
+
+    /**
+     * @param languages comma separated list of the languages to consider
+     * or <code>null</code> or an empty string to consider all languages
+     */
+    @Override
+    public List<Language> identifyLanguage(String text, String languages) {
+        Set<String> candidates = null;
+        if(!StringUtils.isBlank(languages)){
+            candidates = new HashSet<String>();
+            for(String lang : StringUtils.split(languages, ',')){
+                candidates.add(lang.trim());
+            }
+        }
+        char[] normalized = normalize(text);
+        double[] scores = new double[models.length];
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < models.length; i++){
+            if(candidates == null || candidates.contains(models[i].language)){
+                scores[i] = models[i].score(normalized);
+                if(scores[i] > max){
+                    max = scores[i];
+                }
+            } else {
+                scores[i] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        if(max == Double.NEGATIVE_INFINITY){
+            return Collections.emptyList();
+        }
+        //posterior probabilities (log-sum-exp for numerical stability)
+        double sum = 0;
+        for(int i = 0; i < scores.length; i++){
+            scores[i] = Math.exp(scores[i] - max);
+            sum = sum + scores[i];
+        }
+        List<Language> detected = new ArrayList<Language>();
+        for(int i = 0; i < scores.length; i++){
+            double prob = scores[i]/sum;
+            if(prob >= minProb){
+                detected.add(new Language(models[i].language, prob));
+            }
+        }
+        Collections.sort(detected, LANGUAGE_RANK_COMPARATOR);
+        return detected.size() > maxSuggestions ?
+                detected.subList(0, maxSuggestions) : detected;
+    }
+    
+    /**
+     * Lower cases the parsed text and replaces sequences of non letter chars
+     * with a single space. The returned text starts and ends with a space.
+     */
+    static char[] normalize(String text){
+        char[] normalized = new char[text.length()+2];
+        int length = 0;
+        normalized[length++] = ' ';
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(Character.isLetter(c)){
+                normalized[length++] = Character.toLowerCase(c);
+            } else if(normalized[length-1] != ' '){
+                normalized[length++] = ' ';
+            }
+        }
+        if(normalized[length-1] != ' '){
+            normalized[length++] = ' ';
+        }
+        return length == normalized.length ? normalized : Arrays.copyOf(normalized, length);
+    }
+    
+    /**
+     * Reads the codes of the languages referenced by the parsed Freeling
+     * language identification configuration without loading the models.
+     * Codes are taken from the configuration, the <code>&lt;Code&gt;</code>
+     * section of the model or the base name of the model file.
+     * @param configurationPath the path to the Freeling language 
+     * identification configuration (<code>ident.dat</code>)
+     * @return the language codes
+     * @throws IOException on any error while reading the configuration or
+     * the language models
+     */
+    public static Set<String> readLanguageCodes(String configurationPath) throws IOException {
+        if(configurationPath == null){
+            throw new IllegalArgumentException("The parsed configuration path MUST NOT be NULL!");
+        }
+        File config = new File(configurationPath);
+        Set<String> codes = new HashSet<String>();
+        for(String[] entry : readLanguages(config)){
+            codes.add(entry[0] != null ? entry[0] : 
+                readModelCode(getModelFile(config, entry[1])));
+        }
+        return codes;
+    }
+    
+    private static File getModelFile(File config, String path){
+        File modelFile = new File(path);
+        return modelFile.isAbsolute() ? modelFile : new File(config.getParentFile(), path);
+    }
+    /**
+     * Reads the <code>&lt;Code&gt;</code> section of a Freeling language 
+     * model. Stops at the first n-gram as the code is expected before the
+     * n-grams.
+     * @return the code or the base name of the file if no code is present
+     */
+    private static String readModelCode(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            String section = null;
+            for(LineIterator it = IOUtils.lineIterator(in, "UTF-8"); it.hasNext();){
+                String line = it.nextLine().trim();
+                if(line.isEmpty()){
+                    continue;
+                }
+                if(line.charAt(0) == '<' && line.charAt(line.length()-1) == '>'){
+                    section = line.charAt(1) == '/' ? null : 
+                        line.substring(1, line.length()-1).toLowerCase();
+                } else if(SECTION_CODE.equals(section)){
+                    return line;
+                } else if(section == null){ //first n-gram
+                    break;
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return FilenameUtils.getBaseName(file.getName());
+    }
+    
+    /**
+     * Reads the language entries of the Freeling language identification
+     * configuration. Entries are lines within the <code>&lt;Languages&gt;</code>
+     * section (or any line if no such section is present) with the path to
+     * the model optionally preceded by the language code.
+     * @return the entries as <code>[code, path]</code>. The code is 
+     * <code>null</code> if not present.
+     */
+    private static List<String[]> readLanguages(File config) throws IOException {
+        List<String[]> entries = new ArrayList<String[]>();
+        InputStream in = new FileInputStream(config);
+        try {
+            String section = null;
+            boolean sections = false;
+            for(LineIterator it = IOUtils.lineIterator(in, "UTF-8"); it.hasNext();){
+                String line = it.nextLine().trim();
+                if(line.isEmpty() || line.charAt(0) == '#'){
+                    continue;
+                }
+                if(line.charAt(0) == '<'){
+                    sections = true;
+                    section = line.charAt(1) == '/' ? null : 
+                        line.substring(1, line.length()-1).toLowerCase();
+                } else if(!sections || SECTION_LANGUAGES.equals(section)){
+                    String[] parts = StringUtils.split(line);
+                    entries.add(parts.length > 1 ? new String[]{parts[0], parts[1]} :
+                        new String[]{null, parts[0]});
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return entries;
+    }
+    /**
+     * Reads a Freeling language model. The language code and the order are
+     * read from the <code>&lt;Code&gt;</code> and <code>&lt;Order&gt;</code>
+     * sections if present. All other lines are parsed as 
+     * <code>{ngram} {count}</code>. If no code is present the parsed code
+     * or the base name of the file is used.
+     * @throws IOException if the model can not be read, contains lines that
+     * can not be parsed or n-grams with an order &gt; {@link #MAX_ORDER}
+     */
+    private static LanguageModel readModel(File file, String code) throws IOException {
+        LongIntTable table = new LongIntTable(1024);
+        int order = 0;
+        boolean[] orders = new boolean[MAX_ORDER+1];
+        Set<Character> chars = new HashSet<Character>();
+        InputStream in = new FileInputStream(file);
+        try {
+            String section = null;
+            int lineNumber = 0;
+            for(LineIterator it = IOUtils.lineIterator(in, "UTF-8"); it.hasNext();){
+                String line = StringUtils.stripEnd(it.nextLine(), "\r\n");
+                lineNumber++;
+                if(line.trim().isEmpty()){
+                    continue;
+                }
+                if(line.charAt(0) == '<' && line.charAt(line.length()-1) == '>'){
+                    section = line.charAt(1) == '/' ? null : 
+                        line.substring(1, line.length()-1).toLowerCase();
+                } else if(SECTION_CODE.equals(section)){
+                    code = line.trim();
+                } else if(SECTION_ORDER.equals(section)){
+                    try {
+                        order = Integer.parseInt(line.trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Unable to parse the order '" + line.trim()
+                            + "' of the language model " + file + " (line " + lineNumber + ")");
+                    }
+                    if(order < 1 || order > MAX_ORDER){
+                        throw new IOException("The order " + order + " of the language model "
+                            + file + " is not supported (supported: 1.." + MAX_ORDER + ")");
+                    }
+                } else {
+                    int split = Math.max(line.lastIndexOf(' '), line.lastIndexOf('\t'));
+                    if(split <= 0){
+                        throw new IOException("Unable to parse line " + lineNumber + " '" + line
+                            + "' of the language model " + file + " (expected: '{ngram} {count}')");
+                    }
+                    String ngram = line.substring(0, split).toLowerCase();
+                    if(ngram.length() > MAX_ORDER){
+                        throw new IOException("The " + ngram.length() + "-gram '" + ngram 
+                            + "' (line " + lineNumber + ") of the language model " + file 
+                            + " is not supported (max. order: " + MAX_ORDER + ")");
+                    }
+                    int count;
+                    try {
+                        count = Integer.parseInt(line.substring(split+1).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Unable to parse the count of line " + lineNumber
+                            + " '" + line + "' of the language model " + file 
+                            + " (expected: '{ngram} {count}')");
+                    }
+                    table.add(encode(ngram), count);
+                    orders[ngram.length()] = true;
+                    for(int i = 0; i < ngram.length(); i++){
+                        chars.add(ngram.charAt(i));
+                    }
+                    if(ngram.length() > order){
+                        order = ngram.length();
+                    }
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        if(code == null){
+            code = FilenameUtils.getBaseName(file.getName());
+        }
+        if(table.size == 0){
+            throw new IOException("The language model "+file+" for language '"
+                + code + "' does not contain any n-grams!");
+        }
+        if(order > 1 && !orders[order-1]){ //derive the counts of the prefixes
+            table.addPrefixes(order);
+        }
+        return new LanguageModel(code, order, chars.size(), table.compact());
+    }
+    
+    private static long encode(String ngram){
+        long key = 0;
+        for(int i = 0; i < ngram.length(); i++){
+            key = (key << 16) | ngram.charAt(i);
+        }
+        return key;
+    }
+    
+    /**
+     * The n-gram model of a single language
+     */
+    private static final class LanguageModel {
+        
+        final String language;
+        final int order;
+        /**
+         * The number of distinct chars (used for smoothing)
+         */
+        final int vocabulary;
+        /**
+         * The counts of the n-grams and (n-1)-grams (as prefixes of n-grams)
+         */
+        final LongIntTable table;
+        
+        LanguageModel(String language, int order, int vocabulary, LongIntTable table){
+            this.language = language;
+            this.order = order;
+            this.vocabulary = vocabulary;
+            this.table = table;
+        }
+        /**
+         * The log probability of the parsed normalized text
+         */
+        double score(char[] text){
+            double score = 0;
+            long mask = order >= 4 ? -1L : (1L << (16*order))-1;
+            long prefixMask = (1L << (16*(order-1)))-1;
+            long key = 0;
+            for(int i = 0; i < text.length; i++){
+                key = ((key << 16) | text[i]) & mask;
+                if(i+1 >= order){
+                    long prefix = key >>> 16 & prefixMask;
+                    int count = table.get(key);
+                    int prefixCount = table.get(prefix);
+                    score = score + Math.log((count + 1d)/(prefixCount + vocabulary));
+                }
+            }
+            return score;
+        }
+    }
+    
+    /**
+     * Open addressing hash table with primitive <code>long</code> keys and
+     * <code>int</code> values. Keys MUST NOT be <code>0</code>.
+     */
+    private static final class LongIntTable {
+        
+        private long[] keys;
+        private int[] values;
+        int size;
+        
+        LongIntTable(int capacity){
+            int c = Integer.highestOneBit(Math.max(capacity, 16)-1) << 1;
+            keys = new long[c];
+            values = new int[c];
+        }
+        
+        int get(long key){
+            int mask = keys.length-1;
+            for(int i = hash(key) & mask; keys[i] != 0; i = (i+1) & mask){
+                if(keys[i] == key){
+                    return values[i];
+                }
+            }
+            return 0;
+        }
+        
+        void add(long key, int count){
+            if((size+1)*2 > keys.length){
+                rehash(keys.length*2);
+            }
+            int mask = keys.length-1;
+            int i = hash(key) & mask;
+            while(keys[i] != 0 && keys[i] != key){
+                i = (i+1) & mask;
+            }
+            if(keys[i] == 0){
+                keys[i] = key;
+                size++;
+            }
+            values[i] = values[i] + count;
+        }
+        /**
+         * Adds the counts of all n-grams with the parsed order to their
+         * (n-1)-gram prefixes
+         */
+        void addPrefixes(int order){
+            long[] ngrams = keys.clone();
+            int[] counts = values.clone();
+            long min = 1L << (16*(order-1));
+            for(int i = 0; i < ngrams.length; i++){
+                //n-grams with the parsed order (keys are positive for order < 4)
+                if(ngrams[i] != 0 && (order >= 4 ? (ngrams[i] >>> 48) != 0 : ngrams[i] >= min)){
+                    add(ngrams[i] >>> 16, counts[i]);
+                }
+            }
+        }
+        /**
+         * Rehashes the table to a load factor of about 0.5
+         * @return this instance
+         */
+        LongIntTable compact(){
+            int c = Integer.highestOneBit(Math.max(size*2, 16)-1) << 1;
+            if(c < keys.length){
+                rehash(c);
+            }
+            return this;
+        }
+        
+        private void rehash(int capacity){
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            size = 0;
+            for(int i = 0; i < oldKeys.length; i++){
+                if(oldKeys[i] != 0){
+                    add(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        
+        private static int hash(long key){
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.impl;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+import io.insideout.stanbol.enhancer.nlp.freeling.BulkAnalyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link BulkAnalyzer} that executes the processing steps of an 
+ * {@link AnalyzerImpl} in a pipeline. Each step is executed by its own
+ * thread and steps are connected by bounded queues. As every step only
+ * uses its own Freeling components, different texts can be processed by
+ * different steps at the same time. This increases the throughput of a
+ * single {@link AnalyzerImpl} instance (and therefore the throughput per
+ * used native memory).<p>
+ * The steps are:<ol>
+ * <li> tokenizing and sentence detection
+ * <li> morphological analysis and POS tagging
+ * <li> NER, word sense disambiguation and sense labelling
+ * <li> chart and dependency parsing
+ * <li> conversion to the {@link AnalysedText}
+ * </ol>
+ */
+public class PipelinedAnalyzer implements BulkAnalyzer {
+
+    private final Logger log = LoggerFactory.getLogger(PipelinedAnalyzer.class);
+    
+    /**
+     * The default number of texts queued before each processing step
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 4;
+    /**
+     * The number of processing steps. Each step processes one text at a
+     * time, so this is the number of texts analysed concurrently
+     */
+    public static final int STAGE_COUNT = 5;
+    /**
+     * The interval used to check if this analyzer was closed while waiting
+     * for space in a full queue
+     */
+    private static final long ENQUEUE_CHECK_INTERVAL = 500;
+    
+    private final AnalyzerImpl analyzer;
+    private final BlockingQueue<Task> input;
+    /**
+     * Input for tokenized and sentence split texts
+     */
+    private final BlockingQueue<Task> tokenizedInput;
+    private final List<Stage> stages = new ArrayList<Stage>();
+    /**
+     * The number of submitted but not yet completed analyses
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a pipelined analyzer for the parsed {@link AnalyzerImpl}. The
+     * parsed instance MUST NOT be used by any other component and is closed
+     * by {@link #close()}.
+     * @param analyzer the analyzer
+     * @param queueSize the number of texts queued before each processing step
+     */
+    public PipelinedAnalyzer(AnalyzerImpl analyzer, int queueSize) {
+        if(analyzer == null){
+            throw new IllegalArgumentException("The parsed Analyzer MUST NOT be NULL!");
+        }
+        this.analyzer = analyzer;
+        if(queueSize <= 0){
+            queueSize = DEFAULT_QUEUE_SIZE;
+        }
+        BlockingQueue<Task> parsed = new ArrayBlockingQueue<Task>(queueSize);
+        BlockingQueue<Task> tagged = new ArrayBlockingQueue<Task>(queueSize);
+        BlockingQueue<Task> classified = new ArrayBlockingQueue<Task>(queueSize);
+        BlockingQueue<Task> tokenized = new ArrayBlockingQueue<Task>(queueSize);
+        input = new ArrayBlockingQueue<Task>(queueSize);
+        tokenizedInput = tokenized;
+        stages.add(new Stage("tokenize", input, tokenized) {
+            @Override
+            void process(Task task) {
+                PipelinedAnalyzer.this.analyzer.tokenize(task.state);
+            }
+        });
+        stages.add(new Stage("tag", tokenized, tagged) {
+            @Override
+            void process(Task task) {
+                PipelinedAnalyzer.this.analyzer.tag(task.state);
+            }
+        });
+        stages.add(new Stage("classify", tagged, classified) {
+            @Override
+            void process(Task task) {
+                PipelinedAnalyzer.this.analyzer.classify(task.state);
+            }
+        });
+        stages.add(new Stage("parse", classified, parsed) {
+            @Override
+            void process(Task task) {
+                PipelinedAnalyzer.this.analyzer.parse(task.state);
+            }
+        });
+        stages.add(new Stage("convert", parsed, null) {
+            @Override
+            void process(Task task) {
+                task.complete(PipelinedAnalyzer.this.analyzer.convert(task.state));
+            }
+        });
+        for(Stage stage : stages){
+            stage.start();
+        }
+    }
+    
+    @Override
+    public String getLanguage() {
+        return analyzer.getLanguage();
+    }
+    
+    @Override
+    public AnalysedText analyse(InputStream in, Charset charset) throws IOException {
+        return analyse(analyzer.createBlob(in, charset));
+    }
+    
+    @Override
+    public AnalysedText analyse(InputStream in, Charset charset, AnalysisContext context) throws IOException {
+        return analyse(analyzer.createBlob(in, charset), context);
+    }
+
+    @Override
+    public AnalysedText analyse(Blob blob) throws IOException {
+        return analyse(blob, null);
+    }
+
+    @Override
+    public AnalysedText analyse(Blob blob, AnalysisContext context) throws IOException {
+        try {
+            return submit(blob, context).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Analysis");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException){
+                throw (IOException)cause;
+            } else if(cause instanceof RuntimeException){
+                throw (RuntimeException)cause;
+            } else if(cause instanceof Error){
+                throw (Error)cause;
+            } else {
+                throw new IllegalStateException("Unable to analyse parsed Blob", cause);
+            }
+        }
+    }
+
+    @Override
+    public Future<AnalysedText> submit(Blob blob, AnalysisContext context) throws InterruptedException {
+        if(closed){
+            throw new IllegalStateException("This Analyzer was already closed!");
+        }
+        Task task;
+        try {
+            task = new Task(analyzer.init(blob, context), pending);
+        } catch (IOException e) {
+            task = new Task(null, pending);
+            task.fail(e);
+            return task;
+        }
+        enqueue(input, task);
+        return task;
+    }
+    @Override
+    public AnalysedText analyse(AnalysedText at, AnalysisContext context) {
+        try {
+            return submit(at, context).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the Analysis",e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException)cause;
+            } else if(cause instanceof Error){
+                throw (Error)cause;
+            } else {
+                throw new IllegalStateException("Unable to analyse parsed AnalysedText", cause);
+            }
+        }
+    }
+    
+    @Override
+    public Future<AnalysedText> submit(AnalysedText at, AnalysisContext context) throws InterruptedException {
+        if(closed){
+            throw new IllegalStateException("This Analyzer was already closed!");
+        }
+        //tokenized texts start with the morphological analysis
+        Task task = new Task(analyzer.init(at, context), pending);
+        enqueue(tokenizedInput, task);
+        return task;
+    }
+    /**
+     * Adds the parsed task to the parsed queue. Tasks that are added 
+     * while or after this analyzer is closed are failed as {@link #close()}
+     * might have already drained the queue.
+     */
+    private void enqueue(BlockingQueue<Task> queue, Task task) throws InterruptedException {
+        try {
+            while(!queue.offer(task, ENQUEUE_CHECK_INTERVAL, TimeUnit.MILLISECONDS)){
+                if(closed){ //stages are stopped and will not take tasks
+                    task.fail(new IllegalStateException("The Analyzer was closed!"));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            task.fail(e); //not queued
+            throw e;
+        }
+        if(closed){
+            queue.remove(task);
+            task.fail(new IllegalStateException("The Analyzer was closed!"));
+        }
+    }
+    /**
+     * The number of submitted analyses that are not yet completed
+     * @return the number of pending analyses
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+    /**
+     * If this analyzer was already closed
+     * @return the state
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+    /**
+     * Stops all processing steps, fails all pending analyses and closes the
+     * {@link AnalyzerImpl}.
+     */
+    public void close(){
+        if(closed){
+            return;
+        }
+        closed = true;
+        for(Stage stage : stages){
+            stage.interrupt();
+        }
+        for(Stage stage : stages){
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<Task> pending = new ArrayList<Task>();
+            stage.in.drainTo(pending);
+            for(Task task : pending){
+                task.fail(new IllegalStateException("The Analyzer was closed!"));
+            }
+        }
+        log.info("close pipelined Analyzer for language {}",analyzer.getLanguage());
+        analyzer.close();
+    }
+    
+    /**
+     * A processing step executed by its own thread
+     */
+    private abstract class Stage extends Thread {
+        
+        final BlockingQueue<Task> in;
+        final BlockingQueue<Task> out;
+
+        Stage(String name, BlockingQueue<Task> in, BlockingQueue<Task> out){
+            super("freeling-" + analyzer.getLanguage() + "-" + name);
+            setDaemon(true);
+            this.in = in;
+            this.out = out;
+        }
+        
+        abstract void process(Task task);
+        
+        @Override
+        public void run() {
+            while(!closed){
+                Task task;
+                try {
+                    task = in.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if(task.isDone()){ //failed or cancelled
+                    continue;
+                }
+                try {
+                    process(task);
+                    if(out != null){
+                        out.put(task);
+                    }
+                } catch (InterruptedException e) {
+                    task.fail(new IllegalStateException("The Analyzer was closed!"));
+                    break;
+                } catch (RuntimeException e) {
+                    log.warn("Error while processing step '"+getName()+"'",e);
+                    task.fail(e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * A pending analysis. Also used as {@link Future} for the 
+     * {@link AnalysedText}
+     */
+    private static class Task implements Future<AnalysedText> {
+        
+        final AnalysisState state;
+        private final AtomicInteger pending;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private AnalysedText result;
+        private Throwable error;
+        private boolean cancelled;
+        
+        Task(AnalysisState state, AtomicInteger pending){
+            this.state = state;
+            this.pending = pending;
+            pending.incrementAndGet();
+        }
+        
+        synchronized void complete(AnalysedText at){
+            if(!isDone()){
+                result = at;
+                finish();
+            }
+        }
+        
+        synchronized void fail(Throwable t){
+            if(!isDone()){
+                error = t;
+                finish();
+            }
+        }
+        
+        private void finish(){
+            done.countDown();
+            pending.decrementAndGet();
+        }
+        
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if(isDone()){
+                return false;
+            }
+            cancelled = true;
+            finish();
+            return true;
+        }
+        
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+        
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+        
+        @Override
+        public AnalysedText get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+        
+        @Override
+        public AnalysedText get(long timeout, TimeUnit unit) throws InterruptedException,
+                ExecutionException, TimeoutException {
+            if(!done.await(timeout, unit)){
+                throw new TimeoutException();
+            }
+            return report();
+        }
+        
+        private synchronized AnalysedText report() throws ExecutionException {
+            if(cancelled){
+                throw new CancellationException();
+            }
+            if(error != null){
+                throw new ExecutionException(error);
+            }
+            return result;
+        }
+    }
+}
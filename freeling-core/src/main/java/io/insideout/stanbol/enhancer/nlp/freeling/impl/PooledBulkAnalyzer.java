@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.impl;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+import io.insideout.stanbol.enhancer.nlp.freeling.Analyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.BulkAnalyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.PoolTimeoutException;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+
+/**
+ * {@link BulkAnalyzer} that uses {@link Analyzer}s borrowed from a
+ * {@link ResourcePool}. Used if Analyzers can not be pipelined (e.g.
+ * because analyses are executed by worker processes).
+ */
+public class PooledBulkAnalyzer implements BulkAnalyzer {
+
+    private final String language;
+    private final ResourcePool<Analyzer> pool;
+    private final ExecutorService executor;
+    private final long maxWaitTime;
+    private final Semaphore pending;
+
+    /**
+     * Creates a bulk analyzer for the parsed pool
+     * @param language the language of the Analyzers
+     * @param pool the pool with the Analyzers
+     * @param executor the executor used to process submitted analyses
+     * @param maxWaitTime the maximum time to wait for an Analyzer
+     * @param maxPending the maximum number of pending analyses
+     */
+    public PooledBulkAnalyzer(String language, ResourcePool<Analyzer> pool,
+            ExecutorService executor, long maxWaitTime, int maxPending) {
+        if(pool == null){
+            throw new IllegalArgumentException("The parsed ResourcePool MUST NOT be NULL!");
+        }
+        if(executor == null){
+            throw new IllegalArgumentException("The parsed ExecutorService MUST NOT be NULL!");
+        }
+        this.language = language;
+        this.pool = pool;
+        this.executor = executor;
+        this.maxWaitTime = maxWaitTime;
+        this.pending = new Semaphore(maxPending <= 0 ?
+                PipelinedAnalyzer.DEFAULT_QUEUE_SIZE : maxPending);
+    }
+
+    @Override
+    public String getLanguage() {
+        return language;
+    }
+
+    @Override
+    public AnalysedText analyse(InputStream in, Charset charset) throws IOException {
+        return analyse(in, charset, null);
+    }
+
+    @Override
+    public AnalysedText analyse(InputStream in, Charset charset, AnalysisContext context) throws IOException {
+        Analyzer analyzer = borrow();
+        try {
+            return analyzer.analyse(in, charset, context);
+        } finally {
+            pool.returnResource(analyzer);
+        }
+    }
+
+    @Override
+    public AnalysedText analyse(Blob blob) throws IOException {
+        return analyse(blob, null);
+    }
+
+    @Override
+    public AnalysedText analyse(Blob blob, AnalysisContext context) throws IOException {
+        Analyzer analyzer = borrow();
+        try {
+            return analyzer.analyse(blob, context);
+        } finally {
+            pool.returnResource(analyzer);
+        }
+    }
+
+    @Override
+    public AnalysedText analyse(AnalysedText at, AnalysisContext context) {
+        Analyzer analyzer;
+        try {
+            analyzer = borrow();
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        try {
+            return analyzer.analyse(at, context);
+        } finally {
+            pool.returnResource(analyzer);
+        }
+    }
+
+    @Override
+    public Future<AnalysedText> submit(final Blob blob, final AnalysisContext context) throws InterruptedException {
+        pending.acquire();
+        try {
+            return executor.submit(new Callable<AnalysedText>() {
+                @Override
+                public AnalysedText call() throws Exception {
+                    try {
+                        return analyse(blob, context);
+                    } finally {
+                        pending.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Future<AnalysedText> submit(final AnalysedText at, final AnalysisContext context) throws InterruptedException {
+        pending.acquire();
+        try {
+            return executor.submit(new Callable<AnalysedText>() {
+                @Override
+                public AnalysedText call() throws Exception {
+                    try {
+                        return analyse(at, context);
+                    } finally {
+                        pending.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    private Analyzer borrow() throws IOException {
+        try {
+            Analyzer analyzer = pool.getResource(maxWaitTime);
+            if(analyzer == null){
+                throw new InterruptedIOException("Interrupted while waiting for an Analyzer");
+            }
+            return analyzer;
+        } catch (PoolTimeoutException e) {
+            throw new IOException("Unable to obtain an Analyzer for language '"
+                + language + "' (message: " + e.getMessage() + ")");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.impl;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisLayer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps running averages of the processing time per word of the 
+ * {@link AnalysisLayer}s for a single language. Used by the 
+ * {@link AnalyzerImpl} to estimate if an optional layer can be processed
+ * within the time budget of an analysis. In addition it counts the
+ * sentences that where cut because they exceeded the maximum sentence
+ * length.<p>
+ * Instances are shared by all {@link AnalyzerImpl}s of a language and
+ * are therefore thread safe.
+ */
+public class StageStatistics {
+
+    /**
+     * The weight of a new sample for the exponential moving average
+     */
+    private static final double DEFAULT_ALPHA = 0.2;
+    /**
+     * Texts with less words are ignored as the fixed costs would dominate
+     * the per word costs
+     */
+    private static final int MIN_WORDS = 20;
+    
+    private final String language;
+    /**
+     * The average time per word in ms. Index is the {@link AnalysisLayer#ordinal()}
+     */
+    private final double[] timePerWord;
+    private final long[] samples;
+    
+    private final AtomicLong longSentences = new AtomicLong();
+    
+    public StageStatistics(String language){
+        if(language == null){
+            throw new IllegalArgumentException("The parsed language MUST NOT be NULL!");
+        }
+        this.language = language;
+        this.timePerWord = new double[AnalysisLayer.values().length];
+        this.samples = new long[AnalysisLayer.values().length];
+    }
+    
+    public final String getLanguage() {
+        return language;
+    }
+    /**
+     * Adds a sample for the parsed layer
+     * @param layer the layer
+     * @param words the number of words of the processed text
+     * @param time the processing time in ms
+     */
+    public void update(AnalysisLayer layer, long words, long time){
+        if(words < MIN_WORDS || time < 0){
+            return;
+        }
+        double sample = time/(double)words;
+        int i = layer.ordinal();
+        synchronized (timePerWord) {
+            timePerWord[i] = samples[i] == 0 ? sample :
+                timePerWord[i] + DEFAULT_ALPHA * (sample - timePerWord[i]);
+            samples[i]++;
+        }
+    }
+    /**
+     * Estimates the processing time for the parsed layer
+     * @param layer the layer
+     * @param words the number of words of the text
+     * @return the estimated time in ms or <code>-1</code> if no samples are
+     * available for this layer
+     */
+    public long estimate(AnalysisLayer layer, long words){
+        int i = layer.ordinal();
+        synchronized (timePerWord) {
+            return samples[i] == 0 ? -1 : Math.round(timePerWord[i]*words);
+        }
+    }
+    
+    /**
+     * Increments the number of sentences that where cut because they 
+     * exceeded the maximum sentence length
+     */
+    public void addLongSentence(){
+        longSentences.incrementAndGet();
+    }
+    /**
+     * The number of sentences that where cut because they exceeded the
+     * maximum sentence length
+     * @return the number of cut sentences
+     */
+    public long getLongSentenceCount(){
+        return longSentences.get();
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("StageStatistics[").append(language);
+        synchronized (timePerWord) {
+            for(AnalysisLayer layer : AnalysisLayer.values()){
+                if(samples[layer.ordinal()] > 0){
+                    sb.append("| ").append(layer).append(": ")
+                        .append(Math.round(timePerWord[layer.ordinal()]*1000)/1000d)
+                        .append("ms/word");
+                }
+            }
+        }
+        return sb.append("| long sentences: ").append(longSentences.get())
+                .append(']').toString();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.mappings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TagMapper} configured by the rules defined in tag mapping files
+ * (see {@link TagMappings}). Supported are
+ * <ul>
+ * <li> prefix rules: tags starting with the prefix are mapped to the prefix
+ * (e.g. <code>NP00SP0</code> to <code>NP</code>)
+ * <li> truncate rules: tags starting with one of the configured characters
+ * are cut to the configured length (e.g. <code>VMIP3S0</code> to 
+ * <code>VMI</code>)
+ * <li> a replacement for empty tags
+ * </ul>
+ * Prefix rules are evaluated before truncate rules. Tags not matched by any
+ * rule are returned unchanged.
+ */
+public final class RuleTagMapper implements TagMapper {
+
+    private final List<String> prefixes;
+    private final Map<Character,Integer> lengths;
+    private final String emptyTag;
+
+    RuleTagMapper(List<String> prefixes, Map<Character,Integer> lengths, String emptyTag){
+        this.prefixes = prefixes == null ? Collections.<String>emptyList() :
+            Collections.unmodifiableList(new ArrayList<String>(prefixes));
+        this.lengths = lengths == null ? Collections.<Character,Integer>emptyMap() :
+            Collections.unmodifiableMap(new HashMap<Character,Integer>(lengths));
+        this.emptyTag = emptyTag;
+    }
+
+    @Override
+    public String map(String tag) {
+        if(tag == null){
+            return tag;
+        }
+        if(tag.isEmpty()){
+            return emptyTag != null ? emptyTag : tag;
+        }
+        for(String prefix : prefixes){
+            if(tag.startsWith(prefix)){
+                return prefix;
+            }
+        }
+        Integer length = lengths.get(tag.charAt(0));
+        if(length != null && tag.length() > length){
+            return tag.substring(0, length);
+        }
+        return tag;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleTagMapper [prefixes=" + prefixes + ", lengths=" + lengths
+                + ", emptyTag=" + emptyTag + "]";
+    }
+}
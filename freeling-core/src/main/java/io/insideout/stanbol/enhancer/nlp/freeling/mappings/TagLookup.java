@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.mappings;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.stanbol.enhancer.nlp.model.tag.TagSet;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled lookup of the {@link PosTag}s, {@link PhraseTag}s and
+ * {@link NerTag}s for a single language.<p>
+ * The raw tags as returned by Freeling are resolved only once (by applying
+ * the {@link TagMapper} and looking up the {@link TagSet}) and the resolved
+ * Tag instances are stored in concurrent maps keyed by the raw tag. Because
+ * Freeling tag inventories are finite this means that after warming up
+ * a lookup is a single (lock free) map access and the {@link TagMapper}
+ * is no longer called. Phrase and NER tags are not mapped and therefore
+ * pre-compiled with the tags of their {@link TagSet}s. POS tags are compiled
+ * the first time a raw tag is encountered, as the {@link TagSet} only 
+ * contains the mapped tags. Tags missing in the {@link TagSet}s are
+ * compiled to adhoc Tags.<p>
+ * If the {@link TagMappings} are reloaded the compiled tables are replaced
+ * by an atomic swap. Lookups running concurrently to a reload complete
+ * against the old tables.<p>
+ * Instances are thread safe and shared by all Analyzers of a language. Use
+ * {@link TagSetRegistry#getTagLookup(String)} to obtain them.
+ */
+public final class TagLookup {
+
+    private final Logger log = LoggerFactory.getLogger(TagLookup.class);
+
+    private final String language;
+    /**
+     * The currently used compiled tables
+     */
+    private volatile Tables tables;
+
+    TagLookup(String language, TagMappings mappings){
+        if(language == null || language.isEmpty()){
+            throw new IllegalArgumentException("The parsed language MUST NOT be NULL nor an empty String");
+        }
+        this.language = language;
+        update(mappings);
+    }
+    /**
+     * Compiles the tables for the parsed mappings and replaces the current
+     * ones.
+     * @param mappings the mappings
+     */
+    void update(TagMappings mappings){
+        if(mappings == null){
+            throw new IllegalArgumentException("The parsed TagMappings MUST NOT be NULL!");
+        }
+        tables = new Tables(mappings);
+    }
+    /**
+     * @return the language of this lookup
+     */
+    public String getLanguage() {
+        return language;
+    }
+    /**
+     * Getter for the {@link PosTag} for the raw tag as returned by Freeling
+     * @param rawTag the raw tag
+     * @return the {@link PosTag}. An adhoc {@link PosTag} if the tag is not
+     * part of the {@link TagSet} of the language.
+     * @throws NullPointerException if <code>null</code> is parsed as tag
+     */
+    public PosTag getPosTag(String rawTag){
+        return tables.getPosTag(rawTag);
+    }
+    /**
+     * Getter for the {@link PhraseTag} for the parsed tag. Phrase tags not
+     * present in the {@link TagSet} are created based on the {@link PosTag}
+     * of the parsed tag.
+     * @param rawTag the raw tag
+     * @return the {@link PhraseTag}
+     * @throws NullPointerException if <code>null</code> is parsed as tag
+     */
+    public PhraseTag getPhraseTag(String rawTag){
+        return tables.getPhraseTag(rawTag);
+    }
+    /**
+     * Getter for the {@link NerTag} for the parsed tag.
+     * @param rawTag the raw tag
+     * @return the {@link NerTag}. An adhoc {@link NerTag} if the tag is not
+     * part of the {@link TagSet} of the language.
+     * @throws NullPointerException if <code>null</code> is parsed as tag
+     */
+    public NerTag getNerTag(String rawTag){
+        return tables.getNerTag(rawTag);
+    }
+    /**
+     * Getter for the {@link PosTag} for a tag already mapped by the 
+     * {@link TagMapper} (e.g. the tag of a {@link PosTag} decoded from an
+     * {@link io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextCodec encoded}
+     * analysis). The {@link TagMapper} is not applied.
+     * @param tag the mapped tag
+     * @return the {@link PosTag}. An adhoc {@link PosTag} if the tag is not
+     * part of the {@link TagSet} of the language.
+     * @throws NullPointerException if <code>null</code> is parsed as tag
+     */
+    public PosTag getMappedPosTag(String tag){
+        return tables.getMappedPosTag(tag);
+    }
+    /**
+     * Getter for the {@link PhraseTag} for a tag as returned by
+     * {@link PhraseTag#getTag()}. Unlike {@link #getPhraseTag(String)} 
+     * phrase tags not present in the {@link TagSet} are created based on the
+     * {@link #getMappedPosTag(String) mapped PosTag}.
+     * @param tag the tag
+     * @return the {@link PhraseTag}
+     * @throws NullPointerException if <code>null</code> is parsed as tag
+     */
+    public PhraseTag getMappedPhraseTag(String tag){
+        return tables.getMappedPhraseTag(tag);
+    }
+    /**
+     * @return the number of compiled raw POS tags
+     */
+    public int getPosTagCount(){
+        return tables.posTags.size();
+    }
+
+    @Override
+    public String toString() {
+        Tables tables = this.tables;
+        return "TagLookup [language=" + language + ", posTags=" + tables.posTags.size()
+                + ", phraseTags=" + tables.phraseTags.size() + ", nerTags=" 
+                + tables.nerTags.size() + "]";
+    }
+
+    /**
+     * The tables compiled for a {@link TagMappings} instance.
+     */
+    private final class Tables {
+
+        private final TagSet<PosTag> posTagSet;
+        private final TagMapper posTagMapper;
+        private final TagSet<PhraseTag> phraseTagSet;
+        private final TagSet<NerTag> nerTagSet;
+        /**
+         * Raw POS tags to the resolved {@link PosTag}
+         */
+        private final ConcurrentMap<String,PosTag> posTags = new ConcurrentHashMap<String,PosTag>();
+        /**
+         * Adhoc {@link PosTag}s by mapped tag. Ensures that multiple raw tags
+         * mapped to the same unknown tag share a single adhoc {@link PosTag}.
+         */
+        private final ConcurrentMap<String,PosTag> adhocPosTags = new ConcurrentHashMap<String,PosTag>();
+        private final ConcurrentMap<String,PhraseTag> phraseTags = new ConcurrentHashMap<String,PhraseTag>();
+        /**
+         * {@link PhraseTag}s by the tag of the {@link PhraseTag}
+         */
+        private final ConcurrentMap<String,PhraseTag> mappedPhraseTags = new ConcurrentHashMap<String,PhraseTag>();
+        private final ConcurrentMap<String,NerTag> nerTags = new ConcurrentHashMap<String,NerTag>();
+
+        Tables(TagMappings mappings){
+            posTagSet = mappings.getPosTagSet(language);
+            posTagMapper = mappings.getPosTagMapper(language);
+            phraseTagSet = mappings.getPhraseTagSet(language);
+            nerTagSet = mappings.getNerTagSet(language);
+            //pre-compile the tags of the TagSets. Not possible for POS tags
+            //as the raw tags are only known after mapping
+            if(phraseTagSet != null){
+                for(PhraseTag phraseTag : phraseTagSet){
+                    phraseTags.put(phraseTag.getTag(), phraseTag);
+                }
+            }
+            if(nerTagSet != null){
+                for(NerTag nerTag : nerTagSet){
+                    nerTags.put(nerTag.getTag(), nerTag);
+                }
+            }
+        }
+
+        PosTag getPosTag(String rawTag){
+            PosTag posTag = posTags.get(rawTag);
+            return posTag != null ? posTag : compilePosTag(rawTag);
+        }
+
+        PhraseTag getPhraseTag(String rawTag){
+            PhraseTag phraseTag = phraseTags.get(rawTag);
+            return phraseTag != null ? phraseTag : compilePhraseTag(rawTag);
+        }
+
+        NerTag getNerTag(String rawTag){
+            NerTag nerTag = nerTags.get(rawTag);
+            return nerTag != null ? nerTag : compileNerTag(rawTag);
+        }
+
+        PosTag getMappedPosTag(String tag){
+            PosTag posTag = posTagSet != null ? posTagSet.getTag(tag) : null;
+            return posTag != null ? posTag : getAdhocPosTag(tag, tag);
+        }
+
+        PhraseTag getMappedPhraseTag(String tag){
+            PhraseTag phraseTag = phraseTagSet != null ? phraseTagSet.getTag(tag) : null;
+            if(phraseTag == null){
+                phraseTag = mappedPhraseTags.get(tag);
+            }
+            if(phraseTag == null){
+                PosTag posTag = getMappedPosTag(tag);
+                phraseTag = posTag.getCategories().isEmpty() ? new PhraseTag(tag) :
+                    new PhraseTag(tag, posTag.getCategories().iterator().next());
+                PhraseTag current = mappedPhraseTags.putIfAbsent(tag, phraseTag);
+                if(current != null){
+                    phraseTag = current;
+                }
+            }
+            return phraseTag;
+        }
+
+        private PosTag compilePosTag(String rawTag) {
+            String tag = posTagMapper != null ? posTagMapper.map(rawTag) : rawTag;
+            PosTag posTag = posTagSet != null ? posTagSet.getTag(tag) : null;
+            if(posTag == null){
+                posTag = getAdhocPosTag(tag, rawTag);
+            }
+            PosTag current = posTags.putIfAbsent(rawTag, posTag);
+            return current != null ? current : posTag;
+        }
+
+        private PosTag getAdhocPosTag(String tag, String rawTag){
+            PosTag posTag = adhocPosTags.get(tag);
+            if(posTag == null){
+                PosTag adhoc = new PosTag(tag);
+                posTag = adhocPosTags.putIfAbsent(tag, adhoc);
+                if(posTag == null){
+                    log.warn("Unmapped POS tag '{}' (unmapped: {}) for language '{}' and Tagset '{}'",
+                        new Object[]{tag, rawTag, language, posTagSet != null ? posTagSet.getName() : "<<none>>"});
+                    posTag = adhoc;
+                }
+            }
+            return posTag;
+        }
+
+        private PhraseTag compilePhraseTag(String rawTag){
+            PhraseTag phraseTag;
+            //try to create phrase tag based on the PosTag for the parsed tag
+            PosTag posTag = getPosTag(rawTag);
+            if(posTag != null && !posTag.getCategories().isEmpty()){
+                phraseTag = new PhraseTag(posTag.getTag(),posTag.getCategories().iterator().next());
+            } else {
+                phraseTag = new PhraseTag(rawTag);
+            }
+            PhraseTag current = phraseTags.putIfAbsent(rawTag, phraseTag);
+            if(current == null && phraseTag.getCategory() == null){
+                log.warn("Unmapped Phrase tag '{}' for language '{}' and Tagset '{}'",
+                    new Object[]{rawTag, language, phraseTagSet != null ? phraseTagSet.getName() : "<<none>>"});
+            }
+            return current != null ? current : phraseTag;
+        }
+
+        private NerTag compileNerTag(String rawTag){
+            NerTag nerTag = new NerTag(rawTag);
+            NerTag current = nerTags.putIfAbsent(rawTag, nerTag);
+            if(current == null){
+                log.warn("Unmapped NER tag '{}' for language '{}' and Tagset '{}'",
+                    new Object[]{rawTag, language, nerTagSet != null ? nerTagSet.getName() : "<<none>>"});
+            }
+            return current != null ? current : nerTag;
+        }
+    }
+}
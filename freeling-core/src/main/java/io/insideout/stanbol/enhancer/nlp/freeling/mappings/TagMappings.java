@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.mappings;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.commons.io.IOUtils;
+import org.apache.stanbol.enhancer.nlp.model.tag.Tag;
+import org.apache.stanbol.enhancer.nlp.model.tag.TagSet;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+
+/**
+ * Immutable set of {@link TagSet}s and {@link TagMapper}s loaded from tag
+ * mapping files.<p>
+ * The tag mapping files to load are listed by the {@link #INDEX_FILE}. Files
+ * are looked up in the (optional) mapping directory first and in the
+ * {@link #DEFAULT_MAPPINGS_PATH} on the classpath second. This allows to
+ * override single files as well as the index itself.<p>
+ * Tag mapping files are UTF-8 encoded, line based text files. <code>#</code>
+ * starts a comment. The following directives are supported:
+ * <ul>
+ * <li> <code>@name {name}</code>: the name of the {@link TagSet}
+ * <li> <code>@type pos|phrase|ner</code>: the type of the Tags (default: pos).
+ * MUST BE defined before the first tag.
+ * <li> <code>@languages {lang} ...</code>: the languages (required)
+ * <li> <code>@include {file}</code>: adds the tags defined by the parsed file
+ * <li> <code>@prefix {prefix}</code>: maps POS tags starting with the prefix
+ * to the prefix
+ * <li> <code>@truncate {chars} {length}</code>: cuts POS tags starting with
+ * one of the parsed characters to the parsed length
+ * <li> <code>@empty {tag}</code>: the tag used for empty POS tags
+ * </ul>
+ * All other lines define a tag followed by its values:
+ * <code>{@link LexicalCategory}.{name}</code> and <code>{@link Pos}.{name}</code>
+ * for POS tags, <code>{@link LexicalCategory}.{name}</code> for phrase tags and
+ * the URI of the type for NER tags. Files without tags only define a
+ * {@link TagMapper} for the languages.
+ */
+public final class TagMappings {
+
+    /**
+     * The classpath location of the default tag mapping files
+     */
+    public static final String DEFAULT_MAPPINGS_PATH = "io/insideout/stanbol/enhancer/nlp/freeling/mappings/";
+    /**
+     * The name of the file listing the tag mapping files to load
+     */
+    public static final String INDEX_FILE = "tagsets.txt";
+
+    private static final String CHARSET = "UTF-8";
+
+    private static enum Type { pos, phrase, ner }
+
+    private final File directory;
+    private final long loadTime;
+    private final List<String> sources = new ArrayList<String>();
+    private final Map<String,TagSet<PosTag>> posModels = new HashMap<String,TagSet<PosTag>>();
+    private final Map<String,TagSet<PhraseTag>> phraseModels = new HashMap<String,TagSet<PhraseTag>>();
+    private final Map<String,TagSet<NerTag>> nerModels = new HashMap<String,TagSet<NerTag>>();
+    private final Map<String,TagMapper> posTagMappers = new HashMap<String,TagMapper>();
+
+    private TagMappings(File directory){
+        this.directory = directory;
+        this.loadTime = System.currentTimeMillis();
+    }
+    /**
+     * Loads the tag mappings
+     * @param directory the directory with tag mapping files overriding the
+     * defaults or <code>null</code> to load the default mappings
+     * @return the loaded mappings
+     * @throws IOException if the parsed directory does not exist or on any
+     * error while reading or parsing a tag mapping file
+     */
+    public static TagMappings load(File directory) throws IOException {
+        if(directory != null && !directory.isDirectory()){
+            throw new IOException("The parsed tag mapping directory '"
+                + directory + "' does not exist or is not a directory!");
+        }
+        TagMappings mappings = new TagMappings(directory);
+        for(String line : mappings.readLines(INDEX_FILE)){
+            String name = stripComment(line);
+            if(!name.isEmpty()){
+                mappings.parse(name);
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * @return the directory overriding the default mappings or
+     * <code>null</code> if the default mappings are used
+     */
+    public File getDirectory() {
+        return directory;
+    }
+    /**
+     * @return the time when those mappings where loaded
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+    /**
+     * @return the locations of the loaded tag mapping files
+     */
+    public List<String> getSources() {
+        return Collections.unmodifiableList(sources);
+    }
+    /**
+     * @return the languages with any mapping
+     */
+    public Set<String> getLanguages(){
+        Set<String> languages = new TreeSet<String>(posModels.keySet());
+        languages.addAll(posTagMappers.keySet());
+        languages.addAll(phraseModels.keySet());
+        languages.addAll(nerModels.keySet());
+        return languages;
+    }
+
+    public TagSet<PosTag> getPosTagSet(String language){
+        return posModels.get(language);
+    }
+
+    public TagMapper getPosTagMapper(String language){
+        return posTagMappers.get(language);
+    }
+
+    public TagSet<PhraseTag> getPhraseTagSet(String language){
+        return phraseModels.get(language);
+    }
+
+    public TagSet<NerTag> getNerTagSet(String language){
+        return nerModels.get(language);
+    }
+
+    /**
+     * Reads the lines of a tag mapping file
+     * @param name the name of the file
+     * @return the lines
+     * @throws IOException if the file was not found or could not be read
+     */
+    private List<String> readLines(String name) throws IOException {
+        InputStream in;
+        String source;
+        File file = directory == null ? null : new File(directory, name);
+        if(file != null && file.isFile()){
+            in = new FileInputStream(file);
+            source = file.getAbsolutePath();
+        } else {
+            in = TagMappings.class.getClassLoader().getResourceAsStream(
+                DEFAULT_MAPPINGS_PATH + name);
+            source = "classpath:" + DEFAULT_MAPPINGS_PATH + name;
+        }
+        if(in == null){
+            throw new IOException("Tag mapping file '" + name + "' not found (directory: "
+                + directory + ", classpath: " + DEFAULT_MAPPINGS_PATH + ")!");
+        }
+        try {
+            List<String> lines = IOUtils.readLines(in, CHARSET);
+            if(!sources.contains(source)){
+                sources.add(source);
+            }
+            return lines;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private void parse(String name) throws IOException {
+        String tagSetName = name;
+        Type type = Type.pos;
+        String[] languages = null;
+        List<String> prefixes = new ArrayList<String>();
+        Map<Character,Integer> lengths = new HashMap<Character,Integer>();
+        String emptyTag = null;
+        Map<String,Tag<?>> tags = new LinkedHashMap<String,Tag<?>>();
+        int lineNumber = 0;
+        for(String line : readLines(name)){
+            lineNumber++;
+            line = stripComment(line);
+            if(line.isEmpty()){
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if(parts[0].equals("@name")){
+                tagSetName = line.substring(parts[0].length()).trim();
+            } else if(parts[0].equals("@type")){
+                if(!tags.isEmpty()){
+                    throw error(name, lineNumber, "@type MUST BE defined before the first tag");
+                }
+                try {
+                    type = Type.valueOf(getValue(parts, name, lineNumber));
+                } catch (IllegalArgumentException e) {
+                    throw error(name, lineNumber, "unknown type '" + parts[1] + "'");
+                }
+            } else if(parts[0].equals("@languages")){
+                getValue(parts, name, lineNumber);
+                languages = new String[parts.length - 1];
+                System.arraycopy(parts, 1, languages, 0, languages.length);
+            } else if(parts[0].equals("@include")){
+                String include = getValue(parts, name, lineNumber);
+                int includeLine = 0;
+                for(String included : readLines(include)){
+                    includeLine++;
+                    included = stripComment(included);
+                    if(included.isEmpty()){
+                        continue;
+                    }
+                    if(included.charAt(0) == '@'){
+                        throw error(include, includeLine, "included files MUST only define tags");
+                    }
+                    addTag(tags, parseTag(type, included.split("\\s+"), include, includeLine), include, includeLine);
+                }
+            } else if(parts[0].equals("@prefix")){
+                prefixes.add(getValue(parts, name, lineNumber));
+            } else if(parts[0].equals("@truncate")){
+                if(parts.length != 3){
+                    throw error(name, lineNumber, "@truncate requires the characters and the length");
+                }
+                int length;
+                try {
+                    length = Integer.parseInt(parts[2]);
+                } catch (NumberFormatException e) {
+                    throw error(name, lineNumber, "invalid length '" + parts[2] + "'");
+                }
+                for(char c : parts[1].toCharArray()){
+                    lengths.put(c, length);
+                }
+            } else if(parts[0].equals("@empty")){
+                emptyTag = getValue(parts, name, lineNumber);
+            } else if(parts[0].charAt(0) == '@'){
+                throw error(name, lineNumber, "unknown directive '" + parts[0] + "'");
+            } else {
+                addTag(tags, parseTag(type, parts, name, lineNumber), name, lineNumber);
+            }
+        }
+        if(languages == null){
+            throw error(name, lineNumber, "missing @languages");
+        }
+        if(type != Type.pos && (!prefixes.isEmpty() || !lengths.isEmpty() || emptyTag != null)){
+            throw error(name, lineNumber, "@prefix, @truncate and @empty are only "
+                + "supported for POS tags");
+        }
+        if(!prefixes.isEmpty() || !lengths.isEmpty() || emptyTag != null){
+            register(posTagMappers, new RuleTagMapper(prefixes, lengths, emptyTag), languages, name);
+        }
+        if(tags.isEmpty()){
+            return; //only a TagMapper
+        }
+        switch (type) {
+            case pos:
+                register(posModels, createTagSet(tagSetName, languages, tags, PosTag.class), languages, name);
+                break;
+            case phrase:
+                register(phraseModels, createTagSet(tagSetName, languages, tags, PhraseTag.class), languages, name);
+                break;
+            case ner:
+                register(nerModels, createTagSet(tagSetName, languages, tags, NerTag.class), languages, name);
+                break;
+        }
+    }
+
+    private static <T extends Tag<T>> TagSet<T> createTagSet(String name, String[] languages,
+            Map<String,Tag<?>> tags, Class<T> type){
+        TagSet<T> tagSet = new TagSet<T>(name, languages);
+        for(Tag<?> tag : tags.values()){
+            tagSet.addTag(type.cast(tag));
+        }
+        return tagSet;
+    }
+
+    private static <T> void register(Map<String,T> map, T value, String[] languages, String name) throws IOException {
+        for(String lang : languages){
+            if(map.containsKey(lang)){
+                throw new IOException("Tag mapping file '" + name + "' defines a "
+                    + value.getClass().getSimpleName() + " for language '" + lang
+                    + "' that is already defined by an other file!");
+            }
+            map.put(lang, value);
+        }
+    }
+
+    private static void addTag(Map<String,Tag<?>> tags, Tag<?> tag, String name, int lineNumber) throws IOException {
+        if(tags.put(tag.getTag(), tag) != null){
+            throw error(name, lineNumber, "duplicate tag '" + tag.getTag() + "'");
+        }
+    }
+
+    private static Tag<?> parseTag(Type type, String[] parts, String name, int lineNumber) throws IOException {
+        String tag = parts[0];
+        switch (type) {
+            case pos:
+                LexicalCategory category = null;
+                Set<Pos> pos = new HashSet<Pos>();
+                for(int i = 1; i < parts.length; i++){
+                    if(parts[i].startsWith("LexicalCategory.") && category == null){
+                        category = parseEnum(LexicalCategory.class, parts[i], name, lineNumber);
+                    } else if(parts[i].startsWith("Pos.")){
+                        pos.add(parseEnum(Pos.class, parts[i], name, lineNumber));
+                    } else {
+                        throw error(name, lineNumber, "invalid value '" + parts[i]
+                            + "' (expected a single LexicalCategory.{name} and any number of Pos.{name})");
+                    }
+                }
+                Pos[] posArray = pos.toArray(new Pos[pos.size()]);
+                if(category != null){
+                    return new PosTag(tag, category, posArray);
+                } else if(posArray.length > 0){
+                    return new PosTag(tag, posArray);
+                } else {
+                    return new PosTag(tag);
+                }
+            case phrase:
+                if(parts.length > 2){
+                    throw error(name, lineNumber, "phrase tags support a single LexicalCategory");
+                }
+                return parts.length > 1 ? new PhraseTag(tag,
+                    parseEnum(LexicalCategory.class, parts[1], name, lineNumber)) :
+                        new PhraseTag(tag);
+            case ner:
+                if(parts.length > 2){
+                    throw error(name, lineNumber, "NER tags support a single type URI");
+                }
+                return parts.length > 1 ? new NerTag(tag, new UriRef(parts[1])) :
+                    new NerTag(tag);
+            default:
+                throw new IllegalStateException("Unsupported type " + type);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String name, int lineNumber) throws IOException {
+        String prefix = type.getSimpleName() + '.';
+        if(!value.startsWith(prefix)){
+            throw error(name, lineNumber, "invalid value '" + value + "' (expected " + prefix + "{name})");
+        }
+        try {
+            return Enum.valueOf(type, value.substring(prefix.length()));
+        } catch (IllegalArgumentException e) {
+            throw error(name, lineNumber, "unknown " + type.getSimpleName() + " '" + value + "'");
+        }
+    }
+
+    private static String getValue(String[] parts, String name, int lineNumber) throws IOException {
+        if(parts.length < 2){
+            throw error(name, lineNumber, "missing value for " + parts[0]);
+        }
+        return parts[1];
+    }
+    /**
+     * Strips comments (starting with <code>#</code> at the beginning of the
+     * line or after a whitespace) and trims the parsed line
+     */
+    private static String stripComment(String line){
+        for(int i = 0; i < line.length(); i++){
+            if(line.charAt(i) == '#' && (i == 0 || Character.isWhitespace(line.charAt(i-1)))){
+                return line.substring(0, i).trim();
+            }
+        }
+        return line.trim();
+    }
+
+    private static IOException error(String name, int lineNumber, String message){
+        return new IOException("Tag mapping file '" + name + "' line " + lineNumber + ": " + message);
+    }
+
+    @Override
+    public String toString() {
+        return "TagMappings [directory=" + directory + ", languages=" + getLanguages()
+                + ", sources=" + sources + "]";
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.pool;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules the creation of resources used by {@link ResourcePool}s. Creation
+ * tasks are queued per key (e.g. the language). Whenever a thread of the
+ * creation {@link ExecutorService} becomes available it executes the next
+ * task of the key with the most threads waiting for a resource to be created.
+ * Keys without waiting threads are processed in submission order. So a burst
+ * of slow creations for one key does not block the creation of resources
+ * others are waiting for.<p>
+ * The creation {@link ExecutorService} limits the number of concurrent
+ * creations. Closing of resources is executed by a separate
+ * {@link ExecutorService} and does therefore not delay creations.
+ */
+public class CreationScheduler {
+
+    private final ExecutorService createExecutor;
+    private final ExecutorService closeExecutor;
+    /**
+     * The queues of the keys. Guarded by itself
+     */
+    private final Map<String,Lane> lanes = new HashMap<String,Lane>();
+    private long sequence;
+    /**
+     * Executed once for every submitted task. Executes the task with the
+     * highest priority at the time it runs (not necessarily the task it was
+     * submitted for).
+     */
+    private final Runnable dispatcher = new Runnable() {
+        @Override
+        public void run() {
+            CreationTask<?> task = next();
+            if(task != null){
+                task.run();
+            }
+        }
+    };
+
+    /**
+     * Creates a scheduler that uses the same {@link ExecutorService} for
+     * creating and closing resources
+     * @param executor the executor
+     */
+    public CreationScheduler(ExecutorService executor) {
+        this(executor, executor);
+    }
+    /**
+     * Creates a scheduler for the parsed {@link ExecutorService}s
+     * @param createExecutor the executor used to create resources. Its number
+     * of threads limits the number of concurrent creations
+     * @param closeExecutor the executor used to close resources
+     */
+    public CreationScheduler(ExecutorService createExecutor, ExecutorService closeExecutor) {
+        if(createExecutor == null){
+            throw new IllegalArgumentException("The parsed create ExecutorService MUST NOT be NULL!");
+        }
+        if(closeExecutor == null){
+            throw new IllegalArgumentException("The parsed close ExecutorService MUST NOT be NULL!");
+        }
+        this.createExecutor = createExecutor;
+        this.closeExecutor = closeExecutor;
+    }
+
+    /**
+     * Queues the parsed creation task for the parsed key
+     * @param key the key (e.g. the language)
+     * @param task the task creating the resource
+     * @return the future for the created resource. Threads waiting on
+     * {@link Future#get()} increase the priority of the key.
+     * @throws RejectedExecutionException if the creation executor does not
+     * accept tasks
+     */
+    public <T> Future<T> submit(String key, Callable<T> task) {
+        CreationTask<T> creationTask;
+        synchronized (lanes) {
+            Lane lane = lanes.get(key);
+            if(lane == null){
+                lane = new Lane();
+                lanes.put(key, lane);
+            }
+            creationTask = new CreationTask<T>(lane, task, sequence++);
+            lane.queue.add(creationTask);
+        }
+        try {
+            createExecutor.execute(dispatcher);
+        } catch (RejectedExecutionException e) {
+            creationTask.cancel(false); //removed by the next dispatcher
+            throw e;
+        }
+        return creationTask;
+    }
+
+    /**
+     * Executes the parsed task in the close lane. If the close executor was
+     * already shut down the task is executed by the calling thread.
+     * @param task the task closing a resource
+     */
+    public void close(Runnable task) {
+        try {
+            closeExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * The number of queued (not yet started) creation tasks for the parsed key
+     * @param key the key
+     * @return the number of queued tasks
+     */
+    public int getQueuedCount(String key) {
+        synchronized (lanes) {
+            Lane lane = lanes.get(key);
+            return lane == null ? 0 : lane.queue.size();
+        }
+    }
+
+    /**
+     * The number of threads waiting for the creation of a resource for the
+     * parsed key
+     * @param key the key
+     * @return the number of waiting threads
+     */
+    public int getWaitingCount(String key) {
+        synchronized (lanes) {
+            Lane lane = lanes.get(key);
+            return lane == null ? 0 : lane.waiting.get();
+        }
+    }
+
+    /**
+     * Removes the task with the highest priority from its queue
+     * @return the task or <code>null</code> if all queues are empty
+     */
+    private CreationTask<?> next() {
+        synchronized (lanes) {
+            Lane best = null;
+            for(Lane lane : lanes.values()){
+                while(!lane.queue.isEmpty() && lane.queue.getFirst().isCancelled()){
+                    lane.queue.removeFirst();
+                }
+                if(lane.queue.isEmpty()){
+                    continue;
+                }
+                if(best == null){
+                    best = lane;
+                } else {
+                    int waiting = lane.waiting.get();
+                    int bestWaiting = best.waiting.get();
+                    if(waiting > bestWaiting || (waiting == bestWaiting &&
+                            lane.queue.getFirst().sequence < best.queue.getFirst().sequence)){
+                        best = lane;
+                    }
+                }
+            }
+            return best == null ? null : best.queue.removeFirst();
+        }
+    }
+
+    /**
+     * The queue of a key
+     */
+    private static class Lane {
+
+        private final LinkedList<CreationTask<?>> queue = new LinkedList<CreationTask<?>>();
+        /**
+         * The number of threads waiting for tasks of this lane
+         */
+        private final AtomicInteger waiting = new AtomicInteger();
+    }
+
+    /**
+     * Creation task that counts the threads waiting for its result
+     */
+    private static class CreationTask<T> extends FutureTask<T> {
+
+        private final Lane lane;
+        private final long sequence;
+
+        CreationTask(Lane lane, Callable<T> callable, long sequence) {
+            super(callable);
+            this.lane = lane;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            if(isDone()){
+                return super.get();
+            }
+            lane.waiting.incrementAndGet();
+            try {
+                return super.get();
+            } finally {
+                lane.waiting.decrementAndGet();
+            }
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException,
+                ExecutionException, TimeoutException {
+            if(isDone()){
+                return super.get(timeout, unit);
+            }
+            lane.waiting.incrementAndGet();
+            try {
+                return super.get(timeout, unit);
+            } finally {
+                lane.waiting.decrementAndGet();
+            }
+        }
+    }
+}
@@ -21,16 +21,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,8 +64,23 @@ public class ResourcePool<T> {
     private final ResourceFactory<? extends T> factory;
     private final Map<String,Object> context;
     private final int minQueueSize;
+    /**
+     * The maximum number of resources borrowed concurrently
+     */
+    private final AtomicInteger peakBorrowed = new AtomicInteger();
 
-    private boolean closed;
+    private volatile boolean closed;
+    /**
+     * The resources currently borrowed from this pool. Guarded by 
+     * {@link #resources}.
+     */
+    private final Set<T> borrowedResources = Collections.newSetFromMap(
+        new IdentityHashMap<T,Boolean>());
+    /**
+     * The pool that replaces this one (if retired). Requests to a closed
+     * pool are forwarded to its successor.
+     */
+    private volatile ResourcePool<T> successor;
     
 
     /**
@@ -87,9 +107,18 @@ public class ResourcePool<T> {
         }
     }
 
+    /**
+     * Borrows a resource from this pool. If this pool was {@link #retire(ResourcePool)
+     * retired} the resource is borrowed from its successor.
+     * @param maxWaitMillis the maximum time to wait for a resource
+     * @return the resource or <code>null</code> if interrupted while waiting
+     * @throws PoolTimeoutException if no resource was available within the
+     * parsed time
+     * @throws IllegalStateException if this pool is closed
+     */
     public T getResource(long maxWaitMillis) throws PoolTimeoutException {
         if(closed){
-            throw new IllegalStateException("This ResourcePool is already closed");
+            return getSuccessor().getResource(maxWaitMillis);
         }
         // First, get permission to take or create a resource
         try {
@@ -99,56 +128,69 @@ public class ResourcePool<T> {
             }
         } catch (InterruptedException e) {
             if(closed){
-                throw new IllegalStateException("This ResourcePool is already closed");
+                return getSuccessor().getResource(maxWaitMillis);
             } else {
                 log.warn(" ... interrupted!",e);
                 return null;
             }
         }
+        int borrowed = getBorrowedCount();
+        for(int peak = peakBorrowed.get(); borrowed > peak && 
+                !peakBorrowed.compareAndSet(peak, borrowed); peak = peakBorrowed.get());
         T res = null;
         Future<? extends T> future;
         synchronized (resources) {
-            if(closed){
-                throw new IllegalStateException("This ResourcePool is already closed");
-            }
-            //check if creating resources are ready and add them to the queue
-            Iterator<Future<? extends T>> it = creating.iterator();
-            while(it.hasNext()){
-                Future<? extends T> f = it.next();
-                if(f.isDone()){
-                    it.remove();
-                    if(!f.isCancelled()){
-                        try {
-                            resources.add(f.get());
-                        } catch (InterruptedException e) {
-                            log.warn("Interupted while creating resource!", e);
-                        } catch (ExecutionException ee) {
-                            log.warn("Unable to create a Resoruce because of a "
-                                    + ee.getCause().getClass().getSimpleName()
-                                    + "while creating the Resource using "
-                                    + factory.getClass().getSimpleName() 
-                                    + " (message: "+ee.getCause().getMessage()
-                                    + ")!",ee);
-                        }
-                    } // else cancelled ... nothing to do
-                } // else still creating ... nothing to do
-            }
-            //now get the resources (if available) from the queue
-            res = resources.poll();
-            //if queue is to small create additional resources
-            if(resources.size() < minQueueSize || 
-                    res == null){ //in case minQueueSize == 0
-                creating.add(factory.createResource(context));
-            }
-            if(res == null){
-                future = creating.poll(); //creating can not be empty!
-            } else {
+            if(closed){ //closed while waiting for the permit
+                semaphore.release();
                 future = null;
+            } else {
+                //check if creating resources are ready and add them to the queue
+                Iterator<Future<? extends T>> it = creating.iterator();
+                while(it.hasNext()){
+                    Future<? extends T> f = it.next();
+                    if(f.isDone()){
+                        it.remove();
+                        if(!f.isCancelled()){
+                            try {
+                                resources.add(f.get());
+                            } catch (InterruptedException e) {
+                                log.warn("Interupted while creating resource!", e);
+                            } catch (ExecutionException ee) {
+                                log.warn("Unable to create a Resoruce because of a "
+                                        + ee.getCause().getClass().getSimpleName()
+                                        + "while creating the Resource using "
+                                        + factory.getClass().getSimpleName() 
+                                        + " (message: "+ee.getCause().getMessage()
+                                        + ")!",ee);
+                            }
+                        } // else cancelled ... nothing to do
+                    } // else still creating ... nothing to do
+                }
+                //now get the resources (if available) from the queue
+                res = resources.poll();
+                //if queue is to small create additional resources
+                if(resources.size() < minQueueSize || 
+                        res == null){ //in case minQueueSize == 0
+                    creating.add(factory.createResource(context));
+                }
+                if(res == null){
+                    future = creating.poll(); //creating can not be empty!
+                } else {
+                    future = null;
+                    borrowedResources.add(res);
+                }
             }
         }
+        if(res == null && future == null){ //closed
+            return getSuccessor().getResource(maxWaitMillis);
+        }
         if (res == null) { 
             try { //we need to wait for the next resource to be created
-                return future.get();
+                res = future.get();
+                synchronized (resources) {
+                    borrowedResources.add(res);
+                }
+                return res;
             } catch (InterruptedException e) {
                 // release this acquire as we do not deliver a resource
                 semaphore.release();
@@ -172,7 +214,26 @@ public class ResourcePool<T> {
         } //else  still enough resources in the queue
     }
 
+    /**
+     * Returns a resource borrowed from this pool. Resources returned to a
+     * closed pool are closed. Resources borrowed from the successor of a
+     * retired pool are returned to the successor.
+     * @param res the resource
+     */
     public void returnResource(T res) {
+        if(res == null){ //getResource returns null if interrupted
+            return; //no permit was acquired
+        }
+        ResourcePool<T> successor = null;
+        synchronized (resources) {
+            if(!borrowedResources.remove(res)){
+                successor = this.successor;
+            }
+        }
+        if(successor != null){ //borrowed from the successor
+            successor.returnResource(res);
+            return;
+        }
         try {
             synchronized (resources) {
                 if(closed){
@@ -186,7 +247,113 @@ public class ResourcePool<T> {
        }
     }
     /**
-     * Closes this resource pool
+     * Creates (if necessary) the parsed number of resources and returns them
+     * to the pool. Used to avoid that the first requests need to wait for the
+     * creation of resources.
+     * @param count the number of resources to create. Values greater than the
+     * size of this pool are ignored
+     * @param maxWaitMillis the maximum time to wait for a single resource
+     * @throws PoolTimeoutException if a resource was not available within the
+     * parsed time
+     * @throws IllegalStateException if the creation of a resource failed
+     */
+    public void warmUp(int count, long maxWaitMillis) throws PoolTimeoutException {
+        List<T> borrowed = new ArrayList<T>(Math.min(count, size));
+        try {
+            for(int i = 0; i < count && i < size; i++){
+                T res = getResource(maxWaitMillis);
+                if(res == null){ //interrupted
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while warming up the ResourcePool");
+                }
+                borrowed.add(res);
+            }
+        } finally {
+            for(T res : borrowed){
+                returnResource(res);
+            }
+        }
+    }
+    /**
+     * The maximum number of resources borrowed concurrently from this pool
+     * @return the maximum size
+     */
+    public int getSize() {
+        return size;
+    }
+    /**
+     * The number of resources currently borrowed from this pool (including
+     * those requested but not yet created)
+     * @return the number of borrowed resources
+     */
+    public int getBorrowedCount() {
+        return size - semaphore.availablePermits();
+    }
+    /**
+     * The maximum number of resources borrowed concurrently from this pool
+     * since it was created
+     * @return the peak number of borrowed resources
+     */
+    public int getPeakBorrowedCount() {
+        return peakBorrowed.get();
+    }
+    /**
+     * Waits until the resources currently in creation (e.g. the initial
+     * resources created by the constructor) are created. Resources are not
+     * borrowed. Failed creations are considered as completed.
+     * @param maxWaitMillis the maximum time to wait
+     * @return <code>true</code> if all resources are created. <code>false</code>
+     * if resources are still in creation after the parsed time.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitCreation(long maxWaitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        List<Future<? extends T>> pending;
+        synchronized (resources) {
+            pending = new ArrayList<Future<? extends T>>(creating);
+        }
+        for(Future<? extends T> f : pending){
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining <= 0 && !f.isDone()){
+                return false;
+            }
+            try {
+                f.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                //failed ... logged when the resource is borrowed
+            } catch (CancellationException e) {
+                //cancelled by close()
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Retires this pool after it was replaced by the parsed one. Equivalent
+     * to {@link #close()} but subsequent requests for resources are 
+     * forwarded to the successor. Borrowed resources are closed as soon as
+     * they are returned so that in-flight users are not affected.
+     * @param successor the pool replacing this one
+     */
+    public void retire(ResourcePool<T> successor) {
+        if(successor == null){
+            throw new IllegalArgumentException("The parsed successor MUST NOT be NULL!");
+        }
+        this.successor = successor;
+        close();
+    }
+    
+    private ResourcePool<T> getSuccessor() {
+        ResourcePool<T> successor = this.successor;
+        if(successor == null){
+            throw new IllegalStateException("This ResourcePool is already closed");
+        }
+        return successor;
+    }
+    /**
+     * Closes this resource pool. Idle resources are closed immediately and
+     * borrowed ones when they are returned.
      */
     public void close() {
         this.closed = true;
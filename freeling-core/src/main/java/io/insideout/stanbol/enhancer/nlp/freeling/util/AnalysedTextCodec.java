@@ -0,0 +1,646 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.util;
+
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.MORPHO_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.NER_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.PHRASE_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.POS_ANNOTATION;
+import static io.insideout.stanbol.enhancer.nlp.freeling.MultiLanguageAnalyzer.LANGUAGE_ANNOTATION;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagLookup;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.apache.stanbol.enhancer.nlp.model.Span;
+import org.apache.stanbol.enhancer.nlp.model.Span.SpanTypeEnum;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.morpho.MorphoFeatures;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
+import org.apache.stanbol.enhancer.servicesapi.impl.StringSource;
+
+/**
+ * Compact binary encoding of the {@link AnalysedText}s created by Freeling
+ * Analyzers. The encoding consists of
+ * <ul>
+ * <li> a header with the version and the language
+ * <li> the text
+ * <li> the Sentence, Chunk and Token spans sorted by start. Offsets are
+ * delta encoded as varints
+ * <li> the POS, phrase, NER and morpho annotations of the spans and the
+ * language of sentences analysed in segment mode (see 
+ * {@link io.insideout.stanbol.enhancer.nlp.freeling.MultiLanguageAnalyzer#LANGUAGE_ANNOTATION}).
+ * Tags are written to a tag table on their first occurrence together with
+ * the ordinals of their {@link Pos} types and {@link LexicalCategory 
+ * lexical categories} (as the Stanbol NLP JSON format does) and the NER 
+ * type. Afterwards they are referenced by index. Lemmas and languages
+ * use a string table. Probabilities are quantized to <code>1/10000</code>
+ * (the precision used by the Analyzers)
+ * </ul>
+ * Decoded tags are self-contained. If the {@link TagLookup} of the language
+ * of the sentence (or of the text) has a tag with the same fields 
+ * (the {@link io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagMapper}
+ * is not applied a second time) that instance is used. So decoded
+ * annotations use the same {@link PosTag}, {@link PhraseTag} and 
+ * {@link NerTag} instances as the Analyzers if encoder and decoder use the
+ * same tag mappings.<p>
+ * Instances are thread-safe.
+ */
+public final class AnalysedTextCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte[] MAGIC = new byte[]{'F','A','T'};
+    private static final int VERSION = 2;
+
+    private static final Set<SpanTypeEnum> ENCODED_SPAN_TYPES = EnumSet.of(
+        SpanTypeEnum.Sentence, SpanTypeEnum.Chunk, SpanTypeEnum.Token);
+
+    private static final int SPAN_END = 0;
+    private static final int SPAN_SENTENCE = 1;
+    private static final int SPAN_CHUNK = 2;
+    private static final int SPAN_TOKEN = 3;
+
+    private static final int ANNO_POS = 1;
+    private static final int ANNO_PHRASE = 1 << 1;
+    private static final int ANNO_NER = 1 << 2;
+    private static final int ANNO_MORPHO = 1 << 3;
+    private static final int ANNO_LANGUAGE = 1 << 4;
+    /**
+     * Probabilities are quantized to this resolution
+     */
+    private static final double PROBABILITY_SCALE = 10000d;
+    /**
+     * Strings longer than this are read in chunks so that invalid lengths
+     * do not allocate memory not backed by data
+     */
+    private static final int STRING_CHUNK_SIZE = 8192;
+    /**
+     * The maximum initial capacity of the lists of decoded values
+     */
+    private static final int MAX_INITIAL_CAPACITY = 16;
+
+    private final ContentItemFactory cif;
+    private final AnalysedTextFactory atf;
+
+    /**
+     * Creates a codec
+     * @param cif the {@link ContentItemFactory} used to create the Blobs of
+     * decoded texts
+     * @param atf the {@link AnalysedTextFactory} used to create decoded
+     * {@link AnalysedText}s
+     */
+    public AnalysedTextCodec(ContentItemFactory cif, AnalysedTextFactory atf) {
+        if(cif == null){
+            throw new IllegalArgumentException("The parsed ContentItemFactory MUST NOT be NULL!");
+        }
+        if(atf == null){
+            throw new IllegalArgumentException("The parsed AnalysedTextFactory MUST NOT be NULL!");
+        }
+        this.cif = cif;
+        this.atf = atf;
+    }
+
+    /**
+     * Encodes the parsed {@link AnalysedText}. The stream is not closed.
+     * @param at the analysed text
+     * @param language the language of the text. Used to decode the tags
+     * @param out the stream to write to
+     * @throws IOException on any error while writing to the stream
+     */
+    public void encode(AnalysedText at, String language, OutputStream out) throws IOException {
+        if(at == null){
+            throw new IllegalArgumentException("The parsed AnalysedText MUST NOT be NULL!");
+        }
+        if(language == null){
+            throw new IllegalArgumentException("The parsed language MUST NOT be NULL!");
+        }
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeString(out, language);
+        writeString(out, at.getText());
+        Map<String,Integer> strings = new HashMap<String,Integer>();
+        //one table per tag type as tags of different types may be equal
+        Map<Object,Integer> posTags = new HashMap<Object,Integer>();
+        Map<Object,Integer> phraseTags = new HashMap<Object,Integer>();
+        Map<Object,Integer> nerTags = new HashMap<Object,Integer>();
+        int prevStart = 0;
+        Iterator<Span> spans = at.getEnclosed(ENCODED_SPAN_TYPES);
+        while(spans.hasNext()){
+            Span span = spans.next();
+            switch (span.getType()) {
+                case Sentence:
+                    out.write(SPAN_SENTENCE);
+                    break;
+                case Chunk:
+                    out.write(SPAN_CHUNK);
+                    break;
+                default:
+                    out.write(SPAN_TOKEN);
+                    break;
+            }
+            writeVarint(out, span.getStart() - prevStart);
+            writeVarint(out, span.getEnd() - span.getStart());
+            prevStart = span.getStart();
+            List<Value<PosTag>> pos = span.getAnnotations(POS_ANNOTATION);
+            List<Value<PhraseTag>> phrases = span.getAnnotations(PHRASE_ANNOTATION);
+            List<Value<NerTag>> ner = span.getAnnotations(NER_ANNOTATION);
+            List<Value<MorphoFeatures>> morpho = span.getAnnotations(MORPHO_ANNOTATION);
+            Value<String> lang = span.getType() == SpanTypeEnum.Sentence ? 
+                    span.getAnnotation(LANGUAGE_ANNOTATION) : null;
+            int mask = (isEmpty(pos) ? 0 : ANNO_POS) | (isEmpty(phrases) ? 0 : ANNO_PHRASE)
+                    | (isEmpty(ner) ? 0 : ANNO_NER) | (isEmpty(morpho) ? 0 : ANNO_MORPHO)
+                    | (lang == null ? 0 : ANNO_LANGUAGE);
+            out.write(mask);
+            if(lang != null){
+                writeStringRef(out, strings, lang.value());
+            }
+            if(!isEmpty(pos)){
+                writeVarint(out, pos.size());
+                for(Value<PosTag> value : pos){
+                    writePosTag(out, posTags, value.value());
+                    writeProbability(out, value.probability());
+                }
+            }
+            if(!isEmpty(phrases)){
+                writeVarint(out, phrases.size());
+                for(Value<PhraseTag> value : phrases){
+                    writePhraseTag(out, phraseTags, value.value());
+                    writeProbability(out, value.probability());
+                }
+            }
+            if(!isEmpty(ner)){
+                writeVarint(out, ner.size());
+                for(Value<NerTag> value : ner){
+                    writeNerTag(out, nerTags, value.value());
+                    writeProbability(out, value.probability());
+                }
+            }
+            if(!isEmpty(morpho)){
+                writeVarint(out, morpho.size());
+                for(Value<MorphoFeatures> value : morpho){
+                    MorphoFeatures mf = value.value();
+                    writeStringRef(out, strings, mf.getLemma());
+                    List<PosTag> mfPos = mf.getPosList();
+                    writeVarint(out, mfPos == null ? 0 : mfPos.size());
+                    if(mfPos != null){
+                        for(PosTag posTag : mfPos){
+                            writePosTag(out, posTags, posTag);
+                        }
+                    }
+                    writeProbability(out, value.probability());
+                }
+            }
+        }
+        out.write(SPAN_END);
+    }
+
+    /**
+     * Decodes an {@link AnalysedText} from the parsed stream. The stream is
+     * not closed.
+     * @param in the stream to read from
+     * @return the decoded {@link AnalysedText}
+     * @throws IOException on any error while reading from the stream or if
+     * the stream does not contain a valid encoding
+     */
+    public AnalysedText decode(InputStream in) throws IOException {
+        return decode(in, null);
+    }
+    /**
+     * Decodes the spans and annotations from the parsed stream and adds them
+     * to the parsed {@link AnalysedText}. Spans already present in the target
+     * are reused. The stream is not closed.
+     * @param in the stream to read from
+     * @param target the {@link AnalysedText} to add the decoded spans to or
+     * <code>null</code> to create a new one for the encoded text
+     * @return the target or the created {@link AnalysedText}
+     * @throws IOException on any error while reading from the stream or if
+     * the stream does not contain a valid encoding or a text other than the
+     * text of the parsed target.
+     */
+    public AnalysedText decode(InputStream in, AnalysedText target) throws IOException {
+        for(byte b : MAGIC){
+            if(readByte(in) != b){
+                throw new IOException("The parsed stream does not contain an encoded AnalysedText!");
+            }
+        }
+        int version = readByte(in);
+        if(version != VERSION){
+            throw new IOException("Unsupported encoding version " + version + " (supported: "
+                + VERSION + ")!");
+        }
+        String language = readString(in);
+        String text = readString(in);
+        AnalysedText at;
+        if(target == null){
+            at = atf.createAnalysedText(cif.createBlob(new StringSource(text)));
+        } else if(!text.equals(target.getText())){
+            throw new IOException("The encoded text does not match the text of the "
+                + "parsed AnalysedText!");
+        } else {
+            at = target;
+        }
+        TagSetRegistry registry = TagSetRegistry.getInstance();
+        TagLookup textTagLookup = registry.getTagLookup(language);
+        TagLookup tagLookup = textTagLookup;
+        List<String> strings = new ArrayList<String>();
+        List<Object> posTags = new ArrayList<Object>();
+        List<Object> phraseTags = new ArrayList<Object>();
+        List<Object> nerTags = new ArrayList<Object>();
+        int start = 0;
+        int type;
+        while((type = readByte(in)) != SPAN_END){
+            long spanStart = (long)start + readVarint(in);
+            long spanEnd = spanStart + readVarint(in);
+            if(spanEnd > text.length()){
+                throw new IOException("Span [" + spanStart + "," + spanEnd 
+                    + "] exceeds the text (length: " + text.length() + ")!");
+            }
+            start = (int)spanStart;
+            int end = (int)spanEnd;
+            Span span;
+            try {
+                switch (type) {
+                    case SPAN_SENTENCE:
+                        span = at.addSentence(start, end);
+                        tagLookup = textTagLookup;
+                        break;
+                    case SPAN_CHUNK:
+                        span = at.addChunk(start, end);
+                        break;
+                    case SPAN_TOKEN:
+                        span = at.addToken(start, end);
+                        break;
+                    default:
+                        throw new IOException("Unknown span type " + type + "!");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid span [" + start + "," + end + "]: " 
+                    + e.getMessage(), e);
+            }
+            int mask = readByte(in);
+            if((mask & ANNO_LANGUAGE) != 0){
+                String sentenceLanguage = readStringRef(in, strings);
+                span.addAnnotation(LANGUAGE_ANNOTATION, Value.value(sentenceLanguage));
+                //tags of the sentence are resolved with its language
+                tagLookup = sentenceLanguage.isEmpty() ? textTagLookup : 
+                    registry.getTagLookup(sentenceLanguage);
+            }
+            if((mask & ANNO_POS) != 0){
+                int count = readVarint(in);
+                List<Value<PosTag>> values = new ArrayList<Value<PosTag>>(
+                        Math.min(count, MAX_INITIAL_CAPACITY));
+                for(int i = 0; i < count; i++){
+                    PosTag posTag = readPosTag(in, posTags, tagLookup);
+                    values.add(toValue(posTag, readProbability(in)));
+                }
+                span.addAnnotations(POS_ANNOTATION, values);
+            }
+            if((mask & ANNO_PHRASE) != 0){
+                int count = readVarint(in);
+                List<Value<PhraseTag>> values = new ArrayList<Value<PhraseTag>>(
+                        Math.min(count, MAX_INITIAL_CAPACITY));
+                for(int i = 0; i < count; i++){
+                    PhraseTag phraseTag = readPhraseTag(in, phraseTags, tagLookup);
+                    values.add(toValue(phraseTag, readProbability(in)));
+                }
+                span.addAnnotations(PHRASE_ANNOTATION, values);
+            }
+            if((mask & ANNO_NER) != 0){
+                int count = readVarint(in);
+                List<Value<NerTag>> values = new ArrayList<Value<NerTag>>(
+                        Math.min(count, MAX_INITIAL_CAPACITY));
+                for(int i = 0; i < count; i++){
+                    NerTag nerTag = readNerTag(in, nerTags, tagLookup);
+                    values.add(toValue(nerTag, readProbability(in)));
+                }
+                span.addAnnotations(NER_ANNOTATION, values);
+            }
+            if((mask & ANNO_MORPHO) != 0){
+                int count = readVarint(in);
+                List<Value<MorphoFeatures>> values = new ArrayList<Value<MorphoFeatures>>(
+                        Math.min(count, MAX_INITIAL_CAPACITY));
+                for(int i = 0; i < count; i++){
+                    MorphoFeatures mf = new MorphoFeatures(readStringRef(in, strings));
+                    int posCount = readVarint(in);
+                    for(int j = 0; j < posCount; j++){
+                        mf.addPos(readPosTag(in, posTags, tagLookup));
+                    }
+                    values.add(toValue(mf, readProbability(in)));
+                }
+                span.addAnnotations(MORPHO_ANNOTATION, values);
+            }
+        }
+        return at;
+    }
+
+    /**
+     * Writes the reference to the parsed tag. Tags not yet in the table are
+     * written with the parsed fields.
+     * @return <code>true</code> if the fields of the tag need to be written
+     */
+    private static boolean writeTagRef(OutputStream out, Map<Object,Integer> tags, 
+            Object tag) throws IOException {
+        Integer index = tags.get(tag);
+        if(index == null){
+            writeVarint(out, 0);
+            tags.put(tag, tags.size());
+            return true;
+        } else {
+            writeVarint(out, index + 1);
+            return false;
+        }
+    }
+    /**
+     * Reads a tag reference
+     * @return the referenced tag or <code>null</code> if the fields of a
+     * new tag follow
+     */
+    private static Object readTagRef(InputStream in, List<Object> tags) throws IOException {
+        int ref = readVarint(in);
+        if(ref == 0){
+            return null;
+        } else if(ref > tags.size()){
+            throw new IOException("Invalid tag reference " + ref + " (table size: "
+                + tags.size() + ")!");
+        } else {
+            return tags.get(ref - 1);
+        }
+    }
+
+    private static void writePosTag(OutputStream out, Map<Object,Integer> tags,
+            PosTag posTag) throws IOException {
+        if(writeTagRef(out, tags, posTag)){
+            writeString(out, posTag.getTag());
+            writeOrdinals(out, posTag.getPos());
+            writeOrdinals(out, posTag.getCategories());
+        }
+    }
+
+    private static PosTag readPosTag(InputStream in, List<Object> tags, 
+            TagLookup tagLookup) throws IOException {
+        Object ref = readTagRef(in, tags);
+        if(ref != null){
+            return castTag(ref, PosTag.class);
+        }
+        String tag = readString(in);
+        Set<Pos> pos = readOrdinals(in, Pos.class);
+        Set<LexicalCategory> categories = readOrdinals(in, LexicalCategory.class);
+        PosTag posTag = tagLookup.getMappedPosTag(tag);
+        if(!pos.equals(posTag.getPos()) || !categories.equals(posTag.getCategories())){
+            posTag = new PosTag(tag, categories, pos);
+        }
+        tags.add(posTag);
+        return posTag;
+    }
+
+    private static void writePhraseTag(OutputStream out, Map<Object,Integer> tags,
+            PhraseTag phraseTag) throws IOException {
+        if(writeTagRef(out, tags, phraseTag)){
+            writeString(out, phraseTag.getTag());
+            writeVarint(out, phraseTag.getCategory() == null ? 0 : 
+                phraseTag.getCategory().ordinal() + 1);
+        }
+    }
+
+    private static PhraseTag readPhraseTag(InputStream in, List<Object> tags,
+            TagLookup tagLookup) throws IOException {
+        Object ref = readTagRef(in, tags);
+        if(ref != null){
+            return castTag(ref, PhraseTag.class);
+        }
+        String tag = readString(in);
+        int category = readVarint(in);
+        LexicalCategory lc = category == 0 ? null : getEnum(LexicalCategory.class, category - 1);
+        PhraseTag phraseTag = tagLookup.getMappedPhraseTag(tag);
+        if(lc != phraseTag.getCategory()){
+            phraseTag = lc == null ? new PhraseTag(tag) : new PhraseTag(tag, lc);
+        }
+        tags.add(phraseTag);
+        return phraseTag;
+    }
+
+    private static void writeNerTag(OutputStream out, Map<Object,Integer> tags,
+            NerTag nerTag) throws IOException {
+        if(writeTagRef(out, tags, nerTag)){
+            writeString(out, nerTag.getTag());
+            writeString(out, nerTag.getType() == null ? "" : nerTag.getType().getUnicodeString());
+        }
+    }
+
+    private static NerTag readNerTag(InputStream in, List<Object> tags,
+            TagLookup tagLookup) throws IOException {
+        Object ref = readTagRef(in, tags);
+        if(ref != null){
+            return castTag(ref, NerTag.class);
+        }
+        String tag = readString(in);
+        String type = readString(in);
+        NerTag nerTag = tagLookup.getNerTag(tag);
+        String lookupType = nerTag.getType() == null ? "" : nerTag.getType().getUnicodeString();
+        if(!type.equals(lookupType)){
+            nerTag = type.isEmpty() ? new NerTag(tag) : new NerTag(tag, new UriRef(type));
+        }
+        tags.add(nerTag);
+        return nerTag;
+    }
+
+    private static <T> T castTag(Object tag, Class<T> type) throws IOException {
+        if(type.isInstance(tag)){
+            return type.cast(tag);
+        } else {
+            throw new IOException("Invalid reference to a " + tag.getClass().getSimpleName()
+                + " (expected: " + type.getSimpleName() + ")!");
+        }
+    }
+
+    private static void writeOrdinals(OutputStream out, Collection<? extends Enum<?>> values) throws IOException {
+        if(values == null){
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, values.size());
+        for(Enum<?> value : values){
+            writeVarint(out, value.ordinal());
+        }
+    }
+
+    private static <E extends Enum<E>> Set<E> readOrdinals(InputStream in, Class<E> type) throws IOException {
+        Set<E> values = EnumSet.noneOf(type);
+        int count = readVarint(in);
+        for(int i = 0; i < count; i++){
+            values.add(getEnum(type, readVarint(in)));
+        }
+        return values;
+    }
+
+    private static <E extends Enum<E>> E getEnum(Class<E> type, int ordinal) throws IOException {
+        E[] constants = type.getEnumConstants();
+        if(ordinal >= constants.length){
+            throw new IOException("Invalid " + type.getSimpleName() + " ordinal " + ordinal + "!");
+        }
+        return constants[ordinal];
+    }
+
+    private static <T> Value<T> toValue(T value, double prob){
+        return prob < 0 ? Value.value(value) : Value.value(value, prob);
+    }
+
+    private static boolean isEmpty(List<?> list){
+        return list == null || list.isEmpty();
+    }
+
+    private static void writeProbability(OutputStream out, double prob) throws IOException {
+        writeVarint(out, prob < 0 ? 0 : (int)Math.round(prob * PROBABILITY_SCALE) + 1);
+    }
+
+    private static double readProbability(InputStream in) throws IOException {
+        int value = readVarint(in);
+        if(value > PROBABILITY_SCALE + 1){
+            throw new IOException("Invalid probability " + (value - 1) / PROBABILITY_SCALE + "!");
+        }
+        return value == 0 ? Value.UNKNOWN_PROBABILITY : (value - 1) / PROBABILITY_SCALE;
+    }
+
+    private static void writeStringRef(OutputStream out, Map<String,Integer> strings,
+            String value) throws IOException {
+        Integer index = strings.get(value);
+        if(index == null){
+            writeVarint(out, 0);
+            writeString(out, value);
+            strings.put(value, strings.size());
+        } else {
+            writeVarint(out, index + 1);
+        }
+    }
+
+    private static String readStringRef(InputStream in, List<String> strings) throws IOException {
+        int ref = readVarint(in);
+        if(ref == 0){
+            String value = readString(in);
+            strings.add(value);
+            return value;
+        } else if(ref > strings.size()){
+            throw new IOException("Invalid string reference " + ref + " (table size: "
+                + strings.size() + ")!");
+        } else {
+            return strings.get(ref - 1);
+        }
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] data = value.getBytes(UTF8);
+        writeVarint(out, data.length);
+        out.write(data);
+    }
+
+    /**
+     * Reads a string. Long strings are read in chunks so that the memory is
+     * only allocated for data actually present in the stream.
+     */
+    static String readString(InputStream in) throws IOException {
+        int length = readVarint(in);
+        if(length <= STRING_CHUNK_SIZE){
+            byte[] data = new byte[length];
+            readFully(in, data, length);
+            return new String(data, UTF8);
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream(STRING_CHUNK_SIZE);
+        byte[] chunk = new byte[STRING_CHUNK_SIZE];
+        for(int remaining = length; remaining > 0; remaining -= STRING_CHUNK_SIZE){
+            int size = Math.min(remaining, STRING_CHUNK_SIZE);
+            readFully(in, chunk, size);
+            data.write(chunk, 0, size);
+        }
+        return new String(data.toByteArray(), UTF8);
+    }
+
+    private static void readFully(InputStream in, byte[] data, int length) throws IOException {
+        int pos = 0;
+        while(pos < length){
+            int read = in.read(data, pos, length - pos);
+            if(read < 0){
+                throw new EOFException("Unexpected end of the encoded AnalysedText!");
+            }
+            pos += read;
+        }
+    }
+
+    /**
+     * Writes a non negative int using 7 bits per byte
+     */
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        if(value < 0){
+            throw new IllegalArgumentException("Unable to encode negative value " + value + "!");
+        }
+        while((value & ~0x7F) != 0){
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads a non negative int written by {@link #writeVarint(OutputStream, int)}
+     * @throws IOException if the varint is malformed or exceeds 
+     * {@link Integer#MAX_VALUE}
+     */
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7){
+            int b = readByte(in);
+            if(shift == 28 && (b & 0x78) != 0){ //only 3 bits left
+                throw new IOException("Varint in the encoded AnalysedText exceeds "
+                    + Integer.MAX_VALUE + "!");
+            }
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in the encoded AnalysedText!");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if(b < 0){
+            throw new EOFException("Unexpected end of the encoded AnalysedText!");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.util;
+
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.nlp.model.Span;
+import org.apache.stanbol.enhancer.nlp.model.Span.SpanTypeEnum;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+
+/**
+ * Utilities for working with {@link AnalysedText}s
+ */
+public final class AnalysedTextUtils {
+
+    private AnalysedTextUtils(){/* no instances */}
+    
+    /**
+     * The types of {@link Span}s copied by 
+     * {@link #copySpans(AnalysedText, int, int, AnalysedText, int)}
+     */
+    private static final Set<SpanTypeEnum> COPIED_SPAN_TYPES = EnumSet.of(
+        SpanTypeEnum.Sentence, SpanTypeEnum.Chunk, SpanTypeEnum.Token);
+    
+    /**
+     * Copies all {@link Sentence}, Chunk and Token {@link Span}s - including
+     * their annotations - that are fully enclosed by <code>[start,end)</code>
+     * of the source to the target. The offsets of copied spans are shifted by
+     * the parsed offset.
+     * @param source the source
+     * @param start the start (inclusive) of the copied region in the source
+     * @param end the end (exclusive) of the copied region in the source
+     * @param target the target
+     * @param offset the offset added to the start/end of copied spans
+     * @return the number of copied spans
+     */
+    public static int copySpans(AnalysedText source, int start, int end, 
+            AnalysedText target, int offset){
+        if(source == null || target == null){
+            throw new IllegalArgumentException("The parsed source and target "
+                + "AnalysedText MUST NOT be NULL!");
+        }
+        int copied = 0;
+        Iterator<Span> spans = source.getEnclosed(COPIED_SPAN_TYPES);
+        while(spans.hasNext()){
+            Span span = spans.next();
+            if(span.getStart() >= end){
+                break; //spans are sorted by start
+            }
+            if(span.getStart() < start || span.getEnd() > end){
+                continue;
+            }
+            Span copy;
+            switch (span.getType()) {
+                case Sentence:
+                    copy = target.addSentence(span.getStart()+offset, span.getEnd()+offset);
+                    break;
+                case Chunk:
+                    copy = target.addChunk(span.getStart()+offset, span.getEnd()+offset);
+                    break;
+                default:
+                    copy = target.addToken(span.getStart()+offset, span.getEnd()+offset);
+                    break;
+            }
+            copyAnnotations(span, copy);
+            copied++;
+        }
+        return copied;
+    }
+    
+    /**
+     * Copies the annotations of the source {@link AnalysedText} itself (e.g.
+     * the language) to the target. Annotations with keys already present in
+     * the target are not copied.
+     * @param source the source
+     * @param target the target
+     * @return the number of copied annotation keys
+     */
+    public static int copyTextAnnotations(AnalysedText source, AnalysedText target){
+        if(source == null || target == null){
+            throw new IllegalArgumentException("The parsed source and target "
+                + "AnalysedText MUST NOT be NULL!");
+        }
+        int copied = 0;
+        for(String key : source.getKeys()){
+            if(target.getValue(key) == null){
+                List<Value<Object>> values = source.getValues(key);
+                target.addValues(key, values);
+                copied++;
+            }
+        }
+        return copied;
+    }
+    
+    private static void copyAnnotations(Span source, Span target){
+        for(String key : source.getKeys()){
+            List<Value<Object>> values = source.getValues(key);
+            target.addValues(key, values);
+        }
+    }
+}
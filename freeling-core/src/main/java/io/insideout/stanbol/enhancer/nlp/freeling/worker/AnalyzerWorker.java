@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.worker;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.HANDSHAKE;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.OP_ANALYSE;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.OP_ANALYSE_TOKENIZED;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.OP_RELOAD;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.PORT_PREFIX;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_ERROR;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_IO_ERROR;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_OK;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.UTF8;
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+import io.insideout.stanbol.enhancer.nlp.freeling.Analyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling.LangIdMode;
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling.Settings;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.PoolTimeoutException;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Main class of the worker processes started by the {@link WorkerManager}.
+ * A worker creates a {@link Freeling} instance for a subset of the supported
+ * languages and serves analysis requests received over a loopback socket.
+ * Native crashes of Freeling components therefore only terminate the worker.
+ * <p>
+ * The worker terminates as soon as its stdin is closed (e.g. because the
+ * parent process has terminated).
+ */
+public final class AnalyzerWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyzerWorker.class);
+    /**
+     * Analyses are limited by the pool size of the parent process. So
+     * waiting for an Analyzer only happens while Analyzers are created.
+     */
+    private static final long MAX_WAIT_TIME = 30*60*1000;
+
+    private final Freeling freeling;
+    private final String token;
+    private final AnalysedTextCodec codec;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    /**
+     * The load time of the tag mappings of the parent process that are 
+     * currently active in this worker
+     */
+    private volatile long tagMappingsVersion = -1;
+
+    private AnalyzerWorker(Freeling freeling, String token){
+        this.freeling = freeling;
+        this.token = token;
+        this.codec = new AnalysedTextCodec(WorkerProtocol.lookupContentItemFactory(),
+            AnalysedTextFactory.getDefaultInstance());
+    }
+
+    /**
+     * Creates the arguments of a worker process for the parsed Freeling
+     * parameters. The comma separated list of the languages of the worker
+     * needs to be appended.
+     * @see Freeling.Settings
+     */
+    public static List<String> getArguments(String configurationPath,
+            String configurationFilenameSuffix, String freelingSharePath,
+            String freelingLibPath, String locale, int maxInitThreads,
+            int poolSize, int minQueueSize, int maxSentenceLength){
+        return new ArrayList<String>(Arrays.asList(configurationPath,
+            configurationFilenameSuffix, freelingSharePath, freelingLibPath, locale,
+            String.valueOf(maxInitThreads), String.valueOf(poolSize),
+            String.valueOf(minQueueSize), String.valueOf(maxSentenceLength)));
+    }
+
+    /**
+     * Starts a worker. The first line read from stdin is used as token that
+     * clients need to send when connecting.
+     * @param args the arguments as created by {@link #getArguments(String, String, String, String, String, int, int, int, int)}
+     * followed by the comma separated list of languages
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 10){
+            System.err.println("Usage: " + AnalyzerWorker.class.getName() + " {config-path} "
+                + "{config-suffix} {freeling-shared} {native-lib} {locale} {init-threads} "
+                + "{pool-size} {min-queue-size} {max-sentence-length} {languages}");
+            System.exit(1);
+        }
+        final BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in, UTF8));
+        String token = stdin.readLine();
+        if(token == null){
+            System.exit(1);
+        }
+        final Freeling freeling = new Freeling(new Settings(args[0], args[2])
+            .setConfigurationFilenameSuffix(args[1]).setFreelingLibPath(args[3])
+            .setLocale(args[4]).setMaxInitThreads(Integer.parseInt(args[5]))
+            .setPoolSize(Integer.parseInt(args[6])).setMinQueueSize(Integer.parseInt(args[7]))
+            .setMaxSentenceLength(Integer.parseInt(args[8])).setLangIdMode(LangIdMode.NONE)
+            .setLanguages(new HashSet<String>(Arrays.asList(args[9].split(",")))));
+        ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        //terminate if stdin is closed by the parent
+        Thread parentWatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while(stdin.readLine() != null){
+                        //ignore
+                    }
+                } catch (IOException e) {
+                    //terminate
+                }
+                log.info("stdin closed - shutting down worker");
+                freeling.close();
+                System.exit(0);
+            }
+        }, "freeling-worker-parent");
+        parentWatcher.setDaemon(true);
+        parentWatcher.start();
+        AnalyzerWorker worker = new AnalyzerWorker(freeling, token);
+        System.out.println(PORT_PREFIX + serverSocket.getLocalPort());
+        System.out.flush();
+        while(true){
+            worker.serve(serverSocket.accept());
+        }
+    }
+
+    private void serve(final Socket socket){
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    socket.setTcpNoDelay(true);
+                    DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream()));
+                    DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream()));
+                    if(in.readInt() != HANDSHAKE || !token.equals(in.readUTF())){
+                        log.warn("Reject connection from {} (invalid handshake)",
+                            socket.getRemoteSocketAddress());
+                        return;
+                    }
+                    int op;
+                    while((op = in.read()) >= 0){
+                        process(op, in, out);
+                        out.flush();
+                    }
+                } catch (EOFException e) {
+                    //connection closed by the client
+                } catch (IOException e) {
+                    log.warn("Error while processing requests of a connection", e);
+                } finally {
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        //ignore
+                    }
+                }
+            }
+        }, "freeling-worker-connection-" + connectionCount.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void process(int op, DataInputStream in, DataOutputStream out) throws IOException {
+        String language = in.readUTF();
+        if(op == OP_RELOAD){
+            try {
+                freeling.reloadLanguage(language);
+                out.write(STATUS_OK);
+            } catch (IOException e) {
+                WorkerProtocol.writeError(out, STATUS_IO_ERROR, e);
+            } catch (RuntimeException e) {
+                WorkerProtocol.writeError(out, STATUS_ERROR, e);
+            }
+            return;
+        }
+        //first read the whole request
+        String tagMappingsDirectory = in.readUTF();
+        long tagMappingsLoadTime = in.readLong();
+        long remainingTime = in.readLong();
+        String text;
+        AnalysedText tokenized;
+        if(op == OP_ANALYSE){
+            text = WorkerProtocol.readText(in);
+            tokenized = null;
+        } else if(op == OP_ANALYSE_TOKENIZED){
+            text = null;
+            tokenized = codec.decode(in);
+        } else {
+            throw new IOException("Unknown operation " + op + "!");
+        }
+        AnalysisContext context = new AnalysisContext(remainingTime);
+        AnalysedText at;
+        try {
+            updateTagMappings(tagMappingsDirectory, tagMappingsLoadTime);
+            ResourcePool<Analyzer> pool = freeling.getAnalyzerPool(language);
+            if(pool == null){
+                throw new IllegalArgumentException("The language '" + language
+                    + "' is not supported by this worker (supported: "
+                    + freeling.getSupportedLanguages() + ")!");
+            }
+            Analyzer analyzer = pool.getResource(MAX_WAIT_TIME);
+            if(analyzer == null){ //interrupted
+                throw new IOException("Interrupted while waiting for an Analyzer for language '"
+                    + language + "'!");
+            }
+            try {
+                at = text != null ? analyzer.analyse(new ByteArrayInputStream(
+                    text.getBytes(UTF8)), UTF8, context) : analyzer.analyse(tokenized, context);
+            } finally {
+                pool.returnResource(analyzer);
+            }
+        } catch (PoolTimeoutException e) {
+            WorkerProtocol.writeError(out, STATUS_IO_ERROR, e);
+            return;
+        } catch (IOException e) {
+            WorkerProtocol.writeError(out, STATUS_IO_ERROR, e);
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Error while analysing a text for language '" + language + "'", e);
+            WorkerProtocol.writeError(out, STATUS_ERROR, e);
+            return;
+        }
+        out.write(STATUS_OK);
+        WorkerProtocol.writeContext(out, context);
+        codec.encode(at, language, out);
+    }
+    /**
+     * Activates the tag mappings of the parent process if they have changed
+     * (e.g. because they were reloaded). Encoded analyses contain mapped tags
+     * so both processes need to use the same mappings.
+     */
+    private void updateTagMappings(String directory, long loadTime) throws IOException {
+        if(loadTime == tagMappingsVersion){
+            return;
+        }
+        synchronized (this) {
+            if(loadTime != tagMappingsVersion){
+                TagSetRegistry.getInstance().setMappingDirectory(
+                    directory.isEmpty() ? null : new File(directory));
+                tagMappingsVersion = loadTime;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.worker;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.OP_ANALYSE;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.OP_ANALYSE_TOKENIZED;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_ERROR;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_IO_ERROR;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_OK;
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+import io.insideout.stanbol.enhancer.nlp.freeling.Analyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+
+/**
+ * {@link Analyzer} that forwards analyses to the {@link AnalyzerWorker}
+ * process responsible for its language. Like other Analyzers instances are
+ * not thread-safe and are intended to be used with a
+ * {@link io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool}.<p>
+ * The connection is established lazily and re-established after errors.
+ * So instances remain usable after a worker was restarted. Responses are
+ * expected within the remaining time of the analysis (plus 
+ * {@link #RESPONSE_GRACE_TIME}) or {@link #MAX_ANALYSIS_TIME} for analyses
+ * without a deadline. Otherwise the connection is closed.
+ */
+public class RemoteAnalyzer implements Analyzer {
+
+    /**
+     * The maximum time to wait for the response of analyses without deadline
+     */
+    private static final int MAX_ANALYSIS_TIME = 30*60*1000;
+    /**
+     * Added to the remaining time of analyses with a deadline, as the worker
+     * also needs to encode and send the results
+     */
+    private static final int RESPONSE_GRACE_TIME = 30*1000;
+
+    private final WorkerManager manager;
+    private final String language;
+
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    RemoteAnalyzer(WorkerManager manager, String language) {
+        this.manager = manager;
+        this.language = language;
+    }
+
+    /**
+     * The language of this analyzer
+     * @return the language
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    @Override
+    public AnalysedText analyse(InputStream in, Charset charset) throws IOException {
+        return analyse(manager.createBlob(in, charset), null);
+    }
+
+    @Override
+    public AnalysedText analyse(InputStream in, Charset charset, AnalysisContext context) throws IOException {
+        return analyse(manager.createBlob(in, charset), context);
+    }
+
+    @Override
+    public AnalysedText analyse(Blob blob) throws IOException {
+        return analyse(blob, null);
+    }
+
+    @Override
+    public AnalysedText analyse(Blob blob, AnalysisContext context) throws IOException {
+        return call(OP_ANALYSE, manager.createAnalysedText(blob), context);
+    }
+
+    @Override
+    public AnalysedText analyse(AnalysedText at, AnalysisContext context) {
+        if(at == null){
+            throw new IllegalArgumentException("The parsed AnalysedText MUST NOT be NULL!");
+        }
+        try {
+            return call(OP_ANALYSE_TOKENIZED, at, context);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to analyse the parsed AnalysedText "
+                + "by the worker for language '" + language + "'!", e);
+        }
+    }
+
+    /**
+     * Sends the parsed analysis request to the worker and adds the received
+     * results to the parsed {@link AnalysedText}
+     */
+    private AnalysedText call(int op, AnalysedText at, AnalysisContext context) throws IOException {
+        if(socket == null){
+            socket = manager.connect(language);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+        try {
+            long remaining = context == null || !context.hasDeadline() ? -1 :
+                Math.max(1, context.getRemainingTime());
+            socket.setSoTimeout(remaining < 0 ? MAX_ANALYSIS_TIME : 
+                (int)Math.min(MAX_ANALYSIS_TIME, remaining + RESPONSE_GRACE_TIME));
+            out.write(op);
+            out.writeUTF(language);
+            WorkerProtocol.writeTagMappings(out, TagSetRegistry.getInstance().getTagMappings());
+            out.writeLong(remaining);
+            if(op == OP_ANALYSE){
+                WorkerProtocol.writeText(out, at.getText());
+            } else {
+                manager.getCodec().encode(at, language, out);
+            }
+            out.flush();
+            int status = in.read();
+            switch (status) {
+                case STATUS_OK:
+                    manager.addLongSentences(language, WorkerProtocol.readContext(in, context));
+                    return manager.getCodec().decode(in, at);
+                case STATUS_IO_ERROR:
+                    throw new WorkerException("Worker for language '" + language
+                        + "' failed to analyse the text (" + in.readUTF() + ")");
+                case STATUS_ERROR:
+                    throw new IllegalStateException("Worker for language '" + language
+                        + "' failed to analyse the text (" + in.readUTF() + ")");
+                case -1:
+                    throw new EOFException("Connection to the worker for language '"
+                        + language + "' was closed (worker terminated?)");
+                default:
+                    throw new IOException("Invalid response status " + status
+                        + " of the worker for language '" + language + "'!");
+            }
+        } catch (WorkerException e) {
+            throw e; //the connection is still usable
+        } catch (IOException e) {
+            close(); //reconnect on the next call
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the connection to the worker
+     */
+    public void close() {
+        Socket socket = this.socket;
+        this.socket = null;
+        this.in = null;
+        this.out = null;
+        if(socket != null){
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //ignore
+            }
+        }
+    }
+
+    /**
+     * IOException reported by the worker. The connection remains usable.
+     */
+    private static class WorkerException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        WorkerException(String message) {
+            super(message);
+        }
+    }
+}
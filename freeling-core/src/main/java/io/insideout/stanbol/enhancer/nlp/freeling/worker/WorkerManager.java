@@ -0,0 +1,482 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.worker;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.HANDSHAKE;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.OP_RELOAD;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.PORT_PREFIX;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_IO_ERROR;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.STATUS_OK;
+import static io.insideout.stanbol.enhancer.nlp.freeling.worker.WorkerProtocol.UTF8;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.AnalyzerFactory;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool.ResourceFactory;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
+import org.apache.stanbol.enhancer.servicesapi.impl.StreamSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts and monitors {@link AnalyzerWorker} processes and creates the
+ * {@link RemoteAnalyzer}s used to forward analyses to them. The supported
+ * languages are distributed over the workers. Terminated workers (e.g.
+ * because of a crash of a native Freeling component) are restarted
+ * automatically. As every worker initialises its Freeling components in its
+ * own process, native initialisation is parallelised without the risks of
+ * concurrent initialisation within a single JVM.
+ */
+public class WorkerManager implements ResourceFactory<RemoteAnalyzer> {
+
+    private final Logger log = LoggerFactory.getLogger(WorkerManager.class);
+
+    /**
+     * The maximum time to wait for a worker to accept connections. Workers
+     * initialise Freeling before they accept connections.
+     */
+    public static final long DEFAULT_START_TIMEOUT = 10*60*1000;
+    private static final long MIN_RESTART_DELAY = 1000;
+    private static final long MAX_RESTART_DELAY = 60*1000;
+    /**
+     * The time to wait for a worker to terminate after its stdin was closed
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10*1000;
+
+    private final List<Worker> workers;
+    private final Map<String,Worker> languageWorkers;
+    private final List<String> command;
+    private final String token = UUID.randomUUID().toString();
+    private final long startTimeout;
+    private final ExecutorService connectExecutor;
+    /**
+     * The number of sentences cut by the workers per language
+     */
+    private final Map<String,AtomicLong> longSentences;
+
+    private final ContentItemFactory cif;
+    private final AnalysedTextFactory atf;
+    private final AnalysedTextCodec codec;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a WorkerManager and starts the worker processes
+     * @param numWorkers the number of worker processes. Limited to the number
+     * of languages
+     * @param languages the languages to distribute over the workers
+     * @param workerArguments the arguments of the worker processes as
+     * created by {@link AnalyzerWorker#getArguments(String, String, String, String, String, int, int, int, int)}
+     * @param startTimeout the maximum time to wait for a worker to accept
+     * connections. If <code>&lt;= 0</code> {@link #DEFAULT_START_TIMEOUT} is used.
+     */
+    public WorkerManager(int numWorkers, Collection<String> languages,
+            List<String> workerArguments, long startTimeout) {
+        if(numWorkers <= 0){
+            throw new IllegalArgumentException("The number of workers MUST BE > 0!");
+        }
+        if(languages == null || languages.isEmpty()){
+            throw new IllegalArgumentException("The parsed languages MUST NOT be NULL nor empty!");
+        }
+        if(workerArguments == null){
+            throw new IllegalArgumentException("The parsed worker arguments MUST NOT be NULL!");
+        }
+        this.startTimeout = startTimeout <= 0 ? DEFAULT_START_TIMEOUT : startTimeout;
+        this.cif = WorkerProtocol.lookupContentItemFactory();
+        this.atf = AnalysedTextFactory.getDefaultInstance();
+        this.codec = new AnalysedTextCodec(cif, atf);
+        //start workers with the same JVM options and class path
+        command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        for(String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()){
+            if(!jvmArg.startsWith("-agentlib") && !jvmArg.startsWith("-Xrunjdwp")){
+                command.add(jvmArg); //do not start debuggers on the same port
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(AnalyzerWorker.class.getName());
+        command.addAll(workerArguments);
+        //distribute the languages
+        List<String> sorted = new ArrayList<String>(new TreeSet<String>(languages));
+        int size = Math.min(numWorkers, sorted.size());
+        List<List<String>> assigned = new ArrayList<List<String>>(size);
+        for(int i = 0; i < size; i++){
+            assigned.add(new ArrayList<String>());
+        }
+        for(int i = 0; i < sorted.size(); i++){
+            assigned.get(i % size).add(sorted.get(i));
+        }
+        List<Worker> workers = new ArrayList<Worker>(size);
+        Map<String,Worker> languageWorkers = new HashMap<String,Worker>();
+        for(int i = 0; i < size; i++){
+            Worker worker = new Worker(i + 1, assigned.get(i));
+            workers.add(worker);
+            for(String language : assigned.get(i)){
+                languageWorkers.put(language, worker);
+            }
+        }
+        this.workers = Collections.unmodifiableList(workers);
+        this.languageWorkers = Collections.unmodifiableMap(languageWorkers);
+        Map<String,AtomicLong> longSentences = new HashMap<String,AtomicLong>();
+        for(String language : sorted){
+            longSentences.put(language, new AtomicLong());
+        }
+        this.longSentences = Collections.unmodifiableMap(longSentences);
+        connectExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "freeling-worker-connect-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for(Worker worker : workers){
+            worker.start();
+        }
+    }
+
+    /**
+     * The number of worker processes
+     * @return the number of workers
+     */
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * The number of worker processes analysing the parsed language
+     * @param language the language
+     * @return the number of workers or <code>0</code> if no worker is
+     * assigned to the parsed language
+     */
+    public int getWorkerCount(String language) {
+        return languageWorkers.containsKey(language) ? 1 : 0;
+    }
+
+    /**
+     * The number of sentences of the parsed language the workers cut
+     * because they exceeded the maximum sentence length
+     * @param language the language
+     * @return the number of cut sentences
+     */
+    public long getLongSentenceCount(String language) {
+        AtomicLong count = longSentences.get(language);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Adds sentences cut by the worker of the parsed language
+     */
+    void addLongSentences(String language, int count) {
+        AtomicLong current = longSentences.get(language);
+        if(current != null && count > 0){
+            current.addAndGet(count);
+        }
+    }
+
+    @Override
+    public Future<RemoteAnalyzer> createResource(Map<String,Object> context) {
+        final String language = (String)context.get(AnalyzerFactory.PROPERTY_LANGUAGE);
+        if(language == null || !languageWorkers.containsKey(language)){
+            throw new IllegalArgumentException("No worker for language '" + language + "'!");
+        }
+        return connectExecutor.submit(new Callable<RemoteAnalyzer>() {
+            @Override
+            public RemoteAnalyzer call() throws Exception {
+                //ensure the worker is available so that the pool does not
+                //hand out Analyzers for workers that are still starting
+                languageWorkers.get(language).awaitPort(startTimeout);
+                return new RemoteAnalyzer(WorkerManager.this, language);
+            }
+        });
+    }
+
+    @Override
+    public void closeResource(Object resource, Map<String,Object> context) {
+        if(resource instanceof RemoteAnalyzer){
+            ((RemoteAnalyzer)resource).close();
+        }
+    }
+
+    /**
+     * Requests the worker responsible for the parsed language to reload
+     * the configuration of the language
+     * @param language the language
+     * @throws IOException if the worker failed to read the configuration or
+     * on any error while communicating with the worker
+     * @throws IllegalStateException if the worker failed to reload the language
+     */
+    public void reloadLanguage(String language) throws IOException {
+        Socket socket = connect(language);
+        try { //creating the Analyzers may take as long as starting a worker
+            socket.setSoTimeout((int)Math.min(Integer.MAX_VALUE, startTimeout));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            out.write(OP_RELOAD);
+            out.writeUTF(language);
+            out.flush();
+            int status = in.read();
+            if(status == STATUS_IO_ERROR){
+                throw new IOException("Worker failed to reload language '"
+                    + language + "' (" + in.readUTF() + ")");
+            } else if(status != STATUS_OK){
+                throw new IllegalStateException("Worker failed to reload language '"
+                    + language + "' (" + (status < 0 ? "connection closed" : in.readUTF()) + ")");
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Connects to the worker of the parsed language. Waits until the worker
+     * accepts connections (e.g. while it is restarted).
+     */
+    Socket connect(String language) throws IOException {
+        Worker worker = languageWorkers.get(language);
+        if(worker == null){
+            throw new IllegalArgumentException("No worker for language '" + language + "'!");
+        }
+        int port = worker.awaitPort(startTimeout);
+        Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+        try {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(HANDSHAKE);
+            out.writeUTF(token);
+            out.flush();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    AnalysedTextCodec getCodec() {
+        return codec;
+    }
+
+    Blob createBlob(InputStream in, Charset charset) throws IOException {
+        return cif.createBlob(new StreamSource(in, "text/plain; charset="
+                + (charset == null ? UTF8 : charset).name()));
+    }
+
+    AnalysedText createAnalysedText(Blob blob) throws IOException {
+        return atf.createAnalysedText(blob);
+    }
+
+    /**
+     * Stops all worker processes
+     */
+    public void close() {
+        closed = true;
+        connectExecutor.shutdownNow();
+        for(Worker worker : workers){
+            worker.stop();
+        }
+    }
+
+    /**
+     * Starts and monitors a single worker process. Restarts the process if
+     * it terminates.
+     */
+    private class Worker implements Runnable {
+
+        private final int index;
+        private final List<String> languages;
+        private final Thread thread;
+
+        private Process process;
+        private OutputStream stdin;
+        private int port = -1;
+
+        Worker(int index, List<String> languages) {
+            this.index = index;
+            this.languages = languages;
+            this.thread = new Thread(this, "freeling-worker-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            long delay = MIN_RESTART_DELAY;
+            while(!closed){
+                long started = System.currentTimeMillis();
+                try {
+                    runProcess();
+                } catch (IOException e) {
+                    log.error("Unable to start Freeling worker " + index + " " + languages, e);
+                }
+                if(closed){
+                    break;
+                }
+                if(System.currentTimeMillis() - started > MAX_RESTART_DELAY){
+                    delay = MIN_RESTART_DELAY; //was running for some time
+                }
+                log.error("Freeling worker {} {} terminated! Restarting in {}ms",
+                    new Object[]{index, languages, delay});
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                delay = Math.min(delay * 2, MAX_RESTART_DELAY);
+            }
+        }
+
+        private void runProcess() throws IOException {
+            List<String> command = new ArrayList<String>(WorkerManager.this.command);
+            command.add(StringUtils.join(languages.iterator(), ','));
+            log.info("start Freeling worker {} for languages {}", index, languages);
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            OutputStream stdin = process.getOutputStream();
+            synchronized (this) {
+                this.process = process;
+                this.stdin = stdin;
+            }
+            //send the token. stdin is kept open as closing it stops the worker
+            stdin.write((token + '\n').getBytes(UTF8));
+            stdin.flush();
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), UTF8));
+            try {
+                String line;
+                while((line = reader.readLine()) != null){
+                    if(line.startsWith(PORT_PREFIX)){
+                        setPort(Integer.parseInt(line.substring(PORT_PREFIX.length()).trim()));
+                        log.info("Freeling worker {} {} accepts connections on port {}",
+                            new Object[]{index, languages, port});
+                    } else {
+                        log.info("[worker-{}] {}", index, line);
+                    }
+                }
+            } finally {
+                setPort(-1);
+                IOUtils.closeQuietly(reader);
+                try {
+                    log.info("Freeling worker {} exited with status {}", index, process.waitFor());
+                } catch (InterruptedException e) {
+                    process.destroy();
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (this) {
+                    IOUtils.closeQuietly(this.stdin);
+                    this.process = null;
+                    this.stdin = null;
+                }
+            }
+        }
+
+        private synchronized void setPort(int port) {
+            this.port = port;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the worker accepts connections
+         * @return the port
+         * @throws IOException if the worker does not accept connections
+         * within the parsed time or if the WorkerManager was closed
+         */
+        synchronized int awaitPort(long maxWait) throws IOException {
+            long deadline = System.currentTimeMillis() + maxWait;
+            while(port < 0 && !closed){
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0){
+                    throw new IOException("Freeling worker " + index + " " + languages
+                        + " did not accept connections within " + maxWait + "ms!");
+                }
+                try {
+                    wait(Math.min(remaining, 1000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for Freeling worker "
+                        + index + " " + languages);
+                }
+            }
+            if(closed){
+                throw new IOException("The WorkerManager is already closed!");
+            }
+            return port;
+        }
+
+        /**
+         * Closes stdin of the worker (what causes the worker to shutdown) and
+         * destroys the process if it does not terminate in time.
+         */
+        void stop() {
+            Process process;
+            synchronized (this) {
+                process = this.process;
+                IOUtils.closeQuietly(stdin);
+                notifyAll();
+            }
+            if(process != null){
+                try {
+                    thread.join(SHUTDOWN_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                process.destroy();
+            }
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.worker;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisLayer;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagMappings;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
+
+/**
+ * Constants and helper methods of the protocol used between the
+ * {@link WorkerManager} and the {@link AnalyzerWorker} processes.<p>
+ * After connecting, the client sends {@link #HANDSHAKE} followed by the
+ * token the worker was started with. Afterwards requests are processed
+ * sequentially. Every request starts with the operation and the language.
+ * Analysis requests continue with the directory (empty for the defaults) 
+ * and the load time of the tag mappings active in the client, the remaining
+ * time of the analysis (<code>-1</code> if none) and the plain text or the
+ * encoded tokenized
+ * {@link org.apache.stanbol.enhancer.nlp.model.AnalysedText}. Responses
+ * start with the status. Successful analyses continue with the omitted
+ * layers, the sentence cuts, the number of cut sentences and the encoded
+ * AnalysedText. Errors continue
+ * with the message.
+ */
+final class WorkerProtocol {
+
+    private WorkerProtocol(){/* no instances */}
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final int HANDSHAKE = 0x46524C57; //FRLW
+    /**
+     * Printed by workers to stdout as soon as they accept connections
+     */
+    static final String PORT_PREFIX = "FREELING-WORKER-PORT ";
+
+    static final int OP_ANALYSE = 1;
+    static final int OP_ANALYSE_TOKENIZED = 2;
+    static final int OP_RELOAD = 3;
+
+    static final int STATUS_OK = 0;
+    static final int STATUS_IO_ERROR = 1;
+    static final int STATUS_ERROR = 2;
+
+    static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] data = text.getBytes(UTF8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    static String readText(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new String(data, UTF8);
+    }
+
+    /**
+     * Writes the directory and the load time of the parsed tag mappings.
+     * Workers use the same mappings as the client, as encoded analyses 
+     * contain mapped tags.
+     */
+    static void writeTagMappings(DataOutputStream out, TagMappings mappings) throws IOException {
+        out.writeUTF(mappings.getDirectory() == null ? "" : mappings.getDirectory().getAbsolutePath());
+        out.writeLong(mappings.getLoadTime());
+    }
+
+    static void writeError(DataOutputStream out, int status, Exception e) throws IOException {
+        out.write(status);
+        String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+        out.writeUTF(message.length() > 4096 ? message.substring(0, 4096) : message);
+    }
+    /**
+     * Writes the omitted layers, the sentence cuts and the number of cut
+     * sentences of the parsed context
+     */
+    static void writeContext(DataOutputStream out, AnalysisContext context) throws IOException {
+        Set<AnalysisLayer> omitted = context.getOmittedLayers();
+        out.writeInt(omitted.size());
+        for(AnalysisLayer layer : omitted){
+            out.writeUTF(layer.name());
+        }
+        List<Integer> cuts = context.getSentenceCuts();
+        out.writeInt(cuts.size());
+        for(Integer cut : cuts){
+            out.writeInt(cut);
+        }
+        out.writeInt(context.getLongSentenceCount());
+    }
+    /**
+     * Reads the omitted layers, the sentence cuts and the number of cut
+     * sentences and adds them to the parsed context (if not <code>null</code>)
+     * @return the number of sentences cut by the worker
+     */
+    static int readContext(DataInputStream in, AnalysisContext context) throws IOException {
+        int count = in.readInt();
+        for(int i = 0; i < count; i++){
+            String layer = in.readUTF();
+            if(context != null){
+                try {
+                    context.addOmittedLayer(AnalysisLayer.valueOf(layer));
+                } catch (IllegalArgumentException e) {
+                    //unknown layer ... ignore
+                }
+            }
+        }
+        count = in.readInt();
+        for(int i = 0; i < count; i++){
+            int cut = in.readInt();
+            if(context != null){
+                context.addSentenceCut(cut);
+            }
+        }
+        int longSentences = in.readInt();
+        if(context != null){
+            context.addLongSentences(longSentences);
+        }
+        return longSentences;
+    }
+
+    static ContentItemFactory lookupContentItemFactory(){
+        Iterator<ContentItemFactory> cifIt = ServiceLoader.load(ContentItemFactory.class).iterator();
+        if(cifIt.hasNext()){
+            return cifIt.next();
+        } else {
+            throw new IllegalStateException("No ContentItemFactory Implementation available!");
+        }
+    }
+}
@@ -24,6 +24,7 @@ import io.insideout.stanbol.enhancer.nlp.freeling.Analyzer;
 import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
 import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier;
 import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.NGramLanguageIdentifier;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.PoolTimeoutException;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
 
@@ -34,6 +35,7 @@ import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
 import org.apache.stanbol.enhancer.nlp.model.AnalysedTextUtils;
@@ -65,6 +67,10 @@ public class TestFreelingAnalysis {
 
     private static final Charset UTF8 = Charset.forName("UTF-8");
     
+    private static final String[] LANG_ID_SAMPLES = new String[]{ 
+        "en","es","it","de","pt","bg","cs","fr","hi","ja","ru","sl","zh",
+        "ca","gl","hr","sk","sr"};
+    
     private static Freeling freeling;
     
         
@@ -336,10 +342,7 @@ public class TestFreelingAnalysis {
     public void testLanguageDetection() throws IOException, PoolTimeoutException {
         Assert.assertTrue(freeling.isLanguageIdentificationSupported());
         ResourcePool<LanguageIdentifier> langIdPool = freeling.getLangIdPool();
-        String[] languages = new String[]{ 
-                "en","es","it","de","pt","bg","cs","fr","hi","ja","ru","sl","zh",
-                "ca","gl","hr","sk","sr"};
-        for(String lang : languages){
+        for(String lang : LANG_ID_SAMPLES){
             String resourceName = lang+".txt";
             InputStream in = cl.getResourceAsStream(resourceName);
             Assert.assertNotNull("unable to load resource "+resourceName, in);
@@ -365,6 +368,44 @@ public class TestFreelingAnalysis {
         }
     }
     
+    /**
+     * Checks that the pure Java language identifier detects the same 
+     * languages as the native one
+     */
+    @Test
+    public void testJavaLanguageDetection() throws IOException, PoolTimeoutException {
+        Assert.assertTrue(freeling.isLanguageIdentificationSupported());
+        ResourcePool<LanguageIdentifier> langIdPool = freeling.getLangIdPool();
+        LanguageIdentifier javaLangId = new NGramLanguageIdentifier(
+            FilenameUtils.concat(freelingSharePath, "common/lang_ident/ident.dat"));
+        for(String lang : LANG_ID_SAMPLES){
+            String resourceName = lang+".txt";
+            InputStream in = cl.getResourceAsStream(resourceName);
+            Assert.assertNotNull("unable to load resource "+resourceName, in);
+            String langText = IOUtils.toString(in);
+            LanguageIdentifier langId = langIdPool.getResource(30*1000);
+            Assert.assertNotNull(langId);
+            List<Language> expected;
+            try {
+                expected = langId.identifyLanguage(langText);
+            } finally {
+                langIdPool.returnResource(langId);
+            }
+            List<Language> detected = javaLangId.identifyLanguage(langText);
+            log.info(" {} detected for {} (native: {})",new Object[]{detected,lang,expected});
+            Assert.assertNotNull(detected);
+            //compare the whole ranking and not only the best language
+            Assert.assertEquals("Different number of Languages detected for "+lang,
+                expected.size(), detected.size());
+            for(int i = 0; i < expected.size(); i++){
+                Assert.assertEquals("Different Language ranked at position "+i+" for "+lang,
+                    expected.get(i).getLang(),detected.get(i).getLang());
+                Assert.assertEquals("Different probability of "+expected.get(i).getLang()
+                    + " for "+lang, expected.get(i).getProb(), detected.get(i).getProb(), 0.05);
+            }
+        }
+    }
+    
     @AfterClass
     public static final void cleanUp(){
         freeling.close();
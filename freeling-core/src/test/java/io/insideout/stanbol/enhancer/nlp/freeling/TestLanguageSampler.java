@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that the windows sampled by the {@link LanguageSampler} from
+ * {@link Blob}s are aligned to chars for multi byte charsets.
+ */
+public class TestLanguageSampler {
+
+    private static final int PREFIX_SIZE = 100;
+    private static final int WINDOWS = 3;
+    private static final int WINDOW_SIZE = 64;
+
+    @Test
+    public void testUtf8Windows() throws IOException {
+        assertWindows(createText(), "UTF-8");
+    }
+
+    @Test
+    public void testUtf16Windows() throws IOException {
+        assertWindows(createText(), "UTF-16");
+    }
+
+    @Test
+    public void testStringWindows() {
+        String text = createText();
+        RecordingIdentifier langId = new RecordingIdentifier();
+        new LanguageSampler(PREFIX_SIZE, WINDOWS, WINDOW_SIZE, 0.3).identifyLanguage(langId, text);
+        assertSamples(text, langId.samples);
+    }
+
+    private void assertWindows(String text, String charset) throws IOException {
+        RecordingIdentifier langId = new RecordingIdentifier();
+        LanguageSampler sampler = new LanguageSampler(PREFIX_SIZE, WINDOWS, WINDOW_SIZE, 0.3);
+        sampler.identifyLanguage(langId, new TestBlob(text, charset));
+        assertSamples(text, langId.samples);
+    }
+
+    private void assertSamples(String text, List<String> samples) {
+        //the prefix and one sample for each window
+        Assert.assertEquals(WINDOWS + 1, samples.size());
+        Assert.assertEquals(text.substring(0, PREFIX_SIZE), samples.get(0));
+        String sample = samples.get(samples.size()-1);
+        String[] parts = sample.split("\n");
+        Assert.assertEquals(WINDOWS + 1, parts.length);
+        for(int i = 1; i < parts.length; i++){
+            Assert.assertFalse("empty window " + i, parts[i].isEmpty());
+            Assert.assertTrue("window '" + parts[i] + "' is not part of the text",
+                text.contains(parts[i]));
+        }
+    }
+
+    /**
+     * Text with chars encoded by one to four bytes in UTF-8 and a surrogate
+     * pair in UTF-16
+     */
+    private static String createText() {
+        String[] words = new String[]{"text", "\u00e4\u00f6\u00fc\u00df", "\u20ac\u20ac",
+                "\u65e5\u672c\u8a9e", "\ud834\udd1e", "sample"};
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; text.length() < 10000; i++){
+            text.append(words[i % words.length]).append(' ');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Records the parsed texts and never returns decisive results so that
+     * all windows are sampled
+     */
+    private static class RecordingIdentifier implements LanguageIdentifier {
+
+        private final List<String> samples = new ArrayList<String>();
+
+        @Override
+        public List<Language> identifyLanguage(String text) {
+            samples.add(text);
+            return Arrays.asList(new Language("en", 0.5), new Language("de", 0.5));
+        }
+
+        @Override
+        public List<Language> identifyLanguage(String text, String languages) {
+            return identifyLanguage(text);
+        }
+    }
+
+    private static class TestBlob implements Blob {
+
+        private final byte[] data;
+        private final Map<String,String> parameter;
+
+        TestBlob(String text, String charset) {
+            this.data = text.getBytes(Charset.forName(charset));
+            this.parameter = Collections.singletonMap("charset", charset);
+        }
+
+        @Override
+        public String getMimeType() {
+            return "text/plain";
+        }
+
+        @Override
+        public InputStream getStream() {
+            return new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public Map<String,String> getParameter() {
+            return parameter;
+        }
+
+        @Override
+        public long getContentLength() {
+            return data.length;
+        }
+    }
+}
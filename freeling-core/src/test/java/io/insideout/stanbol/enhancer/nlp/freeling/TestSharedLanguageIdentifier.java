@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.LanguageIdentifierImpl;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.NativeLibsUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.upc.freeling.Util;
+
+/**
+ * Stress test for {@link Freeling.LangIdMode#SHARED}: A single native
+ * LangIdent instance is used concurrently by many threads. The results
+ * MUST BE the same as for thread confined (pooled) instances.
+ */
+public class TestSharedLanguageIdentifier {
+
+    private static final ClassLoader cl = TestSharedLanguageIdentifier.class.getClassLoader();
+    
+    private final static Logger log = LoggerFactory.getLogger(TestSharedLanguageIdentifier.class);
+    
+    private static final String freelingSharePath = "/usr/local/Cellar/freeling/3.0/share/freeling";
+    
+    private static final String[] LANG_ID_SAMPLES = new String[]{ 
+        "en","es","it","de","pt","bg","cs","fr","hi","ja","ru","sl","zh",
+        "ca","gl","hr","sk","sr"};
+    
+    private static final int ROUNDS = 50;
+    
+    private static LanguageIdentifierImpl sharedLangId;
+    /**
+     * The expected results as calculated by a thread confined instance
+     */
+    private static Map<String,List<Language>> expected;
+    /**
+     * The candidate languages used to test the allowed languages
+     */
+    private static final String CANDIDATES = "en,es,de";
+    /**
+     * The expected results for the {@link #CANDIDATES}
+     */
+    private static Map<String,List<Language>> expectedCandidates;
+    
+    @BeforeClass
+    public static void init() throws IOException {
+        NativeLibsUtil.ensureNativeLib(Freeling.DEFAULT_FREELING_LIB_PATH);
+        Util.initLocale(Freeling.DEFAULT_FREELING_LOCALE);
+        String identConfig = FilenameUtils.concat(freelingSharePath, "common/lang_ident/ident.dat");
+        sharedLangId = new LanguageIdentifierImpl(identConfig);
+        LanguageIdentifierImpl pooledLangId = new LanguageIdentifierImpl(identConfig);
+        expected = new HashMap<String,List<Language>>();
+        expectedCandidates = new HashMap<String,List<Language>>();
+        try {
+            for(String lang : LANG_ID_SAMPLES){
+                String resourceName = lang+".txt";
+                InputStream in = cl.getResourceAsStream(resourceName);
+                Assert.assertNotNull("unable to load resource "+resourceName, in);
+                String text = IOUtils.toString(in, "UTF-8");
+                IOUtils.closeQuietly(in);
+                expected.put(text, pooledLangId.identifyLanguage(text));
+                expectedCandidates.put(text, pooledLangId.identifyLanguage(text, CANDIDATES));
+            }
+        } finally {
+            pooledLangId.close();
+        }
+    }
+    
+    @Test
+    public void testConcurrentIdentification() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors()*2;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        try {
+            for(int i = 0; i < threads; i++){
+                final int offset = i;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        List<Entry<String,List<Language>>> entries = 
+                                new ArrayList<Entry<String,List<Language>>>(expected.entrySet());
+                        start.await(); //maximise contention
+                        int mismatches = 0;
+                        for(int r = 0; r < ROUNDS; r++){
+                            for(int j = 0; j < entries.size(); j++){
+                                Entry<String,List<Language>> entry = 
+                                        entries.get((j + offset) % entries.size());
+                                //test both with and without allowed languages
+                                List<Language> expectedLangs = r % 2 == 0 ? entry.getValue() :
+                                        expectedCandidates.get(entry.getKey());
+                                List<Language> detected = r % 2 == 0 ? 
+                                        sharedLangId.identifyLanguage(entry.getKey()) :
+                                        sharedLangId.identifyLanguage(entry.getKey(), CANDIDATES);
+                                if(!expectedLangs.equals(detected)){
+                                    log.warn("expected {} but was {}",expectedLangs,detected);
+                                    mismatches++;
+                                }
+                            }
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            long startTime = System.currentTimeMillis();
+            start.countDown();
+            int mismatches = 0;
+            for(Future<Integer> result : results){
+                mismatches = mismatches + result.get();
+            }
+            log.info("{} threads processed {} texts in {}ms", new Object[]{
+                    threads, threads*ROUNDS*expected.size(), 
+                    System.currentTimeMillis()-startTime});
+            Assert.assertEquals("Results of the shared LanguageIdentifier differ "
+                + "from the thread confined one", 0, mismatches);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @AfterClass
+    public static void cleanUp(){
+        if(sharedLangId != null){
+            sharedLangId.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.impl;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of language models by the {@link NGramLanguageIdentifier}.
+ * Uses small generated models so that no Freeling installation is needed.
+ */
+public class TestNGramLanguageIdentifier {
+
+    private static final String EN_MODEL = "<Code>\nen\n</Code>\n<Order>\n3\n</Order>\n"
+            + " t 10\nth 10\nhe 10\ne  10\n" + " th 10\nthe 10\nhe  10\n";
+    private static final String DE_MODEL = "<Code>\nde\n</Code>\n<Order>\n3\n</Order>\n"
+            + " d 10\nde 10\ner 10\nr  10\n" + " de 10\nder 10\ner  10\n";
+
+    private File dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = File.createTempFile("ngram", "");
+        dir.delete();
+        Assert.assertTrue(dir.mkdir());
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testIdentifyLanguage() throws IOException {
+        NGramLanguageIdentifier langId = createIdentifier(EN_MODEL, DE_MODEL);
+        List<Language> detected = langId.identifyLanguage("the the the");
+        Assert.assertFalse(detected.isEmpty());
+        Assert.assertEquals("en", detected.get(0).getLang());
+        detected = langId.identifyLanguage("der der der");
+        Assert.assertFalse(detected.isEmpty());
+        Assert.assertEquals("de", detected.get(0).getLang());
+        for(int i = 1; i < detected.size(); i++){ //sorted by probability
+            Assert.assertTrue(detected.get(i-1).getProb() >= detected.get(i).getProb());
+        }
+        //only the parsed candidates are considered
+        detected = langId.identifyLanguage("der der der", "en");
+        Assert.assertEquals(1, detected.size());
+        Assert.assertEquals("en", detected.get(0).getLang());
+    }
+
+    @Test
+    public void testReadLanguageCodes() throws IOException {
+        //codes from the model or the name of the model file
+        FileUtils.writeStringToFile(new File(dir, "english.dat"), EN_MODEL, "UTF-8");
+        FileUtils.writeStringToFile(new File(dir, "de.dat"), DE_MODEL.replace("<Code>\nde\n</Code>\n", ""), "UTF-8");
+        File config = new File(dir, "ident.dat");
+        FileUtils.writeStringToFile(config, "<Languages>\nenglish.dat\nde.dat\n</Languages>\n", "UTF-8");
+        Set<String> codes = NGramLanguageIdentifier.readLanguageCodes(config.getAbsolutePath());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("en", "de")), codes);
+        Assert.assertEquals(codes, new NGramLanguageIdentifier(config.getAbsolutePath()).getLanguages());
+    }
+
+    @Test
+    public void testParseLanguages() {
+        Set<String> known = new HashSet<String>(Arrays.asList("en", "de", "es"));
+        Assert.assertNull(LanguageIdentifierImpl.parseLanguages(" ", known));
+        //unknown languages are dropped and the others sorted
+        Assert.assertEquals(Arrays.asList("de", "en"), new ArrayList<String>(
+            LanguageIdentifierImpl.parseLanguages("en, xx,de,,en", known)));
+        Assert.assertEquals(Arrays.asList("xx"), new ArrayList<String>(
+            LanguageIdentifierImpl.parseLanguages(" xx ", null)));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoKnownLanguage() {
+        LanguageIdentifierImpl.parseLanguages("xx,yy", Collections.singleton("en"));
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnparseableLine() throws IOException {
+        createIdentifier(EN_MODEL + "theend\n", DE_MODEL);
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnparseableCount() throws IOException {
+        createIdentifier(EN_MODEL, DE_MODEL + "der ten\n");
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnsupportedNGram() throws IOException {
+        createIdentifier(EN_MODEL + "there 10\n", DE_MODEL);
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnsupportedOrder() throws IOException {
+        createIdentifier(EN_MODEL.replace("<Order>\n3\n", "<Order>\n5\n"), DE_MODEL);
+    }
+
+    private NGramLanguageIdentifier createIdentifier(String enModel, String deModel) throws IOException {
+        FileUtils.writeStringToFile(new File(dir, "en.dat"), enModel, "UTF-8");
+        FileUtils.writeStringToFile(new File(dir, "de.dat"), deModel, "UTF-8");
+        File config = new File(dir, "ident.dat");
+        FileUtils.writeStringToFile(config, "<Languages>\nen en.dat\nde de.dat\n</Languages>\n", "UTF-8");
+        return new NGramLanguageIdentifier(config.getAbsolutePath());
+    }
+}
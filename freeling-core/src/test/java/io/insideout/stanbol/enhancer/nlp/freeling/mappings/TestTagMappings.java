@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.mappings;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests parsing of the tag mapping files and the reloading of the
+ * {@link TagSetRegistry}. Does not require Freeling to be installed.
+ */
+public class TestTagMappings {
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("tagmappings", "");
+        directory.delete();
+        directory.mkdir();
+    }
+    
+    @After
+    public void resetRegistry() throws IOException {
+        TagSetRegistry.getInstance().setMappingDirectory(null);
+        FileUtils.deleteQuietly(directory);
+    }
+    
+    @Test
+    public void testDefaultMappings() throws IOException {
+        TagMappings mappings = TagMappings.load(null);
+        for(String lang : new String[]{"en","es","pt","ca","it","gl","ru","cy"}){
+            Assert.assertNotNull("Missing POS TagSet for "+lang, mappings.getPosTagSet(lang));
+            Assert.assertNotNull("Missing TagMapper for "+lang, mappings.getPosTagMapper(lang));
+            Assert.assertNotNull("Missing NER TagSet for "+lang, mappings.getNerTagSet(lang));
+        }
+        //'as' only defines a TagMapper
+        Assert.assertNull(mappings.getPosTagSet("as"));
+        Assert.assertEquals("NP", mappings.getPosTagMapper("as").map("NP00SP0"));
+        Assert.assertEquals("VMI", mappings.getPosTagMapper("es").map("VMIP3S0"));
+        Assert.assertEquals("X", mappings.getPosTagMapper("es").map(""));
+        Assert.assertEquals("NC", mappings.getPosTagMapper("ru").map("NCFSNN"));
+        Assert.assertEquals("GA", mappings.getPosTagMapper("cy").map("GAX"));
+        PosTag tag = mappings.getPosTagSet("en").getTag("JJR");
+        Assert.assertTrue(tag.hasCategory(LexicalCategory.Adjective));
+        Assert.assertTrue(tag.hasPos(Pos.ComparativeParticle));
+        //included common tags
+        Assert.assertTrue(mappings.getPosTagSet("es").getTag("Fp").hasPos(Pos.Point));
+        Assert.assertNotNull(mappings.getNerTagSet("es").getTag("NP00SP0").getType());
+    }
+    
+    @Test
+    public void testReload() throws IOException {
+        TagSetRegistry registry = TagSetRegistry.getInstance();
+        TagLookup lookup = registry.getTagLookup("es");
+        Assert.assertTrue(lookup.getPosTag("NCMS000").hasPos(Pos.CommonNoun));
+        //an unmapped tag results in an adhoc tag
+        Assert.assertTrue(lookup.getPosTag("QQ").getPos().isEmpty());
+        //override the parole mappings
+        FileUtils.writeStringToFile(new File(directory, "freeling-parole.tags"),
+            "@name Test\n@languages es pt ca it gl\n@truncate NQ 2\n"
+            + "NC Pos.ProperNoun\nQQ Pos.Particle\n", "UTF-8");
+        registry.setMappingDirectory(directory);
+        //the same lookup instance now uses the reloaded mappings
+        Assert.assertTrue(lookup.getPosTag("NCMS000").hasPos(Pos.ProperNoun));
+        Assert.assertTrue(lookup.getPosTag("QQ").hasPos(Pos.Particle));
+        //a broken file keeps the active mappings
+        FileUtils.writeStringToFile(new File(directory, "freeling-parole.tags"),
+            "@languages es\nNC Pos.Unknown\n", "UTF-8");
+        try {
+            registry.reload();
+            Assert.fail("IOException expected for invalid tag mapping file");
+        } catch (IOException e) {
+            //expected
+        }
+        Assert.assertTrue(lookup.getPosTag("NCMS000").hasPos(Pos.ProperNoun));
+    }
+}
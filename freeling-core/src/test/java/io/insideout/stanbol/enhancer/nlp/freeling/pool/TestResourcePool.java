@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.pool;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool.ResourceFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the retirement of a {@link ResourcePool} replaced by a reload
+ */
+public class TestResourcePool {
+
+    private static final long MAX_WAIT_TIME = 1000;
+
+    @Test
+    public void testRetire() throws PoolTimeoutException {
+        TestFactory factory = new TestFactory();
+        ResourcePool<Object> pool = new ResourcePool<Object>(2, 0, factory, null);
+        Object inFlight = pool.getResource(MAX_WAIT_TIME);
+        ResourcePool<Object> successor = new ResourcePool<Object>(2, 0, factory, null);
+        pool.retire(successor);
+        //in-flight resources are not closed
+        Assert.assertTrue(factory.closed.isEmpty());
+        //requests to the retired pool are forwarded to the successor
+        Object forwarded = pool.getResource(MAX_WAIT_TIME);
+        Assert.assertEquals(1, successor.getBorrowedCount());
+        pool.returnResource(forwarded);
+        Assert.assertEquals(0, successor.getBorrowedCount());
+        Assert.assertTrue(factory.closed.isEmpty());
+        //in-flight resources are closed when returned
+        pool.returnResource(inFlight);
+        Assert.assertEquals(1, factory.closed.size());
+        Assert.assertSame(inFlight, factory.closed.get(0));
+        Assert.assertEquals(0, pool.getBorrowedCount());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testClosed() throws PoolTimeoutException {
+        ResourcePool<Object> pool = new ResourcePool<Object>(2, 0, new TestFactory(), null);
+        pool.close();
+        pool.getResource(MAX_WAIT_TIME);
+    }
+
+    /**
+     * Creates resources in the calling thread and records closed ones
+     */
+    private static class TestFactory implements ResourceFactory<Object> {
+
+        private final List<Object> closed = new ArrayList<Object>();
+
+        @Override
+        public Future<Object> createResource(Map<String,Object> context) {
+            FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return new Object();
+                }
+            });
+            task.run();
+            return task;
+        }
+
+        @Override
+        public void closeResource(Object resource, Map<String,Object> context) {
+            closed.add(resource);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.util;
+
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.MORPHO_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.POS_ANNOTATION;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.apache.stanbol.enhancer.nlp.model.Section;
+import org.apache.stanbol.enhancer.nlp.model.Span;
+import org.apache.stanbol.enhancer.nlp.model.Span.SpanTypeEnum;
+import org.apache.stanbol.enhancer.nlp.model.Token;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.morpho.MorphoFeatures;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
+import org.apache.stanbol.enhancer.servicesapi.impl.StringSource;
+
+/**
+ * Creates the {@link AnalysedText} instances used by the tests of the codec
+ * and of the writers of the web module (shared via the test jar of this
+ * module).
+ */
+public final class AnalysedTextFixture {
+
+    private static ContentItemFactory cif;
+
+    private AnalysedTextFixture() {}
+
+    /**
+     * The {@link ContentItemFactory} found via the {@link ServiceLoader}
+     */
+    public static synchronized ContentItemFactory getContentItemFactory(){
+        if(cif == null){
+            cif = ServiceLoader.load(ContentItemFactory.class).iterator().next();
+        }
+        return cif;
+    }
+
+    public static AnalysedTextFactory getAnalysedTextFactory(){
+        return AnalysedTextFactory.getDefaultInstance();
+    }
+
+    /**
+     * Creates an AnalysedText without any span for the parsed text
+     */
+    public static AnalysedText createAnalysedText(String text) throws IOException {
+        return getAnalysedTextFactory().createAnalysedText(
+            getContentItemFactory().createBlob(new StringSource(text)));
+    }
+
+    /**
+     * Adds a token with the parsed POS annotation and a morpho annotation
+     * with the parsed lemma as created by the Freeling Analyzers.
+     * @param section the section (e.g. the AnalysedText or a Sentence)
+     * @param start the start of the token relative to the text
+     * @param end the end of the token relative to the text
+     */
+    public static Token addToken(Section section, int start, int end, String lemma,
+            Value<PosTag> pos){
+        Token token = section.addToken(start - section.getStart(), end - section.getStart());
+        token.addAnnotation(POS_ANNOTATION, pos);
+        MorphoFeatures morpho = new MorphoFeatures(lemma);
+        morpho.addPos(pos.value());
+        token.addAnnotation(MORPHO_ANNOTATION, Value.value(morpho));
+        return token;
+    }
+
+    /**
+     * The sentences, chunks and tokens of the parsed text in document order
+     */
+    public static List<Span> getSpans(AnalysedText at){
+        List<Span> spans = new ArrayList<Span>();
+        Iterator<Span> it = at.getEnclosed(EnumSet.of(
+            SpanTypeEnum.Sentence, SpanTypeEnum.Chunk, SpanTypeEnum.Token));
+        while(it.hasNext()){
+            spans.add(it.next());
+        }
+        return spans;
+    }
+}
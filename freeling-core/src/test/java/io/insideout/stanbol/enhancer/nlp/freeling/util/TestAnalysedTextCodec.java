@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.util;
+
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.MORPHO_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.NER_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.PHRASE_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.POS_ANNOTATION;
+import static io.insideout.stanbol.enhancer.nlp.freeling.MultiLanguageAnalyzer.LANGUAGE_ANNOTATION;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.addToken;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getAnalysedTextFactory;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getContentItemFactory;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getSpans;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagLookup;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.Chunk;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.nlp.model.Span;
+import org.apache.stanbol.enhancer.nlp.model.Token;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.morpho.MorphoFeatures;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Round trip tests for the {@link AnalysedTextCodec}. Does not need a
+ * Freeling installation.
+ */
+public class TestAnalysedTextCodec {
+
+    private static final String LANGUAGE = "es";
+    private static final String TEXT = "Juan vive en Barcelona.";
+
+    private static AnalysedTextCodec codec;
+    private static TagLookup tagLookup;
+
+    @BeforeClass
+    public static void init(){
+        codec = new AnalysedTextCodec(getContentItemFactory(), getAnalysedTextFactory());
+        tagLookup = TagSetRegistry.getInstance().getTagLookup(LANGUAGE);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        AnalysedText at = createAnalysedText();
+        AnalysedText decoded = codec.decode(new ByteArrayInputStream(encode(at)));
+        Assert.assertEquals(TEXT, decoded.getText());
+        assertEquals(at, decoded);
+    }
+
+    @Test
+    public void testDecodeToTarget() throws IOException {
+        AnalysedText at = createAnalysedText();
+        byte[] data = encode(at);
+        AnalysedText target = AnalysedTextFixture.createAnalysedText(TEXT);
+        target.addToken(0, 4); //existing spans are reused
+        Assert.assertSame(target, codec.decode(new ByteArrayInputStream(data), target));
+        assertEquals(at, target);
+    }
+
+    /**
+     * Mapped tags MUST NOT be mapped a second time by the decoder
+     */
+    @Test
+    public void testTagsAreNotMappedTwice() throws IOException {
+        AnalysedText decoded = codec.decode(new ByteArrayInputStream(encode(createAnalysedText())));
+        Iterator<Token> tokens = decoded.getTokens();
+        Token token = tokens.next();
+        Assert.assertSame(tagLookup.getPosTag("NP00SP0"), 
+            token.getAnnotation(POS_ANNOTATION).value());
+    }
+
+    /**
+     * The languages of segments are encoded and the tags of a sentence are
+     * resolved with the tag mappings of its language
+     */
+    @Test
+    public void testSegmentLanguages() throws IOException {
+        String text = "Juan vive en Barcelona. John lives in London.";
+        AnalysedText at = AnalysedTextFixture.createAnalysedText(text);
+        TagLookup enTagLookup = TagSetRegistry.getInstance().getTagLookup("en");
+        Sentence es = at.addSentence(0, 23);
+        es.addAnnotation(LANGUAGE_ANNOTATION, Value.value(LANGUAGE));
+        at.addToken(0, 4).addAnnotation(POS_ANNOTATION, 
+            Value.value(tagLookup.getPosTag("NP00SP0"), 0.9));
+        Sentence en = at.addSentence(24, text.length());
+        en.addAnnotation(LANGUAGE_ANNOTATION, Value.value("en"));
+        at.addToken(24, 28).addAnnotation(POS_ANNOTATION, 
+            Value.value(enTagLookup.getPosTag("NP00SP0"), 0.9));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(at, LANGUAGE, out);
+        AnalysedText decoded = codec.decode(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(at, decoded);
+        List<Span> spans = getSpans(decoded);
+        Assert.assertEquals(LANGUAGE, spans.get(0).getAnnotation(LANGUAGE_ANNOTATION).value());
+        Assert.assertEquals("en", spans.get(2).getAnnotation(LANGUAGE_ANNOTATION).value());
+    }
+
+    /**
+     * Tags that are not known by the {@link TagLookup} of the decoder (or
+     * that are mapped differently) are decoded with the encoded 
+     * {@link Pos}, {@link LexicalCategory} and NER type
+     */
+    @Test
+    public void testTagFields() throws IOException {
+        AnalysedText at = AnalysedTextFixture.createAnalysedText(TEXT);
+        at.addSentence(0, TEXT.length());
+        PosTag posTag = new PosTag("XYZ", EnumSet.of(LexicalCategory.Noun, LexicalCategory.Residual),
+            EnumSet.of(Pos.ProperNoun, Pos.Foreign));
+        PhraseTag phraseTag = new PhraseTag("xyz", LexicalCategory.Verb);
+        NerTag nerTag = new NerTag("xyz", new UriRef("http://example.org/Type"));
+        Chunk chunk = at.addChunk(0, 4);
+        chunk.addAnnotation(PHRASE_ANNOTATION, Value.value(phraseTag));
+        chunk.addAnnotation(NER_ANNOTATION, Value.value(nerTag));
+        at.addToken(0, 4).addAnnotation(POS_ANNOTATION, Value.value(posTag));
+        at.addToken(5, 9).addAnnotation(POS_ANNOTATION, Value.value(posTag));
+        List<Span> spans = getSpans(codec.decode(new ByteArrayInputStream(encode(at))));
+        PosTag decodedPos = spans.get(2).getAnnotation(POS_ANNOTATION).value();
+        Assert.assertEquals(posTag.getTag(), decodedPos.getTag());
+        Assert.assertEquals(posTag.getPos(), decodedPos.getPos());
+        Assert.assertEquals(posTag.getCategories(), decodedPos.getCategories());
+        //referenced by the tag table
+        Assert.assertSame(decodedPos, spans.get(3).getAnnotation(POS_ANNOTATION).value());
+        PhraseTag decodedPhrase = spans.get(1).getAnnotation(PHRASE_ANNOTATION).value();
+        Assert.assertEquals(LexicalCategory.Verb, decodedPhrase.getCategory());
+        NerTag decodedNer = spans.get(1).getAnnotation(NER_ANNOTATION).value();
+        Assert.assertEquals(nerTag.getType(), decodedNer.getType());
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncated() throws IOException {
+        byte[] data = encode(createAnalysedText());
+        codec.decode(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 3)));
+    }
+
+    @Test(expected=IOException.class)
+    public void testOtherText() throws IOException {
+        byte[] data = encode(createAnalysedText());
+        codec.decode(new ByteArrayInputStream(data), 
+            AnalysedTextFixture.createAnalysedText("Other text"));
+    }
+
+    /**
+     * Texts with the same length but a different content MUST be rejected
+     */
+    @Test(expected=IOException.class)
+    public void testOtherTextSameLength() throws IOException {
+        byte[] data = encode(createAnalysedText());
+        String other = TEXT.replace('J', 'j');
+        Assert.assertEquals(TEXT.length(), other.length());
+        codec.decode(new ByteArrayInputStream(data), 
+            AnalysedTextFixture.createAnalysedText(other));
+    }
+
+    @Test(expected=IOException.class)
+    public void testMalformedVarint() throws IOException {
+        //more than 31 bits
+        AnalysedTextCodec.readVarint(new ByteArrayInputStream(
+            new byte[]{(byte)0xff,(byte)0xff,(byte)0xff,(byte)0xff,(byte)0x0f}));
+    }
+
+    /**
+     * Lengths exceeding the available data MUST NOT allocate the parsed
+     * length upfront
+     */
+    @Test(expected=IOException.class)
+    public void testStringLengthOutOfBounds() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnalysedTextCodec.writeVarint(out, Integer.MAX_VALUE);
+        out.write(new byte[]{'a','b','c'});
+        AnalysedTextCodec.readString(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testVarint() throws IOException {
+        int[] values = new int[]{0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for(int value : values){
+            AnalysedTextCodec.writeVarint(out, value);
+        }
+        Assert.assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 5, out.size());
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        for(int value : values){
+            Assert.assertEquals(value, AnalysedTextCodec.readVarint(in));
+        }
+    }
+
+    private static byte[] encode(AnalysedText at) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(at, LANGUAGE, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates an AnalysedText with the annotations as created by the Freeling
+     * Analyzers
+     */
+    private static AnalysedText createAnalysedText() throws IOException {
+        AnalysedText at = AnalysedTextFixture.createAnalysedText(TEXT);
+        at.addSentence(0, TEXT.length());
+        Chunk chunk = at.addChunk(13, 22);
+        chunk.addAnnotation(PHRASE_ANNOTATION, Value.value(tagLookup.getPhraseTag("sn")));
+        chunk.addAnnotation(NER_ANNOTATION, Value.value(tagLookup.getNerTag("NP00G00"), 0.75));
+        String[] rawTags = new String[]{"NP00SP0", "VMIP3S0", "SPS00", "NP00G00", "Fp"};
+        String[] lemmas = new String[]{"juan", "vivir", "en", "barcelona", "."};
+        int[][] offsets = new int[][]{{0,4},{5,9},{10,12},{13,22},{22,23}};
+        for(int i = 0; i < rawTags.length; i++){
+            addToken(at, offsets[i][0], offsets[i][1], lemmas[i], 
+                Value.value(tagLookup.getPosTag(rawTags[i]), 0.9876));
+        }
+        return at;
+    }
+
+    private static void assertEquals(AnalysedText expected, AnalysedText actual){
+        List<Span> expectedSpans = getSpans(expected);
+        List<Span> actualSpans = getSpans(actual);
+        Assert.assertEquals(expectedSpans.size(), actualSpans.size());
+        for(int i = 0; i < expectedSpans.size(); i++){
+            Span e = expectedSpans.get(i);
+            Span a = actualSpans.get(i);
+            Assert.assertEquals(e.getType(), a.getType());
+            Assert.assertEquals(e.getStart(), a.getStart());
+            Assert.assertEquals(e.getEnd(), a.getEnd());
+            assertValues(e.getAnnotations(POS_ANNOTATION), a.getAnnotations(POS_ANNOTATION));
+            assertValues(e.getAnnotations(PHRASE_ANNOTATION), a.getAnnotations(PHRASE_ANNOTATION));
+            assertValues(e.getAnnotations(NER_ANNOTATION), a.getAnnotations(NER_ANNOTATION));
+            List<Value<MorphoFeatures>> eMorpho = e.getAnnotations(MORPHO_ANNOTATION);
+            List<Value<MorphoFeatures>> aMorpho = a.getAnnotations(MORPHO_ANNOTATION);
+            Assert.assertEquals(eMorpho.size(), aMorpho.size());
+            for(int j = 0; j < eMorpho.size(); j++){
+                MorphoFeatures eMf = eMorpho.get(j).value();
+                MorphoFeatures aMf = aMorpho.get(j).value();
+                Assert.assertEquals(eMf.getLemma(), aMf.getLemma());
+                Assert.assertEquals(eMf.getPosList(), aMf.getPosList());
+                Assert.assertEquals(eMorpho.get(j).probability(), aMorpho.get(j).probability(), 0.0001);
+            }
+        }
+    }
+
+    private static <T> void assertValues(List<Value<T>> expected, List<Value<T>> actual){
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++){
+            //decoded tags are the instances used by the Analyzers
+            Assert.assertSame(expected.get(i).value(), actual.get(i).value());
+            Assert.assertEquals(expected.get(i).probability(), actual.get(i).probability(), 0.0001);
+        }
+    }
+}
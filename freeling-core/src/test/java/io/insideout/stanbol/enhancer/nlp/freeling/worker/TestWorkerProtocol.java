@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.insideout.stanbol.enhancer.nlp.freeling.worker;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisLayer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Round trip tests for the messages of the {@link WorkerProtocol}
+ */
+public class TestWorkerProtocol {
+
+    @Test
+    public void testText() throws IOException {
+        String text = "Text with multi byte chars: \u00e4\u20ac\u65e5\ud834\udd1e";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        WorkerProtocol.writeText(out, text);
+        WorkerProtocol.writeText(out, "");
+        out.flush();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(text, WorkerProtocol.readText(in));
+        Assert.assertEquals("", WorkerProtocol.readText(in));
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testContext() throws IOException {
+        AnalysisContext context = new AnalysisContext();
+        context.addOmittedLayer(AnalysisLayer.DEPENDENCIES);
+        context.addOmittedLayer(AnalysisLayer.SENSES);
+        context.addSentenceCut(120);
+        context.addSentenceCut(512);
+        context.addLongSentences(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        WorkerProtocol.writeContext(out, context);
+        WorkerProtocol.writeContext(out, context);
+        out.flush();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        AnalysisContext read = new AnalysisContext();
+        Assert.assertEquals(1, WorkerProtocol.readContext(in, read));
+        Assert.assertEquals(1, read.getLongSentenceCount());
+        Assert.assertEquals(EnumSet.of(AnalysisLayer.DEPENDENCIES, AnalysisLayer.SENSES),
+            read.getOmittedLayers());
+        Assert.assertEquals(Arrays.asList(120, 512), read.getSentenceCuts());
+        //the context of the client is optional
+        Assert.assertEquals(1, WorkerProtocol.readContext(in, null));
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testError() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        char[] longMessage = new char[10000];
+        Arrays.fill(longMessage, 'x');
+        WorkerProtocol.writeError(out, WorkerProtocol.STATUS_ERROR, 
+            new IllegalStateException(new String(longMessage)));
+        out.flush();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(WorkerProtocol.STATUS_ERROR, in.read());
+        String message = in.readUTF();
+        Assert.assertEquals(4096, message.length());
+        Assert.assertTrue(message.startsWith("IllegalStateException: x"));
+    }
+}
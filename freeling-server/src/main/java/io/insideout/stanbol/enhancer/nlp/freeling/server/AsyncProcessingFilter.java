@@ -0,0 +1,1176 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.server;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.DEFAULT_RESOURCE_WAIT_TIME;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.HEADER_RETRY_AFTER;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.REQUEST_ATTRIBUTE_ADMISSION_TICKET;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_ADMISSION_CONTROLLER;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_FREELING;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_MAX_RESOURCE_WAIT_TIEM;
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AdmissionController;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AdmissionController.Ticket;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.Utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+
+/**
+ * Processes analysis and language identification requests on a dedicated
+ * bounded thread pool instead of the threads of the servlet container.<p>
+ * The container thread reads the request body (up to the maximum request
+ * size, larger requests are rejected with status 413) and queues the
+ * request. Afterwards the request is suspended by using a Jetty
+ * {@link Continuation}, so that the container thread is released while
+ * the request waits for a Freeling resource and is analysed. Requests that
+ * can not be queued are rejected immediately with status 503. Requests
+ * that waited longer than the maximum resource wait time for a thread are
+ * answered with status 503 without being processed.<p>
+ * As request threads block while they wait for an Analyzer every supported
+ * language (<code>Content-Language</code> header of <code>/analysis</code>
+ * requests) has its own queue (lane) and may use at most the configured
+ * number of threads per lane. The threads are taken from a pool shared by
+ * all lanes, so the total number of threads is bounded independently of
+ * the number of supported languages. Idle threads take the next request
+ * of the lanes in round robin order. So requests for a language with
+ * exhausted Analyzers only occupy the threads of that language. Requests
+ * without (or with an unsupported) language, segmented analyses and
+ * language identification requests (including batches) share the default
+ * lane.<p>
+ * Analyses of a supported language are admitted by the {@link
+ * AdmissionController} before they are queued. So the waiting room of the
+ * AdmissionController includes requests waiting for a thread and rejections
+ * (status 429 or 503) do not need a thread. The {@link Ticket} is parsed to
+ * the {@link io.insideout.stanbol.enhancer.nlp.freeling.web.resource.AnalysisResource}
+ * as request attribute.<p>
+ * The first {@link #STREAM_THRESHOLD} bytes of the response are buffered.
+ * Smaller responses are written by a container thread as soon as the
+ * request is resumed. For larger responses the request is resumed early
+ * and the container thread streams the response while it is written by
+ * the request thread (using a bounded number of chunks), so responses are
+ * never buffered as a whole.<p>
+ * Filters registered after this one (e.g. the {@link
+ * io.insideout.stanbol.enhancer.nlp.freeling.web.filter.CompressionFilter})
+ * are also executed by the executor.
+ */
+public class AsyncProcessingFilter implements Filter {
+
+    public static final int DEFAULT_THREADS = 32;
+    /**
+     * The default number of threads shared by all lanes
+     */
+    public static final int DEFAULT_MAX_THREADS = 64;
+    public static final int DEFAULT_QUEUE_SIZE = 256;
+    /**
+     * The maximum time a request is suspended (5min)
+     */
+    public static final long DEFAULT_TIMEOUT = 5*60*1000;
+    /**
+     * The number of bytes of a response buffered before it is streamed
+     * (64kByte)
+     */
+    public static final int STREAM_THRESHOLD = 64*1024;
+    /**
+     * Chunks of streamed responses
+     */
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_CHUNKS = 16;
+    /**
+     * Marks the end of a streamed response
+     */
+    private static final byte[] END = new byte[0];
+    /**
+     * The lane of requests without a supported language
+     */
+    private static final String DEFAULT_LANE = "";
+    private static final String ANALYSIS_PATH = "/analysis";
+
+    /**
+     * The paths of the POST requests processed asynchronously
+     */
+    private static final Set<String> PATHS = Collections.unmodifiableSet(
+        new HashSet<String>(Arrays.asList(ANALYSIS_PATH, "/langident", "/langident/batch")));
+
+    private static final String ATTRIBUTE_PROCESSING = AsyncProcessingFilter.class.getName() + ".processing";
+
+    private final int threads;
+    private final int maxThreads;
+    private final int queueSize;
+    private final long timeout;
+    private final long maxRequestSize;
+    private final ConcurrentMap<String,Lane> lanes = new ConcurrentHashMap<String,Lane>();
+    private final Scheduler scheduler = new Scheduler();
+    private final ThreadPoolExecutor executor;
+    private ServletContext servletContext;
+    private long maxWaitTime = DEFAULT_RESOURCE_WAIT_TIME;
+    private volatile boolean destroyed;
+
+    /**
+     * Creates the filter
+     * @param threads the maximum number of threads used to process requests
+     * of a language (lane)
+     * @param maxThreads the number of threads shared by all lanes
+     * @param queueSize the maximum number of requests of a language waiting
+     * for a thread
+     * @param timeout the maximum time in ms a request is suspended
+     * @param maxRequestSize the maximum size in bytes of buffered request
+     * bodies. Values <code>&lt;= 0</code> deactivate the limit
+     */
+    public AsyncProcessingFilter(int threads, int maxThreads, int queueSize, long timeout,
+            long maxRequestSize) {
+        if(threads <= 0){
+            throw new IllegalArgumentException("The number of threads MUST BE > 0 (parsed: "
+                + threads + ")!");
+        }
+        if(maxThreads <= 0){
+            throw new IllegalArgumentException("The maximum number of threads MUST BE > 0 (parsed: "
+                + maxThreads + ")!");
+        }
+        this.maxThreads = maxThreads;
+        this.threads = Math.min(threads, maxThreads);
+        this.queueSize = Math.max(1, queueSize);
+        this.timeout = timeout <= 0 ? DEFAULT_TIMEOUT : timeout;
+        this.maxRequestSize = maxRequestSize;
+        //at most maxThreads workers are submitted by the scheduler
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "freeling-request-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        servletContext = config.getServletContext();
+        maxWaitTime = Utils.getResource(Number.class, servletContext, 
+            SERVLET_ATTRIBUTE_MAX_RESOURCE_WAIT_TIEM, DEFAULT_RESOURCE_WAIT_TIME).longValue();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if(!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse) ||
+                !isAsync((HttpServletRequest)request)){
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest)request;
+        HttpServletResponse httpResponse = (HttpServletResponse)response;
+        Processing processing = (Processing)request.getAttribute(ATTRIBUTE_PROCESSING);
+        if(processing == null){ //initial dispatch
+            byte[] body = readBody(httpRequest);
+            if(body == null){
+                httpResponse.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "The request body exceeds the maximum size of " + maxRequestSize + " bytes");
+                return;
+            }
+            String laneName = getLaneName(httpRequest);
+            Lane lane = getLane(laneName);
+            if(lane == null){
+                httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "The server is shutting down");
+                return;
+            }
+            Ticket ticket = admit(httpRequest, laneName);
+            if(ticket != null && !ticket.isAdmitted()){
+                httpResponse.setHeader(HEADER_RETRY_AFTER, String.valueOf(ticket.getRetryAfter()));
+                httpResponse.setHeader("Content-Language", laneName);
+                httpResponse.sendError(ticket.getStatus(), ticket.getReason());
+                return;
+            }
+            BufferedRequest bufferedRequest = new BufferedRequest(httpRequest, body);
+            if(ticket != null){
+                bufferedRequest.setAttribute(REQUEST_ATTRIBUTE_ADMISSION_TICKET, ticket);
+            }
+            processing = new Processing(chain, lane, ticket, bufferedRequest, httpResponse);
+            if(!scheduler.submit(processing)){
+                processing.release(); //never queued
+                httpResponse.setHeader(HEADER_RETRY_AFTER, String.valueOf(lane.getRetryAfter()));
+                httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Too many pending requests (" + queueSize
+                    + " queued). Please try again later.");
+                return;
+            }
+            request.setAttribute(ATTRIBUTE_PROCESSING, processing);
+        }
+        //the Processing is used as mutex so that a resume can not get lost
+        Continuation continuation = ContinuationSupport.getContinuation(httpRequest, processing);
+        synchronized (processing) {
+            processing.continuation = continuation;
+            if(!processing.isResumable()){
+                //throws a RetryRequest on the initial dispatch. The request
+                //is dispatched again when resumed or after the timeout
+                continuation.suspend(timeout);
+            }
+        }
+        request.removeAttribute(ATTRIBUTE_PROCESSING);
+        if(!processing.isResumable()){
+            //do not interrupt running requests: interrupted pool waits do not
+            //throw a PoolTimeoutException. Aborting the response makes
+            //running requests fail as soon as they write the response
+            processing.response.abort();
+            if(processing.cancel()){ //else released by the request thread
+                processing.release();
+            }
+            httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                "The request was not processed within " + (timeout/1000d) + "sec");
+            return;
+        }
+        processing.writeTo(httpResponse);
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        //queued requests are released when their continuation times out
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reads the request body
+     * @return the body or <code>null</code> if it exceeds the maximum
+     * request size
+     */
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+        if(maxRequestSize > 0 && request.getContentLength() > maxRequestSize){
+            return null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+        InputStream in = request.getInputStream();
+        byte[] buffer = new byte[8192];
+        for(int read = in.read(buffer); read >= 0; read = in.read(buffer)){
+            if(maxRequestSize > 0 && body.size() + read > maxRequestSize){
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Admits analyses of a supported language by using the 
+     * {@link AdmissionController} (if available)
+     * @return the ticket or <code>null</code> if the request is admitted 
+     * by the resource
+     */
+    private Ticket admit(HttpServletRequest request, String laneName){
+        //the resource uses the header as parsed. Other values are rejected
+        //by the resource (or use an other lane)
+        if(DEFAULT_LANE.equals(laneName) || !laneName.equals(request.getHeader("Content-Language"))){
+            return null;
+        }
+        Object admissionController = servletContext.getAttribute(SERVLET_ATTRIBUTE_ADMISSION_CONTROLLER);
+        if(!(admissionController instanceof AdmissionController)){
+            return null;
+        }
+        return ((AdmissionController)admissionController).admit(getFreeling(), laneName,
+            hasFlag(request.getQueryString(), "bulk"), maxWaitTime);
+    }
+
+    /**
+     * Getter for the lane with the parsed name. Creates the lane if needed.
+     * @return the lane or <code>null</code> if this filter was destroyed
+     */
+    private Lane getLane(String name){
+        if(destroyed){
+            return null;
+        }
+        Lane lane = lanes.get(name);
+        if(lane == null){
+            lane = new Lane();
+            Lane current = lanes.putIfAbsent(name, lane);
+            if(current != null){
+                lane = current;
+            } else {
+                scheduler.add(lane);
+            }
+        }
+        return lane;
+    }
+
+    /**
+     * The language of analysis requests (if supported) or the 
+     * {@link #DEFAULT_LANE}
+     */
+    private String getLaneName(HttpServletRequest request){
+        if(!ANALYSIS_PATH.equals(getPath(request)) || hasFlag(request.getQueryString(), "segment")){
+            return DEFAULT_LANE;
+        }
+        String language = request.getHeader("Content-Language");
+        if(language == null){
+            return DEFAULT_LANE;
+        }
+        language = language.trim().toLowerCase();
+        Freeling freeling = getFreeling();
+        //only supported languages get a lane as the header is parsed by the client
+        return freeling != null && freeling.isLanguageSupported(language) ?
+                language : DEFAULT_LANE;
+    }
+
+    private Freeling getFreeling(){
+        Object freeling = servletContext == null ? null :
+            servletContext.getAttribute(SERVLET_ATTRIBUTE_FREELING);
+        return freeling instanceof Freeling ? (Freeling)freeling : null;
+    }
+
+    /**
+     * If the parsed boolean query parameter is <code>true</code>
+     */
+    private static boolean hasFlag(String query, String name){
+        if(query == null){
+            return false;
+        }
+        String flag = name + "=true";
+        for(String param : query.split("&")){
+            if(flag.equalsIgnoreCase(param.trim())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAsync(HttpServletRequest request){
+        if(!"POST".equals(request.getMethod())){
+            return false;
+        }
+        String path = getPath(request);
+        return path != null && PATHS.contains(path);
+    }
+
+    private static String getPath(HttpServletRequest request){
+        String path = request.getRequestURI();
+        if(path != null && path.length() > 1 && path.charAt(path.length() - 1) == '/'){
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * The queued requests and the observed processing time of the requests
+     * of a language
+     */
+    private class Lane {
+
+        /**
+         * The queued requests. Guarded by the {@link AsyncProcessingFilter#scheduler}
+         */
+        private final Queue<Processing> queue = new ArrayDeque<Processing>();
+        /**
+         * The number of threads processing requests of this lane. Guarded by
+         * the {@link AsyncProcessingFilter#scheduler}
+         */
+        private int running;
+        /**
+         * Exponential moving average of the processing time in ms. Guarded
+         * by this
+         */
+        private double serviceTime = -1;
+
+        synchronized void addServiceTime(long time) {
+            serviceTime = serviceTime <= 0 ? time : 0.8 * serviceTime + 0.2 * time;
+        }
+
+        /**
+         * The time in seconds until the queued requests are processed based
+         * on the observed processing time (at least one second)
+         */
+        long getRetryAfter() {
+            int queued = scheduler.getQueued(this);
+            synchronized (this) {
+                if(serviceTime <= 0){
+                    return 1;
+                }
+                return Math.max(1, (long)Math.ceil(queued * serviceTime / threads / 1000d));
+            }
+        }
+    }
+
+    /**
+     * Assigns the threads of the shared pool to the queued requests of the
+     * lanes. A lane uses at most {@link AsyncProcessingFilter#threads} and
+     * all lanes together at most {@link AsyncProcessingFilter#maxThreads}
+     * threads. Lanes with queued requests are served in round robin order.
+     */
+    private class Scheduler {
+
+        private final List<Lane> order = new ArrayList<Lane>();
+        /**
+         * The index of the lane polled first
+         */
+        private int next;
+        /**
+         * The number of threads processing requests
+         */
+        private int running;
+
+        synchronized void add(Lane lane) {
+            order.add(lane);
+        }
+
+        synchronized int getQueued(Lane lane) {
+            return lane.queue.size();
+        }
+
+        /**
+         * Queues the parsed request and starts a thread if one is available
+         * @return <code>false</code> if the queue of the lane is full
+         */
+        synchronized boolean submit(Processing processing) {
+            if(processing.lane.queue.size() >= queueSize){
+                return false;
+            }
+            processing.lane.queue.add(processing);
+            if(running < maxThreads){
+                Processing first = poll();
+                if(first != null){
+                    try {
+                        executor.execute(new Worker(first));
+                    } catch (RejectedExecutionException e) {
+                        //destroyed: released when the continuation times out
+                        release(first.lane);
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Removes a cancelled request from its queue
+         */
+        synchronized void remove(Processing processing) {
+            processing.lane.queue.remove(processing);
+        }
+
+        /**
+         * Called by a thread after it processed a request of the parsed lane
+         * @return the next request processed by the thread or 
+         * <code>null</code> if the thread is released
+         */
+        synchronized Processing completed(Lane lane) {
+            release(lane);
+            return poll();
+        }
+
+        /**
+         * Called if a thread terminates without taking the next request
+         */
+        synchronized void release(Lane lane) {
+            lane.running--;
+            running--;
+        }
+
+        /**
+         * Takes the next request of the lanes with queued requests and a
+         * free thread and accounts for the thread processing it
+         */
+        private Processing poll() {
+            int size = order.size();
+            for(int i = 0; i < size; i++){
+                Lane lane = order.get((next + i) % size);
+                if(lane.running < threads && !lane.queue.isEmpty()){
+                    next = (next + i + 1) % size;
+                    lane.running++;
+                    running++;
+                    return lane.queue.poll();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Processes requests until no lane has queued requests and a free thread
+     */
+    private class Worker implements Runnable {
+
+        private final Processing first;
+
+        Worker(Processing first) {
+            this.first = first;
+        }
+
+        @Override
+        public void run() {
+            Processing processing = first;
+            while(processing != null){
+                boolean completed = false;
+                try {
+                    processing.run();
+                    completed = true;
+                } finally {
+                    if(!completed){ //do not take an other request
+                        scheduler.release(processing.lane);
+                    }
+                }
+                processing = scheduler.completed(processing.lane);
+            }
+        }
+    }
+
+    /**
+     * Processes a request on the executor and resumes it when done
+     */
+    private class Processing implements Runnable {
+
+        private final FilterChain chain;
+        private final Lane lane;
+        /**
+         * The ticket of the admitted analysis or <code>null</code>
+         */
+        private final Ticket ticket;
+        private final BufferedRequest request;
+        private final BufferedResponse response;
+        private final long queued = System.currentTimeMillis();
+        /**
+         * Decides if the request thread or the container thread (on a 
+         * timeout) releases the ticket of a request that was queued
+         */
+        private final AtomicReference<State> state = new AtomicReference<State>(State.QUEUED);
+        /**
+         * Guarded by this
+         */
+        private Continuation continuation;
+        /**
+         * If the continuation was resumed. Guarded by this
+         */
+        private boolean resumed;
+        private volatile boolean done;
+        private volatile Throwable error;
+
+        Processing(FilterChain chain, Lane lane, Ticket ticket, BufferedRequest request,
+                HttpServletResponse response) {
+            this.chain = chain;
+            this.lane = lane;
+            this.ticket = ticket;
+            this.request = request;
+            this.response = new BufferedResponse(response, this);
+        }
+
+        @Override
+        public void run() {
+            if(!state.compareAndSet(State.QUEUED, State.RUNNING)){
+                return; //cancelled and released by the container thread
+            }
+            long start = System.currentTimeMillis();
+            //do not process requests the client likely gave up on
+            boolean expired = start - queued > maxWaitTime;
+            try {
+                if(expired){
+                    response.setHeader(HEADER_RETRY_AFTER, String.valueOf(lane.getRetryAfter()));
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "The request was queued for " + ((start - queued)/1000d)
+                        + "sec (maximum: " + (maxWaitTime/1000d) + "sec)");
+                } else {
+                    chain.doFilter(request, response);
+                    response.flushWriter();
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                if(!expired){
+                    lane.addServiceTime(System.currentTimeMillis() - start);
+                }
+                release();
+                try {
+                    response.finish();
+                } catch (IOException e) {
+                    if(error == null){
+                        error = e;
+                    }
+                } finally {
+                    done = true;
+                    resume();
+                }
+            }
+        }
+
+        /**
+         * Cancels the request if it was not yet started
+         * @return <code>true</code> if the request was cancelled and 
+         * needs to be released by the caller. <code>false</code> if it is
+         * released by the request thread
+         */
+        boolean cancel() {
+            if(state.compareAndSet(State.QUEUED, State.CANCELLED)){
+                scheduler.remove(this);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Releases the ticket of admitted analyses (if any)
+         */
+        void release() {
+            if(ticket != null){
+                ticket.release();
+            }
+        }
+
+        /**
+         * If the request can be resumed because it is completed or the
+         * response is streamed
+         */
+        boolean isResumable() {
+            return done || response.isStreaming();
+        }
+
+        /**
+         * Resumes the suspended request (once)
+         */
+        synchronized void resume() {
+            if(continuation != null && !resumed){
+                resumed = true;
+                continuation.resume();
+            }
+        }
+
+        void writeTo(HttpServletResponse target) throws IOException, ServletException {
+            if(response.isStreaming()){
+                response.stream(target, timeout);
+                //the response is already committed: abort the connection
+                if(error != null){
+                    throw new IOException("Processing failed after the response was committed", error);
+                }
+                return;
+            }
+            if(error instanceof IOException){
+                throw (IOException)error;
+            } else if(error instanceof ServletException){
+                throw (ServletException)error;
+            } else if(error instanceof RuntimeException){
+                throw (RuntimeException)error;
+            } else if(error != null){
+                throw new ServletException(error.getMessage(), error);
+            }
+            response.writeTo(target);
+        }
+    }
+
+    /**
+     * The states of a {@link Processing}. Only queued requests can be
+     * cancelled.
+     */
+    private static enum State {
+        QUEUED,
+        RUNNING,
+        CANCELLED
+    }
+
+    /**
+     * Request with the already read body
+     */
+    private static class BufferedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+        private boolean read;
+
+        BufferedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if(read){
+                throw new IllegalStateException("The request body was already read");
+            }
+            read = true;
+            final ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() throws IOException {
+                    return in.read();
+                }
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return in.read(b, off, len);
+                }
+                @Override
+                public int available() throws IOException {
+                    return in.available();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String charset = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                charset == null ? "ISO-8859-1" : charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+    }
+
+    /**
+     * Buffers the status, headers and the first {@link #STREAM_THRESHOLD}
+     * bytes of a response so that the response of the container is not
+     * accessed by the executor. Larger bodies are passed as chunks to the
+     * container thread.
+     */
+    private static class BufferedResponse extends HttpServletResponseWrapper {
+
+        private final Processing processing;
+        private int status = SC_OK;
+        private String errorMessage;
+        private boolean error;
+        private final Map<String,List<Object>> headers =
+                new TreeMap<String,List<Object>>(String.CASE_INSENSITIVE_ORDER);
+        private String contentType;
+        private String characterEncoding;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        /**
+         * Set by the request thread as soon as the body exceeds the
+         * {@link #STREAM_THRESHOLD}. Afterwards the status, headers and the
+         * buffered body are read by the container thread.
+         */
+        private volatile boolean streaming;
+        private volatile boolean aborted;
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(MAX_CHUNKS);
+        private byte[] chunk;
+        private int chunkSize;
+
+        BufferedResponse(HttpServletResponse response, Processing processing) {
+            super(response);
+            this.processing = processing;
+        }
+
+        boolean isStreaming() {
+            return streaming;
+        }
+
+        @Override
+        public void setStatus(int status) {
+            if(!streaming){
+                this.status = status;
+            }
+        }
+
+        @Override
+        public void setStatus(int status, String message) {
+            setStatus(status);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            sendError(status, null);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            if(streaming){
+                throw new IllegalStateException("The response is already committed");
+            }
+            this.status = status;
+            this.errorMessage = message;
+            this.error = true;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            if(streaming){
+                throw new IllegalStateException("The response is already committed");
+            }
+            status = SC_MOVED_TEMPORARILY;
+            setHeader("Location", location);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if(!streaming){
+                headers.remove(name);
+                addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if(streaming){
+                return; //committed
+            }
+            if("Content-Type".equalsIgnoreCase(name)){
+                setContentType(value);
+            } else if(!"Content-Length".equalsIgnoreCase(name)){
+                List<Object> values = headers.get(name);
+                if(values == null){
+                    values = new ArrayList<Object>(2);
+                    headers.put(name, values);
+                }
+                values.add(value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            setHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            addHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            if(!streaming){
+                headers.remove(name);
+                addDateHeader(name, date);
+            }
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            if(streaming){
+                return; //committed
+            }
+            List<Object> values = headers.get(name);
+            if(values == null){
+                values = new ArrayList<Object>(2);
+                headers.put(name, values);
+            }
+            values.add(Long.valueOf(date));
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+
+        @Override
+        public void setContentType(String type) {
+            if(!streaming){
+                this.contentType = type;
+            }
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            if(!streaming){
+                this.characterEncoding = charset;
+            }
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            if(characterEncoding != null){
+                return characterEncoding;
+            }
+            if(contentType != null){
+                int index = contentType.toLowerCase().indexOf("charset=");
+                if(index >= 0){
+                    String charset = contentType.substring(index + 8).trim();
+                    int end = charset.indexOf(';');
+                    return (end < 0 ? charset : charset.substring(0, end)).replace("\"", "").trim();
+                }
+            }
+            return "ISO-8859-1";
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            //the length of the buffered body is used
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if(writer != null){
+                throw new IllegalStateException("getWriter() was already called");
+            }
+            if(outputStream == null){
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[]{(byte)b}, 0, 1);
+                    }
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        writeBody(b, off, len);
+                    }
+                    @Override
+                    public void flush() throws IOException {
+                        if(streaming){
+                            putChunk();
+                        } //else buffered responses are not committed by a flush
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if(writer == null){
+                if(outputStream != null){
+                    throw new IllegalStateException("getOutputStream() was already called");
+                }
+                ServletOutputStream out = getOutputStream();
+                writer = new PrintWriter(new OutputStreamWriter(out, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        /**
+         * Buffers the parsed bytes as long as the body does not exceed the
+         * {@link #STREAM_THRESHOLD}. Afterwards the response is streamed.
+         */
+        private void writeBody(byte[] b, int off, int len) throws IOException {
+            checkAborted();
+            if(!streaming){
+                if(body.size() + len <= STREAM_THRESHOLD){
+                    body.write(b, off, len);
+                    return;
+                }
+                streaming = true; //commits the status, headers and body
+                processing.resume();
+            }
+            while(len > 0){
+                if(chunk == null){
+                    chunk = new byte[CHUNK_SIZE];
+                }
+                int n = Math.min(len, CHUNK_SIZE - chunkSize);
+                System.arraycopy(b, off, chunk, chunkSize, n);
+                chunkSize += n;
+                off += n;
+                len -= n;
+                if(chunkSize == CHUNK_SIZE){
+                    putChunk();
+                }
+            }
+        }
+
+        private void putChunk() throws IOException {
+            if(chunkSize > 0){
+                byte[] data = chunkSize == chunk.length ? chunk : Arrays.copyOf(chunk, chunkSize);
+                chunk = null;
+                chunkSize = 0;
+                put(data);
+            }
+        }
+
+        /**
+         * Passes a chunk to the container thread. Blocks if the container
+         * thread can not write the chunks fast enough.
+         */
+        private void put(byte[] data) throws IOException {
+            try {
+                while(!chunks.offer(data, 1, TimeUnit.SECONDS)){
+                    checkAborted();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while streaming the response");
+            }
+        }
+
+        private void checkAborted() throws IOException {
+            if(aborted){
+                throw new IOException("The response was aborted");
+            }
+        }
+
+        /**
+         * Aborts the response. Called by the container thread if the request
+         * timed out or the response can not be written.
+         */
+        void abort() {
+            aborted = true;
+            chunks.clear(); //unblock the request thread
+        }
+
+        void flushWriter() {
+            if(writer != null){
+                writer.flush();
+            }
+        }
+
+        /**
+         * Called by the request thread after the request was processed.
+         * Completes streamed responses.
+         */
+        void finish() throws IOException {
+            flushWriter();
+            if(streaming && !aborted){
+                putChunk();
+                put(END);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            if(streaming){
+                putChunk();
+            }
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return streaming;
+        }
+
+        @Override
+        public void resetBuffer() {
+            if(streaming){
+                throw new IllegalStateException("The response is already committed");
+            }
+            body.reset();
+        }
+
+        @Override
+        public void reset() {
+            if(streaming){
+                throw new IllegalStateException("The response is already committed");
+            }
+            body.reset();
+            headers.clear();
+            status = SC_OK;
+            error = false;
+            errorMessage = null;
+            contentType = null;
+            characterEncoding = null;
+        }
+
+        @Override
+        public void setBufferSize(int size) {}
+
+        @Override
+        public int getBufferSize() {
+            return body.size();
+        }
+
+        /**
+         * Writes the buffered response to the parsed response
+         */
+        void writeTo(HttpServletResponse target) throws IOException {
+            writeHeaders(target);
+            if(error){
+                target.sendError(status, errorMessage);
+                return;
+            }
+            writeStatus(target);
+            target.setContentLength(body.size());
+            if(body.size() > 0){
+                body.writeTo(target.getOutputStream());
+            }
+        }
+
+        /**
+         * Writes the streamed response to the parsed response. Called by
+         * the container thread while the request thread writes the body.
+         * @param timeout the maximum time in ms to wait for a chunk
+         */
+        void stream(HttpServletResponse target, long timeout) throws IOException {
+            writeHeaders(target);
+            writeStatus(target);
+            try {
+                OutputStream out = target.getOutputStream();
+                body.writeTo(out);
+                for(byte[] data = take(timeout); data != END; data = take(timeout)){
+                    out.write(data);
+                }
+                out.flush();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        private byte[] take(long timeout) throws IOException {
+            try {
+                byte[] data = chunks.poll(timeout, TimeUnit.MILLISECONDS);
+                if(data == null){
+                    throw new IOException("No data was written within " + (timeout/1000d) + "sec");
+                }
+                return data;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while streaming the response");
+            }
+        }
+
+        private void writeHeaders(HttpServletResponse target) {
+            for(Entry<String,List<Object>> header : headers.entrySet()){
+                for(Object value : header.getValue()){
+                    if(value instanceof Long){
+                        target.addDateHeader(header.getKey(), ((Long)value).longValue());
+                    } else {
+                        target.addHeader(header.getKey(), (String)value);
+                    }
+                }
+            }
+        }
+
+        private void writeStatus(HttpServletResponse target) {
+            target.setStatus(status);
+            if(contentType != null){
+                target.setContentType(contentType);
+            }
+            if(characterEncoding != null){
+                target.setCharacterEncoding(characterEncoding);
+            }
+        }
+    }
+}
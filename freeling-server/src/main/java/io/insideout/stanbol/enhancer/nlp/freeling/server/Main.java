@@ -1,8 +1,15 @@
 package io.insideout.stanbol.enhancer.nlp.freeling.server;
 
 import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling.LangIdMode;
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling.Settings;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
 import io.insideout.stanbol.enhancer.nlp.freeling.web.Constants;
 import io.insideout.stanbol.enhancer.nlp.freeling.web.FreelingApplication;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.filter.CompressionFilter;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AdmissionController;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AnalysisCache;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.LanguageIdentificationCache;
 
 import java.io.File;
 import java.util.Iterator;
@@ -17,9 +24,11 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
 import org.apache.wink.server.internal.servlet.RestServlet;
 import org.mortbay.jetty.Connector;
+import org.mortbay.jetty.Handler;
 import org.mortbay.jetty.Server;
 import org.mortbay.jetty.nio.SelectChannelConnector;
 import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.FilterHolder;
 import org.mortbay.jetty.servlet.ServletHolder;
 
 
@@ -65,6 +74,100 @@ public class Main {
             + "Increasing this number allows to faster create additional Analyzers. "
             + "Note that concurrent creating of Analyzers may cause JVM crashes "
             + "on some systems (default : "+DEFAULT_INIT_THREADS+")");
+        options.addOption("b","time-budget",true,
+            "The time budget in ms for an analysis (including the time waiting "
+            + "for an Analyzer). Optional layers (e.g. parsing, word sense "
+            + "disambiguation) are omitted if they would exceed the budget. "
+            + "Values <= 0 deactivate this feature (default: "
+            + Constants.DEFAULT_ANALYSIS_TIME_BUDGET+")");
+        options.addOption("t","max-sentence-length",true,
+            "The maximum number of words of sentences processed by the Chart- "
+            + "and Dependency parser. Longer sentences are cut at punctuations, "
+            + "conjunctions or - if none is present - at this limit. Values <= 0 "
+            + "deactivate this feature (default: "
+            + Freeling.DEFAULT_MAX_SENTENCE_LENGTH+")");
+        options.addOption("r","analysis-cache-size",true,
+            "The number of analyses cached for the incremental analysis of "
+            + "edited texts. Values <= 0 deactivate this feature (default: "
+            + Constants.DEFAULT_ANALYSIS_CACHE_SIZE+")");
+        options.addOption("d","langid-sample-size",true,
+            "The number of chars sampled from the beginning of a text for language "
+            + "identification. Additional windows are only sampled if the "
+            + "detected language is not decisive. Values <= 0 use the whole text (default: "
+            + Constants.DEFAULT_LANGID_SAMPLE_SIZE+")");
+        options.addOption("k","langid-cache-size",true,
+            "The number of cached language identification results for short "
+            + "texts. Values <= 0 deactivate this feature (default: "
+            + Constants.DEFAULT_LANGID_CACHE_SIZE+")");
+        options.addOption("n","langid-mode",true,
+            "The language identification implementation: 'pooled' for a pool of "
+            + "native Freeling LangIdent instances, 'shared' for a single native "
+            + "instance used concurrently, 'per_core' for a pool with one native "
+            + "instance per processor or 'java' for a single thread safe pure Java "
+            + "identifier using the Freeling language models (default: "
+            + Freeling.DEFAULT_LANGID_MODE.name().toLowerCase()+")");
+        options.addOption("g","tag-mappings",true,
+            "Directory with tag mapping files (*.tags) used to map Freeling tags to "
+            + "the Stanbol NLP tag sets. Files present in this directory override "
+            + "the defaults. Mappings can be reloaded without restart by a POST "
+            + "request to '/mappings/reload' (default: built-in mappings)");
+        options.addOption("a","config-watch-interval",true,
+            "The interval in seconds used to check the Freeling configurations and "
+            + "their data files for changes. Changed languages are reloaded without "
+            + "restart. Values <= 0 deactivate watching. Reloads can also be "
+            + "triggered by a POST request to '/config/reload' (default: -1)");
+        options.addOption("x","workers",true,
+            "The number of worker processes used to analyse texts. Languages are "
+            + "distributed over the workers and crashed workers are restarted. "
+            + "Values <= 0 analyse texts within the server process (default: 0)");
+        options.addOption("f","prefetch-threads",true,
+            "The number of threads used to read the data files of the Freeling "
+            + "configurations into the page cache at startup. Speeds up the creation "
+            + "of Analyzers on a cold cache. Values <= 0 deactivate prefetching (default: "
+            + Freeling.DEFAULT_PREFETCH_THREADS+")");
+        options.addOption("z","compress-min-size",true,
+            "The minimum size in bytes of responses compressed with gzip or deflate "
+            + "for clients sending a matching Accept-Encoding header. Values < 0 "
+            + "deactivate response compression (default: "
+            + CompressionFilter.DEFAULT_MIN_SIZE+")");
+        options.addOption("j","max-request-size",true,
+            "The maximum size in bytes of request bodies buffered for request threads "
+            + "and of decompressed request bodies (Content-Encoding gzip or deflate). "
+            + "Larger requests are rejected with status 413. Values <= 0 deactivate "
+            + "the limit (default: "
+            + CompressionFilter.DEFAULT_MAX_REQUEST_SIZE+")");
+        options.addOption("e","request-threads",true,
+            "The maximum number of threads per language used to process analysis and "
+            + "language identification requests. Every supported language (Content-Language "
+            + "header) has its own queue, other requests share a default queue. The threads "
+            + "are taken from the max-request-threads shared by all queues. Requests "
+            + "are suspended while they wait for a thread and for Freeling resources, so "
+            + "container threads are only used for I/O. Values <= 0 process requests on the "
+            + "container threads (default: "
+            + AsyncProcessingFilter.DEFAULT_THREADS+")");
+        options.addOption("v","max-request-threads",true,
+            "The maximum number of request threads shared by all languages. A language "
+            + "uses at most request-threads of them, so requests of other languages are "
+            + "still processed if the Analyzers of a language are exhausted (default: "
+            + AsyncProcessingFilter.DEFAULT_MAX_THREADS+")");
+        options.addOption("u","request-queue-size",true,
+            "The maximum number of suspended requests per language waiting for a request "
+            + "thread. Additional requests are rejected with status 503 (default: "
+            + AsyncProcessingFilter.DEFAULT_QUEUE_SIZE+")");
+        options.addOption("o","max-waiting-requests",true,
+            "The maximum number of analysis requests per language waiting for a request "
+            + "thread or an Analyzer (bulk analyses are counted separately). Requests are "
+            + "admitted before they are queued. Additional requests and requests that can "
+            + "not be expected to obtain an Analyzer within the max-wait-time are rejected "
+            + "immediately (status 429 or 503 with a Retry-After header). Requests queued "
+            + "for longer than the max-wait-time are rejected with status 503. Analyses in "
+            + "segment mode take a place for every Analyzer they use concurrently. Values <= 0 "
+            + "deactivate admission control (default: "
+            + AdmissionController.DEFAULT_MAX_WAITING+")");
+        options.addOption("y","admin-token",true,
+            "The token required (as X-Freeling-Admin-Token header) by POST requests to "
+            + "'/config/reload' and '/mappings/reload'. If not present these requests "
+            + "are only accepted from the loopback interface (default: none)");
     }
     /**
      * @param args
@@ -112,12 +215,20 @@ public class Main {
                     + nativeLib + "' is not a file!\n");
             System.exit(1);
         }
-        Freeling freeling = new Freeling(
-            config.getPath(), Freeling.DEFAULT_CONFIGURATION_FILENAME_SUFFIX, 
-            shared.getPath(), nativeLib, Freeling.DEFAULT_FREELING_LOCALE, 
-            getInt(line, 'i', DEFAULT_INIT_THREADS), 
-            getInt(line, 'm', DEFAULT_MAX_POOL_SIZE), 
-            getInt(line, 'q', DEFAULT_MIN_QUEUE_SIZE));
+        Freeling freeling = new Freeling(new Settings(config.getPath(), shared.getPath())
+            .setFreelingLibPath(nativeLib)
+            .setMaxInitThreads(getInt(line, 'i', DEFAULT_INIT_THREADS))
+            .setPoolSize(getInt(line, 'm', DEFAULT_MAX_POOL_SIZE))
+            .setMinQueueSize(getInt(line, 'q', DEFAULT_MIN_QUEUE_SIZE))
+            .setMaxSentenceLength(getInt(line, 't', Freeling.DEFAULT_MAX_SENTENCE_LENGTH))
+            .setLangIdMode(getLangIdMode(line))
+            .setWorkers(getInt(line, 'x', 0))
+            .setPrefetchThreads(getInt(line, 'f', Freeling.DEFAULT_PREFETCH_THREADS)));
+        String tagMappings = line.getOptionValue('g');
+        if(tagMappings != null){
+            TagSetRegistry.getInstance().setMappingDirectory(new File(tagMappings));
+        }
+        freeling.watchConfigurations(getLong(line, 'a', -1)*1000);
         
         
         //init the Jetty Server
@@ -132,6 +243,21 @@ public class Main {
         ServletHolder holder = new ServletHolder(RestServlet.class);
         holder.setInitParameter("javax.ws.rs.Application", FreelingApplication.class.getName());
         context.addServlet(holder, "/*");
+        //the async filter MUST BE added first so that other filters are
+        //executed by the request threads
+        int requestThreads = getInt(line, 'e', AsyncProcessingFilter.DEFAULT_THREADS);
+        long maxRequestSize = getLong(line, 'j', CompressionFilter.DEFAULT_MAX_REQUEST_SIZE);
+        if(requestThreads > 0){
+            context.addFilter(new FilterHolder(new AsyncProcessingFilter(requestThreads, 
+                getInt(line, 'v', AsyncProcessingFilter.DEFAULT_MAX_THREADS),
+                getInt(line, 'u', AsyncProcessingFilter.DEFAULT_QUEUE_SIZE),
+                AsyncProcessingFilter.DEFAULT_TIMEOUT, maxRequestSize)), "/*", Handler.DEFAULT);
+        }
+        //always added as it also decompresses request bodies. Negative
+        //values only deactivate the compression of responses
+        int compressMinSize = getInt(line, 'z', CompressionFilter.DEFAULT_MIN_SIZE);
+        context.addFilter(new FilterHolder(new CompressionFilter(compressMinSize, maxRequestSize)), 
+            "/*", Handler.DEFAULT);
         
         //now initialise the servlet context
         context.setAttribute(Constants.SERVLET_ATTRIBUTE_CONTENT_ITEM_FACTORY, 
@@ -139,6 +265,29 @@ public class Main {
         context.setAttribute(Constants.SERVLET_ATTRIBUTE_FREELING, freeling);
         context.setAttribute(Constants.SERVLET_ATTRIBUTE_MAX_RESOURCE_WAIT_TIEM, 
             getLong(line,'w',Constants.DEFAULT_RESOURCE_WAIT_TIME));
+        context.setAttribute(Constants.SERVLET_ATTRIBUTE_ANALYSIS_TIME_BUDGET, 
+            getLong(line,'b',Constants.DEFAULT_ANALYSIS_TIME_BUDGET));
+        context.setAttribute(Constants.SERVLET_ATTRIBUTE_LANGID_SAMPLE_SIZE, 
+            getInt(line,'d',Constants.DEFAULT_LANGID_SAMPLE_SIZE));
+        int langIdCacheSize = getInt(line, 'k', Constants.DEFAULT_LANGID_CACHE_SIZE);
+        if(langIdCacheSize > 0){
+            context.setAttribute(Constants.SERVLET_ATTRIBUTE_LANGID_CACHE, 
+                new LanguageIdentificationCache(langIdCacheSize));
+        }
+        int analysisCacheSize = getInt(line, 'r', Constants.DEFAULT_ANALYSIS_CACHE_SIZE);
+        if(analysisCacheSize > 0){
+            context.setAttribute(Constants.SERVLET_ATTRIBUTE_ANALYSIS_CACHE, 
+                new AnalysisCache(analysisCacheSize));
+        }
+        int maxWaitingRequests = getInt(line, 'o', AdmissionController.DEFAULT_MAX_WAITING);
+        if(maxWaitingRequests > 0){
+            context.setAttribute(Constants.SERVLET_ATTRIBUTE_ADMISSION_CONTROLLER, 
+                new AdmissionController(maxWaitingRequests));
+        }
+        String adminToken = line.getOptionValue('y');
+        if(adminToken != null && !adminToken.isEmpty()){
+            context.setAttribute(Constants.SERVLET_ATTRIBUTE_ADMIN_TOKEN, adminToken);
+        }
         //Freeling
         
         server.start();
@@ -150,6 +299,15 @@ public class Main {
         freeling.close();
     }
     
+    private static LangIdMode getLangIdMode(CommandLine line){
+        String value = line.getOptionValue('n');
+        if(value != null){
+            return LangIdMode.valueOf(value.trim().toUpperCase());
+        } else {
+            return Freeling.DEFAULT_LANGID_MODE;
+        }
+    }
+    
     private static int getInt(CommandLine line, char option, int defaultValue){
         String value = line.getOptionValue(option);
         if(value != null){
@@ -1,6 +1,10 @@
 package io.insideout.stanbol.enhancer.nlp.freeling.web;
 
 import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageSampler;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AdmissionController;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AnalysisCache;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.LanguageIdentificationCache;
 
 import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
 
@@ -10,7 +14,102 @@ public interface Constants {
     public static final String SERVLET_ATTRIBUTE_MAX_RESOURCE_WAIT_TIEM = 
             Constants.class.getPackage().getName()+".maxResrouceWaitTime";
     public static final String SERVLET_ATTRIBUTE_CONTENT_ITEM_FACTORY = ContentItemFactory.class.getName();
+    public static final String SERVLET_ATTRIBUTE_ANALYSIS_TIME_BUDGET = 
+            Constants.class.getPackage().getName()+".analysisTimeBudget";
+    /**
+     * The {@link AnalysisCache} used for incremental analysis. Optional
+     */
+    public static final String SERVLET_ATTRIBUTE_ANALYSIS_CACHE = AnalysisCache.class.getName();
+    /**
+     * The number of chars sampled from the beginning of a text for language
+     * identification
+     */
+    public static final String SERVLET_ATTRIBUTE_LANGID_SAMPLE_SIZE = 
+            Constants.class.getPackage().getName()+".langIdSampleSize";
+    /**
+     * The {@link LanguageIdentificationCache} used for the language 
+     * identification of short texts. Optional
+     */
+    public static final String SERVLET_ATTRIBUTE_LANGID_CACHE = LanguageIdentificationCache.class.getName();
+    /**
+     * The {@link AdmissionController} used to reject analyses that can not
+     * be processed in time. Optional
+     */
+    public static final String SERVLET_ATTRIBUTE_ADMISSION_CONTROLLER = AdmissionController.class.getName();
+    /**
+     * Request attribute with the {@link AdmissionController.Ticket} of an
+     * analysis admitted before it was queued for a request thread. Optional
+     */
+    public static final String REQUEST_ATTRIBUTE_ADMISSION_TICKET =
+            Constants.class.getPackage().getName()+".admissionTicket";
+    /**
+     * The token required to use administrative endpoints (e.g. to reload
+     * configurations). If not present only requests from the loopback
+     * interface are allowed. Optional
+     */
+    public static final String SERVLET_ATTRIBUTE_ADMIN_TOKEN = 
+            Constants.class.getPackage().getName()+".adminToken";
     
     public static final Long DEFAULT_RESOURCE_WAIT_TIME = Long.valueOf(30*1000);
+    /**
+     * By default analyses do not have a time budget
+     */
+    public static final Long DEFAULT_ANALYSIS_TIME_BUDGET = Long.valueOf(-1);
+    /**
+     * The default number of analyses cached for incremental analysis
+     */
+    public static final Integer DEFAULT_ANALYSIS_CACHE_SIZE = Integer.valueOf(50);
+    /**
+     * The default number of cached language identification results
+     */
+    public static final Integer DEFAULT_LANGID_CACHE_SIZE = Integer.valueOf(10000);
+    /**
+     * The default sample size for language identification
+     */
+    public static final Integer DEFAULT_LANGID_SAMPLE_SIZE = Integer.valueOf(LanguageSampler.DEFAULT_PREFIX_SIZE);
+    
+    /**
+     * Response header listing the analysis layers omitted to meet the
+     * time budget of the request
+     */
+    public static final String HEADER_OMITTED_LAYERS = "X-Freeling-Omitted-Layers";
+    /**
+     * Response header listing the character offsets where sentences exceeding
+     * the maximum sentence length where cut
+     */
+    public static final String HEADER_SENTENCE_CUTS = "X-Freeling-Sentence-Cuts";
+    /**
+     * Response header with the id of the cached analysis. This id can be
+     * parsed as <code>previous</code> parameter to request an incremental
+     * analysis of an edited version of the text
+     */
+    public static final String HEADER_ANALYSIS_ID = "X-Freeling-Analysis-Id";
+    /**
+     * Response header listing the language segments (e.g. 
+     * <code>it[0,1200], es[1200,1530]</code>) of a text analysed in
+     * segment mode
+     */
+    public static final String HEADER_LANGUAGE_SEGMENTS = "X-Freeling-Language-Segments";
+    /**
+     * Response header with the number of seconds after that rejected
+     * requests should be retried
+     */
+    public static final String HEADER_RETRY_AFTER = "Retry-After";
+    /**
+     * Request header with the token required to use administrative endpoints
+     */
+    public static final String HEADER_ADMIN_TOKEN = "X-Freeling-Admin-Token";
+    /**
+     * Media type of the compact binary encoding of analysed texts. See
+     * {@link io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextCodec}
+     * for the format and the Java decoder
+     */
+    public static final String MEDIA_TYPE_ANALYSED_TEXT_BINARY = "application/x-freeling-analysis";
+    /**
+     * Value of the <code>format</code> query parameter of the analysis
+     * endpoint selecting the columnar JSON schema. See
+     * {@link io.insideout.stanbol.enhancer.nlp.freeling.web.writer.ColumnarAnalysedTextWriter}
+     */
+    public static final String FORMAT_COLUMNAR = "columnar";
     
 }
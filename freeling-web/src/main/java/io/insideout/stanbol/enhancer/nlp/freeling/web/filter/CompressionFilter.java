@@ -0,0 +1,631 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.filter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Compresses responses with <code>gzip</code> or <code>deflate</code> if
+ * accepted by the client (<code>Accept-Encoding</code> header). The first
+ * {@link #PARAM_MIN_SIZE} bytes of a response are buffered to decide if
+ * the response is compressed. Smaller responses are sent uncompressed.
+ * Larger ones are compressed while they are written, so the response is
+ * never buffered as a whole.<p>
+ * Responses that already define a <code>Content-Encoding</code> are not
+ * modified.<p>
+ * Request bodies with a <code>gzip</code> or <code>deflate</code> 
+ * <code>Content-Encoding</code> are decompressed while they are read, so
+ * that all endpoints can consume compressed requests. The 
+ * <code>Content-Encoding</code> and <code>Content-Length</code> headers
+ * are hidden from the wrapped request so that readers do not decode the
+ * body a second time. Request decompression is also active if response
+ * compression is deactivated (a negative {@link #PARAM_MIN_SIZE}). 
+ * Decompressed bodies are limited to {@link #PARAM_MAX_REQUEST_SIZE} bytes.
+ * Requests exceeding this size are rejected with status 413.
+ */
+public class CompressionFilter implements Filter {
+
+    /**
+     * Init parameter with the minimum size in bytes of compressed responses.
+     * Values <code>&lt; 0</code> deactivate response compression.
+     */
+    public static final String PARAM_MIN_SIZE = "minSize";
+    public static final int DEFAULT_MIN_SIZE = 2048;
+    /**
+     * Init parameter with the maximum size in bytes of decompressed request
+     * bodies. Values <code>&lt;= 0</code> deactivate the limit.
+     */
+    public static final String PARAM_MAX_REQUEST_SIZE = "maxRequestSize";
+    public static final long DEFAULT_MAX_REQUEST_SIZE = 10 * 1024 * 1024;
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private int minSize = DEFAULT_MIN_SIZE;
+    private long maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+
+    public CompressionFilter() {}
+
+    public CompressionFilter(int minSize) {
+        this(minSize, DEFAULT_MAX_REQUEST_SIZE);
+    }
+
+    public CompressionFilter(int minSize, long maxRequestSize) {
+        this.minSize = Math.max(-1, minSize);
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        String value = config.getInitParameter(PARAM_MIN_SIZE);
+        if(value != null){
+            try {
+                minSize = Math.max(-1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                throw new ServletException("Unable to parse the '" + PARAM_MIN_SIZE
+                    + "' init parameter (value: " + value + ")", e);
+            }
+        }
+        value = config.getInitParameter(PARAM_MAX_REQUEST_SIZE);
+        if(value != null){
+            try {
+                maxRequestSize = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new ServletException("Unable to parse the '" + PARAM_MAX_REQUEST_SIZE
+                    + "' init parameter (value: " + value + ")", e);
+            }
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if(!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)){
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest)request;
+        HttpServletResponse httpResponse = (HttpServletResponse)response;
+        DecompressionRequestWrapper decompression = null;
+        if(getContentDecoding(httpRequest.getHeader(CONTENT_ENCODING)) != null){
+            httpRequest = decompression = new DecompressionRequestWrapper(httpRequest, maxRequestSize);
+        }
+        try {
+            filter(httpRequest, httpResponse, chain);
+        } catch (IOException e) {
+            if(!rejectTooLarge(decompression, httpResponse)){
+                throw e;
+            }
+            return;
+        } catch (ServletException e) {
+            if(!rejectTooLarge(decompression, httpResponse)){
+                throw e;
+            }
+            return;
+        }
+        //readers may also convert the exception to an error response
+        rejectTooLarge(decompression, httpResponse);
+    }
+
+    /**
+     * Rejects requests with a decompressed body exceeding the maximum request
+     * size with status 413
+     * @return <code>true</code> if the request was rejected. <code>false</code>
+     * if the size was not exceeded or the response is already committed
+     */
+    private boolean rejectTooLarge(DecompressionRequestWrapper request, HttpServletResponse response)
+            throws IOException {
+        if(request == null || !request.isSizeExceeded() || response.isCommitted()){
+            return false;
+        }
+        response.reset();
+        response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, 
+            "The decompressed request body exceeds the maximum size of "
+            + maxRequestSize + " bytes");
+        return true;
+    }
+
+    private void filter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if(minSize < 0){
+            chain.doFilter(request, response);
+            return;
+        }
+        response.addHeader("Vary", "Accept-Encoding");
+        String encoding = getEncoding(request.getHeader("Accept-Encoding"));
+        if(encoding == null){
+            chain.doFilter(request, response);
+            return;
+        }
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper(response, encoding);
+        try {
+            chain.doFilter(request, wrapper);
+            wrapper.finish();
+        } finally {
+            wrapper.end();
+        }
+    }
+
+    @Override
+    public void destroy() {}
+
+    /**
+     * Selects the encoding based on the parsed <code>Accept-Encoding</code>
+     * header. <code>gzip</code> is preferred over <code>deflate</code>.
+     * @return the encoding or <code>null</code> if the response is not
+     * compressed
+     */
+    static String getEncoding(String acceptEncoding){
+        if(acceptEncoding == null){
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for(String element : acceptEncoding.split(",")){
+            int sep = element.indexOf(';');
+            String coding = (sep < 0 ? element : element.substring(0, sep)).trim().toLowerCase();
+            if(sep >= 0 && isZeroQuality(element.substring(sep + 1))){
+                continue;
+            }
+            if(GZIP.equals(coding) || "x-gzip".equals(coding) || "*".equals(coding)){
+                gzip = true;
+            } else if(DEFLATE.equals(coding)){
+                deflate = true;
+            }
+        }
+        return gzip ? GZIP : deflate ? DEFLATE : null;
+    }
+
+    /**
+     * The encoding of a request body that is decompressed by this filter
+     * @return <code>gzip</code>, <code>deflate</code> or <code>null</code>
+     * if the body is not decompressed (other encodings are left to the 
+     * readers)
+     */
+    static String getContentDecoding(String contentEncoding){
+        if(contentEncoding == null){
+            return null;
+        }
+        String coding = contentEncoding.trim().toLowerCase();
+        if(GZIP.equals(coding) || "x-gzip".equals(coding)){
+            return GZIP;
+        } else if(DEFLATE.equals(coding)){
+            return DEFLATE;
+        } else {
+            return null;
+        }
+    }
+
+    private static boolean isZeroQuality(String params){
+        for(String param : params.split(";")){
+            param = param.trim();
+            if(param.startsWith("q=")){
+                try {
+                    return Double.parseDouble(param.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Buffers up to <code>minSize</code> bytes before it decides if the
+     * response is compressed
+     */
+    private class CompressionResponseWrapper extends HttpServletResponseWrapper {
+
+        private final HttpServletResponse response;
+        private final String encoding;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(minSize, 8192));
+        /**
+         * <code>null</code> as long as the response is buffered
+         */
+        private OutputStream out;
+        private DeflaterOutputStream compressor;
+        /**
+         * The Deflater of the compressor. Ended explicitly as
+         * {@link DeflaterOutputStream#finish()} does not release it
+         */
+        private Deflater deflater;
+        private boolean bypass;
+        private ServletOutputStream outputStream;
+        private boolean streamUsed;
+        private PrintWriter writer;
+
+        CompressionResponseWrapper(HttpServletResponse response, String encoding) {
+            super(response);
+            this.response = response;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            if(out == null && length >= 0 && length < minSize){
+                bypass = true; //known to be small
+            }
+            if(bypass){
+                response.setContentLength(length);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            checkHeader(name, value);
+            if(checkContentLength(name, value)){
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            checkHeader(name, value);
+            if(checkContentLength(name, value)){
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if(checkContentLength(name, String.valueOf(value))){
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if(checkContentLength(name, String.valueOf(value))){
+                super.addIntHeader(name, value);
+            }
+        }
+
+        private void checkHeader(String name, String value) {
+            if("Content-Encoding".equalsIgnoreCase(name) && out == null){
+                bypass = true; //already encoded
+            }
+        }
+
+        /**
+         * @return if the Content-Length header should be forwarded
+         */
+        private boolean checkContentLength(String name, String value) {
+            if(!"Content-Length".equalsIgnoreCase(name)){
+                return true;
+            }
+            try {
+                setContentLength(Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                //ignore
+            }
+            return false;
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            bypass = true;
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            bypass = true;
+            super.sendError(status, message);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if(writer != null){
+                throw new IllegalStateException("getWriter() was already called");
+            }
+            streamUsed = true;
+            return getStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if(writer == null){
+                if(streamUsed){
+                    throw new IllegalStateException("getOutputStream() was already called");
+                }
+                String charset = getCharacterEncoding();
+                writer = new PrintWriter(new OutputStreamWriter(getStream(),
+                    charset == null ? "ISO-8859-1" : charset));
+            }
+            return writer;
+        }
+
+        private ServletOutputStream getStream() {
+            if(outputStream == null){
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        getTarget(1).write(b);
+                    }
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        getTarget(len).write(b, off, len);
+                    }
+                    @Override
+                    public void flush() throws IOException {
+                        if(out != null){ //do not commit buffered responses
+                            out.flush();
+                        }
+                    }
+                    @Override
+                    public void close() throws IOException {
+                        finish();
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if(writer != null){
+                writer.flush();
+            }
+            if(out != null){
+                out.flush();
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if(out == null){
+                buffer.reset();
+            }
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if(out == null){
+                buffer.reset();
+                bypass = false;
+            }
+            super.reset();
+        }
+
+        /**
+         * The stream the next <code>len</code> bytes are written to. Decides
+         * on compression as soon as the buffer would exceed the minimum size.
+         */
+        private OutputStream getTarget(int len) throws IOException {
+            if(out == null){
+                if(bypass){
+                    out = response.getOutputStream();
+                    writeBuffer();
+                } else if(buffer.size() + len >= minSize){
+                    response.setHeader("Content-Encoding", encoding);
+                    OutputStream stream = response.getOutputStream();
+                    if(GZIP.equals(encoding)){
+                        GzipStream gzip = new GzipStream(stream);
+                        deflater = gzip.getDeflater();
+                        compressor = gzip;
+                    } else {
+                        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+                        compressor = new DeflaterOutputStream(stream, deflater, 8192);
+                    }
+                    out = compressor;
+                    writeBuffer();
+                } else {
+                    return buffer;
+                }
+            }
+            return out;
+        }
+
+        private void writeBuffer() throws IOException {
+            if(buffer.size() > 0){
+                buffer.writeTo(out);
+                buffer.reset();
+            }
+        }
+
+        /**
+         * Writes buffered data and completes the compressed stream. Called
+         * after the request was processed.
+         */
+        void finish() throws IOException {
+            if(writer != null){
+                writer.flush();
+            }
+            if(out == null){
+                if(buffer.size() > 0){ //small response: send uncompressed
+                    response.setContentLength(buffer.size());
+                    out = response.getOutputStream();
+                    writeBuffer();
+                    out.flush();
+                }
+            } else if(compressor != null){
+                compressor.finish();
+                compressor.flush();
+                compressor = null;
+            }
+        }
+
+        /**
+         * Releases the native resources of the Deflater. Called after
+         * {@link #finish()} and if the request failed.
+         */
+        void end() {
+            compressor = null;
+            if(deflater != null){
+                deflater.end();
+                deflater = null;
+            }
+        }
+    }
+
+    /**
+     * Provides access to the Deflater created by the {@link GZIPOutputStream}
+     * as it is only ended by {@link GZIPOutputStream#close()}
+     */
+    private static class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out) throws IOException {
+            super(out, 8192);
+        }
+
+        Deflater getDeflater() {
+            return def;
+        }
+    }
+
+    /**
+     * Decompresses the request body while it is read. Hides the
+     * <code>Content-Encoding</code> and <code>Content-Length</code> headers
+     * of the compressed body. Reading more than the maximum size fails with
+     * an {@link IOException}.
+     */
+    private static class DecompressionRequestWrapper extends HttpServletRequestWrapper {
+
+        private final String encoding;
+        private final long maxSize;
+        private long size;
+        private volatile boolean sizeExceeded;
+        private ServletInputStream inputStream;
+        private BufferedReader reader;
+
+        DecompressionRequestWrapper(HttpServletRequest request, long maxSize) {
+            super(request);
+            this.encoding = getContentDecoding(request.getHeader(CONTENT_ENCODING));
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * If more than the maximum size was read from the decompressed body
+         */
+        boolean isSizeExceeded() {
+            return sizeExceeded;
+        }
+
+        private void count(int read) throws IOException {
+            if(read > 0 && maxSize > 0){
+                size += read;
+                if(size > maxSize){
+                    sizeExceeded = true;
+                    throw new IOException("The decompressed request body exceeds the "
+                        + "maximum size of " + maxSize + " bytes");
+                }
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if(reader != null){
+                throw new IllegalStateException("getReader() was already called");
+            }
+            if(inputStream == null){
+                final InputStream body = super.getInputStream();
+                final InputStream in = GZIP.equals(encoding) ? 
+                        new GZIPInputStream(body, 8192) : new InflaterInputStream(body);
+                inputStream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = in.read();
+                        count(b < 0 ? -1 : 1);
+                        return b;
+                    }
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int read = in.read(b, off, len);
+                        count(read);
+                        return read;
+                    }
+                    @Override
+                    public void close() throws IOException {
+                        in.close(); //ends the Inflater
+                    }
+                };
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if(reader == null){
+                if(inputStream != null){
+                    throw new IllegalStateException("getInputStream() was already called");
+                }
+                String charset = getCharacterEncoding();
+                ServletInputStream in = getInputStream();
+                reader = new BufferedReader(new InputStreamReader(in,
+                    charset == null ? "ISO-8859-1" : charset));
+            }
+            return reader;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1; //the length of the decompressed body is unknown
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isHidden(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Enumeration getHeaders(String name) {
+            return isHidden(name) ? Collections.enumeration(Collections.emptyList()) :
+                super.getHeaders(name);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Enumeration getHeaderNames() {
+            List<Object> names = new ArrayList<Object>();
+            Enumeration it = super.getHeaderNames();
+            while(it != null && it.hasMoreElements()){
+                Object name = it.nextElement();
+                if(!isHidden(String.valueOf(name))){
+                    names.add(name);
+                }
+            }
+            return Collections.enumeration(names);
+        }
+
+        @Override
+        public int getIntHeader(String name) {
+            return isHidden(name) ? -1 : super.getIntHeader(name);
+        }
+
+        private static boolean isHidden(String name){
+            return CONTENT_ENCODING.equalsIgnoreCase(name) || CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.reader;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_CONTENT_ITEM_FACTORY;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.apache.stanbol.enhancer.servicesapi.Blob;
+import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
+import org.apache.stanbol.enhancer.servicesapi.impl.StringSource;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+/**
+ * Reads an already tokenized and sentence split text. The expected JSON
+ * has the form
+ * <code><pre>
+ *   {
+ *     "text": "Hello world. Bye.",
+ *     "sentences": [
+ *       [[0,5],[6,11],[11,12]],
+ *       [[13,16],[16,17]]
+ *     ]
+ *   }
+ * </pre></code>
+ * where every sentence is an array of the <code>[start,end]</code> character
+ * offsets of its tokens.
+ */
+@Provider
+@Consumes(MediaType.APPLICATION_JSON)
+public class AnalysedTextReader implements MessageBodyReader<AnalysedText>{
+
+    @Context
+    protected ServletContext servletContext;
+
+    private ContentItemFactory contentItemFactory;
+    
+    private JsonFactory jsonFactory;
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return AnalysedText.class.isAssignableFrom(type) &&
+                MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public AnalysedText readFrom(Class<AnalysedText> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String,String> httpHeaders, InputStream entityStream)
+            throws IOException, WebApplicationException {
+        JsonParser jp = getJsonFactory().createJsonParser(
+            Utils.decodeEntityStream(httpHeaders, entityStream));
+        String text = null;
+        List<List<int[]>> sentences = null;
+        if(jp.nextToken() != JsonToken.START_OBJECT){
+            throw badRequest("The parsed JSON MUST BE an object");
+        }
+        while(jp.nextToken() == JsonToken.FIELD_NAME){
+            String field = jp.getCurrentName();
+            JsonToken value = jp.nextToken();
+            if("text".equals(field) && value == JsonToken.VALUE_STRING){
+                text = jp.getText();
+            } else if("sentences".equals(field) && value == JsonToken.START_ARRAY){
+                sentences = parseSentences(jp);
+            } else {
+                jp.skipChildren(); //ignore unknown fields
+            }
+        }
+        if(text == null){
+            throw badRequest("The parsed JSON MUST contain the 'text' field");
+        }
+        if(sentences == null){
+            throw badRequest("The parsed JSON MUST contain the 'sentences' field");
+        }
+        int lastEnd = 0; //tokens MUST BE sorted and MUST NOT overlap
+        for(List<int[]> sentence : sentences){
+            if(sentence.isEmpty()){
+                continue;
+            }
+            for(int[] token : sentence){
+                if(token[0] < 0 || token[0] >= token[1] || token[1] > text.length()){
+                    throw badRequest("Illegal token offsets ["+token[0]+","+token[1]
+                        + "] for text with length "+text.length());
+                }
+                if(token[0] < lastEnd){
+                    throw badRequest("Token ["+token[0]+","+token[1]+"] overlaps or "
+                        + "precedes the previous token ending at "+lastEnd
+                        + " (tokens MUST BE sorted and MUST NOT overlap)");
+                }
+                lastEnd = token[1];
+            }
+        }
+        Blob blob = getContentItemFactory().createBlob(new StringSource(text));
+        AnalysedText at = AnalysedTextFactory.getDefaultInstance().createAnalysedText(blob);
+        try {
+            for(List<int[]> sentence : sentences){
+                if(sentence.isEmpty()){
+                    continue;
+                }
+                for(int[] token : sentence){
+                    at.addToken(token[0], token[1]);
+                }
+                at.addSentence(sentence.get(0)[0], sentence.get(sentence.size()-1)[1]);
+            }
+        } catch (IllegalArgumentException e) {
+            throw badRequest("Unable to add the parsed Tokens and Sentences ("
+                + e.getMessage() + ")");
+        }
+        return at;
+    }
+
+    private List<List<int[]>> parseSentences(JsonParser jp) throws IOException {
+        List<List<int[]>> sentences = new ArrayList<List<int[]>>();
+        while(jp.nextToken() == JsonToken.START_ARRAY){
+            List<int[]> tokens = new ArrayList<int[]>();
+            while(jp.nextToken() == JsonToken.START_ARRAY){
+                int[] token = new int[2];
+                for(int i = 0; i < 2; i++){
+                    if(jp.nextToken() != JsonToken.VALUE_NUMBER_INT){
+                        throw badRequest("Tokens MUST BE parsed as [start,end] arrays");
+                    }
+                    token[i] = jp.getIntValue();
+                }
+                if(jp.nextToken() != JsonToken.END_ARRAY){
+                    throw badRequest("Tokens MUST BE parsed as [start,end] arrays");
+                }
+                tokens.add(token);
+            }
+            if(jp.getCurrentToken() != JsonToken.END_ARRAY){
+                throw badRequest("Sentences MUST BE parsed as arrays of tokens");
+            }
+            sentences.add(tokens);
+        }
+        if(jp.getCurrentToken() != JsonToken.END_ARRAY){
+            throw badRequest("'sentences' MUST BE an array of sentences");
+        }
+        return sentences;
+    }
+    
+    private WebApplicationException badRequest(String message){
+        return new WebApplicationException(Response.status(Status.BAD_REQUEST)
+            .entity(message).build());
+    }
+    
+    private ContentItemFactory getContentItemFactory(){
+        if(contentItemFactory == null){
+            contentItemFactory = Utils.getResource(ContentItemFactory.class, 
+                servletContext, SERVLET_ATTRIBUTE_CONTENT_ITEM_FACTORY);
+        }
+        return contentItemFactory;
+    }
+    
+    public JsonFactory getJsonFactory() {
+        if(jsonFactory == null){
+            jsonFactory = new JsonFactory();
+        }
+        return jsonFactory;
+    }
+
+}
@@ -41,7 +41,8 @@ public class BlobReader implements MessageBodyReader<Blob>{
             MultivaluedMap<String,String> httpHeaders, InputStream entityStream) throws IOException,
             WebApplicationException {
         ContentItemFactory cif = getContentItemFactory();
-        return cif.createBlob(new StreamSource(entityStream,mediaType.toString()));
+        return cif.createBlob(new StreamSource(Utils.decodeEntityStream(httpHeaders, entityStream),
+            mediaType.toString()));
     }
     
     private ContentItemFactory getContentItemFactory(){
@@ -1,39 +1,76 @@
 package io.insideout.stanbol.enhancer.nlp.freeling.web.resource;
 
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.DEFAULT_ANALYSIS_TIME_BUDGET;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.DEFAULT_LANGID_SAMPLE_SIZE;
 import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.DEFAULT_RESOURCE_WAIT_TIME;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.FORMAT_COLUMNAR;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.HEADER_ANALYSIS_ID;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.HEADER_LANGUAGE_SEGMENTS;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.HEADER_OMITTED_LAYERS;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.HEADER_RETRY_AFTER;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.HEADER_SENTENCE_CUTS;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.MEDIA_TYPE_ANALYSED_TEXT_BINARY;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.REQUEST_ATTRIBUTE_ADMISSION_TICKET;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_ADMISSION_CONTROLLER;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_ANALYSIS_CACHE;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_ANALYSIS_TIME_BUDGET;
 import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_FREELING;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_LANGID_CACHE;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_LANGID_SAMPLE_SIZE;
 import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_MAX_RESOURCE_WAIT_TIEM;
 import static javax.ws.rs.core.HttpHeaders.CONTENT_LANGUAGE;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.NOT_ACCEPTABLE;
 import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import io.insideout.stanbol.enhancer.nlp.freeling.AnalysisContext;
 import io.insideout.stanbol.enhancer.nlp.freeling.Analyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.BulkAnalyzer;
 import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
+import io.insideout.stanbol.enhancer.nlp.freeling.IncrementalAnalysis;
 import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier;
 import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageSampler;
+import io.insideout.stanbol.enhancer.nlp.freeling.MultiLanguageAnalyzer;
+import io.insideout.stanbol.enhancer.nlp.freeling.MultiLanguageAnalyzer.Segment;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.PoolTimeoutException;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.reader.AnalysedTextReader;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AdmissionController;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AdmissionController.Ticket;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AnalysisCache;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AnalysisCache.CachedAnalysis;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.ColumnarAnalysedText;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.LanguageIdentificationCache;
 import io.insideout.stanbol.enhancer.nlp.freeling.web.util.Utils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
 import org.apache.stanbol.enhancer.servicesapi.Blob;
 
@@ -41,12 +78,19 @@ import org.apache.stanbol.enhancer.servicesapi.Blob;
 public class AnalysisResource {
 
     private static final Charset UTF8 = Charset.forName("UTF-8");
-    
+
     @Context
     ServletContext servletContext;
+    @Context
+    HttpServletRequest httpRequest;
 
 
     private Long maxWaitTime;
+    private Long timeBudget;
+    private AnalysisCache analysisCache;
+    private AdmissionController admissionController;
+    private LanguageSampler languageSampler;
+    private LanguageIdentificationCache langIdCache;
     private Freeling freeling;
     
     @GET
@@ -68,95 +112,382 @@ public class AnalysisResource {
     
     @POST
     @Consumes(MediaType.TEXT_PLAIN)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response analyse(Blob blob, @Context HttpHeaders headers){
+    @Produces({MediaType.APPLICATION_JSON, MEDIA_TYPE_ANALYSED_TEXT_BINARY})
+    public Response analyse(Blob blob, @Context HttpHeaders headers, 
+            @QueryParam("bulk") boolean bulk, @QueryParam("previous") String previous,
+            @QueryParam("languages") String languages, @QueryParam("segment") boolean segment,
+            @QueryParam("format") String format){
+        if(segment){
+            return analyseSegments(blob, headers, languages, format);
+        }
+        return analyse(blob, null, headers, bulk, previous, languages, format);
+    }
+    /**
+     * Analyses an already tokenized and sentence split text. Tokenizing and
+     * sentence detection are skipped. See {@link AnalysedTextReader} for the 
+     * expected JSON format
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, MEDIA_TYPE_ANALYSED_TEXT_BINARY})
+    public Response analyseTokenized(AnalysedText tokenized, @Context HttpHeaders headers, 
+            @QueryParam("bulk") boolean bulk, @QueryParam("languages") String languages,
+            @QueryParam("format") String format){
+        return analyse(tokenized.getBlob(), tokenized, headers, bulk, null, languages, format);
+    }
+    
+    /**
+     * Analyses the parsed text
+     * @param blob the text
+     * @param tokenized the tokenized text or <code>null</code> if none
+     * @param headers the request headers
+     * @param bulk if the {@link BulkAnalyzer} should be used
+     * @param previous the id of a cached analysis of a previous version of
+     * the text or <code>null</code> if none
+     * @param languages comma separated list of the candidate languages for
+     * language identification or <code>null</code> to use the supported
+     * languages
+     * @param format the requested response format or <code>null</code> for
+     * the default
+     * @return the response
+     */
+    private Response analyse(Blob blob, AnalysedText tokenized, HttpHeaders headers, 
+            boolean bulk, String previous, String languages, String format){
+        checkFormat(format, headers);
+        //create the context first so that the time budget includes waiting times
+        AnalysisContext context = new AnalysisContext(getTimeBudget());
+        Freeling freeling = getFreeling();
+        Long maxWaitTime = getMaxWaitTime();
+        final Language contentLanguage = getContentLanguage(blob, tokenized, headers, languages);
+        CachedAnalysis previousAnalysis = null;
+        if(previous != null && tokenized == null && getAnalysisCache() != null){
+            previousAnalysis = getAnalysisCache().get(previous);
+            if(previousAnalysis != null && 
+                    !previousAnalysis.getLanguage().equals(contentLanguage.getLang())){
+                previousAnalysis = null; //language changed
+            }
+        }
+        ResourcePool<Analyzer> analyzerPool = freeling.getAnalyzerPool(contentLanguage.getLang());
+        Ticket ticket = getAdmissionTicket();
+        if(ticket == null && getAdmissionController() != null){
+            ticket = getAdmissionController().admit(freeling, contentLanguage.getLang(), 
+                bulk, maxWaitTime);
+            if(!ticket.isAdmitted()){
+                return Response.status(ticket.getStatus()).entity(ticket.getReason())
+                        .header(HEADER_RETRY_AFTER, ticket.getRetryAfter())
+                        .header(HttpHeaders.CONTENT_LANGUAGE, contentLanguage.getLang()).build();
+            }
+        }
+        AnalysedText at;
+        try {
+            if(bulk){ //use the pipelined analyzer
+                BulkAnalyzer analyzer;
+                try {
+                    analyzer = freeling.getBulkAnalyzer(contentLanguage.getLang());
+                    if(ticket != null){
+                        ticket.started();
+                    }
+                    at = analyse(analyzer, blob, tokenized, previousAnalysis, context);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Response.status(SERVICE_UNAVAILABLE).entity("Interrupted while "
+                        + "waiting for the BulkAnalyzer for language '" 
+                        + contentLanguage.getLang() + "'").build();
+                } catch (IOException e) {
+                    throw new WebApplicationException(e);
+                }
+            } else {
+                Analyzer analyzer;
+                try {
+                    analyzer = analyzerPool.getResource(maxWaitTime);
+                } catch (PoolTimeoutException e) {
+                    ResponseBuilder rb = Response.status(SERVICE_UNAVAILABLE)
+                            .entity("Unable to obtain Analyzer instance for language '"
+                                    + contentLanguage.getLang() + "after waiting for "
+                                    +(maxWaitTime/1000d)+"sec");
+                    if(ticket != null){
+                        rb.header(HEADER_RETRY_AFTER, ticket.getRetryAfter(
+                            AdmissionController.getConcurrency(freeling, contentLanguage.getLang())));
+                    }
+                    return rb.build();
+                }
+                if(analyzer == null){ //interrupted while waiting
+                    return Response.status(SERVICE_UNAVAILABLE).entity("Interrupted while "
+                        + "waiting for an Analyzer for language '" 
+                        + contentLanguage.getLang() + "'").build();
+                }
+                if(ticket != null){
+                    ticket.started();
+                }
+                try {
+                    try {
+                        at = analyse(analyzer, blob, tokenized, previousAnalysis, context);
+                    } catch (IOException e) {
+                        throw new WebApplicationException(e);
+                    }
+                } finally {
+                    analyzerPool.returnResource(analyzer);
+                }
+            }
+        } finally {
+            if(ticket != null){
+                ticket.release();
+            }
+        }
+        ResponseBuilder rb = ok(at, format)
+                .header(HttpHeaders.CONTENT_LANGUAGE, contentLanguage.getLang());
+        addContextHeaders(rb, context);
+        //degraded analyses are not cached as the omitted layers and cut
+        //sentences would be missing from incremental analyses
+        if(tokenized == null && !context.isDegraded() && getAnalysisCache() != null){
+            rb.header(HEADER_ANALYSIS_ID, getAnalysisCache().put(contentLanguage.getLang(), at));
+        }
+        return rb.build();
+    }
+    
+    /**
+     * Analyses a text with multiple languages. The language of the text
+     * (parsed or detected) is used for segments where no supported language
+     * can be detected.
+     * @see MultiLanguageAnalyzer
+     */
+    private Response analyseSegments(Blob blob, HttpHeaders headers, String languages, String format){
+        checkFormat(format, headers);
+        AnalysisContext context = new AnalysisContext(getTimeBudget());
         Freeling freeling = getFreeling();
         Long maxWaitTime = getMaxWaitTime();
-        Charset cs = blob.getParameter().get("charset") != null ?
+        Language contentLanguage = getContentLanguage(blob, null, headers, languages);
+        languages = getLanguageCandidates(languages);
+        MultiLanguageAnalyzer analyzer = freeling.getMultiLanguageAnalyzer();
+        List<Segment> segments;
+        AnalysedText at;
+        List<Ticket> tickets = new ArrayList<Ticket>();
+        try {
+            segments = analyzer.segment(IOUtils.toString(blob.getStream(), getCharset(blob).name()),
+                contentLanguage.getLang(), languages, maxWaitTime);
+            //one ticket for every Analyzer the analysis borrows concurrently
+            if(getAdmissionController() != null){
+                for(Entry<String,Integer> fanOut : analyzer.getFanOut(segments).entrySet()){
+                    for(int i = 0; i < fanOut.getValue(); i++){
+                        Ticket ticket = getAdmissionController().admit(freeling, 
+                            fanOut.getKey(), false, maxWaitTime);
+                        if(!ticket.isAdmitted()){
+                            return Response.status(ticket.getStatus()).entity(ticket.getReason())
+                                    .header(HEADER_RETRY_AFTER, ticket.getRetryAfter())
+                                    .header(HttpHeaders.CONTENT_LANGUAGE, fanOut.getKey()).build();
+                        }
+                        tickets.add(ticket);
+                    }
+                }
+            }
+            //tickets are not started as the time needed for all segments
+            //is no service time of a single Analyzer
+            at = analyzer.analyse(blob, segments, context, maxWaitTime);
+        } catch (PoolTimeoutException e) {
+            return Response.status(SERVICE_UNAVAILABLE)
+                    .entity("Unable to obtain Freeling resources for the analysis "
+                        + "of the segments after waiting for "+(maxWaitTime/1000d)+"sec").build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(SERVICE_UNAVAILABLE).entity("Interrupted while "
+                + "waiting for the analysis of the segments").build();
+        } catch (IOException e) {
+            throw new WebApplicationException(e);
+        } finally {
+            for(Ticket ticket : tickets){
+                ticket.release();
+            }
+        }
+        Set<String> segmentLanguages = new LinkedHashSet<String>();
+        for(Segment segment : segments){
+            segmentLanguages.add(segment.getLanguage());
+        }
+        ResponseBuilder rb = ok(at, format)
+                .header(HttpHeaders.CONTENT_LANGUAGE, StringUtils.join(segmentLanguages, ", "))
+                .header(HEADER_LANGUAGE_SEGMENTS, StringUtils.join(segments, ", "));
+        addContextHeaders(rb, context);
+        return rb.build();
+    }
+    
+    /**
+     * Validates the requested format before the text is analysed. The
+     * columnar format is only available as JSON.
+     * @throws WebApplicationException if the format is not supported or
+     * if it can not be combined with the acceptable media types
+     */
+    static void checkFormat(String format, HttpHeaders headers){
+        if(format != null && !format.isEmpty() && !FORMAT_COLUMNAR.equalsIgnoreCase(format)){
+            throw new WebApplicationException(Response.status(BAD_REQUEST).entity("The format '"
+                + format + "' is not supported (supported: '" + FORMAT_COLUMNAR + "')").build());
+        }
+        if(FORMAT_COLUMNAR.equalsIgnoreCase(format) && !isJsonAcceptable(headers)){
+            throw new WebApplicationException(Response.status(NOT_ACCEPTABLE).entity("The format '"
+                + format + "' is only supported for '" + MediaType.APPLICATION_JSON + "' (Accept: "
+                + headers.getAcceptableMediaTypes() + ")").build());
+        }
+    }
+    
+    private static boolean isJsonAcceptable(HttpHeaders headers){
+        List<MediaType> acceptable = headers == null ? null : headers.getAcceptableMediaTypes();
+        if(acceptable == null || acceptable.isEmpty()){
+            return true;
+        }
+        for(MediaType mediaType : acceptable){
+            if(mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)){
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Creates the response for the parsed format. Columnar results are
+     * always written as JSON, even if the client also accepts the binary
+     * encoding.
+     */
+    private static ResponseBuilder ok(AnalysedText at, String format){
+        if(FORMAT_COLUMNAR.equalsIgnoreCase(format)){
+            return Response.ok(new ColumnarAnalysedText(at), MediaType.APPLICATION_JSON_TYPE);
+        } else {
+            return Response.ok(at);
+        }
+    }
+    
+    private void addContextHeaders(ResponseBuilder rb, AnalysisContext context){
+        if(!context.getOmittedLayers().isEmpty()){
+            rb.header(HEADER_OMITTED_LAYERS, StringUtils.join(context.getOmittedLayers(), ", "));
+        }
+        if(!context.getSentenceCuts().isEmpty()){
+            rb.header(HEADER_SENTENCE_CUTS, StringUtils.join(context.getSentenceCuts(), ", "));
+        }
+    }
+    
+    private static Charset getCharset(Blob blob){
+        return blob.getParameter().get("charset") != null ?
                 Charset.forName(blob.getParameter().get("charset")) : UTF8;
+    }
+    
+    /**
+     * Gets the language of the parsed text from the {@link HttpHeaders#CONTENT_LANGUAGE}
+     * header or - if not present - detects the language.
+     * @throws WebApplicationException with the error response if the language
+     * is not valid or can not be detected
+     */
+    private Language getContentLanguage(Blob blob, AnalysedText tokenized, HttpHeaders headers,
+            String languages){
+        Freeling freeling = getFreeling();
+        Long maxWaitTime = getMaxWaitTime();
         List<String> contentLanguages = headers.getRequestHeader(HttpHeaders.CONTENT_LANGUAGE);
-        //Now retrieve/detect the language of the text
         final Language contentLanguage;
         if(contentLanguages == null || contentLanguages.isEmpty()){
             //try to detect the language
             if(!freeling.isLanguageIdentificationSupported()){
-                return Response.status(BAD_REQUEST).entity("Language Identification"
+                throw new WebApplicationException(Response.status(BAD_REQUEST).entity("Language Identification"
                         + "is not supported. Please explicitly parse the "
                         + "Language by setting the '"+HttpHeaders.CONTENT_LANGUAGE
-                        + "' in the Request").build();
+                        + "' in the Request").build());
             }
             try {
-                contentLanguage = detectLanguage(IOUtils.toString(blob.getStream(), cs.name()));
+                contentLanguage = detectLanguage(blob, tokenized, languages);
             } catch (PoolTimeoutException e) {
-                return Response.status(SERVICE_UNAVAILABLE)
+                throw new WebApplicationException(Response.status(SERVICE_UNAVAILABLE)
                         .entity("Unable to obtain LanguageIdentifier resource after "
-                            + "waiting for "+(maxWaitTime/1000d)+"sec").build();
+                            + "waiting for "+(maxWaitTime/1000d)+"sec").build());
             } catch (IOException e) {
                 throw new WebApplicationException(e);
             }
             if(contentLanguage == null){
-                return Response.status(BAD_REQUEST).entity("Unable to detect "
+                throw new WebApplicationException(Response.status(BAD_REQUEST).entity("Unable to detect "
                         + "Language for parsed Text. Please explicitly parse the "
                         + "Language by setting the '"+CONTENT_LANGUAGE
-                        + "' in the Request").build();
+                        + "' in the Request").build());
             }
         } else if(contentLanguages.size() > 1){
-            return Response.status(BAD_REQUEST).entity("The " + CONTENT_LANGUAGE
+            throw new WebApplicationException(Response.status(BAD_REQUEST).entity("The " + CONTENT_LANGUAGE
                 + "Header MUST only have a single value (parsed: "+
-                    contentLanguages.toString()+")!").build();
+                    contentLanguages.toString()+")!").build());
         } else {
             String clString = contentLanguages.get(0);
             if(clString.length() != 2){
-                return Response.status(BAD_REQUEST).entity("The " + CONTENT_LANGUAGE
+                throw new WebApplicationException(Response.status(BAD_REQUEST).entity("The " + CONTENT_LANGUAGE
                     + "Header MUST use two digit (ISO 639-1) language codes (parsed: "+
-                    clString+")!").build();
+                    clString+")!").build());
             }
             contentLanguage = new Language(clString, 1.0);
         }
-        //analyse the text
         if(!freeling.isLanguageSupported(contentLanguage.getLang())){
-            return Response.status(BAD_REQUEST).entity("The language '" 
+            throw new WebApplicationException(Response.status(BAD_REQUEST).entity("The language '" 
                     + contentLanguage.getLang()
                     + "' of the parsed text is not supported (supported: "
                     + freeling.getSupportedLanguages()+")")
                 .header(HttpHeaders.CONTENT_LANGUAGE, contentLanguage.getLang())
-                .build();
+                .build());
         }
-        ResourcePool<Analyzer> analyzerPool = freeling.getAnalyzerPool(contentLanguage.getLang());
-        Analyzer analyzer;
-        try {
-            analyzer = analyzerPool.getResource(maxWaitTime);
-        } catch (PoolTimeoutException e) {
-            return Response.status(SERVICE_UNAVAILABLE)
-                    .entity("Unable to obtain Analyzer instance for language '"
-                            + contentLanguage.getLang() + "after waiting for "
-                            +(maxWaitTime/1000d)+"sec").build();
+        return contentLanguage;
+    }
+    
+    private AnalysedText analyse(Analyzer analyzer, Blob blob, AnalysedText tokenized,
+            CachedAnalysis previous, AnalysisContext context) throws IOException {
+        if(tokenized != null){
+            return analyzer.analyse(tokenized, context);
+        } else if(previous != null){
+            return IncrementalAnalysis.analyse(analyzer, previous.getAnalysedText(), blob, context);
+        } else {
+            return analyzer.analyse(blob, context);
         }
-        AnalysedText at; 
-        try {
+    }
+
+    /**
+     * Detects the language based on a sample of the parsed text. Results
+     * for short texts are cached by the {@link LanguageIdentificationCache}
+     * (if present).
+     * @see LanguageSampler
+     */
+    private Language detectLanguage(Blob blob, AnalysedText tokenized, String languages) throws PoolTimeoutException, IOException{
+        LanguageSampler sampler = getLanguageSampler();
+        LanguageIdentificationCache langIdCache = getLangIdCache();
+        languages = getLanguageCandidates(languages);
+        String text = null;
+        if(tokenized != null){
+            text = tokenized.getSpan();
+        } else if(langIdCache != null && blob.getContentLength() >= 0 && 
+                blob.getContentLength() <= langIdCache.getMaxTextLength()){
+            text = IOUtils.toString(blob.getStream(), getCharset(blob).name());
+        }
+        //results detected from a sample are cached separately as /langident
+        //uses the same cache for results of the whole text
+        boolean sampled = text != null && sampler.getPrefixSize() > 0 && 
+                text.length() > sampler.getPrefixSize();
+        List<Language> detected = langIdCache == null ? null : 
+            langIdCache.get(text, languages, sampled);
+        if(detected == null){
+            LanguageIdentifier langident = freeling.getLanguageIdentifier(maxWaitTime);
             try {
-                at = analyzer.analyse(blob);
-            } catch (IOException e) {
-                throw new WebApplicationException(e);
+                detected = text != null ? sampler.identifyLanguage(langident, text, languages) :
+                    sampler.identifyLanguage(langident, blob, languages);
+            } finally {
+                freeling.releaseLanguageIdentifier(langident);
+            }
+            if(langIdCache != null){
+                langIdCache.put(text, languages, sampled, detected);
             }
-        } finally {
-            analyzerPool.returnResource(analyzer);
         }
-        return Response.ok(at)
-                .header(HttpHeaders.CONTENT_LANGUAGE, contentLanguage.getLang())
-                .build();
+        return detected.isEmpty() ? null : detected.get(0);
     }
-
-    private Language detectLanguage(String text) throws PoolTimeoutException, IOException{
-        ResourcePool<LanguageIdentifier> langIdPool = freeling.getLangIdPool();
-        List<Language> detected;
-        LanguageIdentifier langident = langIdPool.getResource(maxWaitTime);
+    
+    /**
+     * Normalises the candidate languages parsed by the client
+     * @see Freeling#getLanguageCandidates(String)
+     * @throws WebApplicationException with a {@link Status#BAD_REQUEST} 
+     * response if none of the parsed languages is known
+     */
+    private String getLanguageCandidates(String languages){
         try {
-            detected = langident.identifyLanguage(text);
-        } finally {
-            langIdPool.returnResource(langident);
+            return getFreeling().getLanguageCandidates(languages);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.status(BAD_REQUEST)
+                .entity(e.getMessage()).build());
         }
-        return detected.isEmpty() ? null : detected.get(0);
     }
     
     private Freeling getFreeling(){
@@ -174,4 +505,56 @@ public class AnalysisResource {
         return maxWaitTime;
     }
     
+    private AnalysisCache getAnalysisCache(){
+        if(analysisCache == null){
+            Object value = servletContext.getAttribute(SERVLET_ATTRIBUTE_ANALYSIS_CACHE);
+            analysisCache = value instanceof AnalysisCache ? (AnalysisCache)value : null;
+        }
+        return analysisCache;
+    }
+    
+    /**
+     * The ticket of requests admitted before they were queued for a
+     * request thread
+     * @return the ticket or <code>null</code> if not yet admitted
+     */
+    private Ticket getAdmissionTicket(){
+        Object value = httpRequest == null ? null :
+            httpRequest.getAttribute(REQUEST_ATTRIBUTE_ADMISSION_TICKET);
+        return value instanceof Ticket ? (Ticket)value : null;
+    }
+
+    private AdmissionController getAdmissionController(){
+        if(admissionController == null){
+            Object value = servletContext.getAttribute(SERVLET_ATTRIBUTE_ADMISSION_CONTROLLER);
+            admissionController = value instanceof AdmissionController ? (AdmissionController)value : null;
+        }
+        return admissionController;
+    }
+    
+    private LanguageSampler getLanguageSampler(){
+        if(languageSampler == null){
+            languageSampler = new LanguageSampler(Utils.getResource(Number.class, servletContext, 
+                SERVLET_ATTRIBUTE_LANGID_SAMPLE_SIZE, DEFAULT_LANGID_SAMPLE_SIZE).intValue());
+        }
+        return languageSampler;
+    }
+    
+    private LanguageIdentificationCache getLangIdCache(){
+        if(langIdCache == null){
+            Object value = servletContext.getAttribute(SERVLET_ATTRIBUTE_LANGID_CACHE);
+            langIdCache = value instanceof LanguageIdentificationCache ? 
+                    (LanguageIdentificationCache)value : null;
+        }
+        return langIdCache;
+    }
+    
+    private Long getTimeBudget() {
+        if(timeBudget == null){
+            timeBudget = Utils.getResource(Number.class, servletContext, 
+                SERVLET_ATTRIBUTE_ANALYSIS_TIME_BUDGET, DEFAULT_ANALYSIS_TIME_BUDGET).longValue();
+        }
+        return timeBudget;
+    }
+    
 }
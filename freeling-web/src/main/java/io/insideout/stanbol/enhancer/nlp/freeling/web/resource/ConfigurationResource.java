@@ -0,0 +1,158 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.resource;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_FREELING;
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
+import io.insideout.stanbol.enhancer.nlp.freeling.impl.FreelingProperties;
+import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.Utils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides information about the Freeling configurations of the supported
+ * languages (including the number of borrowed Analyzers and of sentences
+ * cut because they exceeded the maximum sentence length) and allows to reload them without restarting the server.
+ * Reloads run in the background and reloaded languages continue to serve
+ * requests with the current Analyzers until the Analyzers for the reloaded
+ * configuration are ready.
+ */
+@Path("/config")
+public class ConfigurationResource {
+
+    private final Logger log = LoggerFactory.getLogger(ConfigurationResource.class);
+
+    @Context
+    private ServletContext servletContext;
+
+    private Freeling freeling;
+
+    private JsonFactory jsonFactory;
+
+    /**
+     * The configurations of the supported languages
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getConfigurations() throws IOException {
+        return Response.ok(toJson(getFreeling().getSupportedLanguages(), null),
+            MediaType.APPLICATION_JSON_TYPE).build();
+    }
+    /**
+     * Reloads the configuration of the parsed language in the background. If
+     * no language is parsed all languages with changed configuration or data
+     * files are reloaded. Languages that can not be reloaded keep their
+     * current configuration. As creating Analyzers may take minutes this
+     * returns <code>202 Accepted</code> immediately. The <code>modified</code>
+     * time of the configurations can be used to check if a reload has 
+     * completed.<p>
+     * Only allowed for requests from the loopback interface or with the
+     * configured admin token.
+     * @param language the language to reload or <code>null</code> to reload
+     * all changed languages
+     */
+    @POST
+    @Path("reload")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response reloadConfigurations(@QueryParam("lang") String language,
+            @Context HttpServletRequest request) throws IOException {
+        if(!Utils.isAdminRequest(request, servletContext)){
+            return Response.status(Status.FORBIDDEN).entity(
+                "Reloading configurations is not allowed for this request!").build();
+        }
+        Freeling freeling = getFreeling();
+        if(language != null && language.isEmpty()){
+            language = null;
+        }
+        if(language != null && !freeling.isLanguageSupported(language)){
+            return Response.status(Status.BAD_REQUEST).entity("The language '"
+                + language + "' is not supported (supported: "
+                + freeling.getSupportedLanguages() + ")!").build();
+        }
+        try {
+            freeling.scheduleReload(language);
+        } catch (IllegalStateException e) {
+            log.warn("Unable to reload configurations", e);
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(
+                "Unable to reload configurations: " + e.getMessage()).build();
+        }
+        Set<String> scheduled = language == null ? null : Collections.singleton(language);
+        return Response.status(Status.ACCEPTED).entity(
+            toJson(freeling.getSupportedLanguages(), scheduled))
+            .type(MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
+    private String toJson(Collection<String> languages, Set<String> scheduled) throws IOException {
+        Freeling freeling = getFreeling();
+        StringWriter writer = new StringWriter();
+        JsonGenerator jg = getJsonFactory().createJsonGenerator(writer);
+        jg.writeStartObject();
+        if(scheduled != null){
+            jg.writeArrayFieldStart("scheduled");
+            for(String language : scheduled){
+                jg.writeString(language);
+            }
+            jg.writeEndArray();
+        }
+        jg.writeObjectFieldStart("languages");
+        for(String language : new TreeSet<String>(languages)){
+            FreelingProperties config = freeling.getConfiguration(language);
+            if(config == null){ //removed concurrently
+                continue;
+            }
+            jg.writeObjectFieldStart(language);
+            jg.writeStringField("config", config.getConfigFile().getAbsolutePath());
+            jg.writeNumberField("modified", config.getLastModified());
+            jg.writeArrayFieldStart("warnings");
+            for(String warning : config.getWarnings()){
+                jg.writeString(warning);
+            }
+            jg.writeEndArray();
+            ResourcePool<?> pool = freeling.getAnalyzerPool(language);
+            if(pool != null){
+                jg.writeNumberField("borrowed", pool.getBorrowedCount());
+            }
+            jg.writeNumberField("longSentences", freeling.getLongSentenceCount(language));
+            jg.writeEndObject();
+        }
+        jg.writeEndObject();
+        jg.writeEndObject();
+        jg.close();
+        return writer.toString();
+    }
+
+    private Freeling getFreeling(){
+        if(freeling == null){
+            freeling = Utils.getResource(Freeling.class, servletContext, SERVLET_ATTRIBUTE_FREELING);
+        }
+        return freeling;
+    }
+
+    private JsonFactory getJsonFactory() {
+        if(jsonFactory == null){
+            jsonFactory = new JsonFactory();
+        }
+        return jsonFactory;
+    }
+}
@@ -2,6 +2,7 @@ package io.insideout.stanbol.enhancer.nlp.freeling.web.resource;
 
 import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.DEFAULT_RESOURCE_WAIT_TIME;
 import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_FREELING;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_LANGID_CACHE;
 import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_MAX_RESOURCE_WAIT_TIEM;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
@@ -9,10 +10,17 @@ import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
 import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier;
 import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
 import io.insideout.stanbol.enhancer.nlp.freeling.pool.PoolTimeoutException;
-import io.insideout.stanbol.enhancer.nlp.freeling.pool.ResourcePool;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.LanguageIdentificationCache;
 import io.insideout.stanbol.enhancer.nlp.freeling.web.util.Utils;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.writer.DetectedLanguageWriter;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.List;
 
@@ -22,20 +30,64 @@ import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 
 @Path("/langident")
 public class LangIdentResource {
 
+    /**
+     * Results of batch requests are flushed after this number of texts
+     */
+    private static final int FLUSH_INTERVAL = 64;
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
     private Freeling freeling;
     
     @Context
     private ServletContext servletContext;
 
     private Long maxWaitTime;
+    
+    private LanguageIdentificationCache langIdCache;
+    
+    private JsonFactory jsonFactory;
+    
+    /**
+     * Iterates over the texts of a batch request
+     */
+    static interface TextIterator {
+        /**
+         * @return the next text or <code>null</code> if there are no more texts
+         * @throws InvalidBatchException if the next text can not be read
+         * because the parsed batch is not valid
+         */
+        String next() throws IOException;
+    }
+    /**
+     * Thrown by {@link TextIterator}s if the parsed batch is not valid. As
+     * results are already streamed this error is reported in-band.
+     */
+    static class InvalidBatchException extends IOException {
+        private static final long serialVersionUID = 1L;
+        InvalidBatchException(String message, Throwable cause) {
+            super(message);
+            initCause(cause);
+        }
+    }
 
     @GET
     @Produces(MediaType.TEXT_HTML)
@@ -49,29 +101,259 @@ public class LangIdentResource {
     }
 
     
+    /**
+     * Detects the language of the parsed text
+     * @param text the text
+     * @param languages comma separated list of the candidate languages. If
+     * not present the languages supported by Freeling are used. Unknown
+     * languages are ignored. Responds with 400 if none is known.
+     */
     @POST
     @Consumes(MediaType.TEXT_PLAIN)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response detectLanguages(String text){
+    public Response detectLanguages(String text, @QueryParam("languages") String languages){
         Freeling freeling = getFreeling();
         if(!freeling.isLanguageIdentificationSupported()){
             return Response.serverError().entity("Language Identification is not "
                 + "supported by the configure Freeling instance!").build();
         }
-        ResourcePool<LanguageIdentifier> langIdentPool = freeling.getLangIdPool();
+        try {
+            languages = freeling.getLanguageCandidates(languages);
+        } catch (IllegalArgumentException e) {
+            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        LanguageIdentificationCache langIdCache = getLangIdCache();
+        List<Language> detected = langIdCache == null ? null : langIdCache.get(text, languages);
+        if(detected != null){
+            return Response.ok(detected).build();
+        }
         LanguageIdentifier langidnet;
         try {
-            langidnet = langIdentPool.getResource(getMaxWaitTime());
+            langidnet = freeling.getLanguageIdentifier(getMaxWaitTime());
         } catch (PoolTimeoutException e) {
             return Response.status(SERVICE_UNAVAILABLE)
                     .entity("Unable to obtain LanguageIdentifier resource after "
                         + "waiting for "+(maxWaitTime/1000d)+"sec").build();
         }
         try {
-            return Response.ok(langidnet.identifyLanguage(text)).build();
+            detected = langidnet.identifyLanguage(text, languages);
         } finally {
-            langIdentPool.returnResource(langidnet);
+            freeling.releaseLanguageIdentifier(langidnet);
+        }
+        if(langIdCache != null){
+            langIdCache.put(text, languages, detected);
+        }
+        return Response.ok(detected).build();
+    }
+    
+    /**
+     * Detects the languages of a batch of texts. Texts are parsed as 
+     * newline-delimited plain text (one text per line). Results are streamed
+     * as JSON array (one array of detected languages per text) while the 
+     * texts are processed. A {@link LanguageIdentifier} is borrowed for each
+     * chunk of {@value #FLUSH_INTERVAL} texts so that long batches do not
+     * block other requests.<p>
+     * As the response is already committed, errors (invalid batch elements,
+     * no {@link LanguageIdentifier} available) are reported by a final
+     * <code>{"error": "{message}"}</code> element of the array.
+     * @param in the texts
+     * @param headers the request headers (used to read the charset)
+     * @param languages comma separated list of the candidate languages. If
+     * not present the languages supported by Freeling are used. Unknown
+     * languages are ignored. Responds with 400 if none is known.
+     */
+    @POST
+    @Path("batch")
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response detectLanguagesBatch(final InputStream in, @Context HttpHeaders headers,
+            @QueryParam("languages") String languages){
+        MediaType mediaType = headers.getMediaType();
+        String charset = mediaType == null ? null : mediaType.getParameters().get("charset");
+        final Charset cs = charset == null ? UTF8 : Charset.forName(charset);
+        return detectLanguagesBatch(new TextIterator() {
+            private final BufferedReader reader = new BufferedReader(new InputStreamReader(in, cs));
+            @Override
+            public String next() throws IOException {
+                return reader.readLine();
+            }
+        }, languages);
+    }
+    /**
+     * Detects the languages of a batch of texts parsed as JSON array of 
+     * strings.
+     * @see #detectLanguagesBatch(InputStream, HttpHeaders, String)
+     */
+    @POST
+    @Path("batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response detectLanguagesJsonBatch(InputStream in, @QueryParam("languages") String languages) throws IOException {
+        final JsonParser parser = getJsonFactory().createJsonParser(in);
+        JsonToken first;
+        try {
+            first = parser.nextToken();
+        } catch (JsonParseException e) {
+            first = null;
+        }
+        if(first != JsonToken.START_ARRAY){
+            return Response.status(BAD_REQUEST).entity("The parsed JSON MUST BE "
+                + "an array of strings!").build();
         }
+        return detectLanguagesBatch(createJsonTextIterator(parser), languages);
+    }
+    /**
+     * Iterates over the strings of a JSON array. The parser MUST BE positioned
+     * on the start of the array
+     */
+    static TextIterator createJsonTextIterator(final JsonParser parser){
+        return new TextIterator() {
+            @Override
+            public String next() throws IOException {
+                JsonToken token;
+                try {
+                    token = parser.nextToken();
+                } catch (JsonParseException e) {
+                    throw new InvalidBatchException("Unable to parse the JSON array ("
+                        + e.getMessage() + ")", e);
+                }
+                if(token == JsonToken.VALUE_STRING){
+                    return parser.getText();
+                } else if(token == JsonToken.END_ARRAY){
+                    return null;
+                } else if(token == null){
+                    throw new InvalidBatchException("The parsed JSON array is not closed!", null);
+                } else {
+                    throw new InvalidBatchException("The parsed JSON array MUST only "
+                        + "contain strings (found: " + token + ")!", null);
+                }
+            }
+        };
+    }
+    
+    private Response detectLanguagesBatch(final TextIterator texts, String languages){
+        final Freeling freeling = getFreeling();
+        if(!freeling.isLanguageIdentificationSupported()){
+            return Response.serverError().entity("Language Identification is not "
+                + "supported by the configure Freeling instance!").build();
+        }
+        try {
+            languages = freeling.getLanguageCandidates(languages);
+        } catch (IllegalArgumentException e) {
+            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        final long maxWaitTime = getMaxWaitTime();
+        return Response.ok(new BatchOutput(texts, languages,
+                getLangIdCache(), getJsonFactory()) {
+            @Override
+            protected LanguageIdentifier getLanguageIdentifier() throws PoolTimeoutException {
+                return freeling.getLanguageIdentifier(maxWaitTime);
+            }
+            @Override
+            protected void releaseLanguageIdentifier(LanguageIdentifier langId) {
+                freeling.releaseLanguageIdentifier(langId);
+            }
+        }, MediaType.APPLICATION_JSON_TYPE).build();
+    }
+    
+    /**
+     * Streams the results of a batch request. {@link LanguageIdentifier}s are
+     * only borrowed while {@link #write(OutputStream)} is executed and are
+     * released after every chunk of {@value #FLUSH_INTERVAL} texts.
+     */
+    abstract static class BatchOutput implements StreamingOutput {
+        
+        private final TextIterator texts;
+        private final String candidates;
+        private final LanguageIdentificationCache langIdCache;
+        private final JsonFactory jsonFactory;
+        
+        BatchOutput(TextIterator texts, String candidates, 
+                LanguageIdentificationCache langIdCache, JsonFactory jsonFactory){
+            this.texts = texts;
+            this.candidates = candidates;
+            this.langIdCache = langIdCache;
+            this.jsonFactory = jsonFactory;
+        }
+        
+        protected abstract LanguageIdentifier getLanguageIdentifier() throws PoolTimeoutException;
+        
+        protected abstract void releaseLanguageIdentifier(LanguageIdentifier langId);
+        
+        @Override
+        public void write(OutputStream out) throws IOException, WebApplicationException {
+            JsonGenerator jg = jsonFactory.createJsonGenerator(out);
+            jg.writeStartArray();
+            LanguageIdentifier langId = null;
+            try {
+                int count = 0;
+                for(String text = texts.next(); text != null; text = texts.next()){
+                    List<Language> detected = langIdCache == null ? null : 
+                        langIdCache.get(text, candidates);
+                    if(detected == null){
+                        if(langId == null){ //borrowed lazily for the current chunk
+                            langId = getLanguageIdentifier();
+                        }
+                        detected = langId.identifyLanguage(text, candidates);
+                        if(langIdCache != null){
+                            langIdCache.put(text, candidates, detected);
+                        }
+                    }
+                    DetectedLanguageWriter.writeLanguages(jg, detected);
+                    if(++count % FLUSH_INTERVAL == 0){
+                        if(langId != null){ //release while the chunk is sent
+                            releaseLanguageIdentifier(langId);
+                            langId = null;
+                        }
+                        jg.flush();
+                    }
+                }
+            } catch (InvalidBatchException e) {
+                writeError(jg, e.getMessage());
+            } catch (PoolTimeoutException e) {
+                writeError(jg, "Unable to obtain LanguageIdentifier resource ("
+                        + e.getMessage() + ")");
+            } finally {
+                if(langId != null){
+                    releaseLanguageIdentifier(langId);
+                }
+            }
+            jg.writeEndArray();
+            jg.close();
+        }
+        
+        private static void writeError(JsonGenerator jg, String message) throws IOException {
+            jg.writeStartObject();
+            jg.writeStringField("error", message);
+            jg.writeEndObject();
+        }
+    }
+    
+    /**
+     * The metrics of the {@link LanguageIdentificationCache}
+     */
+    @GET
+    @Path("cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCacheMetrics() throws IOException {
+        LanguageIdentificationCache langIdCache = getLangIdCache();
+        if(langIdCache == null){
+            return Response.status(Status.NOT_FOUND).entity("The language "
+                + "identification cache is not enabled").build();
+        }
+        StringWriter writer = new StringWriter();
+        JsonGenerator jg = getJsonFactory().createJsonGenerator(writer);
+        jg.writeStartObject();
+        jg.writeNumberField("size", langIdCache.size());
+        jg.writeNumberField("maxSize", langIdCache.getMaxSize());
+        jg.writeNumberField("maxTextLength", langIdCache.getMaxTextLength());
+        jg.writeNumberField("hits", langIdCache.getHits());
+        jg.writeNumberField("misses", langIdCache.getMisses());
+        jg.writeNumberField("evictions", langIdCache.getEvictions());
+        jg.writeNumberField("hitRate", langIdCache.getHitRate());
+        jg.writeEndObject();
+        jg.close();
+        return Response.ok(writer.toString(), MediaType.APPLICATION_JSON_TYPE).build();
     }
     
     
@@ -81,6 +363,21 @@ public class LangIdentResource {
         }
         return freeling;
     }
+    private LanguageIdentificationCache getLangIdCache(){
+        if(langIdCache == null){
+            Object value = servletContext.getAttribute(SERVLET_ATTRIBUTE_LANGID_CACHE);
+            langIdCache = value instanceof LanguageIdentificationCache ? 
+                    (LanguageIdentificationCache)value : null;
+        }
+        return langIdCache;
+    }
+    private JsonFactory getJsonFactory() {
+        if(jsonFactory == null){
+            jsonFactory = new JsonFactory();
+        }
+        return jsonFactory;
+    }
+    
     private Long getMaxWaitTime() {
         if(maxWaitTime == null){
             maxWaitTime = Utils.getResource(Number.class, servletContext, 
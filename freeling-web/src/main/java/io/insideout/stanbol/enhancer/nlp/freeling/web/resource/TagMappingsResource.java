@@ -0,0 +1,118 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.resource;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagMappings;
+import io.insideout.stanbol.enhancer.nlp.freeling.mappings.TagSetRegistry;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.Utils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.stanbol.enhancer.nlp.model.tag.TagSet;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides information about the tag mappings used to map Freeling tags to
+ * the Stanbol NLP {@link TagSet}s and allows to reload them without
+ * restarting the server.
+ */
+@Path("/mappings")
+public class TagMappingsResource {
+
+    private final Logger log = LoggerFactory.getLogger(TagMappingsResource.class);
+
+    @Context
+    private ServletContext servletContext;
+
+    private JsonFactory jsonFactory;
+
+    /**
+     * The currently active tag mappings
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getTagMappings() throws IOException {
+        return Response.ok(toJson(TagSetRegistry.getInstance().getTagMappings()),
+            MediaType.APPLICATION_JSON_TYPE).build();
+    }
+    /**
+     * Reloads the tag mapping files. If the files can not be loaded the
+     * currently active mappings are kept. Only allowed for requests from the
+     * loopback interface or with the configured admin token.
+     */
+    @POST
+    @Path("reload")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response reloadTagMappings(@Context HttpServletRequest request) throws IOException {
+        if(!Utils.isAdminRequest(request, servletContext)){
+            return Response.status(Status.FORBIDDEN).entity(
+                "Reloading tag mappings is not allowed for this request!").build();
+        }
+        TagMappings mappings;
+        try {
+            mappings = TagSetRegistry.getInstance().reload();
+        } catch (IOException e) {
+            log.warn("Unable to reload tag mappings (active mappings are kept)", e);
+            return Response.serverError().entity("Unable to reload tag mappings "
+                + "(active mappings are kept): " + e.getMessage()).build();
+        }
+        return Response.ok(toJson(mappings), MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
+    private String toJson(TagMappings mappings) throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonGenerator jg = getJsonFactory().createJsonGenerator(writer);
+        jg.writeStartObject();
+        if(mappings.getDirectory() != null){
+            jg.writeStringField("directory", mappings.getDirectory().getAbsolutePath());
+        }
+        jg.writeNumberField("loaded", mappings.getLoadTime());
+        jg.writeArrayFieldStart("sources");
+        for(String source : mappings.getSources()){
+            jg.writeString(source);
+        }
+        jg.writeEndArray();
+        jg.writeObjectFieldStart("languages");
+        for(String language : mappings.getLanguages()){
+            jg.writeObjectFieldStart(language);
+            writeTagSet(jg, "pos", mappings.getPosTagSet(language));
+            jg.writeBooleanField("posTagMapper", mappings.getPosTagMapper(language) != null);
+            writeTagSet(jg, "phrase", mappings.getPhraseTagSet(language));
+            writeTagSet(jg, "ner", mappings.getNerTagSet(language));
+            jg.writeEndObject();
+        }
+        jg.writeEndObject();
+        jg.writeEndObject();
+        jg.close();
+        return writer.toString();
+    }
+
+    private void writeTagSet(JsonGenerator jg, String field, TagSet<?> tagSet) throws IOException {
+        if(tagSet != null){
+            jg.writeObjectFieldStart(field);
+            jg.writeStringField("name", tagSet.getName());
+            jg.writeNumberField("size", tagSet.size());
+            jg.writeEndObject();
+        }
+    }
+
+    private JsonFactory getJsonFactory() {
+        if(jsonFactory == null){
+            jsonFactory = new JsonFactory();
+        }
+        return jsonFactory;
+    }
+}
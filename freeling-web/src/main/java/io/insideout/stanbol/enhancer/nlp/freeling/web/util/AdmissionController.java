@@ -0,0 +1,294 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.util;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.Freeling;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Admission control for analyses. Every language has a bounded waiting
+ * room for requests that can not be processed immediately because all
+ * Analyzers are in use. Requests are rejected immediately if
+ * <ul>
+ * <li> the waiting room of the language is full (status 429) or
+ * <li> the expected waiting time - estimated from the number of waiting
+ * requests and the observed service time - exceeds the maximum time a
+ * request may wait for an Analyzer (status 503).
+ * </ul>
+ * Rejections include the time in seconds after that the request can be
+ * expected to be admitted (<code>Retry-After</code> header).<p>
+ * Bulk analyses do not use the Analyzer pool of the language. They have
+ * their own lane so that the service times of the pipeline do not affect
+ * the estimations for pooled Analyzers (see 
+ * {@link #admit(Freeling, String, boolean, long)}).<p>
+ * Requests SHOULD be admitted before they wait for a request thread, so
+ * that the waiting room includes requests queued for a thread.
+ */
+public class AdmissionController {
+
+    public static final int DEFAULT_MAX_WAITING = 50;
+    /**
+     * The weight of a new sample of the service time
+     */
+    private static final double SERVICE_TIME_WEIGHT = 0.2;
+    /**
+     * Suffix of the lanes of bulk analyses
+     */
+    private static final String BULK_LANE_SUFFIX = "#bulk";
+
+    private final int maxWaiting;
+    private final ConcurrentMap<String,Lane> lanes = new ConcurrentHashMap<String,Lane>();
+
+    /**
+     * Creates an admission controller
+     * @param maxWaiting the maximum number of waiting requests per language
+     */
+    public AdmissionController(int maxWaiting) {
+        if(maxWaiting <= 0){
+            throw new IllegalArgumentException("The maximum number of waiting requests MUST BE > 0!");
+        }
+        this.maxWaiting = maxWaiting;
+    }
+
+    /**
+     * Decides if a request for the parsed language is admitted
+     * @param language the language
+     * @param concurrency the number of requests of the language processed
+     * concurrently (e.g. the size of the Analyzer pool)
+     * @param maxWaitTime the maximum time in ms the request may wait
+     * @return the ticket. If {@link Ticket#isAdmitted() admitted}
+     * {@link Ticket#release()} MUST BE called after the request was processed
+     */
+    public Ticket admit(String language, int concurrency, long maxWaitTime) {
+        return admit(language, "language '" + language + "'", concurrency, maxWaitTime);
+    }
+
+    /**
+     * Decides if an analysis of the parsed language is admitted. The 
+     * concurrency is the {@link Freeling#getConcurrency(String) concurrency}
+     * of the language or - for bulk analyses -
+     * the {@link Freeling#getBulkConcurrency(String) bulk concurrency}.
+     * @param freeling the Freeling instance
+     * @param language the language
+     * @param bulk if the request uses the {@link io.insideout.stanbol.enhancer.nlp.freeling.BulkAnalyzer}
+     * @param maxWaitTime the maximum time in ms the request may wait
+     * @return the ticket. If {@link Ticket#isAdmitted() admitted}
+     * {@link Ticket#release()} MUST BE called after the request was processed
+     */
+    public Ticket admit(Freeling freeling, String language, boolean bulk, long maxWaitTime) {
+        if(bulk){
+            return admit(language + BULK_LANE_SUFFIX, "bulk analyses of language '" + language + "'",
+                freeling.getBulkConcurrency(language), maxWaitTime);
+        } else {
+            return admit(language, getConcurrency(freeling, language), maxWaitTime);
+        }
+    }
+
+    /**
+     * The number of analyses of the parsed language processed concurrently
+     * (see {@link Freeling#getConcurrency(String)})
+     */
+    public static int getConcurrency(Freeling freeling, String language) {
+        return Math.max(1, freeling.getConcurrency(language));
+    }
+
+    private Ticket admit(String key, String name, int concurrency, long maxWaitTime) {
+        Lane lane = lanes.get(key);
+        if(lane == null){
+            lane = new Lane();
+            Lane current = lanes.putIfAbsent(key, lane);
+            if(current != null){
+                lane = current;
+            }
+        }
+        concurrency = Math.max(1, concurrency);
+        synchronized (lane) {
+            int waiting = Math.max(0, lane.admitted - concurrency);
+            if(waiting >= maxWaiting){
+                return new Ticket(lane, 429, lane.getRetryAfter(waiting, concurrency),
+                    "The maximum number of " + maxWaiting + " waiting requests for "
+                    + name + " is reached");
+            }
+            if(lane.serviceTime > 0 && lane.admitted >= concurrency){
+                //this request needs to wait for waiting + 1 requests to complete
+                long expectedWait = (long)Math.ceil((waiting + 1) / (double)concurrency)
+                        * (long)lane.serviceTime;
+                if(expectedWait > maxWaitTime){
+                    return new Ticket(lane, 503, lane.getRetryAfter(waiting, concurrency),
+                        "The expected waiting time of " + (expectedWait/1000d)
+                        + "sec for " + name
+                        + " exceeds the maximum of " + (maxWaitTime/1000d) + "sec ("
+                        + waiting + " waiting requests)");
+                }
+            }
+            lane.admitted++;
+            return new Ticket(lane);
+        }
+    }
+
+    /**
+     * The number of admitted (processed or waiting) requests for the parsed
+     * language
+     * @param language the language
+     * @return the number of admitted requests
+     */
+    public int getAdmittedCount(String language) {
+        Lane lane = lanes.get(language);
+        if(lane == null){
+            return 0;
+        }
+        synchronized (lane) {
+            return lane.admitted;
+        }
+    }
+
+    /**
+     * The number of admitted bulk analyses for the parsed language
+     * @param language the language
+     * @return the number of admitted bulk analyses
+     */
+    public int getAdmittedBulkCount(String language) {
+        return getAdmittedCount(language + BULK_LANE_SUFFIX);
+    }
+
+    /**
+     * The average service time (in ms) observed for the parsed language
+     * @param language the language
+     * @return the service time or <code>-1</code> if not yet known
+     */
+    public long getServiceTime(String language) {
+        Lane lane = lanes.get(language);
+        if(lane == null){
+            return -1;
+        }
+        synchronized (lane) {
+            return lane.serviceTime > 0 ? Math.round(lane.serviceTime) : -1;
+        }
+    }
+
+    /**
+     * The state of a language. Guarded by itself
+     */
+    private static class Lane {
+
+        private int admitted;
+        /**
+         * Exponential moving average of the service time in ms
+         */
+        private double serviceTime = -1;
+
+        /**
+         * The time in seconds until the parsed number of waiting requests
+         * are processed (at least one second)
+         */
+        long getRetryAfter(int waiting, int concurrency) {
+            if(serviceTime <= 0){
+                return 1;
+            }
+            return Math.max(1, (long)Math.ceil((waiting + 1) * serviceTime / concurrency / 1000d));
+        }
+
+        void addServiceTime(long time) {
+            serviceTime = serviceTime <= 0 ? time :
+                (1 - SERVICE_TIME_WEIGHT) * serviceTime + SERVICE_TIME_WEIGHT * time;
+        }
+    }
+
+    /**
+     * The result of the admission of a request
+     */
+    public static final class Ticket {
+
+        private final Lane lane;
+        private final boolean admitted;
+        private final int status;
+        private final long retryAfter;
+        private final String reason;
+        private volatile long started = -1;
+        /**
+         * Guarded by the lane
+         */
+        private boolean released;
+
+        private Ticket(Lane lane) {
+            this.lane = lane;
+            this.admitted = true;
+            this.status = 200;
+            this.retryAfter = -1;
+            this.reason = null;
+        }
+
+        private Ticket(Lane lane, int status, long retryAfter, String reason) {
+            this.lane = lane;
+            this.admitted = false;
+            this.status = status;
+            this.retryAfter = retryAfter;
+            this.reason = reason;
+        }
+
+        public boolean isAdmitted() {
+            return admitted;
+        }
+
+        /**
+         * @return the status code of rejected requests (429 or 503)
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the seconds after that a rejected request should be retried
+         */
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+
+        /**
+         * @return the reason for the rejection
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * Marks the start of the processing (e.g. after an Analyzer was
+         * obtained). The time until {@link #release()} is used as service time.
+         */
+        public void started() {
+            started = System.currentTimeMillis();
+        }
+
+        /**
+         * Releases an admitted request. Can be called multiple times (e.g.
+         * by the request thread and if the request timed out).
+         */
+        public void release() {
+            if(!admitted){
+                return;
+            }
+            synchronized (lane) {
+                if(released){
+                    return;
+                }
+                released = true;
+                lane.admitted--;
+                if(started > 0){
+                    lane.addServiceTime(System.currentTimeMillis() - started);
+                }
+            }
+        }
+
+        /**
+         * The time in seconds after that a request should be retried if it
+         * timed out after it was admitted
+         * @param concurrency the number of requests processed concurrently
+         */
+        public long getRetryAfter(int concurrency) {
+            synchronized (lane) {
+                return lane.getRetryAfter(Math.max(0, lane.admitted - Math.max(1, concurrency)),
+                    Math.max(1, concurrency));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.util;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+
+/**
+ * LRU cache for the results of previous analyses. Used to support the
+ * incremental analysis of edited texts. Cached analyses are identified
+ * by the MD5 hash over the language and the text.
+ */
+public class AnalysisCache {
+
+    private final Map<String,CachedAnalysis> cache;
+    
+    /**
+     * Creates an analysis cache 
+     * @param maxSize the maximum number of cached analysis
+     */
+    public AnalysisCache(final int maxSize) {
+        if(maxSize <= 0){
+            throw new IllegalArgumentException("The maximum size MUST BE > 0!");
+        }
+        cache = new LinkedHashMap<String,CachedAnalysis>(16, 0.75f, true){
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Entry<String,CachedAnalysis> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+    /**
+     * Adds an analysis to the cache
+     * @param language the language of the analysis
+     * @param at the analysis. MUST NOT be modified after it was added
+     * @return the id of the analysis
+     */
+    public String put(String language, AnalysedText at){
+        String id = createId(language, at.getSpan());
+        synchronized (cache) {
+            cache.put(id, new CachedAnalysis(language, at));
+        }
+        return id;
+    }
+    /**
+     * Getter for a cached analysis
+     * @param id the id
+     * @return the cached analysis or <code>null</code> if not present
+     */
+    public CachedAnalysis get(String id){
+        synchronized (cache) {
+            return cache.get(id);
+        }
+    }
+
+    private static String createId(String language, String text) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+            md.update(language.getBytes("UTF-8"));
+            md.update((byte)0);
+            md.update(text.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported by the JVM",e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported by the JVM",e);
+        }
+        StringBuilder id = new StringBuilder(32);
+        for(byte b : md.digest()){
+            id.append(Character.forDigit((b >> 4) & 0xf, 16))
+                .append(Character.forDigit(b & 0xf, 16));
+        }
+        return id.toString();
+    }
+    
+    public static class CachedAnalysis {
+        
+        private final String language;
+        private final AnalysedText analysedText;
+        
+        CachedAnalysis(String language, AnalysedText analysedText){
+            this.language = language;
+            this.analysedText = analysedText;
+        }
+        
+        public String getLanguage() {
+            return language;
+        }
+        
+        public AnalysedText getAnalysedText() {
+            return analysedText;
+        }
+    }
+}
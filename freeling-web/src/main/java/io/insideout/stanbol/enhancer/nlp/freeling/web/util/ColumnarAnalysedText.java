@@ -0,0 +1,25 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.util;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.web.writer.ColumnarAnalysedTextWriter;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+
+/**
+ * Response entity for {@link AnalysedText}s that are serialized using the
+ * columnar JSON schema of the {@link ColumnarAnalysedTextWriter}.
+ */
+public final class ColumnarAnalysedText {
+
+    private final AnalysedText analysedText;
+
+    public ColumnarAnalysedText(AnalysedText analysedText) {
+        if(analysedText == null){
+            throw new IllegalArgumentException("The parsed AnalysedText MUST NOT be NULL!");
+        }
+        this.analysedText = analysedText;
+    }
+
+    public AnalysedText getAnalysedText() {
+        return analysedText;
+    }
+}
@@ -0,0 +1,238 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.util;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache for language identification results of short texts (e.g.
+ * titles, tags or comments). Entries are keyed by the MD5 hash over the
+ * sorted candidate languages, the normalized (lower case, whitespace 
+ * collapsed) text and if the result was detected from a sample of the text.
+ * Texts longer than {@link #getMaxTextLength()} are not cached.
+ */
+public class LanguageIdentificationCache {
+
+    /**
+     * The default maximum length of cached texts
+     */
+    public static final int DEFAULT_MAX_TEXT_LENGTH = 1024;
+    
+    private final Map<String,List<Language>> cache;
+    private final int maxSize;
+    private final int maxTextLength;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    /**
+     * Creates a language identification cache for texts up to
+     * {@link #DEFAULT_MAX_TEXT_LENGTH} chars
+     * @param maxSize the maximum number of cached results
+     */
+    public LanguageIdentificationCache(int maxSize) {
+        this(maxSize, DEFAULT_MAX_TEXT_LENGTH);
+    }
+    /**
+     * Creates a language identification cache 
+     * @param maxSize the maximum number of cached results
+     * @param maxTextLength the maximum length of cached texts
+     */
+    public LanguageIdentificationCache(final int maxSize, int maxTextLength) {
+        if(maxSize <= 0){
+            throw new IllegalArgumentException("The maximum size MUST BE > 0!");
+        }
+        this.maxSize = maxSize;
+        this.maxTextLength = maxTextLength <= 0 ? DEFAULT_MAX_TEXT_LENGTH : maxTextLength;
+        cache = new LinkedHashMap<String,List<Language>>(16, 0.75f, true){
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Entry<String,List<Language>> eldest) {
+                if(size() > maxSize){
+                    evictions.incrementAndGet();
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+    }
+    /**
+     * If the language of the parsed text can be cached
+     * @param text the text
+     * @return <code>true</code> if the length of the text is 
+     * <code>&lt;=</code> {@link #getMaxTextLength()}
+     */
+    public boolean isCacheable(String text){
+        return text != null && text.length() <= maxTextLength;
+    }
+    /**
+     * Getter for the cached language identification result
+     * @param text the text
+     * @param languages the candidate languages or <code>null</code> if none
+     * @return the cached result or <code>null</code> if not present
+     */
+    public List<Language> get(String text, String languages){
+        return get(text, languages, false);
+    }
+    /**
+     * Getter for the cached language identification result
+     * @param text the text
+     * @param languages the candidate languages or <code>null</code> if none
+     * @param sampled if the result is detected from a sample of the text
+     * @return the cached result or <code>null</code> if not present
+     */
+    public List<Language> get(String text, String languages, boolean sampled){
+        if(!isCacheable(text)){
+            return null;
+        }
+        List<Language> detected;
+        String fingerprint = createFingerprint(text, languages, sampled);
+        synchronized (cache) {
+            detected = cache.get(fingerprint);
+        }
+        if(detected == null){
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return detected;
+    }
+    /**
+     * Adds a language identification result to the cache. Results for
+     * texts that are not {@link #isCacheable(String) cacheable} are ignored.
+     * @param text the text
+     * @param languages the candidate languages or <code>null</code> if none
+     * @param detected the detected languages
+     */
+    public void put(String text, String languages, List<Language> detected){
+        put(text, languages, false, detected);
+    }
+    /**
+     * Adds a language identification result to the cache. Results for
+     * texts that are not {@link #isCacheable(String) cacheable} are ignored.
+     * @param text the text
+     * @param languages the candidate languages or <code>null</code> if none
+     * @param sampled if the result was detected from a sample of the text.
+     * Such results are cached separately from results for the whole text.
+     * @param detected the detected languages
+     */
+    public void put(String text, String languages, boolean sampled, List<Language> detected){
+        if(!isCacheable(text) || detected == null){
+            return;
+        }
+        String fingerprint = createFingerprint(text, languages, sampled);
+        List<Language> value = Collections.unmodifiableList(detected);
+        synchronized (cache) {
+            cache.put(fingerprint, value);
+        }
+    }
+    
+    public int size(){
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+    
+    public final int getMaxSize() {
+        return maxSize;
+    }
+    
+    public final int getMaxTextLength() {
+        return maxTextLength;
+    }
+    
+    public long getHits(){
+        return hits.get();
+    }
+    
+    public long getMisses(){
+        return misses.get();
+    }
+    
+    public long getEvictions(){
+        return evictions.get();
+    }
+    /**
+     * The ratio of hits to all lookups
+     * @return the hit rate or <code>0</code> if no lookups where made
+     */
+    public double getHitRate(){
+        long hits = this.hits.get();
+        long lookups = hits + misses.get();
+        return lookups == 0 ? 0 : hits/(double)lookups;
+    }
+    
+    /**
+     * Sorts the comma separated languages so that the order in that the
+     * candidates are parsed does not change the key
+     */
+    static String normalizeLanguages(String languages){
+        if(languages == null){
+            return null;
+        }
+        SortedSet<String> sorted = new TreeSet<String>();
+        for(String lang : languages.split(",")){
+            lang = lang.trim();
+            if(!lang.isEmpty()){
+                sorted.add(lang);
+            }
+        }
+        StringBuilder normalized = new StringBuilder(languages.length());
+        for(String lang : sorted){
+            if(normalized.length() > 0){
+                normalized.append(',');
+            }
+            normalized.append(lang);
+        }
+        return normalized.toString();
+    }
+    
+    private static String createFingerprint(String text, String languages, boolean sampled) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true; //trims leading whitespaces
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(Character.isWhitespace(c)){
+                space = true;
+            } else {
+                if(space && normalized.length() > 0){
+                    normalized.append(' ');
+                }
+                space = false;
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+            if(languages != null){
+                md.update(normalizeLanguages(languages).getBytes("UTF-8"));
+            }
+            md.update((byte)0);
+            md.update((byte)(sampled ? 1 : 0));
+            md.update(normalized.toString().getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported by the JVM",e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported by the JVM",e);
+        }
+        StringBuilder fingerprint = new StringBuilder(32);
+        for(byte b : md.digest()){
+            fingerprint.append(Character.forDigit((b >> 4) & 0xf, 16))
+                .append(Character.forDigit(b & 0xf, 16));
+        }
+        return fingerprint.toString();
+    }
+}
@@ -1,14 +1,29 @@
 package io.insideout.stanbol.enhancer.nlp.freeling.web.util;
 
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.HEADER_ADMIN_TOKEN;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_ADMIN_TOKEN;
 import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_FREELING;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.WildcardType;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.MessageDigest;
 import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 public class Utils {
 
@@ -74,6 +89,68 @@ public class Utils {
 
     }
     
+    /**
+     * Checks if the parsed request is allowed to use administrative endpoints
+     * (e.g. to reload configurations). If an admin token is configured the
+     * request MUST send it in the <code>X-Freeling-Admin-Token</code> header.
+     * Otherwise only requests from the loopback interface are allowed.
+     * @param request the request
+     * @param servletContext the servlet context
+     * @return if the request is allowed
+     */
+    public static boolean isAdminRequest(HttpServletRequest request, ServletContext servletContext){
+        Object token = servletContext.getAttribute(SERVLET_ATTRIBUTE_ADMIN_TOKEN);
+        if(token != null){
+            String parsed = request.getHeader(HEADER_ADMIN_TOKEN);
+            try { //compare in constant time
+                return parsed != null && MessageDigest.isEqual(
+                    token.toString().getBytes("UTF-8"), parsed.getBytes("UTF-8"));
+            } catch (IOException e) {
+                throw new IllegalStateException("UTF-8 is not supported", e);
+            }
+        }
+        String address = request.getRemoteAddr();
+        try {
+            return address != null && InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Decodes the entity stream of a request based on its
+     * {@link HttpHeaders#CONTENT_ENCODING} header. <code>gzip</code> and
+     * <code>deflate</code> encoded entities are decompressed while reading.
+     * Bodies already decompressed by the
+     * {@link io.insideout.stanbol.enhancer.nlp.freeling.web.filter.CompressionFilter}
+     * have no {@link HttpHeaders#CONTENT_ENCODING} header and are returned
+     * as parsed.
+     * @param httpHeaders the request headers
+     * @param entityStream the entity stream
+     * @return the decoded stream
+     * @throws IOException if the gzip header can not be read
+     * @throws WebApplicationException with status 415 for unsupported encodings
+     */
+    public static InputStream decodeEntityStream(MultivaluedMap<String,String> httpHeaders, 
+            InputStream entityStream) throws IOException {
+        String encoding = httpHeaders.getFirst(HttpHeaders.CONTENT_ENCODING);
+        if(encoding == null){
+            return entityStream;
+        }
+        encoding = encoding.trim().toLowerCase();
+        if(encoding.isEmpty() || "identity".equals(encoding)){
+            return entityStream;
+        } else if("gzip".equals(encoding) || "x-gzip".equals(encoding)){
+            return new GZIPInputStream(entityStream);
+        } else if("deflate".equals(encoding)){
+            return new InflaterInputStream(entityStream);
+        } else {
+            throw new WebApplicationException(Response.status(Status.UNSUPPORTED_MEDIA_TYPE)
+                .entity("The content encoding '" + encoding + "' is not supported (supported: "
+                    + "gzip, deflate and identity)").build());
+        }
+    }
+    
     /**
      * Tests if a generic type (may be &lt;?&gt;, &lt;? extends {required}&gt; 
      * or &lt;? super {required}&gt;) is compatible with the required one.
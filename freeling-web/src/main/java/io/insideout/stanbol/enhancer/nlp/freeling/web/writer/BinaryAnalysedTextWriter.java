@@ -0,0 +1,95 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.writer;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.MEDIA_TYPE_ANALYSED_TEXT_BINARY;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.SERVLET_ATTRIBUTE_CONTENT_ITEM_FACTORY;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextCodec;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedTextFactory;
+import org.apache.stanbol.enhancer.servicesapi.ContentItemFactory;
+
+/**
+ * Writes {@link AnalysedText}s using the compact binary encoding of the
+ * {@link AnalysedTextCodec}. The language of the response 
+ * ({@link HttpHeaders#CONTENT_LANGUAGE} header) is encoded as language of
+ * the text. For texts with multiple languages this is the first one. The
+ * languages of the segments are encoded with the Sentences (see 
+ * {@link io.insideout.stanbol.enhancer.nlp.freeling.MultiLanguageAnalyzer#LANGUAGE_ANNOTATION}).
+ * Tags are encoded with their {@link org.apache.stanbol.enhancer.nlp.pos.Pos}
+ * and {@link org.apache.stanbol.enhancer.nlp.pos.LexicalCategory} ordinals
+ * as in the JSON format.<p>
+ * Responses can be decoded by using
+ * {@link AnalysedTextCodec#decode(java.io.InputStream)}.
+ */
+@Provider
+@Produces(MEDIA_TYPE_ANALYSED_TEXT_BINARY)
+public class BinaryAnalysedTextWriter implements MessageBodyWriter<AnalysedText> {
+
+    private static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_ANALYSED_TEXT_BINARY);
+    /**
+     * Encoded if the response does not define the language (ISO 639-2)
+     */
+    private static final String UNDETERMINED_LANGUAGE = "und";
+
+    @Context
+    protected ServletContext servletContext;
+
+    private AnalysedTextCodec codec;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return AnalysedText.class.isAssignableFrom(type) && MEDIA_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(AnalysedText t, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(AnalysedText at, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String,Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        OutputStream out = new BufferedOutputStream(entityStream);
+        getCodec().encode(at, getLanguage(httpHeaders), out);
+        out.flush();
+    }
+
+    private static String getLanguage(MultivaluedMap<String,Object> httpHeaders){
+        Object language = httpHeaders.getFirst(HttpHeaders.CONTENT_LANGUAGE);
+        if(language == null){
+            return UNDETERMINED_LANGUAGE;
+        }
+        String languages = language.toString();
+        int sep = languages.indexOf(',');
+        return (sep < 0 ? languages : languages.substring(0, sep)).trim();
+    }
+
+    protected AnalysedTextCodec getCodec(){
+        if(codec == null){
+            codec = new AnalysedTextCodec(Utils.getResource(ContentItemFactory.class, 
+                servletContext, SERVLET_ATTRIBUTE_CONTENT_ITEM_FACTORY), 
+                AnalysedTextFactory.getDefaultInstance());
+        }
+        return codec;
+    }
+
+}
@@ -0,0 +1,286 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.writer;
+
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.MORPHO_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.NER_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.PHRASE_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.POS_ANNOTATION;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.ColumnarAnalysedText;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.Chunk;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.nlp.model.Token;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.morpho.MorphoFeatures;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+/**
+ * Writes {@link AnalysedText}s using a flat columnar JSON schema. Instead of
+ * an object per span the analysis is represented by parallel arrays:
+ * <pre>
+ * {
+ *   "tokenStart": [0, 4, ...],     //char offsets of the tokens
+ *   "tokenEnd": [3, 9, ...],
+ *   "pos": [0, 1, ...],            //index in "posTags" or -1
+ *   "posProb": [0.98, 1.0, ...],   //-1 if unknown
+ *   "lemma": ["the", null, ...],
+ *   "sentenceBounds": [0, 12, 20], //index of the first token of every
+ *                                  //sentence followed by the token count
+ *   "chunkStart": [...], "chunkEnd": [...], "chunkTag": [...],
+ *   "entityStart": [...], "entityEnd": [...], "entityTag": [...],
+ *   "entityProb": [...],
+ *   "posTags": ["DA", "NCMS000", ...],
+ *   "phraseTags": ["sn", ...],
+ *   "nerTags": ["NP00SP0", ...],
+ *   "nerTypes": ["http://dbpedia.org/ontology/Person", null, ...]
+ * }
+ * </pre>
+ * Tags are dictionary coded: <code>pos</code>, <code>chunkTag</code> and
+ * <code>entityTag</code> refer to the index within the tag tables.
+ * <code>nerTypes</code> is parallel to <code>nerTags</code>. Entities are
+ * the chunks with a {@link NerTag}, phrase chunks those with a
+ * {@link PhraseTag}. <p>
+ * The writer iterates once over the tokens and chunks and collects the
+ * columns in primitive arrays so that no objects are created per token.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class ColumnarAnalysedTextWriter implements MessageBodyWriter<ColumnarAnalysedText> {
+
+    private JsonFactory jsonFactory;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return ColumnarAnalysedText.class.isAssignableFrom(type) &&
+                MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(ColumnarAnalysedText t, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(ColumnarAnalysedText columnar, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String,Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        JsonGenerator jg = getJsonFactory().createJsonGenerator(entityStream, JsonEncoding.UTF8);
+        writeAnalysedText(jg, columnar.getAnalysedText());
+        jg.close();
+    }
+
+    /**
+     * Writes the parsed {@link AnalysedText} using the columnar schema
+     * @param jg the generator
+     * @param at the analysed text
+     * @throws IOException on any error while writing
+     */
+    public void writeAnalysedText(JsonGenerator jg, AnalysedText at) throws IOException {
+        TagTable posTags = new TagTable();
+        TagTable phraseTags = new TagTable();
+        TagTable nerTags = new TagTable();
+        List<String> nerTypes = new ArrayList<String>();
+        //tokens
+        IntColumn tokenStart = new IntColumn();
+        IntColumn tokenEnd = new IntColumn();
+        IntColumn pos = new IntColumn();
+        DoubleColumn posProb = new DoubleColumn();
+        List<String> lemma = new ArrayList<String>();
+        Iterator<Token> tokens = at.getTokens();
+        while(tokens.hasNext()){
+            Token token = tokens.next();
+            tokenStart.add(token.getStart());
+            tokenEnd.add(token.getEnd());
+            Value<PosTag> posValue = token.getAnnotation(POS_ANNOTATION);
+            if(posValue != null){
+                pos.add(posTags.indexOf(posValue.value().getTag()));
+                posProb.add(posValue.probability());
+            } else {
+                pos.add(-1);
+                posProb.add(Value.UNKNOWN_PROBABILITY);
+            }
+            Value<MorphoFeatures> morpho = token.getAnnotation(MORPHO_ANNOTATION);
+            lemma.add(morpho == null ? null : morpho.value().getLemma());
+        }
+        //sentences (tokens are sorted by their start)
+        IntColumn sentenceBounds = new IntColumn();
+        Iterator<Sentence> sentences = at.getSentences();
+        int tokenIndex = 0;
+        while(sentences.hasNext()){
+            int start = sentences.next().getStart();
+            while(tokenIndex < tokenStart.size && tokenStart.values[tokenIndex] < start){
+                tokenIndex++;
+            }
+            sentenceBounds.add(tokenIndex);
+        }
+        if(sentenceBounds.size == 0 && tokenStart.size > 0){
+            sentenceBounds.add(0); //no sentences: the whole text is one sentence
+        }
+        sentenceBounds.add(tokenStart.size);
+        //chunks and entities
+        IntColumn chunkStart = new IntColumn();
+        IntColumn chunkEnd = new IntColumn();
+        IntColumn chunkTag = new IntColumn();
+        IntColumn entityStart = new IntColumn();
+        IntColumn entityEnd = new IntColumn();
+        IntColumn entityTag = new IntColumn();
+        DoubleColumn entityProb = new DoubleColumn();
+        Iterator<Chunk> chunks = at.getChunks();
+        while(chunks.hasNext()){
+            Chunk chunk = chunks.next();
+            Value<PhraseTag> phrase = chunk.getAnnotation(PHRASE_ANNOTATION);
+            if(phrase != null){
+                chunkStart.add(chunk.getStart());
+                chunkEnd.add(chunk.getEnd());
+                chunkTag.add(phraseTags.indexOf(phrase.value().getTag()));
+            }
+            Value<NerTag> ner = chunk.getAnnotation(NER_ANNOTATION);
+            if(ner != null){
+                NerTag nerTag = ner.value();
+                int size = nerTags.size();
+                int index = nerTags.indexOf(nerTag.getTag());
+                if(index == size){ //new tag
+                    nerTypes.add(nerTag.getType() == null ? null : nerTag.getType().getUnicodeString());
+                }
+                entityStart.add(chunk.getStart());
+                entityEnd.add(chunk.getEnd());
+                entityTag.add(index);
+                entityProb.add(ner.probability());
+            }
+        }
+        jg.writeStartObject();
+        tokenStart.write(jg, "tokenStart");
+        tokenEnd.write(jg, "tokenEnd");
+        pos.write(jg, "pos");
+        posProb.write(jg, "posProb");
+        writeStrings(jg, "lemma", lemma);
+        sentenceBounds.write(jg, "sentenceBounds");
+        chunkStart.write(jg, "chunkStart");
+        chunkEnd.write(jg, "chunkEnd");
+        chunkTag.write(jg, "chunkTag");
+        entityStart.write(jg, "entityStart");
+        entityEnd.write(jg, "entityEnd");
+        entityTag.write(jg, "entityTag");
+        entityProb.write(jg, "entityProb");
+        writeStrings(jg, "posTags", posTags.tags);
+        writeStrings(jg, "phraseTags", phraseTags.tags);
+        writeStrings(jg, "nerTags", nerTags.tags);
+        writeStrings(jg, "nerTypes", nerTypes);
+        jg.writeEndObject();
+    }
+
+    private static void writeStrings(JsonGenerator jg, String field, List<String> values) throws IOException {
+        jg.writeFieldName(field);
+        jg.writeStartArray();
+        for(String value : values){
+            if(value == null){
+                jg.writeNull();
+            } else {
+                jg.writeString(value);
+            }
+        }
+        jg.writeEndArray();
+    }
+
+    public JsonFactory getJsonFactory() {
+        if(jsonFactory == null){
+            jsonFactory = new JsonFactory();
+        }
+        return jsonFactory;
+    }
+
+    /**
+     * Dictionary of the tags of a tag set in the order of their first use
+     */
+    private static class TagTable {
+
+        private final Map<String,Integer> indexes = new HashMap<String,Integer>();
+        private final List<String> tags = new ArrayList<String>();
+
+        /**
+         * Getter for the index of the parsed tag. Adds the tag if not yet
+         * present.
+         */
+        int indexOf(String tag){
+            Integer index = indexes.get(tag);
+            if(index == null){
+                index = tags.size();
+                indexes.put(tag, index);
+                tags.add(tag);
+            }
+            return index;
+        }
+
+        int size(){
+            return tags.size();
+        }
+    }
+
+    private static class IntColumn {
+
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value){
+            if(size == values.length){
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void write(JsonGenerator jg, String field) throws IOException {
+            jg.writeFieldName(field);
+            jg.writeStartArray();
+            for(int i = 0; i < size; i++){
+                jg.writeNumber(values[i]);
+            }
+            jg.writeEndArray();
+        }
+    }
+
+    private static class DoubleColumn {
+
+        private double[] values = new double[64];
+        private int size;
+
+        void add(double value){
+            if(size == values.length){
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void write(JsonGenerator jg, String field) throws IOException {
+            jg.writeFieldName(field);
+            jg.writeStartArray();
+            for(int i = 0; i < size; i++){
+                jg.writeNumber(values[i]);
+            }
+            jg.writeEndArray();
+        }
+    }
+}
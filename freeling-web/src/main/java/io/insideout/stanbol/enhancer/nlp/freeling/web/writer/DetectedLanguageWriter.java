@@ -42,6 +42,16 @@ public class DetectedLanguageWriter implements MessageBodyWriter<Collection<Lang
             MediaType mediaType, MultivaluedMap<String,Object> httpHeaders, OutputStream entityStream)
             throws IOException, WebApplicationException {
         JsonGenerator jg = getJsonFactory().createJsonGenerator(entityStream);
+        writeLanguages(jg, detected);
+        jg.close();
+    }
+    /**
+     * Writes the parsed detected languages as JSON array
+     * @param jg the generator
+     * @param detected the detected languages
+     * @throws IOException on any error while writing
+     */
+    public static void writeLanguages(JsonGenerator jg, Collection<Language> detected) throws IOException {
         jg.writeStartArray();
         for(Language lang : detected){
             jg.writeStartObject();
@@ -52,7 +62,6 @@ public class DetectedLanguageWriter implements MessageBodyWriter<Collection<Lang
             jg.writeEndObject();
         }
         jg.writeEndArray();
-        jg.close();
     }
     
     public JsonFactory getJsonFactory() {
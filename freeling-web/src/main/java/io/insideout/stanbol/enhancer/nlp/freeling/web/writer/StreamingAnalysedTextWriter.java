@@ -0,0 +1,313 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.Span;
+import org.apache.stanbol.enhancer.nlp.model.Span.SpanTypeEnum;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.morpho.MorphoFeatures;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes {@link AnalysedText}s in the JSON format of the Stanbol NLP JSON
+ * module. Spans are written directly to the response while iterating over
+ * the {@link AnalysedText} without creating an intermediate JSON tree.<p>
+ * The serialized fields of {@link PosTag}s, {@link PhraseTag}s and
+ * {@link NerTag}s are cached as those are shared by many tokens. Values of
+ * types not supported by the Stanbol NLP JSON module are skipped.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class StreamingAnalysedTextWriter implements MessageBodyWriter<AnalysedText> {
+
+    private final Logger log = LoggerFactory.getLogger(StreamingAnalysedTextWriter.class);
+
+    private static final Set<SpanTypeEnum> SPAN_TYPES = EnumSet.allOf(SpanTypeEnum.class);
+    /**
+     * The cache is cleared if it exceeds this size (e.g. after many reloads
+     * of the tag mappings)
+     */
+    private static final int MAX_CACHE_SIZE = 10000;
+    private static final String PROB_FIELD = ",\"prob\":";
+
+    /**
+     * The serialized fields (without the enclosing braces) of tag values
+     * including the <code>class</code> field
+     */
+    private final ConcurrentMap<Object,String> valueFields = new ConcurrentHashMap<Object,String>();
+    /**
+     * The serialized fields of {@link PosTag}s as used within
+     * {@link MorphoFeatures} (without the <code>class</code> field)
+     */
+    private final ConcurrentMap<PosTag,String> posTagFields = new ConcurrentHashMap<PosTag,String>();
+
+    private JsonFactory jsonFactory;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return AnalysedText.class.isAssignableFrom(type) &&
+                MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(AnalysedText t, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(AnalysedText at, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String,Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        JsonGenerator jg = getJsonFactory().createJsonGenerator(entityStream, JsonEncoding.UTF8);
+        writeAnalysedText(jg, at);
+        jg.close();
+    }
+
+    /**
+     * Writes the parsed {@link AnalysedText}
+     * @param jg the generator
+     * @param at the analysed text
+     * @throws IOException on any error while writing
+     */
+    public void writeAnalysedText(JsonGenerator jg, AnalysedText at) throws IOException {
+        jg.writeStartObject();
+        jg.writeFieldName("spans");
+        jg.writeStartArray();
+        writeSpan(jg, at);
+        Iterator<Span> spans = at.getEnclosed(SPAN_TYPES);
+        while(spans.hasNext()){
+            writeSpan(jg, spans.next());
+        }
+        jg.writeEndArray();
+        jg.writeEndObject();
+    }
+
+    private void writeSpan(JsonGenerator jg, Span span) throws IOException {
+        jg.writeStartObject();
+        jg.writeStringField("type", span.getType().name());
+        jg.writeNumberField("start", span.getStart());
+        jg.writeNumberField("end", span.getEnd());
+        for(String key : span.getKeys()){
+            List<Value<Object>> values = getWritableValues(span, key);
+            if(values.isEmpty()){
+                continue;
+            }
+            jg.writeFieldName(key);
+            if(values.size() == 1){
+                writeValue(jg, values.get(0));
+            } else {
+                jg.writeStartArray();
+                for(Value<Object> value : values){
+                    writeValue(jg, value);
+                }
+                jg.writeEndArray();
+            }
+        }
+        jg.writeEndObject();
+    }
+
+    /**
+     * The values of the parsed key that can be written. Values of types not
+     * supported by the Stanbol NLP JSON module are skipped.
+     */
+    private List<Value<Object>> getWritableValues(Span span, String key){
+        List<Value<Object>> values = span.getValues(key);
+        List<Value<Object>> writable = null;
+        for(int i = 0; i < values.size(); i++){
+            Object v = values.get(i).value();
+            if(isWritable(v)){
+                if(writable != null){
+                    writable.add(values.get(i));
+                }
+            } else {
+                log.debug("skip value of unsupported type {} of annotation '{}'",
+                    v == null ? null : v.getClass().getName(), key);
+                if(writable == null){
+                    writable = new ArrayList<Value<Object>>(values.subList(0, i));
+                }
+            }
+        }
+        return writable == null ? values : writable;
+    }
+    
+    private static boolean isWritable(Object v){
+        return v instanceof PosTag || v instanceof PhraseTag || v instanceof NerTag ||
+                v instanceof MorphoFeatures || v instanceof String || 
+                v instanceof Number || v instanceof Boolean;
+    }
+
+    private void writeValue(JsonGenerator jg, Value<Object> value) throws IOException {
+        Object v = value.value();
+        boolean hasProb = value.probability() != Value.UNKNOWN_PROBABILITY;
+        if(v instanceof PosTag || v instanceof PhraseTag || v instanceof NerTag){
+            //the generator does not know about the raw fields so the
+            //probability needs to be written raw as well
+            jg.writeStartObject();
+            jg.writeRaw(getValueFields(v));
+            if(hasProb){
+                jg.writeRaw(PROB_FIELD);
+                jg.writeRaw(Double.toString(value.probability()));
+            }
+            jg.writeEndObject();
+        } else {
+            jg.writeStartObject();
+            if(v instanceof MorphoFeatures){
+                writeMorphoFeatures(jg, (MorphoFeatures)v);
+            } else if(v instanceof Integer || v instanceof Long){
+                jg.writeNumberField("value", ((Number)v).longValue());
+            } else if(v instanceof Number){
+                jg.writeNumberField("value", ((Number)v).doubleValue());
+            } else if(v instanceof Boolean){
+                jg.writeBooleanField("value", ((Boolean)v).booleanValue());
+            } else {
+                jg.writeStringField("value", (String)v);
+            }
+            jg.writeStringField("class", v.getClass().getName());
+            if(hasProb){
+                jg.writeNumberField("prob", value.probability());
+            }
+            jg.writeEndObject();
+        }
+    }
+
+    private void writeMorphoFeatures(JsonGenerator jg, MorphoFeatures morpho) throws IOException {
+        jg.writeStringField("lemma", morpho.getLemma());
+        List<PosTag> posList = morpho.getPosList();
+        if(posList != null && !posList.isEmpty()){
+            jg.writeFieldName("pos");
+            jg.writeStartArray();
+            for(PosTag posTag : posList){
+                jg.writeStartObject();
+                jg.writeRaw(getPosTagFields(posTag));
+                jg.writeEndObject();
+            }
+            jg.writeEndArray();
+        }
+    }
+
+    private String getValueFields(Object tag) throws IOException {
+        String fields = valueFields.get(tag);
+        if(fields == null){
+            StringWriter writer = new StringWriter();
+            JsonGenerator fg = getJsonFactory().createJsonGenerator(writer);
+            fg.writeStartObject();
+            if(tag instanceof PosTag){
+                writePosTagFields(fg, (PosTag)tag);
+            } else if(tag instanceof PhraseTag){
+                PhraseTag phraseTag = (PhraseTag)tag;
+                fg.writeStringField("tag", phraseTag.getTag());
+                if(phraseTag.getCategory() != null){
+                    fg.writeNumberField("lc", phraseTag.getCategory().ordinal());
+                }
+            } else {
+                NerTag nerTag = (NerTag)tag;
+                fg.writeStringField("tag", nerTag.getTag());
+                if(nerTag.getType() != null){
+                    fg.writeStringField("uri", nerTag.getType().getUnicodeString());
+                }
+            }
+            fg.writeStringField("class", tag.getClass().getName());
+            fg.writeEndObject();
+            fg.close();
+            fields = stripBraces(writer);
+            if(valueFields.size() >= MAX_CACHE_SIZE){
+                valueFields.clear();
+            }
+            valueFields.put(tag, fields);
+        }
+        return fields;
+    }
+
+    private String getPosTagFields(PosTag posTag) throws IOException {
+        String fields = posTagFields.get(posTag);
+        if(fields == null){
+            StringWriter writer = new StringWriter();
+            JsonGenerator fg = getJsonFactory().createJsonGenerator(writer);
+            fg.writeStartObject();
+            writePosTagFields(fg, posTag);
+            fg.writeEndObject();
+            fg.close();
+            fields = stripBraces(writer);
+            if(posTagFields.size() >= MAX_CACHE_SIZE){
+                posTagFields.clear();
+            }
+            posTagFields.put(posTag, fields);
+        }
+        return fields;
+    }
+
+    private static void writePosTagFields(JsonGenerator jg, PosTag posTag) throws IOException {
+        jg.writeStringField("tag", posTag.getTag());
+        Set<Pos> posSet = posTag.getPos();
+        if(posSet.size() == 1){
+            jg.writeNumberField("pos", posSet.iterator().next().ordinal());
+        } else if(!posSet.isEmpty()){
+            jg.writeFieldName("pos");
+            jg.writeStartArray();
+            for(Pos pos : posSet){
+                jg.writeNumber(pos.ordinal());
+            }
+            jg.writeEndArray();
+        }
+        if(!posTag.getCategories().isEmpty()){
+            //only categories not implied by the Pos types are written
+            Set<LexicalCategory> categories = EnumSet.noneOf(LexicalCategory.class);
+            categories.addAll(posTag.getCategories());
+            for(Pos pos : posSet){
+                categories.removeAll(pos.categories());
+            }
+            if(categories.size() == 1){
+                jg.writeNumberField("lc", categories.iterator().next().ordinal());
+            } else if(!categories.isEmpty()){
+                jg.writeFieldName("lc");
+                jg.writeStartArray();
+                for(LexicalCategory category : categories){
+                    jg.writeNumber(category.ordinal());
+                }
+                jg.writeEndArray();
+            }
+        }
+    }
+
+    private static String stripBraces(StringWriter writer){
+        StringBuffer json = writer.getBuffer();
+        return json.substring(1, json.length() - 1);
+    }
+
+    public JsonFactory getJsonFactory() {
+        if(jsonFactory == null){
+            jsonFactory = new JsonFactory();
+        }
+        return jsonFactory;
+    }
+
+}
@@ -0,0 +1,156 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the negotiation of the response encoding and the decompression of
+ * request bodies by the {@link CompressionFilter}
+ */
+public class TestCompressionFilter {
+
+    @Test
+    public void testResponseEncoding() {
+        Assert.assertEquals("gzip", CompressionFilter.getEncoding("deflate, gzip"));
+        Assert.assertEquals("deflate", CompressionFilter.getEncoding("gzip;q=0, deflate"));
+        Assert.assertEquals("gzip", CompressionFilter.getEncoding("*"));
+        Assert.assertNull(CompressionFilter.getEncoding("br"));
+        Assert.assertNull(CompressionFilter.getEncoding(null));
+    }
+
+    @Test
+    public void testContentDecoding() {
+        Assert.assertEquals("gzip", CompressionFilter.getContentDecoding(" GZIP "));
+        Assert.assertEquals("gzip", CompressionFilter.getContentDecoding("x-gzip"));
+        Assert.assertEquals("deflate", CompressionFilter.getContentDecoding("deflate"));
+        //left to the readers (415 for unsupported encodings)
+        Assert.assertNull(CompressionFilter.getContentDecoding("identity"));
+        Assert.assertNull(CompressionFilter.getContentDecoding("br"));
+        Assert.assertNull(CompressionFilter.getContentDecoding(null));
+    }
+
+    /**
+     * Compressed request bodies are decompressed and the Content-Encoding
+     * header is hidden so that readers do not decode the body twice. Also
+     * if response compression is deactivated.
+     */
+    @Test
+    public void testRequestDecompression() throws IOException, ServletException {
+        byte[] text = "Paris is the capital of France.".getBytes("UTF-8");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(text);
+        gzip.close();
+        HttpServletRequest request = request(compressed.toByteArray());
+        final byte[][] read = new byte[1][];
+        final String[] encoding = new String[1];
+        new CompressionFilter(-1).doFilter(request, response(), new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException, ServletException {
+                HttpServletRequest httpRequest = (HttpServletRequest)request;
+                encoding[0] = httpRequest.getHeader("Content-Encoding");
+                read[0] = IOUtils.toByteArray(request.getInputStream());
+            }
+        });
+        Assert.assertNull(encoding[0]);
+        Assert.assertArrayEquals(text, read[0]);
+    }
+
+    /**
+     * Decompressed request bodies exceeding the maximum request size are
+     * rejected with status 413
+     */
+    @Test
+    public void testRequestSizeLimit() throws IOException, ServletException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(new byte[10000]); //compresses to a few bytes
+        gzip.close();
+        final int[] status = new int[1];
+        new CompressionFilter(-1, 1000).doFilter(request(compressed.toByteArray()), 
+            response(status), new FilterChain() {
+                @Override
+                public void doFilter(ServletRequest request, ServletResponse response)
+                        throws IOException, ServletException {
+                    IOUtils.toByteArray(request.getInputStream());
+                    Assert.fail("the size limit was not enforced");
+                }
+            });
+        Assert.assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, status[0]);
+    }
+
+    private static HttpServletRequest request(final byte[] body){
+        final ByteArrayInputStream in = new ByteArrayInputStream(body);
+        return proxy(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if("getHeader".equals(name)){
+                    return "Content-Encoding".equalsIgnoreCase((String)args[0]) ? "gzip" : null;
+                } else if("getInputStream".equals(name)){
+                    return new ServletInputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            return in.read();
+                        }
+                    };
+                } else if("getContentLength".equals(name)){
+                    return body.length;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static HttpServletResponse response(){
+        return proxy(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * A response that records the status of sent errors
+     */
+    private static HttpServletResponse response(final int[] status){
+        return proxy(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if("isCommitted".equals(name)){
+                    return false;
+                } else if("reset".equals(name)){
+                    return null;
+                } else if("sendError".equals(name)){
+                    status[0] = (Integer)args[0];
+                    return null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler){
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,79 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.resource;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.MEDIA_TYPE_ANALYSED_TEXT_BINARY;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the validation of the <code>format</code> parameter of the
+ * <code>/analysis</code> endpoint
+ */
+public class TestAnalysisFormat {
+
+    private static final MediaType BINARY = MediaType.valueOf(MEDIA_TYPE_ANALYSED_TEXT_BINARY);
+
+    @Test
+    public void testDefaultFormat() {
+        AnalysisResource.checkFormat(null, headers(BINARY));
+        AnalysisResource.checkFormat("", headers(MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void testColumnarJson() {
+        AnalysisResource.checkFormat("columnar", headers());
+        AnalysisResource.checkFormat("columnar", headers(MediaType.APPLICATION_JSON_TYPE));
+        AnalysisResource.checkFormat("columnar", headers(MediaType.WILDCARD_TYPE));
+        //JSON is used if the client also accepts it
+        AnalysisResource.checkFormat("columnar", headers(BINARY, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void testColumnarBinary() {
+        assertStatus(Status.NOT_ACCEPTABLE, "columnar", headers(BINARY));
+    }
+
+    @Test
+    public void testUnsupportedFormat() {
+        assertStatus(Status.BAD_REQUEST, "xml", headers());
+    }
+
+    private static void assertStatus(Status status, String format, HttpHeaders headers){
+        try {
+            AnalysisResource.checkFormat(format, headers);
+            Assert.fail("format '" + format + "' MUST be rejected");
+        } catch (WebApplicationException e) {
+            Assert.assertEquals(status.getStatusCode(), e.getResponse().getStatus());
+        }
+    }
+
+    /**
+     * Creates request headers with the parsed acceptable media types
+     */
+    private static HttpHeaders headers(MediaType...acceptable){
+        final List<MediaType> mediaTypes = acceptable.length == 0 ?
+                Collections.<MediaType>emptyList() : Arrays.asList(acceptable);
+        return (HttpHeaders)Proxy.newProxyInstance(HttpHeaders.class.getClassLoader(),
+            new Class<?>[]{HttpHeaders.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if("getAcceptableMediaTypes".equals(method.getName())){
+                        return mediaTypes;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
@@ -0,0 +1,154 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.resource;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier;
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.resource.LangIdentResource.BatchOutput;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.resource.LangIdentResource.TextIterator;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.LanguageIdentificationCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the streaming of the results of <code>/langident/batch</code>
+ * requests
+ */
+public class TestLangIdentBatch {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    public void testChunkedBorrowing() throws IOException {
+        List<String> texts = new ArrayList<String>();
+        for(int i = 0; i < 200; i++){
+            texts.add("text " + i);
+        }
+        TestBatchOutput output = new TestBatchOutput(iterator(texts), null);
+        List<String> results = write(output);
+        Assert.assertEquals(200, results.size());
+        Assert.assertEquals(0, output.borrowed);
+        //one identifier for each chunk of 64 texts
+        Assert.assertEquals(4, output.borrowCount);
+        Assert.assertEquals(1, output.maxBorrowed);
+    }
+
+    @Test
+    public void testNoBorrowingForCachedTexts() throws IOException {
+        LanguageIdentificationCache cache = new LanguageIdentificationCache(10);
+        cache.put("cached", "en,de", Arrays.asList(new Language("de", 1.0)));
+        TestBatchOutput output = new TestBatchOutput(iterator(Arrays.asList("cached", "cached")), cache);
+        List<String> results = write(output);
+        Assert.assertEquals(Arrays.asList("de", "de"), results);
+        Assert.assertEquals(0, output.borrowCount);
+    }
+
+    @Test
+    public void testInvalidJsonElement() throws IOException {
+        JsonParser parser = jsonFactory.createJsonParser("[\"first text\", 3, \"second\"]");
+        Assert.assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+        TestBatchOutput output = new TestBatchOutput(
+            LangIdentResource.createJsonTextIterator(parser), null);
+        List<String> results = write(output);
+        //the result of the first text followed by the in-band error
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("en", results.get(0));
+        Assert.assertEquals("error", results.get(1));
+        Assert.assertEquals(0, output.borrowed);
+    }
+
+    @Test
+    public void testUnclosedJsonArray() throws IOException {
+        JsonParser parser = jsonFactory.createJsonParser("[\"first text\"");
+        Assert.assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+        List<String> results = write(new TestBatchOutput(
+            LangIdentResource.createJsonTextIterator(parser), null));
+        Assert.assertEquals(Arrays.asList("en", "error"), results);
+    }
+
+    /**
+     * Writes the parsed output and parses the JSON array
+     * @return the best language of each element or "error" for error elements
+     */
+    private List<String> write(BatchOutput output) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.write(out);
+        JsonParser parser = jsonFactory.createJsonParser(out.toString("UTF-8"));
+        Assert.assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+        List<String> results = new ArrayList<String>();
+        for(JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()){
+            if(token == JsonToken.START_OBJECT){ //error element
+                Assert.assertEquals(JsonToken.FIELD_NAME, parser.nextToken());
+                Assert.assertEquals("error", parser.getCurrentName());
+                parser.nextToken();
+                Assert.assertEquals(JsonToken.END_OBJECT, parser.nextToken());
+                results.add("error");
+            } else {
+                Assert.assertEquals(JsonToken.START_ARRAY, token);
+                Assert.assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+                Assert.assertEquals(JsonToken.FIELD_NAME, parser.nextToken());
+                Assert.assertEquals("lang", parser.getCurrentName());
+                parser.nextToken();
+                results.add(parser.getText());
+                while(parser.nextToken() != JsonToken.END_OBJECT){
+                    parser.skipChildren();
+                }
+                Assert.assertEquals(JsonToken.END_ARRAY, parser.nextToken());
+            }
+        }
+        Assert.assertNull(parser.nextToken());
+        return results;
+    }
+
+    private static TextIterator iterator(List<String> texts){
+        final Iterator<String> it = texts.iterator();
+        return new TextIterator() {
+            @Override
+            public String next() {
+                return it.hasNext() ? it.next() : null;
+            }
+        };
+    }
+
+    private class TestBatchOutput extends BatchOutput {
+
+        int borrowed;
+        int borrowCount;
+        int maxBorrowed;
+
+        TestBatchOutput(TextIterator texts, LanguageIdentificationCache cache) {
+            super(texts, "en,de", cache, jsonFactory);
+        }
+
+        @Override
+        protected LanguageIdentifier getLanguageIdentifier() {
+            borrowCount++;
+            borrowed++;
+            maxBorrowed = Math.max(maxBorrowed, borrowed);
+            return new LanguageIdentifier() {
+                @Override
+                public List<Language> identifyLanguage(String text, String languages) {
+                    return Arrays.asList(new Language("en", 0.9));
+                }
+                @Override
+                public List<Language> identifyLanguage(String text) {
+                    return identifyLanguage(text, null);
+                }
+            };
+        }
+
+        @Override
+        protected void releaseLanguageIdentifier(LanguageIdentifier langId) {
+            borrowed--;
+        }
+    }
+}
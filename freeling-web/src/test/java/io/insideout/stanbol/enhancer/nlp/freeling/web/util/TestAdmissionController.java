@@ -0,0 +1,120 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.util;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.AdmissionController.Ticket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the waiting rooms, the service time estimation and the tickets of
+ * the {@link AdmissionController}
+ */
+public class TestAdmissionController {
+
+    private static final long MAX_WAIT_TIME = 30*1000;
+
+    @Test
+    public void testWaitingRoom() {
+        AdmissionController ac = new AdmissionController(2);
+        List<Ticket> tickets = new ArrayList<Ticket>();
+        //two processed and two waiting requests
+        for(int i = 0; i < 4; i++){
+            Ticket ticket = ac.admit("en", 2, MAX_WAIT_TIME);
+            Assert.assertTrue(ticket.isAdmitted());
+            tickets.add(ticket);
+        }
+        Assert.assertEquals(4, ac.getAdmittedCount("en"));
+        Ticket rejected = ac.admit("en", 2, MAX_WAIT_TIME);
+        Assert.assertFalse(rejected.isAdmitted());
+        Assert.assertEquals(429, rejected.getStatus());
+        Assert.assertTrue(rejected.getRetryAfter() >= 1);
+        Assert.assertNotNull(rejected.getReason());
+        //rejected tickets do not change the admitted count
+        rejected.release();
+        Assert.assertEquals(4, ac.getAdmittedCount("en"));
+        //other languages have their own waiting room
+        Assert.assertTrue(ac.admit("es", 2, MAX_WAIT_TIME).isAdmitted());
+        Assert.assertEquals(1, ac.getAdmittedCount("es"));
+        //a released request frees a place in the waiting room
+        tickets.get(0).release();
+        Assert.assertEquals(3, ac.getAdmittedCount("en"));
+        Assert.assertTrue(ac.admit("en", 2, MAX_WAIT_TIME).isAdmitted());
+    }
+
+    @Test
+    public void testRelease() {
+        AdmissionController ac = new AdmissionController(5);
+        Ticket ticket = ac.admit("en", 1, MAX_WAIT_TIME);
+        ac.admit("en", 1, MAX_WAIT_TIME);
+        Assert.assertEquals(2, ac.getAdmittedCount("en"));
+        //tickets can be released by the request thread and after a timeout
+        ticket.release();
+        ticket.release();
+        Assert.assertEquals(1, ac.getAdmittedCount("en"));
+        //no service time is recorded for requests that were not started
+        Assert.assertEquals(-1, ac.getServiceTime("en"));
+        Assert.assertEquals(0, ac.getAdmittedCount("de"));
+        Assert.assertEquals(-1, ac.getServiceTime("de"));
+    }
+
+    @Test
+    public void testServiceTime() throws InterruptedException {
+        AdmissionController ac = new AdmissionController(5);
+        process(ac.admit("en", 1, MAX_WAIT_TIME), 100);
+        long first = ac.getServiceTime("en");
+        Assert.assertTrue(first >= 100);
+        process(ac.admit("en", 1, MAX_WAIT_TIME), 200);
+        //exponential moving average: 0.8 * first + 0.2 * second
+        long average = ac.getServiceTime("en");
+        Assert.assertTrue(average >= Math.round(0.8 * first + 0.2 * 200));
+        Assert.assertTrue(average < 200);
+    }
+
+    @Test
+    public void testExpectedWaitTime() throws InterruptedException {
+        AdmissionController ac = new AdmissionController(10);
+        //requests are admitted as long as the service time is unknown
+        Ticket first = ac.admit("en", 1, 10);
+        Assert.assertTrue(first.isAdmitted());
+        Assert.assertTrue(ac.admit("en", 1, 10).isAdmitted());
+        Assert.assertEquals(1, first.getRetryAfter(1));
+        first.release();
+        ac.admit("en", 1, 10).release();
+        process(ac.admit("en", 1, MAX_WAIT_TIME), 100);
+        Assert.assertEquals(1, ac.getAdmittedCount("en"));
+        //a free Analyzer: admitted regardless of the service time
+        Ticket processed = ac.admit("en", 2, 10);
+        Assert.assertTrue(processed.isAdmitted());
+        processed.release();
+        //the new request would need to wait for the running one
+        Ticket rejected = ac.admit("en", 1, 10);
+        Assert.assertFalse(rejected.isAdmitted());
+        Assert.assertEquals(503, rejected.getStatus());
+        Assert.assertTrue(rejected.getRetryAfter() >= 1);
+        Assert.assertEquals(1, ac.getAdmittedCount("en"));
+        //admitted if it may wait long enough
+        Ticket waiting = ac.admit("en", 1, MAX_WAIT_TIME);
+        Assert.assertTrue(waiting.isAdmitted());
+        //with more Analyzers it would be processed immediately
+        Assert.assertTrue(ac.admit("en", 3, 10).isAdmitted());
+        Assert.assertTrue(waiting.getRetryAfter(1) >= 1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidMaxWaiting() {
+        new AdmissionController(0);
+    }
+
+    /**
+     * Processes an admitted request for the parsed time
+     */
+    private static void process(Ticket ticket, long time) throws InterruptedException {
+        Assert.assertTrue(ticket.isAdmitted());
+        ticket.started();
+        Thread.sleep(time);
+        ticket.release();
+    }
+}
@@ -0,0 +1,69 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.util;
+
+import io.insideout.stanbol.enhancer.nlp.freeling.LanguageIdentifier.Language;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLanguageIdentificationCache {
+
+    private static final List<Language> EN = Arrays.asList(new Language("en", 0.9));
+    private static final List<Language> DE = Arrays.asList(new Language("de", 0.8));
+
+    @Test
+    public void testNormalizedText() {
+        LanguageIdentificationCache cache = new LanguageIdentificationCache(10);
+        cache.put("  Hello\tWorld ", "en,de", EN);
+        Assert.assertEquals(EN, cache.get("hello world", "en,de"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertNull(cache.get("hello worlds", "en,de"));
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testLanguageOrder() {
+        LanguageIdentificationCache cache = new LanguageIdentificationCache(10);
+        cache.put("hello world", "en,de,es", EN);
+        Assert.assertEquals(EN, cache.get("hello world", "es, de,en"));
+        Assert.assertEquals(EN, cache.get("hello world", "de,es,en,"));
+        Assert.assertNull(cache.get("hello world", "de,es"));
+        Assert.assertNull(cache.get("hello world", null));
+        Assert.assertEquals("de,en,es", LanguageIdentificationCache.normalizeLanguages(" es,en,,de,en"));
+    }
+
+    @Test
+    public void testSampledResults() {
+        LanguageIdentificationCache cache = new LanguageIdentificationCache(10);
+        cache.put("hello world", "en,de", true, DE);
+        Assert.assertNull(cache.get("hello world", "en,de"));
+        Assert.assertEquals(DE, cache.get("hello world", "en,de", true));
+        cache.put("hello world", "en,de", EN);
+        Assert.assertEquals(EN, cache.get("hello world", "en,de"));
+        Assert.assertEquals(DE, cache.get("hello world", "en,de", true));
+    }
+
+    @Test
+    public void testEviction() {
+        LanguageIdentificationCache cache = new LanguageIdentificationCache(2);
+        cache.put("one", null, EN);
+        cache.put("two", null, EN);
+        Assert.assertEquals(EN, cache.get("one", null)); //one is now the most recent
+        cache.put("three", null, DE);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertNull(cache.get("two", null));
+        Assert.assertEquals(EN, cache.get("one", null));
+    }
+
+    @Test
+    public void testMaxTextLength() {
+        LanguageIdentificationCache cache = new LanguageIdentificationCache(10, 5);
+        cache.put("too long", null, EN);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get("too long", null));
+        Assert.assertFalse(cache.isCacheable(null));
+    }
+}
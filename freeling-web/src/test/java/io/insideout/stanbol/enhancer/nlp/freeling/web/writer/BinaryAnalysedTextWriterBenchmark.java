@@ -0,0 +1,67 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.writer;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getAnalysedTextFactory;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getContentItemFactory;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getSpans;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.writer.TestBinaryAnalysedTextWriter.BINARY;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.writer.TestBinaryAnalysedTextWriter.createAnalysedText;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.writer.TestBinaryAnalysedTextWriter.write;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextCodec;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.writer.TestBinaryAnalysedTextWriter.TestWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.apache.stanbol.enhancer.nlp.json.writer.AnalyzedTextWriter;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the size and the encoding/decoding times of the binary and the JSON
+ * format. Not executed by the build (timings depend on the machine). Run
+ * it manually with the test classpath, optionally parsing the number of
+ * segments and rounds as arguments.
+ */
+public final class BinaryAnalysedTextWriterBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryAnalysedTextWriterBenchmark.class);
+
+    private BinaryAnalysedTextWriterBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        int segments = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        TestBinaryAnalysedTextWriter.init();
+        AnalysedTextCodec codec = new AnalysedTextCodec(getContentItemFactory(), getAnalysedTextFactory());
+        AnalysedText at = createAnalysedText(segments);
+        AnalyzedTextWriter jsonWriter = new AnalyzedTextWriter();
+        MessageBodyWriter<AnalysedText> binaryWriter = new TestWriter();
+        byte[] json = write(jsonWriter, at, MediaType.APPLICATION_JSON_TYPE, null);
+        byte[] binary = write(binaryWriter, at, BINARY, null);
+        long start = System.nanoTime();
+        for(int i = 0; i < rounds; i++){
+            write(jsonWriter, at, MediaType.APPLICATION_JSON_TYPE, null);
+        }
+        long jsonWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(int i = 0; i < rounds; i++){
+            write(binaryWriter, at, BINARY, null);
+        }
+        long binaryWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(int i = 0; i < rounds; i++){
+            codec.decode(new ByteArrayInputStream(binary));
+        }
+        long binaryRead = System.nanoTime() - start;
+        log.info(" {} chars, {} spans: JSON {} bytes (write: {}ms)", new Object[]{
+                at.getText().length(), getSpans(at).size(), json.length,
+                jsonWrite / rounds / 1000000.0});
+        log.info(" binary {} bytes ({}% of JSON, write: {}ms, read: {}ms)", new Object[]{
+                binary.length, binary.length * 100 / json.length,
+                binaryWrite / rounds / 1000000.0, binaryRead / rounds / 1000000.0});
+    }
+}
@@ -0,0 +1,225 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.writer;
+
+import static io.insideout.stanbol.enhancer.nlp.freeling.MultiLanguageAnalyzer.LANGUAGE_ANNOTATION;
+import static io.insideout.stanbol.enhancer.nlp.freeling.web.Constants.MEDIA_TYPE_ANALYSED_TEXT_BINARY;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.MORPHO_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.PHRASE_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.POS_ANNOTATION;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.addToken;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getAnalysedTextFactory;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getContentItemFactory;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.getSpans;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextCodec;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.apache.stanbol.enhancer.nlp.json.writer.AnalyzedTextWriter;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.nlp.model.Span;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.morpho.MorphoFeatures;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Round trip tests for the {@link BinaryAnalysedTextWriter} and a
+ * comparison of the size with the JSON format. See
+ * {@link BinaryAnalysedTextWriterBenchmark} for the encoding/decoding times.
+ */
+public class TestBinaryAnalysedTextWriter {
+
+    private static final String SEGMENT_ES = "Juan vive en Barcelona. ";
+    private static final String SEGMENT_EN = "John lives in London. ";
+    static final MediaType BINARY = MediaType.valueOf(MEDIA_TYPE_ANALYSED_TEXT_BINARY);
+
+    private static AnalysedTextCodec codec;
+
+    @BeforeClass
+    public static void init(){
+        codec = new AnalysedTextCodec(getContentItemFactory(), getAnalysedTextFactory());
+    }
+
+    /**
+     * The languages of the segments and the Pos and LexicalCategory of the
+     * tags MUST be preserved
+     */
+    @Test
+    public void testSegmentedRoundTrip() throws IOException {
+        AnalysedText at = createAnalysedText(2);
+        AnalysedText decoded = codec.decode(new ByteArrayInputStream(write(at, "es, en")));
+        Assert.assertEquals(at.getText(), decoded.getText());
+        List<Span> expected = getSpans(at);
+        List<Span> actual = getSpans(decoded);
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++){
+            Span e = expected.get(i);
+            Span a = actual.get(i);
+            Assert.assertEquals(e.getType(), a.getType());
+            Assert.assertEquals(e.getSpan(), a.getSpan());
+            assertEquals(e.getAnnotation(LANGUAGE_ANNOTATION), a.getAnnotation(LANGUAGE_ANNOTATION));
+            Value<PosTag> ePos = e.getAnnotation(POS_ANNOTATION);
+            Value<PosTag> aPos = a.getAnnotation(POS_ANNOTATION);
+            if(ePos == null){
+                Assert.assertNull(aPos);
+            } else {
+                Assert.assertEquals(ePos.value().getTag(), aPos.value().getTag());
+                Assert.assertEquals(ePos.value().getPos(), aPos.value().getPos());
+                Assert.assertEquals(ePos.value().getCategories(), aPos.value().getCategories());
+                Assert.assertEquals(ePos.probability(), aPos.probability(), 0.0001);
+            }
+            Value<PhraseTag> ePhrase = e.getAnnotation(PHRASE_ANNOTATION);
+            Value<PhraseTag> aPhrase = a.getAnnotation(PHRASE_ANNOTATION);
+            if(ePhrase == null){
+                Assert.assertNull(aPhrase);
+            } else {
+                Assert.assertEquals(ePhrase.value().getTag(), aPhrase.value().getTag());
+                Assert.assertEquals(ePhrase.value().getCategory(), aPhrase.value().getCategory());
+            }
+            Value<MorphoFeatures> eMorpho = e.getAnnotation(MORPHO_ANNOTATION);
+            Value<MorphoFeatures> aMorpho = a.getAnnotation(MORPHO_ANNOTATION);
+            if(eMorpho == null){
+                Assert.assertNull(aMorpho);
+            } else {
+                Assert.assertEquals(eMorpho.value().getLemma(), aMorpho.value().getLemma());
+            }
+        }
+    }
+
+    /**
+     * Tags are referenced by index instead of repeating their fields
+     */
+    @Test
+    public void testSize() throws IOException {
+        AnalysedText at = createAnalysedText(500);
+        byte[] json = write(new AnalyzedTextWriter(), at, MediaType.APPLICATION_JSON_TYPE, null);
+        byte[] binary = write(new TestWriter(), at, BINARY, null);
+        Assert.assertTrue(binary.length < json.length);
+    }
+
+    private static byte[] write(AnalysedText at, String contentLanguage) throws IOException {
+        return write(new TestWriter(), at, BINARY, contentLanguage);
+    }
+
+    static byte[] write(MessageBodyWriter<AnalysedText> writer, AnalysedText at,
+            MediaType mediaType, String contentLanguage) throws IOException {
+        MultivaluedMap<String,Object> headers = new Headers();
+        if(contentLanguage != null){
+            headers.putSingle(HttpHeaders.CONTENT_LANGUAGE, contentLanguage);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(at, AnalysedText.class, AnalysedText.class, new Annotation[]{},
+            mediaType, headers, out);
+        return out.toByteArray();
+    }
+
+    private static <T> void assertEquals(Value<T> expected, Value<T> actual){
+        if(expected == null){
+            Assert.assertNull(actual);
+        } else {
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(expected.value(), actual.value());
+        }
+    }
+
+    /**
+     * Creates a text with the parsed number of alternating Spanish and
+     * English segments as annotated by the MultiLanguageAnalyzer
+     */
+    static AnalysedText createAnalysedText(int segments) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < segments; i++){
+            text.append(i % 2 == 0 ? SEGMENT_ES : SEGMENT_EN);
+        }
+        AnalysedText at = AnalysedTextFixture.createAnalysedText(text.toString());
+        PosTag properNoun = new PosTag("NP00SP0", Pos.ProperNoun);
+        PosTag verb = new PosTag("VMIP3S0", EnumSet.of(LexicalCategory.Verb),
+            EnumSet.of(Pos.MainVerb, Pos.PresentParticiple));
+        PosTag preposition = new PosTag("SPS00", Pos.Preposition);
+        PosTag punctuation = new PosTag("Fp", LexicalCategory.Punctuation);
+        PhraseTag nounPhrase = new PhraseTag("sn", LexicalCategory.Noun);
+        int offset = 0;
+        for(int i = 0; i < segments; i++){
+            boolean es = i % 2 == 0;
+            String segment = es ? SEGMENT_ES : SEGMENT_EN;
+            Sentence sentence = at.addSentence(offset, offset + segment.length() - 1);
+            sentence.addAnnotation(LANGUAGE_ANNOTATION, Value.value(es ? "es" : "en"));
+            String[] words = segment.trim().split(" ");
+            int wordStart = offset;
+            for(int w = 0; w < words.length; w++){
+                String word = words[w];
+                boolean last = w == words.length - 1;
+                int wordEnd = wordStart + word.length() - (last ? 1 : 0);
+                PosTag posTag = w == 0 || last ? properNoun : w == 1 ? verb : preposition;
+                if(last){
+                    sentence.addChunk(wordStart - offset, wordEnd - offset).addAnnotation(PHRASE_ANNOTATION,
+                        Value.value(nounPhrase, 0.8));
+                }
+                addToken(sentence, wordStart, wordEnd, word.toLowerCase(), Value.value(posTag, 0.9876));
+                if(last){
+                    addToken(sentence, wordEnd, wordEnd + 1, ".", Value.value(punctuation, 0.9876));
+                }
+                wordStart = wordStart + word.length() + 1;
+            }
+            offset = offset + segment.length();
+        }
+        return at;
+    }
+
+    /**
+     * Uses the codec of the test as no ServletContext is available
+     */
+    static class TestWriter extends BinaryAnalysedTextWriter {
+        @Override
+        protected AnalysedTextCodec getCodec() {
+            return codec;
+        }
+    }
+
+    static class Headers extends HashMap<String,List<Object>> 
+            implements MultivaluedMap<String,Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void putSingle(String key, Object value) {
+            List<Object> values = new ArrayList<Object>();
+            values.add(value);
+            put(key, values);
+        }
+
+        @Override
+        public void add(String key, Object value) {
+            List<Object> values = get(key);
+            if(values == null){
+                putSingle(key, value);
+            } else {
+                values.add(value);
+            }
+        }
+
+        @Override
+        public Object getFirst(String key) {
+            List<Object> values = get(key);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+    }
+}
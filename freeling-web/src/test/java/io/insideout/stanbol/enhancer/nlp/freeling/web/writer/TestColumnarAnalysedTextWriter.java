@@ -0,0 +1,132 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.writer;
+
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.NER_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.PHRASE_ANNOTATION;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.addToken;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture;
+import io.insideout.stanbol.enhancer.nlp.freeling.web.util.ColumnarAnalysedText;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the columns written by the {@link ColumnarAnalysedTextWriter}
+ */
+public class TestColumnarAnalysedTextWriter {
+
+    private static final String TEXT = "Paris is big. It is old.";
+    private static final String PLACE = "http://dbpedia.org/ontology/Place";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testColumns() throws IOException {
+        JsonNode json = write(createAnalysedText());
+        assertInts(json.get("tokenStart"), 0, 6, 9, 12, 14, 17, 20, 23);
+        assertInts(json.get("tokenEnd"), 5, 8, 12, 13, 16, 19, 23, 24);
+        //tags are dictionary coded in the order of their first use
+        assertInts(json.get("pos"), 0, 1, 2, 3, 4, 1, 2, 3);
+        assertStrings(json.get("posTags"), "NP", "VBZ", "JJ", "Fp", "PRP");
+        Assert.assertEquals(0.9, json.get("posProb").get(0).getDoubleValue(), 0.0001);
+        Assert.assertEquals("paris", json.get("lemma").get(0).getTextValue());
+        //first token of each sentence followed by the token count
+        assertInts(json.get("sentenceBounds"), 0, 4, 8);
+        assertInts(json.get("chunkStart"), 9);
+        assertInts(json.get("chunkEnd"), 12);
+        assertInts(json.get("chunkTag"), 0);
+        assertStrings(json.get("phraseTags"), "sa");
+        assertInts(json.get("entityStart"), 0);
+        assertInts(json.get("entityEnd"), 5);
+        assertInts(json.get("entityTag"), 0);
+        Assert.assertEquals(0.75, json.get("entityProb").get(0).getDoubleValue(), 0.0001);
+        assertStrings(json.get("nerTags"), "NP00G00");
+        assertStrings(json.get("nerTypes"), PLACE);
+    }
+
+    /**
+     * Tokens without POS annotation use <code>-1</code> as index and as
+     * probability
+     */
+    @Test
+    public void testMissingAnnotations() throws IOException {
+        AnalysedText at = AnalysedTextFixture.createAnalysedText(TEXT);
+        at.addToken(0, 5);
+        JsonNode json = write(at);
+        assertInts(json.get("pos"), -1);
+        Assert.assertEquals(-1, json.get("posProb").get(0).getDoubleValue(), 0.0001);
+        Assert.assertTrue(json.get("lemma").get(0).isNull());
+        //no sentences: the whole text is one sentence
+        assertInts(json.get("sentenceBounds"), 0, 1);
+        Assert.assertEquals(0, json.get("posTags").size());
+    }
+
+    @Test
+    public void testEmptyText() throws IOException {
+        JsonNode json = write(AnalysedTextFixture.createAnalysedText(""));
+        Assert.assertEquals(0, json.get("tokenStart").size());
+        assertInts(json.get("sentenceBounds"), 0);
+    }
+
+    private JsonNode write(AnalysedText at) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ColumnarAnalysedTextWriter().writeTo(new ColumnarAnalysedText(at),
+            ColumnarAnalysedText.class, ColumnarAnalysedText.class, new Annotation[]{},
+            MediaType.APPLICATION_JSON_TYPE, null, out);
+        return mapper.readTree(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertInts(JsonNode column, int...expected){
+        Assert.assertEquals(expected.length, column.size());
+        for(int i = 0; i < expected.length; i++){
+            Assert.assertEquals(expected[i], column.get(i).getIntValue());
+        }
+    }
+
+    private static void assertStrings(JsonNode column, String...expected){
+        Assert.assertEquals(expected.length, column.size());
+        for(int i = 0; i < expected.length; i++){
+            Assert.assertEquals(expected[i], column.get(i).getTextValue());
+        }
+    }
+
+    private static AnalysedText createAnalysedText() throws IOException {
+        AnalysedText at = AnalysedTextFixture.createAnalysedText(TEXT);
+        PosTag properNoun = new PosTag("NP", Pos.ProperNoun);
+        PosTag verb = new PosTag("VBZ", LexicalCategory.Verb);
+        PosTag adjective = new PosTag("JJ", LexicalCategory.Adjective);
+        PosTag punctuation = new PosTag("Fp", LexicalCategory.Punctuation);
+        PosTag pronoun = new PosTag("PRP", Pos.PersonalPronoun);
+        at.addSentence(0, 13);
+        at.addChunk(0, 5).addAnnotation(NER_ANNOTATION,
+            Value.value(new NerTag("NP00G00", new UriRef(PLACE)), 0.75));
+        at.addChunk(9, 12).addAnnotation(PHRASE_ANNOTATION,
+            Value.value(new PhraseTag("sa", LexicalCategory.Adjective)));
+        addToken(at, 0, 5, "paris", Value.value(properNoun, 0.9));
+        addToken(at, 6, 8, "be", Value.value(verb, 0.9));
+        addToken(at, 9, 12, "big", Value.value(adjective, 0.9));
+        addToken(at, 12, 13, ".", Value.value(punctuation, 0.9));
+        at.addSentence(14, 24);
+        addToken(at, 14, 16, "it", Value.value(pronoun, 0.9));
+        addToken(at, 17, 19, "be", Value.value(verb, 0.9));
+        addToken(at, 20, 23, "old", Value.value(adjective, 0.9));
+        addToken(at, 23, 24, ".", Value.value(punctuation, 0.9));
+        return at;
+    }
+}
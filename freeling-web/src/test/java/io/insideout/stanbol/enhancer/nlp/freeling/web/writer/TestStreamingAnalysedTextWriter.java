@@ -0,0 +1,153 @@
+package io.insideout.stanbol.enhancer.nlp.freeling.web.writer;
+
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.NER_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.PHRASE_ANNOTATION;
+import static org.apache.stanbol.enhancer.nlp.NlpAnnotations.POS_ANNOTATION;
+import static io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture.addToken;
+import io.insideout.stanbol.enhancer.nlp.freeling.util.AnalysedTextFixture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.enhancer.nlp.json.writer.AnalyzedTextWriter;
+import org.apache.stanbol.enhancer.nlp.model.AnalysedText;
+import org.apache.stanbol.enhancer.nlp.model.Chunk;
+import org.apache.stanbol.enhancer.nlp.model.Sentence;
+import org.apache.stanbol.enhancer.nlp.model.Token;
+import org.apache.stanbol.enhancer.nlp.model.annotation.Value;
+import org.apache.stanbol.enhancer.nlp.ner.NerTag;
+import org.apache.stanbol.enhancer.nlp.phrase.PhraseTag;
+import org.apache.stanbol.enhancer.nlp.pos.LexicalCategory;
+import org.apache.stanbol.enhancer.nlp.pos.Pos;
+import org.apache.stanbol.enhancer.nlp.pos.PosTag;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Ensures that the {@link StreamingAnalysedTextWriter} writes the same JSON
+ * as the {@link AnalyzedTextWriter} of the Stanbol NLP JSON module.
+ */
+public class TestStreamingAnalysedTextWriter {
+
+    private static final String TEXT = "Paris is the capital of France. It is big.";
+    private static final MediaType JSON = MediaType.APPLICATION_JSON_TYPE;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testSameJson() throws IOException {
+        AnalysedText at = createAnalysedText();
+        JsonNode expected = write(new AnalyzedTextWriter(), at);
+        JsonNode actual = write(new StreamingAnalysedTextWriter(), at);
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * Tag fields are cached by the streaming writer. Writing the same text
+     * twice MUST NOT change the output.
+     */
+    @Test
+    public void testCachedTags() throws IOException {
+        AnalysedText at = createAnalysedText();
+        StreamingAnalysedTextWriter writer = new StreamingAnalysedTextWriter();
+        JsonNode first = write(writer, at);
+        Assert.assertEquals(first, write(writer, at));
+        Assert.assertEquals(write(new AnalyzedTextWriter(), at), first);
+    }
+
+    @Test
+    public void testEmptyText() throws IOException {
+        AnalysedText at = AnalysedTextFixture.createAnalysedText("");
+        Assert.assertEquals(write(new AnalyzedTextWriter(), at), 
+            write(new StreamingAnalysedTextWriter(), at));
+    }
+
+    /**
+     * Values of types without a serializer are skipped by both writers
+     */
+    @Test
+    public void testUnknownValueType() throws IOException {
+        AnalysedText at = createAnalysedText();
+        at.addValue("unknown", Value.value(new UnknownType(), 0.5));
+        Token token = at.addToken(0, 5);
+        token.addValue("mixed", Value.value(new UnknownType()));
+        token.addValue("mixed", Value.value("known"));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new AnalyzedTextWriter().writeTo(at, AnalysedText.class, AnalysedText.class, 
+            new Annotation[]{}, JSON, null, expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new StreamingAnalysedTextWriter().writeTo(at, AnalysedText.class, AnalysedText.class, 
+            new Annotation[]{}, JSON, null, actual);
+        Assert.assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+        Assert.assertFalse(actual.toString("UTF-8").contains("unknown"));
+    }
+
+    private JsonNode write(MessageBodyWriter<AnalysedText> writer, AnalysedText at) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(at, AnalysedText.class, AnalysedText.class, new Annotation[]{}, 
+            JSON, null, out);
+        return mapper.readTree(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Creates an AnalysedText with POS (single and multiple Pos types),
+     * phrase, NER, morpho and a String annotation
+     */
+    private static AnalysedText createAnalysedText() throws IOException {
+        AnalysedText at = AnalysedTextFixture.createAnalysedText(TEXT);
+        PosTag properNoun = new PosTag("NNP", Pos.ProperNoun);
+        PosTag verb = new PosTag("VBZ", LexicalCategory.Verb);
+        PosTag determiner = new PosTag("DT", Pos.Determiner, Pos.Article);
+        PosTag noun = new PosTag("NN", LexicalCategory.Noun, Pos.CommonNoun);
+        PosTag preposition = new PosTag("IN", Pos.Preposition);
+        PosTag adjective = new PosTag("JJ", LexicalCategory.Adjective);
+        PosTag unmapped = new PosTag("XX");
+        PosTag punctuation = new PosTag("Fp", LexicalCategory.Punctuation);
+        PosTag pronoun = new PosTag("PRP", Pos.PersonalPronoun);
+        NerTag location = new NerTag("NP00G00", new UriRef("http://dbpedia.org/ontology/Place"));
+
+        Sentence sentence = at.addSentence(0, 31);
+        sentence.addValue("custom", Value.value("first sentence"));
+        Chunk chunk = sentence.addChunk(9, 30);
+        chunk.addAnnotation(PHRASE_ANNOTATION, Value.value(
+            new PhraseTag("sn", LexicalCategory.Noun), 0.8));
+        Chunk entity = sentence.addChunk(0, 5);
+        entity.addAnnotation(NER_ANNOTATION, Value.value(location, 0.75));
+        addToken(at, 0, 5, "paris", Value.value(properNoun, 0.99));
+        addToken(at, 6, 8, "be", Value.value(verb, 0.9));
+        addToken(at, 9, 12, "the", Value.value(determiner));
+        Token capital = addToken(at, 13, 20, "capital", Value.value(noun, 0.7));
+        capital.addAnnotations(POS_ANNOTATION, Arrays.asList(
+            Value.value(adjective, 0.3)));
+        addToken(at, 21, 23, "of", Value.value(preposition, 1.0));
+        Token france = addToken(at, 24, 30, "france", Value.value(unmapped, 0.5));
+        france.addAnnotation(NER_ANNOTATION, Value.value(new NerTag("NP00G00"), 0.6));
+        addToken(at, 30, 31, ".", Value.value(punctuation));
+
+        at.addSentence(32, 42);
+        addToken(at, 32, 34, "it", Value.value(pronoun, 0.95));
+        addToken(at, 35, 37, "be", Value.value(verb, 0.9));
+        addToken(at, 38, 41, "big", Value.value(adjective, 0.85));
+        addToken(at, 41, 42, ".", Value.value(punctuation));
+        return at;
+    }
+
+    /**
+     * A value type not known by the Stanbol NLP JSON module
+     */
+    private static class UnknownType {
+        @Override
+        public String toString() {
+            return "unknown";
+        }
+    }
+}